@@ -0,0 +1,49 @@
+package com.task.rest.benchmarks;
+
+import com.task.rest.model.Money;
+import com.task.rest.model.dbo.Account;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the account modifications, {@link AccountServiceLatencyBenchmark} measures their latency distribution
+ * <p>
+ * Run it with different numbers of threads (-t) or by {@link ThreadSweep}, the storage, the distribution of the requested ids
+ * and the concurrency mode are parameters of the {@link AccountServiceState}
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountServiceBenchmark {
+
+    private static final Money AMOUNT = Money.valueOf(1, 2);
+
+    @Benchmark
+    public Account transfer(AccountServiceState state) {
+        long fromId = state.nextId();
+        long toId = state.nextIdOtherThan(fromId);
+        return state.accountService.transfer(fromId, toId, AMOUNT);
+    }
+
+    @Benchmark
+    public Account deposit(AccountServiceState state) {
+        return state.accountService.deposit(state.nextId(), AMOUNT);
+    }
+
+    @Benchmark
+    public Account withdraw(AccountServiceState state) {
+        return state.accountService.withdraw(state.nextId(), AMOUNT);
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.task.rest.benchmarks;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution (percentiles up to p99.99 and the maximum) of the {@link AccountServiceBenchmark} operations
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AccountServiceLatencyBenchmark extends AccountServiceBenchmark {
+}
@@ -0,0 +1,165 @@
+package com.task.rest.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import com.task.rest.model.dbo.Account;
+import com.task.rest.persistence.AccountDao;
+import com.task.rest.persistence.AccountDaoImpl;
+import com.task.rest.persistence.AccountIdGenerator;
+import com.task.rest.persistence.InMemoryAccountDao;
+import com.task.rest.persistence.InMemoryTransactionRunner;
+import com.task.rest.persistence.TransactionRunner;
+import com.task.rest.persistence.TransactionRunnerImpl;
+import com.task.rest.service.AccountService;
+import com.task.rest.service.AccountServiceImpl;
+import com.task.rest.service.AtomicUpdateAccountServiceImpl;
+import com.task.rest.service.ConcurrencyMode;
+import com.task.rest.service.OptimisticAccountServiceImpl;
+import com.task.rest.service.ShardedAccountServiceImpl;
+import com.task.rest.utils.concurrency.ShardedExecutor;
+import com.task.rest.utils.concurrency.StripedLockCache;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.db.ManagedDataSource;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Account service shared by all the benchmark threads with the accounts created on the trial setup
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+@State(Scope.Benchmark)
+public class AccountServiceState {
+
+    /**
+     * enough money for any number of benchmark operations
+     */
+    private static final BigDecimal INITIAL_AMOUNT = new BigDecimal("10000000000");
+
+    private static final int LOCK_STRIPES = 1024;
+    private static final int SHARD_QUEUE_SIZE = 1024;
+    private static final int MAX_POOL_SIZE = 128;
+
+    public enum Storage {
+        IN_MEMORY,
+        H2
+    }
+
+    @Param({"IN_MEMORY", "H2"})
+    public Storage storage;
+
+    @Param({"UNIFORM", "ZIPFIAN"})
+    public IdDistribution distribution;
+
+    @Param({"PESSIMISTIC"})
+    public ConcurrencyMode concurrencyMode;
+
+    @Param({"10000"})
+    public int accounts;
+
+    AccountService accountService;
+
+    private IdDistribution.IdGenerator ids;
+    private ManagedDataSource dataSource;
+    private SessionFactory sessionFactory;
+    private ShardedExecutor shardedExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        AccountDao accountDao;
+        TransactionRunner transactionRunner;
+        if (storage == Storage.H2) {
+            sessionFactory = buildSessionFactory();
+            accountDao = new AccountDaoImpl(sessionFactory);
+            transactionRunner = new TransactionRunnerImpl(sessionFactory);
+        } else {
+            InMemoryAccountDao inMemoryAccountDao = new InMemoryAccountDao();
+            accountDao = inMemoryAccountDao;
+            transactionRunner = new InMemoryTransactionRunner(inMemoryAccountDao);
+        }
+        accountService = buildService(accountDao, transactionRunner);
+
+        List<Account> newAccounts = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            newAccounts.add(new Account(INITIAL_AMOUNT));
+        }
+        transactionRunner.inTransaction(() -> accountDao.createAll(newAccounts));
+        ids = distribution.generator(accounts);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (shardedExecutor != null) {
+            shardedExecutor.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+        if (dataSource != null) {
+            dataSource.stop();
+        }
+    }
+
+    long nextId() {
+        return ids.next(random());
+    }
+
+    long nextIdOtherThan(long id) {
+        return ids.nextOtherThan(random(), id);
+    }
+
+    private static Random random() {
+        return ThreadLocalRandom.current();
+    }
+
+    private AccountService buildService(AccountDao accountDao, TransactionRunner transactionRunner) {
+        StripedLockCache locks = new StripedLockCache(LOCK_STRIPES);
+        switch (concurrencyMode) {
+            case OPTIMISTIC:
+                return new OptimisticAccountServiceImpl(accountDao, locks, transactionRunner, 10, 1, 50);
+            case ATOMIC_UPDATE:
+                return new AtomicUpdateAccountServiceImpl(accountDao, locks, transactionRunner);
+            case SHARDED:
+                shardedExecutor = new ShardedExecutor(Runtime.getRuntime().availableProcessors(), SHARD_QUEUE_SIZE);
+                return new ShardedAccountServiceImpl(accountDao, locks, transactionRunner, shardedExecutor);
+            default:
+                return new AccountServiceImpl(accountDao, locks, transactionRunner);
+        }
+    }
+
+    /**
+     * Builds the session factory over the same pool and H2 settings as the ones of the service configuration
+     */
+    private SessionFactory buildSessionFactory() throws Exception {
+        DataSourceFactory dataSourceFactory = new DataSourceFactory();
+        dataSourceFactory.setDriverClass("org.h2.Driver");
+        dataSourceFactory.setUrl("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        dataSourceFactory.setUser("sa");
+        dataSourceFactory.setMaxSize(MAX_POOL_SIZE);
+        dataSource = dataSourceFactory.build(new MetricRegistry(), "benchmark");
+        dataSource.start();
+
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(Account.class)
+                .setProperty(AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect")
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+                .setProperty(AvailableSettings.CURRENT_SESSION_CONTEXT_CLASS, "managed")
+                .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, "50")
+                .setProperty(AccountIdGenerator.BLOCK_SIZE_SETTING, "50");
+        configuration.getProperties().put(AvailableSettings.DATASOURCE, dataSource);
+        return configuration.buildSessionFactory();
+    }
+
+}
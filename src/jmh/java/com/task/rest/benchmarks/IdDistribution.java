@@ -0,0 +1,108 @@
+package com.task.rest.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Distributions of the account ids requested by the benchmarks
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public enum IdDistribution {
+
+    /**
+     * every account is requested equally often
+     */
+    UNIFORM {
+        @Override
+        public IdGenerator generator(int accounts) {
+            return random -> 1 + random.nextInt(accounts);
+        }
+    },
+
+    /**
+     * a few accounts get most of the requests (Zipfian distribution with the exponent of 0.99, the first ids are the hottest ones)
+     */
+    ZIPFIAN {
+        @Override
+        public IdGenerator generator(int accounts) {
+            return new ZipfianGenerator(accounts, ZipfianGenerator.DEFAULT_THETA);
+        }
+    };
+
+    /**
+     * @param accounts number of the accounts, their ids are 1..accounts
+     * @return thread safe generator of the ids
+     */
+    public abstract IdGenerator generator(int accounts);
+
+    /**
+     * Generates account ids
+     */
+    @FunctionalInterface
+    public interface IdGenerator {
+
+        /**
+         * @param random source of randomness of the calling thread
+         * @return next id
+         */
+        long next(Random random);
+
+        /**
+         * @param random source of randomness of the calling thread
+         * @param id     id to be skipped
+         * @return next id different from the specified one
+         */
+        default long nextOtherThan(Random random, long id) {
+            long next;
+            do {
+                next = next(random);
+            } while (next == id);
+            return next;
+        }
+    }
+
+    /**
+     * Zipfian generator by Gray et al. "Quickly generating billion-record synthetic databases" (the one of YCSB),
+     * the zeta constant is computed once on construction
+     */
+    static final class ZipfianGenerator implements IdGenerator {
+
+        static final double DEFAULT_THETA = 0.99;
+
+        private final int items;
+        private final double theta;
+        private final double alpha;
+        private final double zetaN;
+        private final double eta;
+
+        ZipfianGenerator(int items, double theta) {
+            this.items = items;
+            this.theta = theta;
+            this.alpha = 1 / (1 - theta);
+            this.zetaN = zeta(items, theta);
+            this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        }
+
+        @Override
+        public long next(Random random) {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) {
+                return 1;
+            }
+            if (uz < 1 + Math.pow(0.5, theta)) {
+                return 2;
+            }
+            return 1 + Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.task.rest.benchmarks;
+
+import com.google.common.util.concurrent.Striped;
+import com.task.rest.utils.concurrency.ConcurrentCache;
+import com.task.rest.utils.concurrency.HibernateConcurrentCache;
+import com.task.rest.utils.concurrency.StripedLockCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compares the {@link ConcurrentCache} implementations of the account locks: the cost of getting the lock of an account
+ * and of taking and releasing it right away. {@link LockCacheLatencyBenchmark} measures the latency distribution of the same operations
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LockCacheBenchmark {
+
+    private static final int STRIPES = 1024;
+
+    public enum Implementation {
+        /**
+         * the current one - fixed array of locks indexed by the hash of the id
+         */
+        STRIPED {
+            @Override
+            ConcurrentCache<Long, Lock> create() {
+                return new StripedLockCache(STRIPES);
+            }
+        },
+        /**
+         * a lock per id in a map with weak values, the locks are collected when nobody holds them
+         */
+        WEAK_VALUES {
+            @Override
+            ConcurrentCache<Long, Lock> create() {
+                return new HibernateConcurrentCache<>(ReentrantLock::new);
+            }
+        },
+        /**
+         * Guava lazily initialized weak striped locks
+         */
+        GUAVA_LAZY_WEAK_STRIPED {
+            @Override
+            ConcurrentCache<Long, Lock> create() {
+                Striped<Lock> striped = Striped.lazyWeakLock(STRIPES);
+                return new ConcurrentCache<Long, Lock>() {
+                    @Override
+                    public Lock get(Long key) {
+                        return striped.get(key);
+                    }
+
+                    @Override
+                    public int compareKeys(Long first, Long second) {
+                        return Long.compare(first, second);
+                    }
+                };
+            }
+        },
+        /**
+         * a lock per id in a map that is never cleaned up
+         */
+        CONCURRENT_HASH_MAP {
+            @Override
+            ConcurrentCache<Long, Lock> create() {
+                ConcurrentHashMap<Long, Lock> locks = new ConcurrentHashMap<>();
+                return new ConcurrentCache<Long, Lock>() {
+                    @Override
+                    public Lock get(Long key) {
+                        return locks.computeIfAbsent(key, id -> new ReentrantLock());
+                    }
+
+                    @Override
+                    public int compareKeys(Long first, Long second) {
+                        return Long.compare(first, second);
+                    }
+                };
+            }
+        };
+
+        abstract ConcurrentCache<Long, Lock> create();
+    }
+
+    @State(Scope.Benchmark)
+    public static class LockCacheState {
+
+        @Param({"STRIPED", "WEAK_VALUES", "GUAVA_LAZY_WEAK_STRIPED", "CONCURRENT_HASH_MAP"})
+        public Implementation implementation;
+
+        @Param({"UNIFORM", "ZIPFIAN"})
+        public IdDistribution distribution;
+
+        @Param({"100000"})
+        public int accounts;
+
+        ConcurrentCache<Long, Lock> cache;
+
+        IdDistribution.IdGenerator ids;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            cache = implementation.create();
+            ids = distribution.generator(accounts);
+        }
+    }
+
+    @Benchmark
+    public Lock get(LockCacheState state) {
+        return state.cache.get(state.ids.next(ThreadLocalRandom.current()));
+    }
+
+    @Benchmark
+    public Lock lockAndUnlock(LockCacheState state) {
+        Lock lock = state.cache.get(state.ids.next(ThreadLocalRandom.current()));
+        lock.lock();
+        lock.unlock();
+        return lock;
+    }
+
+}
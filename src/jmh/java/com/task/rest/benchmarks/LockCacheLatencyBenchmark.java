@@ -0,0 +1,17 @@
+package com.task.rest.benchmarks;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of the {@link LockCacheBenchmark} operations
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LockCacheLatencyBenchmark extends LockCacheBenchmark {
+}
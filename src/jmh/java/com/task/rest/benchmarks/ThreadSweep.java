@@ -0,0 +1,48 @@
+package com.task.rest.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+
+/**
+ * Runs the selected benchmarks once for every number of threads
+ * <p>
+ * The numbers of threads are taken from the "threads" system property (1,2,4,8,16,32,64 by default),
+ * the arguments are the usual JMH command line options. If a result format is specified,
+ * the results of every run are written to a file of their own named by the number of threads:
+ * <pre>
+ * java -Dthreads=1,8,64 -cp target/rest-service-1.0-SNAPSHOT-benchmarks.jar com.task.rest.benchmarks.ThreadSweep AccountServiceBenchmark -rf json
+ * </pre>
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public final class ThreadSweep {
+
+    private static final String DEFAULT_THREADS = "1,2,4,8,16,32,64";
+
+    private ThreadSweep() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        int[] threadCounts = Arrays.stream(System.getProperty("threads", DEFAULT_THREADS).split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        for (int threads : threadCounts) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .threads(threads);
+            if (commandLineOptions.getResultFormat().hasValue()) {
+                ResultFormatType format = commandLineOptions.getResultFormat().get();
+                options.result("jmh-result-" + threads + "-threads." + format.name().toLowerCase());
+            }
+            new Runner(options.build()).run();
+        }
+    }
+
+}
@@ -1,36 +1,96 @@
 package com.task.rest.app;
 
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Provides;
+import com.google.inject.Singleton;
 import com.google.inject.TypeLiteral;
 import com.google.inject.name.Names;
 import com.task.rest.bootstrap.AccountServiceConfiguration;
+import com.task.rest.bootstrap.ContentionConfiguration;
+import com.task.rest.bootstrap.HotAccountsConfiguration;
+import com.task.rest.bootstrap.IdempotencyConfiguration;
+import com.task.rest.bootstrap.JournalConfiguration;
+import com.task.rest.bootstrap.LedgerConfiguration;
+import com.task.rest.bootstrap.OperationsConfiguration;
+import com.task.rest.bootstrap.OptimisticLockingConfiguration;
+import com.task.rest.bootstrap.SecondLevelCacheConfiguration;
+import com.task.rest.bootstrap.ShardingConfiguration;
+import com.task.rest.bootstrap.SnapshotConfiguration;
+import com.task.rest.contention.ContentionRecorder;
+import com.task.rest.contention.HotAccountsServlet;
+import com.task.rest.contention.MetricsContentionRecorder;
 import com.task.rest.exceptions.mappers.DefaultExceptionsProvider;
+import com.task.rest.exceptions.mappers.OperationQueueFullExceptionsProvider;
+import com.task.rest.exceptions.mappers.OptimisticLockExceptionsProvider;
 import com.task.rest.exceptions.mappers.ServiceExceptionsProvider;
+import com.task.rest.idempotency.BoundedIdempotencyStore;
+import com.task.rest.idempotency.IdempotencyStore;
+import com.task.rest.journal.FileJournal;
+import com.task.rest.journal.Journal;
+import com.task.rest.ledger.BatchingLedger;
+import com.task.rest.ledger.Ledger;
+import com.task.rest.metrics.RequestMetricsListener;
+import com.task.rest.metrics.SerializationTimingInterceptor;
 import com.task.rest.model.dbo.Account;
+import com.task.rest.model.dbo.LedgerEntry;
+import com.task.rest.persistence.AccountCheckpoint;
 import com.task.rest.persistence.AccountDao;
 import com.task.rest.persistence.AccountDaoImpl;
+import com.task.rest.persistence.CachingAccountDao;
+import com.task.rest.persistence.InMemoryAccountDao;
+import com.task.rest.persistence.InMemoryTransactionRunner;
+import com.task.rest.persistence.LedgerDao;
+import com.task.rest.persistence.LedgerDaoImpl;
+import com.task.rest.persistence.StorageType;
+import com.task.rest.persistence.TimedAccountDao;
+import com.task.rest.persistence.TransactionRunner;
+import com.task.rest.persistence.TransactionRunnerImpl;
+import com.task.rest.persistence.cache.LocalRegionFactory;
 import com.task.rest.resource.AccountServiceResource;
 import com.task.rest.service.AccountService;
 import com.task.rest.service.AccountServiceImpl;
+import com.task.rest.service.AggregatingAccountServiceImpl;
+import com.task.rest.service.AtomicUpdateAccountServiceImpl;
+import com.task.rest.service.ConcurrencyMode;
+import com.task.rest.service.OptimisticAccountServiceImpl;
+import com.task.rest.service.ShardedAccountServiceImpl;
+import com.task.rest.snapshot.AccountSnapshotter;
+import com.task.rest.snapshot.InMemorySnapshotter;
 import com.task.rest.utils.concurrency.ConcurrentCache;
-import com.task.rest.utils.concurrency.HibernateConcurrentCache;
+import com.task.rest.utils.concurrency.OperationExecutor;
+import com.task.rest.utils.concurrency.ShardedExecutor;
+import com.task.rest.utils.concurrency.StripedLockCache;
+import com.task.rest.utils.serialization.BinaryFormatFallbackFilter;
+import com.task.rest.utils.serialization.BinaryMessageBodyReader;
+import com.task.rest.utils.serialization.BinaryMessageBodyWriter;
 import io.dropwizard.Application;
+import io.dropwizard.ConfiguredBundle;
 import io.dropwizard.configuration.ResourceConfigurationSourceProvider;
 import io.dropwizard.db.DataSourceFactory;
 import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.lifecycle.AutoCloseableManager;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
 
 import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.Set;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.Supplier;
 
+import static com.task.rest.persistence.CachingAccountDao.MAXIMUM_SIZE_FIELD_NAME;
 import static com.task.rest.resource.AccountServiceResource.INIT_AMOUNT_FIELD_NAME;
+import static com.task.rest.service.OptimisticAccountServiceImpl.BACKOFF_FIELD_NAME;
+import static com.task.rest.service.OptimisticAccountServiceImpl.MAX_ATTEMPTS_FIELD_NAME;
+import static com.task.rest.service.OptimisticAccountServiceImpl.MAX_BACKOFF_FIELD_NAME;
+import static com.task.rest.utils.concurrency.ShardedExecutor.QUEUE_SIZE_FIELD_NAME;
+import static com.task.rest.utils.concurrency.ShardedExecutor.SHARDS_FIELD_NAME;
+import static com.task.rest.utils.concurrency.StripedLockCache.STRIPES_FIELD_NAME;
 
 /**
  * Main class of the Dropwizard application
@@ -46,7 +106,7 @@ public class AccountServiceApp extends Application<AccountServiceConfiguration>
         new AccountServiceApp().run(args);
     }
 
-    private final HibernateBundle<AccountServiceConfiguration> hibernate = new HibernateBundle<AccountServiceConfiguration>(Account.class) {
+    private final HibernateBundle<AccountServiceConfiguration> hibernate = new HibernateBundle<AccountServiceConfiguration>(Account.class, LedgerEntry.class) {
         @Override
         public DataSourceFactory getDataSourceFactory(AccountServiceConfiguration configuration) {
             return configuration.getDataSourceFactory();
@@ -61,21 +121,124 @@ public class AccountServiceApp extends Application<AccountServiceConfiguration>
     @Override
     public void initialize(Bootstrap<AccountServiceConfiguration> bootstrap) {
         bootstrap.setConfigurationSourceProvider(new ResourceConfigurationSourceProvider());
-        bootstrap.addBundle(hibernate);
+        // the in-memory storage needs neither the session factory nor the units of work
+        bootstrap.addBundle(new ConfiguredBundle<AccountServiceConfiguration>() {
+            @Override
+            public void initialize(Bootstrap<?> bootstrap) {
+                hibernate.initialize(bootstrap);
+            }
+
+            @Override
+            public void run(AccountServiceConfiguration configuration, Environment environment) throws Exception {
+                if (configuration.getStorage() == StorageType.DATABASE) {
+                    skipInitialDataIfSnapshotExists(configuration);
+                    enableSecondLevelCache(configuration);
+                    hibernate.run(configuration, environment);
+                }
+            }
+        });
     }
 
     @Override
     public void run(AccountServiceConfiguration configuration,
                     Environment environment) {
+        Journal journal = buildJournal(configuration, environment);
         Injector injector = Guice.createInjector(new AbstractModule() {
             @Override
             protected void configure() {
                 bind(new TypeLiteral<ConcurrentCache<Long, Lock>>() {
-                }).to(new TypeLiteral<HibernateConcurrentCache<Long, Lock>>() {
-                });
-                bind(AccountService.class).to(AccountServiceImpl.class);
-                bind(AccountDao.class).to(AccountDaoImpl.class);
+                }).to(StripedLockCache.class).in(Singleton.class);
+                HotAccountsConfiguration hotAccounts = configuration.getHotAccounts();
+                if (hotAccounts.isEnabled()) {
+                    bind(new TypeLiteral<Set<Long>>() {
+                    }).annotatedWith(Names.named(AggregatingAccountServiceImpl.IDS_FIELD_NAME)).toInstance(hotAccounts.getIds());
+                    bind(Long.class).annotatedWith(Names.named(AggregatingAccountServiceImpl.FOLD_INTERVAL_FIELD_NAME)).toInstance(hotAccounts.getFoldInterval().toMilliseconds());
+                    bind(Integer.class).annotatedWith(Names.named(AggregatingAccountServiceImpl.DETECT_LIMIT_FIELD_NAME)).toInstance(hotAccounts.getDetectLimit());
+                    bind(Long.class).annotatedWith(Names.named(AggregatingAccountServiceImpl.DETECT_MIN_CONTENDED_FIELD_NAME)).toInstance(hotAccounts.getDetectMinContended());
+                    bind(AggregatingAccountServiceImpl.class).in(Singleton.class);
+                    bind(AccountService.class).to(AggregatingAccountServiceImpl.class);
+                } else {
+                    bind(AccountService.class).to(accountServiceClass(configuration.getConcurrencyMode()));
+                }
+                Class<? extends AccountDao> accountDaoClass;
+                if (configuration.getStorage() == StorageType.IN_MEMORY) {
+                    bind(Journal.class).toInstance(journal);
+                    bind(InMemoryAccountDao.class).toInstance(buildInMemoryAccountDao(configuration, journal));
+                    accountDaoClass = InMemoryAccountDao.class;
+                    bind(TransactionRunner.class).to(InMemoryTransactionRunner.class);
+                } else {
+                    if (configuration.getAccountCacheSize() > 0) {
+                        bind(CachingAccountDao.class).in(Singleton.class);
+                        accountDaoClass = CachingAccountDao.class;
+                        bind(Integer.class).annotatedWith(Names.named(MAXIMUM_SIZE_FIELD_NAME)).toInstance(configuration.getAccountCacheSize());
+                    } else {
+                        accountDaoClass = AccountDaoImpl.class;
+                    }
+                    bind(TransactionRunner.class).to(TransactionRunnerImpl.class);
+                }
+                if (configuration.isRequestMetrics()) {
+                    bind(AccountDao.class).annotatedWith(Names.named(TimedAccountDao.DELEGATE_FIELD_NAME)).to(accountDaoClass);
+                    bind(AccountDao.class).to(TimedAccountDao.class).in(Singleton.class);
+                } else {
+                    bind(AccountDao.class).to(accountDaoClass);
+                }
                 bind(BigDecimal.class).annotatedWith(Names.named(INIT_AMOUNT_FIELD_NAME)).toInstance(configuration.getInitialMoneyAmount());
+                bind(Integer.class).annotatedWith(Names.named(STRIPES_FIELD_NAME)).toInstance(configuration.getLockStripes());
+                OptimisticLockingConfiguration optimisticLocking = configuration.getOptimisticLocking();
+                bind(Integer.class).annotatedWith(Names.named(MAX_ATTEMPTS_FIELD_NAME)).toInstance(optimisticLocking.getMaxAttempts());
+                bind(Long.class).annotatedWith(Names.named(BACKOFF_FIELD_NAME)).toInstance(optimisticLocking.getBackoff().toMilliseconds());
+                bind(Long.class).annotatedWith(Names.named(MAX_BACKOFF_FIELD_NAME)).toInstance(optimisticLocking.getMaxBackoff().toMilliseconds());
+                bind(ObjectMapper.class).toInstance(environment.getObjectMapper());
+                bind(MetricRegistry.class).toInstance(environment.metrics());
+                if (configuration.getConcurrencyMode() == ConcurrencyMode.SHARDED) {
+                    ShardingConfiguration sharding = configuration.getSharding();
+                    bind(Integer.class).annotatedWith(Names.named(SHARDS_FIELD_NAME)).toInstance(sharding.getShards());
+                    bind(Integer.class).annotatedWith(Names.named(QUEUE_SIZE_FIELD_NAME)).toInstance(sharding.getQueueSize());
+                    bind(ShardedExecutor.class).in(Singleton.class);
+                }
+                OperationsConfiguration operations = configuration.getOperations();
+                bind(Integer.class).annotatedWith(Names.named(OperationExecutor.THREADS_FIELD_NAME)).toInstance(operations.getThreads());
+                bind(Integer.class).annotatedWith(Names.named(OperationExecutor.QUEUE_SIZE_FIELD_NAME)).toInstance(operations.getQueueSize());
+                bind(Long.class).annotatedWith(Names.named(OperationExecutor.RETRY_AFTER_FIELD_NAME)).toInstance(operations.getRetryAfter().toSeconds());
+                bind(Boolean.class).annotatedWith(Names.named(OperationExecutor.VIRTUAL_THREADS_FIELD_NAME)).toInstance(operations.isVirtualThreads());
+                bind(OperationExecutor.class).in(Singleton.class);
+                ContentionConfiguration contention = configuration.getContention();
+                if (contention.isEnabled()) {
+                    bind(Integer.class).annotatedWith(Names.named(MetricsContentionRecorder.CAPACITY_FIELD_NAME)).toInstance(contention.getCapacity());
+                    bind(MetricsContentionRecorder.class).in(Singleton.class);
+                    bind(ContentionRecorder.class).to(MetricsContentionRecorder.class);
+                } else {
+                    bind(ContentionRecorder.class).toInstance(ContentionRecorder.NONE);
+                }
+                IdempotencyConfiguration idempotency = configuration.getIdempotency();
+                if (idempotency.isEnabled()) {
+                    bind(Integer.class).annotatedWith(Names.named(BoundedIdempotencyStore.MAXIMUM_SIZE_FIELD_NAME)).toInstance(idempotency.getMaximumSize());
+                    bind(Long.class).annotatedWith(Names.named(BoundedIdempotencyStore.EXPIRY_FIELD_NAME)).toInstance(idempotency.getExpiry().toMilliseconds());
+                    if (idempotency.getFile() != null) {
+                        bind(String.class).annotatedWith(Names.named(BoundedIdempotencyStore.FILE_FIELD_NAME)).toInstance(idempotency.getFile());
+                    }
+                    bind(BoundedIdempotencyStore.class).in(Singleton.class);
+                    bind(IdempotencyStore.class).to(BoundedIdempotencyStore.class);
+                } else {
+                    bind(IdempotencyStore.class).toInstance(IdempotencyStore.NONE);
+                }
+                if (isLedgerEnabled(configuration)) {
+                    LedgerConfiguration ledger = configuration.getLedger();
+                    bind(Integer.class).annotatedWith(Names.named(BatchingLedger.BATCH_SIZE_FIELD_NAME)).toInstance(ledger.getBatchSize());
+                    bind(Long.class).annotatedWith(Names.named(BatchingLedger.FLUSH_INTERVAL_FIELD_NAME)).toInstance(ledger.getFlushInterval().toMilliseconds());
+                    bind(Integer.class).annotatedWith(Names.named(BatchingLedger.QUEUE_SIZE_FIELD_NAME)).toInstance(ledger.getQueueSize());
+                    bind(LedgerDao.class).to(LedgerDaoImpl.class);
+                    bind(BatchingLedger.class).in(Singleton.class);
+                    bind(Ledger.class).to(BatchingLedger.class);
+                } else {
+                    bind(Ledger.class).toInstance(Ledger.NONE);
+                }
+                SnapshotConfiguration snapshot = configuration.getSnapshot();
+                if (snapshot.getDirectory() != null) {
+                    bind(String.class).annotatedWith(Names.named(AccountSnapshotter.DIRECTORY_FIELD_NAME)).toInstance(snapshot.getDirectory());
+                    bind(Long.class).annotatedWith(Names.named(AccountSnapshotter.INTERVAL_FIELD_NAME)).toInstance(snapshot.getInterval().toMilliseconds());
+                    bind(Integer.class).annotatedWith(Names.named(AccountSnapshotter.RETAINED_FIELD_NAME)).toInstance(snapshot.getRetained());
+                }
                 bind(AccountServiceResource.class);
             }
 
@@ -83,18 +246,122 @@ public class AccountServiceApp extends Application<AccountServiceConfiguration>
             SessionFactory provideSessionFactory() {
                 return hibernate.getSessionFactory();
             }
+        });
 
-            @Provides
-            Supplier<Lock> provideSupplier() {
-                return ReentrantLock::new;
+        if (configuration.getSnapshot().getDirectory() != null) {
+            if (configuration.getStorage() == StorageType.IN_MEMORY) {
+                // restored from the snapshot already, see buildInMemoryAccountDao
+                environment.lifecycle().manage(injector.getInstance(InMemorySnapshotter.class));
+            } else {
+                AccountSnapshotter snapshotter = injector.getInstance(AccountSnapshotter.class);
+                snapshotter.restore();
+                environment.lifecycle().manage(snapshotter);
             }
-        });
+        }
+
+        if (isLedgerEnabled(configuration)) {
+            // stopped after the modifications are completed, so the entries of the last ones are written as well
+            environment.lifecycle().manage(injector.getInstance(BatchingLedger.class));
+        }
+
+        if (configuration.getConcurrencyMode() == ConcurrencyMode.SHARDED) {
+            // the queued modifications are completed after the server stops accepting requests
+            environment.lifecycle().manage(new AutoCloseableManager(injector.getInstance(ShardedExecutor.class)));
+        }
+
+        if (configuration.getHotAccounts().isEnabled()) {
+            // the pending deposits are folded after the queued modifications are completed, before the final snapshot
+            environment.lifecycle().manage(injector.getInstance(AggregatingAccountServiceImpl.class));
+        }
+
+        if (configuration.getIdempotency().isEnabled()) {
+            // the kept responses are saved after the queued modifications are completed
+            environment.lifecycle().manage(injector.getInstance(BoundedIdempotencyStore.class));
+        }
+
+        // registered last, so it is stopped first: its queued modifications still reach the shards, the journal and the final snapshot
+        environment.lifecycle().manage(new AutoCloseableManager(injector.getInstance(OperationExecutor.class)));
+
+        if (configuration.getContention().isEnabled()) {
+            environment.admin().addServlet("hot-accounts", new HotAccountsServlet(injector.getInstance(MetricsContentionRecorder.class),
+                    environment.getObjectMapper())).addMapping(HotAccountsServlet.PATH);
+        }
 
         AccountServiceResource accountServiceResource = injector.getInstance(AccountServiceResource.class);
 
         environment.jersey().register(new ServiceExceptionsProvider());
+        environment.jersey().register(new OperationQueueFullExceptionsProvider());
+        environment.jersey().register(new OptimisticLockExceptionsProvider());
         environment.jersey().register(new DefaultExceptionsProvider());
+        environment.jersey().register(new BinaryMessageBodyReader());
+        environment.jersey().register(new BinaryMessageBodyWriter());
+        environment.jersey().register(new BinaryFormatFallbackFilter());
+        if (configuration.isRequestMetrics()) {
+            environment.jersey().register(new RequestMetricsListener(environment.metrics()));
+            environment.jersey().register(new SerializationTimingInterceptor());
+        }
         environment.jersey().register(accountServiceResource);
     }
 
+    /**
+     * The ledger is written to the database, so it's not kept by the in-memory storage
+     */
+    private static boolean isLedgerEnabled(AccountServiceConfiguration configuration) {
+        return configuration.getLedger().isEnabled() && configuration.getStorage() == StorageType.DATABASE;
+    }
+
+    /**
+     * The accounts are restored from the latest snapshot, if there is one, instead of the initial data
+     */
+    private static void skipInitialDataIfSnapshotExists(AccountServiceConfiguration configuration) {
+        String directory = configuration.getSnapshot().getDirectory();
+        if (directory != null && AccountSnapshotter.latestSnapshot(Paths.get(directory)).isPresent()) {
+            configuration.getDataSourceFactory().getProperties().remove(AvailableSettings.HBM2DDL_IMPORT_FILES);
+        }
+    }
+
+    private static void enableSecondLevelCache(AccountServiceConfiguration configuration) {
+        SecondLevelCacheConfiguration secondLevelCache = configuration.getSecondLevelCache();
+        if (secondLevelCache.isEnabled()) {
+            configuration.getDataSourceFactory().getProperties().putAll(
+                    LocalRegionFactory.settings(secondLevelCache.getMaximumSize(), secondLevelCache.getExpiry().toMilliseconds()));
+        }
+    }
+
+    /**
+     * @return in-memory storage restored from the latest snapshot, if snapshots are enabled, and the journal records after it
+     */
+    private static InMemoryAccountDao buildInMemoryAccountDao(AccountServiceConfiguration configuration, Journal journal) {
+        String directory = configuration.getSnapshot().getDirectory();
+        AccountCheckpoint checkpoint = directory == null ? AccountCheckpoint.NONE : InMemorySnapshotter.restore(Paths.get(directory));
+        return new InMemoryAccountDao(InMemoryAccountDao.DEFAULT_SEGMENTS, journal, checkpoint);
+    }
+
+    /**
+     * @return journal of the in-memory storage, managed by the application lifecycle, or {@link Journal#NONE} if it's disabled
+     */
+    private static Journal buildJournal(AccountServiceConfiguration configuration, Environment environment) {
+        JournalConfiguration journalConfiguration = configuration.getJournal();
+        if (configuration.getStorage() != StorageType.IN_MEMORY || journalConfiguration.getDirectory() == null) {
+            return Journal.NONE;
+        }
+        Journal journal = new FileJournal(Paths.get(journalConfiguration.getDirectory()),
+                journalConfiguration.getSegmentSize().toBytes(), journalConfiguration.isFsync());
+        environment.lifecycle().manage(new AutoCloseableManager(journal));
+        return journal;
+    }
+
+    private static Class<? extends AccountService> accountServiceClass(ConcurrencyMode concurrencyMode) {
+        switch (concurrencyMode) {
+            case OPTIMISTIC:
+                return OptimisticAccountServiceImpl.class;
+            case ATOMIC_UPDATE:
+                return AtomicUpdateAccountServiceImpl.class;
+            case SHARDED:
+                return ShardedAccountServiceImpl.class;
+            default:
+                return AccountServiceImpl.class;
+        }
+    }
+
 }
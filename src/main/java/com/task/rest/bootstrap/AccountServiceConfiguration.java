@@ -1,10 +1,16 @@
 package com.task.rest.bootstrap;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.task.rest.persistence.StorageType;
+import com.task.rest.service.ConcurrencyMode;
 import io.dropwizard.Configuration;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.validation.ValidationMethod;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
 
@@ -38,6 +44,274 @@ public class AccountServiceConfiguration extends Configuration {
         this.initialMoneyAmount = initialMoneyAmount;
     }
 
+    /**
+     * number of locks shared by all accounts, rounded up to the nearest power of two
+     */
+    @Min(1)
+    @Max(1 << 30)
+    private int lockStripes = 1024;
+
+    @JsonProperty
+    public int getLockStripes() {
+        return lockStripes;
+    }
+
+    @JsonProperty
+    public void setLockStripes(int lockStripes) {
+        this.lockStripes = lockStripes;
+    }
+
+    /**
+     * where the accounts are stored, the database settings are not used by the in-memory storage
+     */
+    @NotNull
+    private StorageType storage = StorageType.DATABASE;
+
+    @JsonProperty
+    public StorageType getStorage() {
+        return storage;
+    }
+
+    @JsonProperty
+    public void setStorage(StorageType storage) {
+        this.storage = storage;
+    }
+
+    @Valid
+    @NotNull
+    private JournalConfiguration journal = new JournalConfiguration();
+
+    @JsonProperty
+    public JournalConfiguration getJournal() {
+        return journal;
+    }
+
+    @JsonProperty
+    public void setJournal(JournalConfiguration journal) {
+        this.journal = journal;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "journal is supported by the IN_MEMORY storage only")
+    public boolean isJournalSupported() {
+        return journal.getDirectory() == null || storage == StorageType.IN_MEMORY;
+    }
+
+    @Valid
+    @NotNull
+    private SnapshotConfiguration snapshot = new SnapshotConfiguration();
+
+    @JsonProperty
+    public SnapshotConfiguration getSnapshot() {
+        return snapshot;
+    }
+
+    @JsonProperty
+    public void setSnapshot(SnapshotConfiguration snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "snapshot of the IN_MEMORY storage requires the journal")
+    public boolean isSnapshotSupported() {
+        return snapshot.getDirectory() == null || storage == StorageType.DATABASE || journal.getDirectory() != null;
+    }
+
+    /**
+     * maximum number of accounts cached for reading by id, 0 disables the cache
+     */
+    @Min(0)
+    private int accountCacheSize = 10000;
+
+    @JsonProperty
+    public int getAccountCacheSize() {
+        return accountCacheSize;
+    }
+
+    @JsonProperty
+    public void setAccountCacheSize(int accountCacheSize) {
+        this.accountCacheSize = accountCacheSize;
+    }
+
+    /**
+     * the OPTIMISTIC mode is meant for several instances sharing the database, the cache would miss their modifications
+     */
+    @JsonIgnore
+    @ValidationMethod(message = "account cache is not supported by the OPTIMISTIC concurrency mode, set accountCacheSize to 0")
+    public boolean isAccountCacheSupported() {
+        return accountCacheSize == 0 || storage == StorageType.IN_MEMORY || concurrencyMode != ConcurrencyMode.OPTIMISTIC;
+    }
+
+    /**
+     * how concurrent modifications of the same accounts are isolated from each other
+     */
+    @NotNull
+    private ConcurrencyMode concurrencyMode = ConcurrencyMode.PESSIMISTIC;
+
+    @JsonProperty
+    public ConcurrencyMode getConcurrencyMode() {
+        return concurrencyMode;
+    }
+
+    @JsonProperty
+    public void setConcurrencyMode(ConcurrencyMode concurrencyMode) {
+        this.concurrencyMode = concurrencyMode;
+    }
+
+    @Valid
+    @NotNull
+    private OptimisticLockingConfiguration optimisticLocking = new OptimisticLockingConfiguration();
+
+    @JsonProperty
+    public OptimisticLockingConfiguration getOptimisticLocking() {
+        return optimisticLocking;
+    }
+
+    @JsonProperty
+    public void setOptimisticLocking(OptimisticLockingConfiguration optimisticLocking) {
+        this.optimisticLocking = optimisticLocking;
+    }
+
+    @Valid
+    @NotNull
+    private ShardingConfiguration sharding = new ShardingConfiguration();
+
+    @JsonProperty
+    public ShardingConfiguration getSharding() {
+        return sharding;
+    }
+
+    @JsonProperty
+    public void setSharding(ShardingConfiguration sharding) {
+        this.sharding = sharding;
+    }
+
+    @Valid
+    @NotNull
+    private OperationsConfiguration operations = new OperationsConfiguration();
+
+    @JsonProperty
+    public OperationsConfiguration getOperations() {
+        return operations;
+    }
+
+    @JsonProperty
+    public void setOperations(OperationsConfiguration operations) {
+        this.operations = operations;
+    }
+
+    @Valid
+    @NotNull
+    private ContentionConfiguration contention = new ContentionConfiguration();
+
+    @JsonProperty
+    public ContentionConfiguration getContention() {
+        return contention;
+    }
+
+    @JsonProperty
+    public void setContention(ContentionConfiguration contention) {
+        this.contention = contention;
+    }
+
+    @Valid
+    @NotNull
+    private HotAccountsConfiguration hotAccounts = new HotAccountsConfiguration();
+
+    @JsonProperty
+    public HotAccountsConfiguration getHotAccounts() {
+        return hotAccounts;
+    }
+
+    @JsonProperty
+    public void setHotAccounts(HotAccountsConfiguration hotAccounts) {
+        this.hotAccounts = hotAccounts;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "hot accounts are supported by the PESSIMISTIC concurrency mode only")
+    public boolean isHotAccountsSupported() {
+        return !hotAccounts.isEnabled() || concurrencyMode == ConcurrencyMode.PESSIMISTIC;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "hot accounts are detected only if the contention is recorded")
+    public boolean isHotAccountsDetectionSupported() {
+        return !hotAccounts.isEnabled() || hotAccounts.getDetectLimit() == 0 || contention.isEnabled();
+    }
+
+    @Valid
+    @NotNull
+    private IdempotencyConfiguration idempotency = new IdempotencyConfiguration();
+
+    @JsonProperty
+    public IdempotencyConfiguration getIdempotency() {
+        return idempotency;
+    }
+
+    @JsonProperty
+    public void setIdempotency(IdempotencyConfiguration idempotency) {
+        this.idempotency = idempotency;
+    }
+
+    /**
+     * ledger of the balance changes, not used by the IN_MEMORY storage
+     */
+    @Valid
+    @NotNull
+    private LedgerConfiguration ledger = new LedgerConfiguration();
+
+    @JsonProperty
+    public LedgerConfiguration getLedger() {
+        return ledger;
+    }
+
+    @JsonProperty
+    public void setLedger(LedgerConfiguration ledger) {
+        this.ledger = ledger;
+    }
+
+    /**
+     * whether the latency of every resource method and the time its requests spend in each stage are recorded
+     */
+    private boolean requestMetrics = true;
+
+    @JsonProperty
+    public boolean isRequestMetrics() {
+        return requestMetrics;
+    }
+
+    @JsonProperty
+    public void setRequestMetrics(boolean requestMetrics) {
+        this.requestMetrics = requestMetrics;
+    }
+
+    @Valid
+    @NotNull
+    private SecondLevelCacheConfiguration secondLevelCache = new SecondLevelCacheConfiguration();
+
+    @JsonProperty
+    public SecondLevelCacheConfiguration getSecondLevelCache() {
+        return secondLevelCache;
+    }
+
+    @JsonProperty
+    public void setSecondLevelCache(SecondLevelCacheConfiguration secondLevelCache) {
+        this.secondLevelCache = secondLevelCache;
+    }
+
+    /**
+     * the second-level cache, like the account cache, misses the modifications made by the other instances.
+     * In the ATOMIC_UPDATE mode every deposit and withdrawal is a bulk update emptying the whole account region,
+     * so the cache would never be filled
+     */
+    @JsonIgnore
+    @ValidationMethod(message = "second-level cache is not supported by the OPTIMISTIC and ATOMIC_UPDATE concurrency modes, disable secondLevelCache")
+    public boolean isSecondLevelCacheSupported() {
+        return !secondLevelCache.isEnabled() || storage == StorageType.IN_MEMORY
+                || concurrencyMode != ConcurrencyMode.OPTIMISTIC && concurrencyMode != ConcurrencyMode.ATOMIC_UPDATE;
+    }
+
     @JsonProperty("database")
     public void setDataSourceFactory(DataSourceFactory database) {
         this.database = database;
@@ -0,0 +1,45 @@
+package com.task.rest.bootstrap;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+
+/**
+ * An object representation of the settings of the account lock contention metrics
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see com.task.rest.contention.MetricsContentionRecorder
+ */
+public class ContentionConfiguration {
+
+    /**
+     * whether the waits for the account locks and the holds of the locks are recorded
+     */
+    private boolean enabled = true;
+
+    /**
+     * number of the most contended accounts tracked, the accounts beyond it replace the least contended ones
+     */
+    @Min(1)
+    private int capacity = 64;
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @JsonProperty
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @JsonProperty
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @JsonProperty
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+}
@@ -0,0 +1,100 @@
+package com.task.rest.bootstrap;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDuration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An object representation of the settings of the deposits to hot accounts aggregated without the account locks
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see com.task.rest.service.AggregatingAccountServiceImpl
+ */
+public class HotAccountsConfiguration {
+
+    /**
+     * whether the deposits to hot accounts are aggregated, PESSIMISTIC concurrency mode only
+     */
+    private boolean enabled;
+
+    /**
+     * ids of the accounts that are always hot
+     */
+    @NotNull
+    private Set<Long> ids = new HashSet<>();
+
+    /**
+     * delay between the end of a fold of the pending deposits into the stored amounts and the start of the next one
+     */
+    @NotNull
+    @MinDuration(value = 1, unit = TimeUnit.MILLISECONDS)
+    private Duration foldInterval = Duration.seconds(1);
+
+    /**
+     * number of the most contended accounts checked for being hot on every fold, 0 disables the detection
+     */
+    @Min(0)
+    private int detectLimit;
+
+    /**
+     * minimum number of the contended lock acquisitions of a detected hot account
+     */
+    @Min(1)
+    private long detectMinContended = 100;
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @JsonProperty
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @JsonProperty
+    public Set<Long> getIds() {
+        return ids;
+    }
+
+    @JsonProperty
+    public void setIds(Set<Long> ids) {
+        this.ids = ids;
+    }
+
+    @JsonProperty
+    public Duration getFoldInterval() {
+        return foldInterval;
+    }
+
+    @JsonProperty
+    public void setFoldInterval(Duration foldInterval) {
+        this.foldInterval = foldInterval;
+    }
+
+    @JsonProperty
+    public int getDetectLimit() {
+        return detectLimit;
+    }
+
+    @JsonProperty
+    public void setDetectLimit(int detectLimit) {
+        this.detectLimit = detectLimit;
+    }
+
+    @JsonProperty
+    public long getDetectMinContended() {
+        return detectMinContended;
+    }
+
+    @JsonProperty
+    public void setDetectMinContended(long detectMinContended) {
+        this.detectMinContended = detectMinContended;
+    }
+}
@@ -0,0 +1,81 @@
+package com.task.rest.bootstrap;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDuration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An object representation of the settings of the results kept for the requests with an idempotency key
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see com.task.rest.idempotency.BoundedIdempotencyStore
+ */
+public class IdempotencyConfiguration {
+
+    /**
+     * whether the results of the requests with an idempotency key are kept, the key is ignored otherwise
+     */
+    private boolean enabled = true;
+
+    /**
+     * maximum number of kept results, the least recently used ones are evicted beyond it
+     */
+    @Min(1)
+    private int maximumSize = 100000;
+
+    /**
+     * time a result is kept for since the request was completed
+     */
+    @NotNull
+    @MinDuration(value = 1, unit = TimeUnit.SECONDS)
+    private Duration expiry = Duration.hours(1);
+
+    /**
+     * file the results are saved to on shutdown and read from on startup, they are not saved if it's not set
+     */
+    private String file;
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @JsonProperty
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @JsonProperty
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    @JsonProperty
+    public void setMaximumSize(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    @JsonProperty
+    public Duration getExpiry() {
+        return expiry;
+    }
+
+    @JsonProperty
+    public void setExpiry(Duration expiry) {
+        this.expiry = expiry;
+    }
+
+    @JsonProperty
+    public String getFile() {
+        return file;
+    }
+
+    @JsonProperty
+    public void setFile(String file) {
+        this.file = file;
+    }
+}
@@ -0,0 +1,64 @@
+package com.task.rest.bootstrap;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Size;
+import io.dropwizard.validation.MinSize;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * An object representation of the journal settings of the {@link com.task.rest.persistence.StorageType#IN_MEMORY} storage
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see com.task.rest.journal.FileJournal
+ */
+public class JournalConfiguration {
+
+    /**
+     * directory of the journal segment files, the journal is disabled if it's not set
+     */
+    private String directory;
+
+    /**
+     * size a segment file may grow to before the next one is started
+     */
+    @NotNull
+    @MinSize(1024)
+    private Size segmentSize = Size.megabytes(64);
+
+    /**
+     * whether the records are forced to the disk before the modifications are acknowledged,
+     * otherwise they are only written to the operating system and may be lost if it crashes
+     */
+    private boolean fsync = true;
+
+    @JsonProperty
+    public String getDirectory() {
+        return directory;
+    }
+
+    @JsonProperty
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    @JsonProperty
+    public Size getSegmentSize() {
+        return segmentSize;
+    }
+
+    @JsonProperty
+    public void setSegmentSize(Size segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    @JsonProperty
+    public boolean isFsync() {
+        return fsync;
+    }
+
+    @JsonProperty
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+}
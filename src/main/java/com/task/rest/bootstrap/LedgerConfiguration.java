@@ -0,0 +1,82 @@
+package com.task.rest.bootstrap;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDuration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An object representation of the settings of the ledger of the balance changes
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see com.task.rest.ledger.BatchingLedger
+ */
+public class LedgerConfiguration {
+
+    /**
+     * whether the balance changes are recorded, the history of every account is empty otherwise
+     */
+    private boolean enabled = true;
+
+    /**
+     * maximum number of entries inserted by one batch
+     */
+    @Min(1)
+    private int batchSize = 500;
+
+    /**
+     * maximum time an entry waits for its batch to be full
+     */
+    @NotNull
+    @MinDuration(value = 1, unit = TimeUnit.MILLISECONDS)
+    private Duration flushInterval = Duration.milliseconds(100);
+
+    /**
+     * maximum number of entries waiting to be written, committing modifications wait beyond it
+     */
+    @Min(1)
+    private int queueSize = 65536;
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @JsonProperty
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @JsonProperty
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @JsonProperty
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @JsonProperty
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    @JsonProperty
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    @JsonProperty
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    @JsonProperty
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+}
@@ -0,0 +1,91 @@
+package com.task.rest.bootstrap;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.task.rest.utils.concurrency.VirtualThreads;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDuration;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An object representation of the settings of the executor running the modifications of existing accounts
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see com.task.rest.utils.concurrency.OperationExecutor
+ */
+public class OperationsConfiguration {
+
+    /**
+     * number of threads modifying the accounts, a thread is blocked while its modification waits for account locks
+     */
+    @Min(1)
+    private int threads = 32;
+
+    /**
+     * maximum number of modifications waiting for a free thread, requests are rejected with 503 when it's full
+     */
+    @Min(1)
+    private int queueSize = 1024;
+
+    /**
+     * value of the Retry-After header of a rejected request, rounded down to seconds
+     */
+    @NotNull
+    @MinDuration(value = 1, unit = TimeUnit.SECONDS)
+    private Duration retryAfter = Duration.seconds(1);
+
+    /**
+     * every modification runs in a virtual thread of its own (JDK 21 or later), at most threads + queueSize are in flight
+     */
+    private boolean virtualThreads;
+
+    @JsonProperty
+    public int getThreads() {
+        return threads;
+    }
+
+    @JsonProperty
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    @JsonProperty
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    @JsonProperty
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    @JsonProperty
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    @JsonProperty
+    public void setRetryAfter(Duration retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    @JsonProperty
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    @JsonProperty
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "virtual threads require JDK 21 or later")
+    public boolean isVirtualThreadsSupported() {
+        return !virtualThreads || VirtualThreads.isSupported();
+    }
+}
@@ -0,0 +1,71 @@
+package com.task.rest.bootstrap;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MaxDuration;
+import io.dropwizard.validation.MinDuration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An object representation of the retry settings used in the {@link com.task.rest.service.ConcurrencyMode#OPTIMISTIC} mode
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see com.task.rest.service.OptimisticAccountServiceImpl
+ */
+public class OptimisticLockingConfiguration {
+
+    /**
+     * maximum number of attempts to apply a modification of accounts
+     */
+    @Min(1)
+    private int maxAttempts = 5;
+
+    /**
+     * upper bound of the random delay before the first retry, doubled for every next one
+     */
+    @NotNull
+    @MinDuration(value = 0, unit = TimeUnit.MILLISECONDS)
+    @MaxDuration(value = 1, unit = TimeUnit.MINUTES)
+    private Duration backoff = Duration.milliseconds(1);
+
+    /**
+     * upper bound of the random delay before any retry
+     */
+    @NotNull
+    @MinDuration(value = 0, unit = TimeUnit.MILLISECONDS)
+    @MaxDuration(value = 1, unit = TimeUnit.MINUTES)
+    private Duration maxBackoff = Duration.milliseconds(50);
+
+    @JsonProperty
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    @JsonProperty
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    @JsonProperty
+    public Duration getBackoff() {
+        return backoff;
+    }
+
+    @JsonProperty
+    public void setBackoff(Duration backoff) {
+        this.backoff = backoff;
+    }
+
+    @JsonProperty
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    @JsonProperty
+    public void setMaxBackoff(Duration maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+}
@@ -0,0 +1,68 @@
+package com.task.rest.bootstrap;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDuration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An object representation of the settings of the Hibernate second-level cache of the accounts and of the query cache,
+ * used by the {@link com.task.rest.persistence.StorageType#DATABASE} storage only
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see com.task.rest.persistence.cache.LocalRegionFactory
+ */
+public class SecondLevelCacheConfiguration {
+
+    /**
+     * whether the accounts and the pages of the account list are cached, must be disabled if several instances share the database
+     * and in the OPTIMISTIC and ATOMIC_UPDATE concurrency modes
+     */
+    private boolean enabled = true;
+
+    /**
+     * maximum number of entries in a region, the least recently used ones are evicted first
+     */
+    @Min(1)
+    private long maximumSize = 10000;
+
+    /**
+     * time an entry is kept in a region for after it was written
+     */
+    @NotNull
+    @MinDuration(value = 1, unit = TimeUnit.MILLISECONDS)
+    private Duration expiry = Duration.minutes(10);
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @JsonProperty
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @JsonProperty
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    @JsonProperty
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    @JsonProperty
+    public Duration getExpiry() {
+        return expiry;
+    }
+
+    @JsonProperty
+    public void setExpiry(Duration expiry) {
+        this.expiry = expiry;
+    }
+}
@@ -0,0 +1,48 @@
+package com.task.rest.bootstrap;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+/**
+ * An object representation of the shard settings used in the {@link com.task.rest.service.ConcurrencyMode#SHARDED} mode
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see com.task.rest.utils.concurrency.ShardedExecutor
+ */
+public class ShardingConfiguration {
+
+    /**
+     * number of shards (threads modifying the accounts), rounded up to the nearest power of two
+     */
+    @Min(1)
+    @Max(1 << 16)
+    private int shards = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * maximum number of modifications queued to a shard, requests wait for a free place when it's full
+     */
+    @Min(1)
+    private int queueSize = 1024;
+
+    @JsonProperty
+    public int getShards() {
+        return shards;
+    }
+
+    @JsonProperty
+    public void setShards(int shards) {
+        this.shards = shards;
+    }
+
+    @JsonProperty
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    @JsonProperty
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+}
@@ -0,0 +1,68 @@
+package com.task.rest.bootstrap;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDuration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An object representation of the account snapshot settings, the snapshots of the {@link com.task.rest.persistence.StorageType#IN_MEMORY}
+ * storage require its journal
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see com.task.rest.snapshot.AccountSnapshotter
+ * @see com.task.rest.snapshot.InMemorySnapshotter
+ */
+public class SnapshotConfiguration {
+
+    /**
+     * directory of the snapshot files, snapshots are disabled if it's not set
+     */
+    private String directory;
+
+    /**
+     * delay between the end of a snapshot and the start of the next one
+     */
+    @NotNull
+    @MinDuration(value = 1, unit = TimeUnit.SECONDS)
+    private Duration interval = Duration.minutes(5);
+
+    /**
+     * number of the latest snapshot files kept in the directory, the older ones are deleted
+     */
+    @Min(1)
+    private int retained = 2;
+
+    @JsonProperty
+    public String getDirectory() {
+        return directory;
+    }
+
+    @JsonProperty
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    @JsonProperty
+    public Duration getInterval() {
+        return interval;
+    }
+
+    @JsonProperty
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    @JsonProperty
+    public int getRetained() {
+        return retained;
+    }
+
+    @JsonProperty
+    public void setRetained(int retained) {
+        this.retained = retained;
+    }
+}
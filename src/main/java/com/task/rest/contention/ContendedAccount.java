@@ -0,0 +1,54 @@
+package com.task.rest.contention;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Represents an account of the {@link SpaceSavingSketch} with the time spent waiting for its lock
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class ContendedAccount {
+    private final long id;
+
+    /**
+     * nanoseconds spent waiting for the lock, overestimated by at most {@link #error}
+     */
+    private final long waitNanos;
+
+    /**
+     * maximum overestimation of the wait, the wait of the account that was evicted from the sketch for this one
+     */
+    private final long error;
+
+    /**
+     * number of the contended acquisitions since the account entered the sketch
+     */
+    private final long contended;
+
+    @JsonCreator
+    public ContendedAccount(@JsonProperty("id") long id, @JsonProperty("waitNanos") long waitNanos,
+                            @JsonProperty("error") long error, @JsonProperty("contended") long contended) {
+        this.id = id;
+        this.waitNanos = waitNanos;
+        this.error = error;
+        this.contended = contended;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    public long getError() {
+        return error;
+    }
+
+    public long getContended() {
+        return contended;
+    }
+
+}
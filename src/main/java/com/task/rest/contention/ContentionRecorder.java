@@ -0,0 +1,40 @@
+package com.task.rest.contention;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Recorder of the waits for the account locks and of the time the locks are held
+ * <p>
+ * It's called on every modification under the locks, implementations must neither allocate nor block for long
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see MetricsContentionRecorder
+ */
+public interface ContentionRecorder {
+
+    /**
+     * recorder that keeps nothing
+     */
+    ContentionRecorder NONE = (id, waitNanos, holdNanos) -> {
+    };
+
+    /**
+     * Records an acquisition of the lock of the account, called after the lock is released
+     *
+     * @param id        id of the account the lock was taken for
+     * @param waitNanos nanoseconds spent waiting for the lock, 0 if the lock was free
+     * @param holdNanos nanoseconds the lock was held
+     */
+    void record(long id, long waitNanos, long holdNanos);
+
+    /**
+     * @param limit maximum number of the returned accounts
+     * @return accounts that waited longest for their locks, in the descending order of the wait, none by default
+     * @throws IllegalArgumentException if limit is negative
+     */
+    default List<ContendedAccount> hottest(int limit) {
+        return Collections.emptyList();
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.task.rest.contention;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Admin servlet listing the accounts that waited longest for their locks
+ * <p>
+ * GET returns them as a JSON array, at most {@code limit} of them (10 by default). DELETE forgets them
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see MetricsContentionRecorder
+ */
+public class HotAccountsServlet extends HttpServlet {
+
+    public static final String PATH = "/hot-accounts";
+
+    private static final int DEFAULT_LIMIT = 10;
+
+    private final transient MetricsContentionRecorder recorder;
+    private final transient ObjectMapper objectMapper;
+
+    public HotAccountsServlet(MetricsContentionRecorder recorder, ObjectMapper objectMapper) {
+        this.recorder = recorder;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        int limit;
+        try {
+            String limitParameter = req.getParameter("limit");
+            limit = limitParameter == null ? DEFAULT_LIMIT : Integer.parseInt(limitParameter);
+        } catch (NumberFormatException e) {
+            limit = -1;
+        }
+        if (limit < 0) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "limit is not a non-negative integer");
+            return;
+        }
+        resp.setContentType("application/json");
+        resp.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+        objectMapper.writeValue(resp.getOutputStream(), recorder.hottest(limit));
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest req, HttpServletResponse resp) {
+        recorder.reset();
+        resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+
+}
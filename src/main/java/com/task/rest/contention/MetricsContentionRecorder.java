@@ -0,0 +1,81 @@
+package com.task.rest.contention;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SlidingWindowReservoir;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.List;
+
+/**
+ * Implementation of the {@link ContentionRecorder} keeping the waits and holds in {@link MetricRegistry} histograms
+ * and the accounts waiting longest for their locks in a {@link SpaceSavingSketch}
+ * <p>
+ * The histograms keep the latest {@value #WINDOW_SIZE} acquisitions only, so they show the current contention rather than
+ * the one since the start. Their reservoirs are arrays overwritten in a circle, updated without allocations.
+ * Only contended acquisitions reach the sketch, the ones dropped while it's busy are counted by the sketchDropped gauge
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see ContentionRecorder
+ */
+public class MetricsContentionRecorder implements ContentionRecorder {
+
+    public static final String CAPACITY_FIELD_NAME = "contention.capacity";
+
+    /**
+     * number of the latest acquisitions the histograms are computed from
+     */
+    static final int WINDOW_SIZE = 1024;
+
+    private final Histogram waits;
+    private final Histogram holds;
+    private final Counter contended;
+    private final SpaceSavingSketch sketch;
+
+    /**
+     * @param metrics  registry of the lock wait and hold histograms (in nanoseconds), of the contended acquisitions counter
+     *                 and of the gauge of the acquisitions dropped by the sketch
+     * @param capacity number of the accounts counted by the sketch
+     * @throws IllegalArgumentException if capacity is non-positive
+     */
+    @Inject
+    public MetricsContentionRecorder(MetricRegistry metrics, @Named(CAPACITY_FIELD_NAME) int capacity) {
+        this.sketch = new SpaceSavingSketch(capacity);
+        this.waits = metrics.register(MetricRegistry.name(MetricsContentionRecorder.class, "lockWait"), new Histogram(new SlidingWindowReservoir(WINDOW_SIZE)));
+        this.holds = metrics.register(MetricRegistry.name(MetricsContentionRecorder.class, "lockHold"), new Histogram(new SlidingWindowReservoir(WINDOW_SIZE)));
+        this.contended = metrics.counter(MetricRegistry.name(MetricsContentionRecorder.class, "contended"));
+        metrics.register(MetricRegistry.name(MetricsContentionRecorder.class, "sketchDropped"), (Gauge<Long>) sketch::getDropped);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void record(long id, long waitNanos, long holdNanos) {
+        waits.update(waitNanos);
+        holds.update(holdNanos);
+        if (waitNanos > 0) {
+            contended.inc();
+            sketch.add(id, waitNanos);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ContendedAccount> hottest(int limit) {
+        return sketch.top(limit);
+    }
+
+    /**
+     * Forgets the accounts counted by the sketch, the histograms are kept
+     */
+    public void reset() {
+        sketch.clear();
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.task.rest.contention;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Space-Saving sketch of the heaviest keys, in a fixed number of counters
+ * <p>
+ * A key that is not counted yet replaces the lightest counter when all of them are taken and inherits its weight,
+ * so the weight of a key is never underestimated and is overestimated by at most the inherited weight.
+ * Every key heavier than the total weight divided by the capacity is guaranteed to be counted.
+ * Counters are kept in primitive arrays and scanned linearly, adding a key allocates nothing.
+ * <p>
+ * An occurrence is dropped rather than waited for while another thread holds the sketch, so recording never blocks
+ * the lock holders it's called by. The dropped occurrences are counted; they fall on the keys in proportion to how often
+ * the keys are added, so the heaviest keys stay on top while the weights are underestimated by the dropped share
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class SpaceSavingSketch {
+
+    private final Lock lock = new ReentrantLock();
+    private final long[] keys;
+    private final long[] weights;
+    private final long[] errors;
+    private final long[] counts;
+    private final LongAdder dropped = new LongAdder();
+    private int size;
+
+    /**
+     * @param capacity number of the counted keys
+     * @throws IllegalArgumentException if capacity is non-positive
+     */
+    public SpaceSavingSketch(int capacity) {
+        Preconditions.checkArgument(capacity > 0, "capacity is non-positive");
+        this.keys = new long[capacity];
+        this.weights = new long[capacity];
+        this.errors = new long[capacity];
+        this.counts = new long[capacity];
+    }
+
+    /**
+     * Adds the weight to the key, unless another thread holds the sketch
+     *
+     * @param key    key
+     * @param weight weight of this occurrence of the key
+     * @return false if the occurrence is dropped
+     * @throws IllegalArgumentException if weight is non-positive
+     */
+    public boolean add(long key, long weight) {
+        Preconditions.checkArgument(weight > 0, "weight is non-positive");
+        if (!lock.tryLock()) {
+            dropped.increment();
+            return false;
+        }
+        try {
+            int lightest = 0;
+            for (int i = 0; i < size; i++) {
+                if (keys[i] == key) {
+                    weights[i] += weight;
+                    counts[i]++;
+                    return true;
+                }
+                if (weights[i] < weights[lightest]) {
+                    lightest = i;
+                }
+            }
+            if (size < keys.length) {
+                keys[size] = key;
+                weights[size] = weight;
+                errors[size] = 0;
+                counts[size] = 1;
+                size++;
+            } else {
+                keys[lightest] = key;
+                errors[lightest] = weights[lightest];
+                weights[lightest] += weight;
+                counts[lightest] = 1;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of the occurrences dropped since the sketch was created, clearing the sketch doesn't reset it
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @param limit maximum number of the returned keys
+     * @return heaviest keys in the descending order of their weights
+     * @throws IllegalArgumentException if limit is negative
+     */
+    public List<ContendedAccount> top(int limit) {
+        Preconditions.checkArgument(limit >= 0, "limit is negative");
+        List<ContendedAccount> top = new ArrayList<>();
+        lock.lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                top.add(new ContendedAccount(keys[i], weights[i], errors[i], counts[i]));
+            }
+        } finally {
+            lock.unlock();
+        }
+        top.sort(Comparator.comparingLong(ContendedAccount::getWaitNanos).reversed());
+        return top.size() > limit ? new ArrayList<>(top.subList(0, limit)) : top;
+    }
+
+    /**
+     * Forgets all the keys
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
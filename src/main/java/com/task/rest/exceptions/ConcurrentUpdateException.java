@@ -0,0 +1,14 @@
+package com.task.rest.exceptions;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * Service specific exception - thrown when accounts could not be updated because of concurrent updates of the same accounts
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class ConcurrentUpdateException extends AbstractServiceException {
+    public ConcurrentUpdateException(Throwable cause) {
+        super(Response.Status.CONFLICT.getStatusCode(), "Accounts were concurrently updated by another request, try again later", cause);
+    }
+}
@@ -0,0 +1,18 @@
+package com.task.rest.exceptions;
+
+/**
+ * Service specific exception - thrown when an idempotency key is sent with a request that differs from the first request with the key
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class IdempotencyKeyReusedException extends AbstractServiceException {
+
+    /**
+     * Unprocessable Entity, missing from {@link javax.ws.rs.core.Response.Status}
+     */
+    public static final int UNPROCESSABLE_ENTITY = 422;
+
+    public IdempotencyKeyReusedException(String key) {
+        super(UNPROCESSABLE_ENTITY, String.format("Idempotency key %s is already used by a different request", key));
+    }
+}
@@ -0,0 +1,25 @@
+package com.task.rest.exceptions;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * Service specific exception - thrown when an operation can't be queued because too many operations are waiting already,
+ * mapped by {@link com.task.rest.exceptions.mappers.OperationQueueFullExceptionsProvider} with the Retry-After header
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class OperationQueueFullException extends AbstractServiceException {
+    private final long retryAfterSeconds;
+
+    public OperationQueueFullException(long retryAfterSeconds) {
+        super(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), "Too many operations are waiting, try again later");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return number of seconds the client is advised to wait before retrying the request
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,16 @@
+package com.task.rest.exceptions;
+
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+
+/**
+ * Service specific exception - thrown when the debits and the credits of a posting don't sum up to zero
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class UnbalancedPostingException extends AbstractServiceException {
+    public UnbalancedPostingException(BigDecimal imbalance) {
+        super(Response.Status.BAD_REQUEST.getStatusCode(),
+                String.format("Debits and credits of the posting are not balanced, their sum is %s", imbalance.toPlainString()));
+    }
+}
@@ -0,0 +1,27 @@
+package com.task.rest.exceptions.mappers;
+
+import com.task.rest.exceptions.OperationQueueFullException;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+
+/**
+ * Custom provider that maps {@link OperationQueueFullException} to {@link javax.ws.rs.core.Response}
+ * the same way as {@link ServiceExceptionsProvider} and tells the client when to retry by the Retry-After header
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see OperationQueueFullException
+ * @see javax.ws.rs.core.Response
+ * @see javax.ws.rs.ext.ExceptionMapper
+ */
+public class OperationQueueFullExceptionsProvider implements ExceptionMapper<OperationQueueFullException> {
+    public Response toResponse(OperationQueueFullException exception) {
+        return Response.status(exception.getCode())
+                .header(HttpHeaders.RETRY_AFTER, exception.getRetryAfterSeconds())
+                .entity(exception.getMessage())
+                .type(MediaType.TEXT_PLAIN)
+                .build();
+    }
+}
@@ -0,0 +1,28 @@
+package com.task.rest.exceptions.mappers;
+
+import com.task.rest.exceptions.ConcurrentUpdateException;
+
+import javax.persistence.OptimisticLockException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+
+/**
+ * Custom provider that maps {@link OptimisticLockException} (thrown when a unit of work is committed
+ * after the accounts it updated were changed by another one) to {@link javax.ws.rs.core.Response}
+ * the same way as {@link ConcurrentUpdateException}
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see ConcurrentUpdateException
+ * @see javax.ws.rs.core.Response
+ * @see javax.ws.rs.ext.ExceptionMapper
+ */
+public class OptimisticLockExceptionsProvider implements ExceptionMapper<OptimisticLockException> {
+    public Response toResponse(OptimisticLockException exception) {
+        ConcurrentUpdateException serviceException = new ConcurrentUpdateException(exception);
+        return Response.status(serviceException.getCode())
+                .entity(serviceException.getMessage())
+                .type(MediaType.TEXT_PLAIN)
+                .build();
+    }
+}
@@ -0,0 +1,319 @@
+package com.task.rest.idempotency;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.task.rest.exceptions.IdempotencyKeyReusedException;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * {@link IdempotencyStore} keeping the results in a bounded in-heap cache, optionally saved to a file on shutdown
+ * <p>
+ * Every key is mapped to the fingerprint of its request and the future of its operation, so a retry arriving while the operation
+ * is still queued or running waits for it rather than runs it once more, and a different request with the key fails at once.
+ * Operations in flight are kept in a separate map, out of the size bound and the expiry, and move to the cache of results
+ * once they complete, so a running operation is never evicted and run again. Looking a key up takes no lock,
+ * a new key is reserved under the lock of its entry in the map of operations in flight.
+ * The least recently used results are evicted when the cache is full and every result is forgotten once it's older than the expiry,
+ * so the memory taken is bounded by the maximum size times the size of a key and a response, plus the operations in flight.
+ * <p>
+ * If the file is set, the completed results are written to it when the store is stopped, after the queued operations are done,
+ * and the results that have not expired yet are read from it when the store is started
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class BoundedIdempotencyStore implements IdempotencyStore, Managed {
+
+    public static final String MAXIMUM_SIZE_FIELD_NAME = "idempotency.maximumSize";
+    public static final String EXPIRY_FIELD_NAME = "idempotency.expiry";
+    public static final String FILE_FIELD_NAME = "idempotency.file";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BoundedIdempotencyStore.class);
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Cache<String, Execution> cache;
+    private final Map<String, Execution> executionByKey;
+
+    /**
+     * operations that have not completed yet, they are moved to the cache on success and removed on failure
+     */
+    private final ConcurrentMap<String, Execution> inFlightByKey = new ConcurrentHashMap<>();
+    private final long expiryMillis;
+    private final ObjectMapper objectMapper;
+    private final Meter replays;
+
+    /**
+     * file the results are saved to, null if they are not saved
+     */
+    private Path file;
+
+    /**
+     * @param maximumSize  maximum number of kept results
+     * @param expiryMillis number of milliseconds a result is kept for
+     * @param objectMapper used to read and write the file
+     * @param metrics      registry of the replays and size metrics
+     * @throws IllegalArgumentException if maximumSize or expiryMillis is non-positive
+     */
+    @Inject
+    public BoundedIdempotencyStore(@Named(MAXIMUM_SIZE_FIELD_NAME) int maximumSize, @Named(EXPIRY_FIELD_NAME) long expiryMillis,
+                                   ObjectMapper objectMapper, MetricRegistry metrics) {
+        Preconditions.checkArgument(maximumSize > 0, "maximum size is non-positive");
+        Preconditions.checkArgument(expiryMillis > 0, "expiry is non-positive");
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expiryMillis, TimeUnit.MILLISECONDS)
+                .build();
+        this.executionByKey = cache.asMap();
+        this.expiryMillis = expiryMillis;
+        this.objectMapper = objectMapper;
+        this.replays = metrics.meter(MetricRegistry.name(BoundedIdempotencyStore.class, "replays"));
+        metrics.register(MetricRegistry.name(BoundedIdempotencyStore.class, "size"), (Gauge<Long>) cache::size);
+    }
+
+    /**
+     * @param file file the results are saved to and read from
+     */
+    @Inject(optional = true)
+    public void setFile(@Named(FILE_FIELD_NAME) String file) {
+        this.file = file == null ? null : Paths.get(file);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<IdempotentResponse> execute(String key, String fingerprint,
+                                                         Supplier<CompletableFuture<IdempotentResponse>> operation) {
+        Preconditions.checkArgument(key != null, "key is null");
+        Preconditions.checkArgument(fingerprint != null, "fingerprint is null");
+        Preconditions.checkArgument(operation != null, "operation is null");
+        CompletableFuture<IdempotentResponse> reserved = new CompletableFuture<>();
+        Execution execution = new Execution(fingerprint, reserved);
+        Execution existing = find(key);
+        if (existing == null) {
+            existing = reserve(key, execution);
+        }
+        if (existing != null) {
+            if (!existing.fingerprint.equals(fingerprint)) {
+                CompletableFuture<IdempotentResponse> rejected = new CompletableFuture<>();
+                rejected.completeExceptionally(new IdempotencyKeyReusedException(key));
+                return rejected;
+            }
+            replays.mark();
+            return existing.future;
+        }
+
+        CompletableFuture<IdempotentResponse> future;
+        try {
+            future = operation.get();
+        } catch (RuntimeException e) {
+            inFlightByKey.remove(key, execution);
+            reserved.completeExceptionally(e);
+            throw e;
+        }
+        future.whenComplete((response, failure) -> {
+            if (failure == null) {
+                reserved.complete(response);
+                complete(key, execution);
+            } else {
+                inFlightByKey.remove(key, execution);
+                reserved.completeExceptionally(failure);
+            }
+        });
+        return reserved;
+    }
+
+    /**
+     * @return operation in flight or not expired result for the key, null if there's none
+     */
+    private Execution find(String key) {
+        Execution inFlight = inFlightByKey.get(key);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        Execution completed = executionByKey.get(key);
+        return completed == null || isExpired(completed.future) ? null : completed;
+    }
+
+    /**
+     * Reserves the key for the execution unless it's in flight or completed already. The result is looked up under the lock
+     * of the key in the map of operations in flight, so a result moved to the cache concurrently is not missed
+     *
+     * @return operation in flight or not expired result for the key, null if the key is reserved for the execution
+     */
+    private Execution reserve(String key, Execution execution) {
+        Execution[] existing = new Execution[1];
+        inFlightByKey.compute(key, (k, inFlight) -> {
+            if (inFlight != null) {
+                existing[0] = inFlight;
+                return inFlight;
+            }
+            Execution completed = executionByKey.get(k);
+            if (completed != null && !isExpired(completed.future)) {
+                existing[0] = completed;
+                return null;
+            }
+            if (completed != null) {
+                // a result read from the file is kept for the rest of its expiry only
+                executionByKey.remove(k, completed);
+            }
+            return execution;
+        });
+        return existing[0];
+    }
+
+    /**
+     * Moves the completed execution from the map of operations in flight to the cache of results
+     */
+    private void complete(String key, Execution execution) {
+        inFlightByKey.computeIfPresent(key, (k, inFlight) -> {
+            if (inFlight != execution) {
+                return inFlight;
+            }
+            cache.put(k, execution);
+            return null;
+        });
+    }
+
+    /**
+     * Reads the results that have not expired yet from the file, if it's set and exists.
+     * Results written without the fingerprint of their request are skipped
+     *
+     * @throws UncheckedIOException if the file can't be read
+     */
+    @Override
+    public void start() {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long count = 0;
+        try (MappingIterator<Entry> entries = objectMapper.readerFor(Entry.class).readValues(file.toFile())) {
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                if (entry.fingerprint != null && now - entry.response.getCompletedAt() < expiryMillis) {
+                    executionByKey.putIfAbsent(entry.key, new Execution(entry.fingerprint, CompletableFuture.completedFuture(entry.response)));
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read the idempotent responses from " + file, e);
+        }
+        LOGGER.info("{} idempotent responses are read from {}", count, file);
+    }
+
+    /**
+     * Writes the completed results to the file, if it's set, replacing the file.
+     * The file is written under a temporary name and renamed once it's complete
+     *
+     * @throws UncheckedIOException if the file can't be written
+     */
+    @Override
+    public void stop() {
+        if (file == null) {
+            return;
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+        try {
+            long count;
+            try {
+                count = write(temporary);
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+            LOGGER.info("{} idempotent responses are written to {}", count, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write the idempotent responses to " + file, e);
+        }
+    }
+
+    /**
+     * @return number of written results, one JSON object per line
+     */
+    private long write(Path path) throws IOException {
+        long count = 0;
+        try (OutputStream outputStream = Files.newOutputStream(path);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            for (Map.Entry<String, Execution> entry : executionByKey.entrySet()) {
+                CompletableFuture<IdempotentResponse> future = entry.getValue().future;
+                if (future.isDone() && !future.isCompletedExceptionally()) {
+                    generator.writeObject(new Entry(entry.getKey(), entry.getValue().fingerprint, future.join()));
+                    generator.writeRaw('\n');
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean isExpired(CompletableFuture<IdempotentResponse> future) {
+        return future.isDone() && !future.isCompletedExceptionally()
+                && System.currentTimeMillis() - future.join().getCompletedAt() >= expiryMillis;
+    }
+
+    /**
+     * Operation run for a key, with the fingerprint of the request it was run for
+     */
+    private static final class Execution {
+
+        private final String fingerprint;
+        private final CompletableFuture<IdempotentResponse> future;
+
+        Execution(String fingerprint, CompletableFuture<IdempotentResponse> future) {
+            this.fingerprint = fingerprint;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Kept result as it's written to the file
+     */
+    static final class Entry {
+
+        @JsonProperty
+        private final String key;
+
+        @JsonProperty
+        private final String fingerprint;
+
+        @JsonProperty
+        private final IdempotentResponse response;
+
+        @JsonCreator
+        Entry(@JsonProperty("key") String key, @JsonProperty("fingerprint") String fingerprint,
+              @JsonProperty("response") IdempotentResponse response) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.response = response;
+        }
+    }
+
+}
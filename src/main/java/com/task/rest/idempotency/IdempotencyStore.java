@@ -0,0 +1,51 @@
+package com.task.rest.idempotency;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Results of the operations requested with an idempotency key, so that a retried request returns the result of the first one
+ * instead of running the operation again. Every key is kept with the fingerprint of its request, a different request
+ * sent with the same key is rejected rather than answered by the result of the first one
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see IdempotentResponse
+ */
+public interface IdempotencyStore {
+
+    /**
+     * header of the idempotency key chosen by the client, a retry of the request must carry the same key
+     */
+    String KEY_HEADER = "Idempotency-Key";
+
+    /**
+     * header set to true in a response returned by the store rather than by the operation
+     */
+    String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    /**
+     * maximum length of an idempotency key
+     */
+    int MAX_KEY_LENGTH = 255;
+
+    /**
+     * store that keeps nothing, every operation is run
+     */
+    IdempotencyStore NONE = (key, fingerprint, operation) -> operation.get();
+
+    /**
+     * Returns the result of the operation with the key, running the operation only if there's no such result yet.
+     * A request with the key of an operation in progress gets the result of that operation once it's done.
+     * Failed operations are not kept, a retry runs the operation again
+     *
+     * @param key         idempotency key of the operation
+     * @param fingerprint fingerprint of the request, equal for the request and its retries
+     * @param operation   runs the operation, called at most once
+     * @return future completed by the kept result or by the result of the operation, or by the exception the operation throws.
+     * The future fails with {@link com.task.rest.exceptions.IdempotencyKeyReusedException} if the key is kept with a different fingerprint
+     * @throws IllegalArgumentException if key, fingerprint or operation is null
+     * @throws RuntimeException         thrown by the operation itself rather than by its future
+     */
+    CompletableFuture<IdempotentResponse> execute(String key, String fingerprint, Supplier<CompletableFuture<IdempotentResponse>> operation);
+
+}
@@ -0,0 +1,76 @@
+package com.task.rest.idempotency;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Preconditions;
+import com.task.rest.model.api.response.CrudAccountResponse;
+import com.task.rest.model.dbo.Account;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * Response of a completed operation kept by the {@link IdempotencyStore}
+ * <p>
+ * The account of the response is copied, so the response doesn't change with the entity it was built from
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class IdempotentResponse {
+
+    private final int status;
+
+    private final CrudAccountResponse entity;
+
+    /**
+     * time the operation was completed at, in milliseconds since the epoch
+     */
+    private final long completedAt;
+
+    /**
+     * @throws IllegalArgumentException if entity is null
+     */
+    @JsonCreator
+    public IdempotentResponse(@JsonProperty("status") int status, @JsonProperty("entity") CrudAccountResponse entity,
+                              @JsonProperty("completedAt") long completedAt) {
+        Preconditions.checkArgument(entity != null, "entity is null");
+        Account account = entity.getAccount();
+        this.status = status;
+        this.entity = new CrudAccountResponse(account == null ? null : new Account(account.getId(), account.getAmount()), entity.getStatus());
+        this.completedAt = completedAt;
+    }
+
+    /**
+     * @throws IllegalArgumentException if entity is null
+     */
+    public IdempotentResponse(Response.Status status, CrudAccountResponse entity) {
+        this(status.getStatusCode(), entity, System.currentTimeMillis());
+    }
+
+    @JsonProperty
+    public int getStatus() {
+        return status;
+    }
+
+    @JsonProperty
+    public CrudAccountResponse getEntity() {
+        return entity;
+    }
+
+    @JsonProperty
+    public long getCompletedAt() {
+        return completedAt;
+    }
+
+    /**
+     * @param replayed whether the response is returned to a retried request
+     * @return HTTP response with the status and the entity
+     */
+    public Response toResponse(boolean replayed) {
+        Response.ResponseBuilder builder = Response.status(status).entity(entity);
+        if (replayed) {
+            builder.header(IdempotencyStore.REPLAYED_HEADER, true);
+        }
+        return builder.build();
+    }
+
+}
@@ -0,0 +1,389 @@
+package com.task.rest.journal;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Implementation of the {@link Journal} as a sequence of segment files written by a {@link FileChannel}
+ * <p>
+ * A segment is named by the journal position of its first byte, a new segment is started once the current one
+ * reaches the configured size. Every record is prefixed by its length and CRC32, so a record torn by a crash
+ * at the end of the last segment is detected and cut off on replay.
+ * <p>
+ * Once the state up to a position is snapshotted, the segments before it are deleted by {@link #deleteBefore}
+ * and the journal is replayed from that position on the next startup.
+ * <p>
+ * Appended records are collected in a memory buffer. A single flusher thread writes the whole buffer and forces it to the disk,
+ * while the next records are collected in another buffer, so all the records appended during a write share the next one (group commit)
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see Journal
+ */
+public class FileJournal implements Journal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileJournal.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d{20})\\.log");
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final boolean fsync;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition written = lock.newCondition();
+
+    // guarded by the lock
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private long appendedPosition;
+    private long durablePosition;
+    private IOException failure;
+    private boolean replayed;
+    private boolean closed;
+
+    // used by the flusher thread only once the journal is replayed
+    private FileChannel channel;
+    private Thread flusher;
+
+    /**
+     * @param directory   directory of the segment files, created if it doesn't exist
+     * @param segmentSize size a segment file may grow to before the next one is started
+     * @param fsync       whether the written records are forced to the disk,
+     *                    otherwise they may be lost if the operating system crashes
+     * @throws IllegalArgumentException if directory is null or segmentSize is non-positive
+     */
+    public FileJournal(Path directory, long segmentSize, boolean fsync) {
+        Preconditions.checkArgument(directory != null, "directory is null");
+        Preconditions.checkArgument(segmentSize > 0, "segment size is non-positive");
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the segments from the one containing the position are read. A torn record at the end of the last segment is cut off,
+     * then the flusher thread is started. If there are no segments, the first one starts at the position
+     */
+    @Override
+    public void replay(long from, Consumer<JournalRecord> consumer) {
+        Preconditions.checkArgument(from >= 0, "position is negative");
+        Preconditions.checkArgument(consumer != null, "consumer is null");
+        lock.lock();
+        try {
+            Preconditions.checkState(!replayed, "journal is replayed already");
+            Preconditions.checkState(!closed, "journal is closed");
+            Files.createDirectories(directory);
+            List<Long> segments = segments();
+            int first = 0;
+            while (first + 1 < segments.size() && segments.get(first + 1) <= from) {
+                first++;
+            }
+            if (!segments.isEmpty() && segments.get(first) > from) {
+                throw new IOException("journal starts at " + segments.get(first) + " after position " + from);
+            }
+            long position = from;
+            for (int i = first; i < segments.size(); i++) {
+                position = replaySegment(segments.get(i), i == segments.size() - 1, from, consumer);
+            }
+            if (position < from) {
+                throw new IOException("journal ends at " + position + " before position " + from);
+            }
+            long lastSegment = segments.isEmpty() ? from : segments.get(segments.size() - 1);
+            channel = FileChannel.open(segmentPath(lastSegment),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            appendedPosition = position;
+            durablePosition = position;
+            replayed = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to replay the journal in " + directory, e);
+        } finally {
+            lock.unlock();
+        }
+        flusher = new Thread(this::flush, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long append(JournalRecord record) {
+        Preconditions.checkArgument(record != null, "record is null");
+        lock.lock();
+        try {
+            Preconditions.checkState(replayed, "journal is not replayed yet");
+            Preconditions.checkState(!closed, "journal is closed");
+            checkFailure();
+            int size = HEADER_SIZE + record.size();
+            if (buffer.remaining() < size) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+            int start = buffer.position();
+            buffer.position(start + HEADER_SIZE);
+            record.writeTo(buffer);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), start + HEADER_SIZE, size - HEADER_SIZE);
+            buffer.putInt(start, size - HEADER_SIZE);
+            buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+            appendedPosition += size;
+            appended.signal();
+            return appendedPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void awaitDurable(long position) {
+        lock.lock();
+        try {
+            while (durablePosition < position) {
+                checkFailure();
+                Preconditions.checkState(!closed || (flusher != null && flusher.isAlive()), "journal is closed");
+                written.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appended.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long position() {
+        lock.lock();
+        try {
+            return appendedPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Deletes the segments all the records of which are before the position, the last segment is never deleted
+     */
+    @Override
+    public void deleteBefore(long position) {
+        try {
+            List<Long> segments = segments();
+            for (int i = 0; i + 1 < segments.size() && segments.get(i + 1) <= position; i++) {
+                Files.deleteIfExists(segmentPath(segments.get(i)));
+                LOGGER.info("Journal segment {} is deleted, position {} is snapshotted", segmentPath(segments.get(i)), position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to delete the journal segments in " + directory, e);
+        }
+    }
+
+    /**
+     * Loop of the flusher thread, writes the collected records until the journal is closed and everything is written
+     */
+    private void flush() {
+        ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        while (true) {
+            ByteBuffer batch;
+            long end;
+            lock.lock();
+            try {
+                while (buffer.position() == 0 && !closed) {
+                    appended.awaitUninterruptibly();
+                }
+                if (buffer.position() == 0) {
+                    // closed and everything is written
+                    written.signalAll();
+                    return;
+                }
+                batch = buffer;
+                buffer = spare;
+                end = appendedPosition;
+            } finally {
+                lock.unlock();
+            }
+
+            batch.flip();
+            try {
+                if (channel.size() >= segmentSize) {
+                    startSegment(end - batch.remaining());
+                }
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                if (fsync) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                    written.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            batch.clear();
+            spare = batch;
+
+            lock.lock();
+            try {
+                durablePosition = end;
+                written.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void startSegment(long position) throws IOException {
+        channel.force(true);
+        channel.close();
+        channel = FileChannel.open(segmentPath(position), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * @param from the records starting before this position are skipped
+     * @return position right after the last valid record of the segment
+     */
+    private long replaySegment(long position, boolean last, long from, Consumer<JournalRecord> consumer) throws IOException {
+        Path path = segmentPath(position);
+        try (FileChannel segment = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer content = ByteBuffer.allocate(Math.toIntExact(segment.size()));
+            while (content.hasRemaining() && segment.read(content) >= 0) {
+                // read the whole segment
+            }
+            content.flip();
+            while (content.hasRemaining()) {
+                int start = content.position();
+                JournalRecord record = readRecord(content);
+                if (record == null) {
+                    if (!last) {
+                        throw new IOException("segment " + path + " is corrupted at " + start);
+                    }
+                    LOGGER.warn("Torn record at {} of the journal segment {} is cut off ({} bytes)", start, path, content.limit() - start);
+                    segment.truncate(start);
+                    segment.force(true);
+                    return position + start;
+                }
+                if (position + start >= from) {
+                    consumer.accept(record);
+                }
+            }
+            return position + content.limit();
+        }
+    }
+
+    /**
+     * @return the record at the current position of the buffer, null if it's incomplete or corrupted
+     */
+    private static JournalRecord readRecord(ByteBuffer content) {
+        if (content.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int length = content.getInt();
+        int checksum = content.getInt();
+        if (length <= 0 || length > content.remaining()) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content.array(), content.position(), length);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        ByteBuffer payload = content.slice();
+        payload.limit(length);
+        content.position(content.position() + length);
+        try {
+            return JournalRecord.readFrom(payload);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private List<Long> segments() throws IOException {
+        List<Long> positions = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    positions.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        positions.sort(Long::compare);
+        return positions;
+    }
+
+    private Path segmentPath(long position) {
+        return directory.resolve(String.format("journal-%020d.log", position));
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("journal failed to write records", failure);
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.task.rest.journal;
+
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of the committed changes of the account balances, the balances are restored from it on startup
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see JournalRecord
+ */
+public interface Journal extends AutoCloseable {
+
+    /**
+     * journal that keeps nothing
+     */
+    Journal NONE = new Journal() {
+        @Override
+        public void replay(long position, Consumer<JournalRecord> consumer) {
+        }
+
+        @Override
+        public long position() {
+            return 0;
+        }
+
+        @Override
+        public long append(JournalRecord record) {
+            return 0;
+        }
+
+        @Override
+        public void awaitDurable(long position) {
+        }
+
+        @Override
+        public void deleteBefore(long position) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * Passes all the records of the journal to the consumer in the order they were appended,
+     * must be called once before the first record is appended
+     *
+     * @param consumer consumer of the records
+     * @throws IllegalArgumentException if consumer is null
+     * @throws IllegalStateException    if the journal is replayed already
+     * @throws java.io.UncheckedIOException if the journal can't be read or is corrupted
+     */
+    default void replay(Consumer<JournalRecord> consumer) {
+        replay(0, consumer);
+    }
+
+    /**
+     * Passes the records appended after the position to the consumer in the order they were appended,
+     * must be called once before the first record is appended. The next records are appended after the position
+     * even if the journal is empty, so the positions stay consistent with a snapshot taken at it
+     *
+     * @param position position returned by {@link #append} or {@link #position}, the records before it are skipped
+     * @param consumer consumer of the records
+     * @throws IllegalArgumentException if position is negative or consumer is null
+     * @throws IllegalStateException    if the journal is replayed already
+     * @throws java.io.UncheckedIOException if the journal can't be read, is corrupted or doesn't contain the position
+     */
+    void replay(long position, Consumer<JournalRecord> consumer);
+
+    /**
+     * @return position of the journal right after the last appended record
+     */
+    long position();
+
+    /**
+     * Appends the record, the record is not durable until {@link #awaitDurable} returns for the returned position
+     *
+     * @param record record to be appended
+     * @return position of the journal right after the record
+     * @throws IllegalArgumentException if record is null
+     * @throws IllegalStateException    if the journal is not replayed yet or is closed
+     * @throws java.io.UncheckedIOException if the journal failed to write records
+     */
+    long append(JournalRecord record);
+
+    /**
+     * Waits until all the records up to the position are written to the disk
+     *
+     * @param position position returned by {@link #append}
+     * @throws IllegalStateException if the journal is closed before the records are written
+     * @throws java.io.UncheckedIOException if the journal failed to write the records
+     */
+    void awaitDurable(long position);
+
+    /**
+     * Deletes the records before the position as far as the storage allows, e.g. the whole segment files before it.
+     * Called once the state up to the position is kept elsewhere, the records after it are kept
+     *
+     * @param position position returned by {@link #append} or {@link #position}
+     * @throws java.io.UncheckedIOException if the records can't be deleted
+     */
+    void deleteBefore(long position);
+
+    /**
+     * Writes all the appended records and releases the files
+     */
+    @Override
+    void close();
+
+}
@@ -0,0 +1,160 @@
+package com.task.rest.journal;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Net effect of a committed transaction on the account balances, written to the {@link Journal} as a whole
+ * <p>
+ * Balances are changed by deltas rather than overwritten, and account ids are never reused, so records commute:
+ * replaying the same records in any order gives the same balances (a deleted account stays deleted).
+ * This lets the records be appended after the transaction is applied in memory, outside of any locks
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public final class JournalRecord {
+
+    /**
+     * size of an entry in the serialized form: type, id and units
+     */
+    static final int ENTRY_SIZE = Byte.BYTES + Long.BYTES + Long.BYTES;
+
+    public enum Type {
+        /**
+         * the account is created with the balance
+         */
+        CREATE,
+        /**
+         * the balance of the account is changed by the (signed) number of units
+         */
+        DELTA,
+        /**
+         * the account is deleted
+         */
+        DELETE
+    }
+
+    public static final class Entry {
+        private final Type type;
+        private final long id;
+        private final long units;
+
+        private Entry(Type type, long id, long units) {
+            this.type = type;
+            this.id = id;
+            this.units = units;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getUnits() {
+            return units;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Entry entry = (Entry) o;
+            return id == entry.id && units == entry.units && type == entry.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, id, units);
+        }
+
+        @Override
+        public String toString() {
+            return type + "(" + id + ", " + units + ")";
+        }
+    }
+
+    private final List<Entry> entries;
+
+    /**
+     * @param entries changes of the balances, not empty
+     * @throws IllegalArgumentException if entries is null or empty
+     */
+    public JournalRecord(List<Entry> entries) {
+        Preconditions.checkArgument(entries != null && !entries.isEmpty(), "record has no entries");
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    public static Entry create(long id, long units) {
+        return new Entry(Type.CREATE, id, units);
+    }
+
+    public static Entry delta(long id, long units) {
+        return new Entry(Type.DELTA, id, units);
+    }
+
+    public static Entry delete(long id) {
+        return new Entry(Type.DELETE, id, 0);
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return size of the record in the serialized form
+     */
+    int size() {
+        return Integer.BYTES + entries.size() * ENTRY_SIZE;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putInt(entries.size());
+        for (Entry entry : entries) {
+            buffer.put((byte) entry.type.ordinal());
+            buffer.putLong(entry.id);
+            buffer.putLong(entry.units);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the buffer doesn't contain a valid record
+     */
+    static JournalRecord readFrom(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        Preconditions.checkArgument(count > 0 && count <= buffer.remaining() / ENTRY_SIZE, "invalid number of entries %s", count);
+        Type[] types = Type.values();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int type = buffer.get();
+            Preconditions.checkArgument(type >= 0 && type < types.length, "invalid entry type %s", type);
+            entries.add(new Entry(types[type], buffer.getLong(), buffer.getLong()));
+        }
+        return new JournalRecord(entries);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return entries.equals(((JournalRecord) o).entries);
+    }
+
+    @Override
+    public int hashCode() {
+        return entries.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return entries.toString();
+    }
+
+}
@@ -0,0 +1,258 @@
+package com.task.rest.ledger;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.task.rest.model.dbo.LedgerEntry;
+import com.task.rest.model.dbo.LedgerOperation;
+import com.task.rest.persistence.LedgerDao;
+import com.task.rest.persistence.TransactionRunner;
+import io.dropwizard.lifecycle.Managed;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Ledger} writing the entries to the database by batches in a thread of its own
+ * <p>
+ * A slot for an entry is queued right before the transaction that recorded it is committed - after its changes are flushed,
+ * while both the account lock (if the concurrency mode takes one) and the database row lock are still held - and the entry
+ * is put into the slot once the transaction is committed, the slot is dropped if it's rolled back. So the entries of an account
+ * are queued and numbered in the order of its changes in every concurrency mode, though OPTIMISTIC and ATOMIC_UPDATE
+ * take no account locks. The writer waits for the outcome of the slot at the head of the queue and inserts the entries
+ * by JDBC batches of at most batchSize entries in a transaction of its own, a batch is written once it's full or once
+ * flushInterval has passed since its first entry was taken. When the queue is full the committing thread waits for the writer,
+ * so no committed entry is dropped while the database is available; a failed batch is retried after flushInterval.
+ * <p>
+ * The queued entries are written when the ledger is stopped, after the modifications are completed
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see LedgerDao#insertAll
+ */
+public class BatchingLedger implements Ledger, Managed {
+
+    public static final String BATCH_SIZE_FIELD_NAME = "ledger.batchSize";
+    public static final String FLUSH_INTERVAL_FIELD_NAME = "ledger.flushInterval";
+    public static final String QUEUE_SIZE_FIELD_NAME = "ledger.queueSize";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchingLedger.class);
+
+    private final SessionFactory sessionFactory;
+    private final LedgerDao ledgerDao;
+    private final TransactionRunner transactionRunner;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final BlockingQueue<Slot> queue;
+    private final Meter written;
+
+    private volatile boolean stopped;
+    private Thread writer;
+
+    /**
+     * @param batchSize           maximum number of entries inserted at once
+     * @param flushIntervalMillis maximum number of milliseconds an entry waits for a full batch
+     * @param queueSize           maximum number of entries waiting for the writer
+     * @throws IllegalArgumentException if batchSize, flushIntervalMillis or queueSize is non-positive
+     */
+    @Inject
+    public BatchingLedger(SessionFactory sessionFactory, LedgerDao ledgerDao, TransactionRunner transactionRunner, MetricRegistry metrics,
+                          @Named(BATCH_SIZE_FIELD_NAME) int batchSize,
+                          @Named(FLUSH_INTERVAL_FIELD_NAME) long flushIntervalMillis,
+                          @Named(QUEUE_SIZE_FIELD_NAME) int queueSize) {
+        Preconditions.checkArgument(batchSize > 0, "batch size is non-positive");
+        Preconditions.checkArgument(flushIntervalMillis > 0, "flush interval is non-positive");
+        Preconditions.checkArgument(queueSize > 0, "queue size is non-positive");
+        this.sessionFactory = sessionFactory;
+        this.ledgerDao = ledgerDao;
+        this.transactionRunner = transactionRunner;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.written = metrics.meter(MetricRegistry.name(BatchingLedger.class, "written"));
+        metrics.register(MetricRegistry.name(BatchingLedger.class, "queued"), (Gauge<Integer>) queue::size);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if there's no active transaction of the current session
+     */
+    @Override
+    public void record(Long accountId, LedgerOperation operation, BigDecimal amount, BigDecimal balance) {
+        Preconditions.checkArgument(accountId != null, "account id is null");
+        Preconditions.checkArgument(operation != null, "operation is null");
+        Preconditions.checkArgument(amount != null, "amount is null");
+        Preconditions.checkArgument(balance != null, "balance is null");
+        Transaction transaction = sessionFactory.getCurrentSession().getTransaction();
+        Preconditions.checkState(transaction.isActive(), "no active transaction");
+        transaction.registerSynchronization(new Synchronization() {
+            private Slot slot;
+
+            @Override
+            public void beforeCompletion() {
+                slot = enqueue(accountId);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (slot != null) {
+                    slot.fill(status == Status.STATUS_COMMITTED
+                            ? new LedgerEntry(null, accountId, operation, amount, balance, System.currentTimeMillis()) : null);
+                }
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<LedgerEntry> history(Long accountId, Long afterSeq, int limit) {
+        return ledgerDao.findByAccountId(accountId, afterSeq, limit);
+    }
+
+    /**
+     * Starts the writer
+     */
+    @Override
+    public void start() {
+        writer = new Thread(this::writeQueued, "ledger-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Writes the queued entries and stops the writer
+     */
+    @Override
+    public void stop() {
+        stopped = true;
+        if (writer != null) {
+            Uninterruptibles.joinUninterruptibly(writer);
+        }
+    }
+
+    /**
+     * @return slot queued for the entry, null if the ledger is stopped
+     */
+    private Slot enqueue(Long accountId) {
+        if (stopped) {
+            LOGGER.error("The ledger is stopped, the entry of the account {} is lost", accountId);
+            return null;
+        }
+        Slot slot = new Slot();
+        Uninterruptibles.putUninterruptibly(queue, slot);
+        return slot;
+    }
+
+    private void writeQueued() {
+        List<Slot> slots = new ArrayList<>(batchSize);
+        List<LedgerEntry> batch = new ArrayList<>(batchSize);
+        while (!stopped || !queue.isEmpty()) {
+            Slot first = poll(flushIntervalNanos);
+            if (first == null) {
+                continue;
+            }
+            slots.add(first);
+            long deadline = System.nanoTime() + flushIntervalNanos;
+            while (slots.size() < batchSize) {
+                if (queue.drainTo(slots, batchSize - slots.size()) > 0) {
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                Slot next = stopped || remaining <= 0 ? null
+                        : poll(remaining);
+                if (next == null) {
+                    break;
+                }
+                slots.add(next);
+            }
+            for (Slot slot : slots) {
+                // the transaction of the slot is being committed, its entry follows shortly
+                LedgerEntry entry = slot.await();
+                if (entry != null) {
+                    batch.add(entry);
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+            slots.clear();
+            batch.clear();
+        }
+    }
+
+    /**
+     * @return the head of the queue, null if the queue stayed empty for the timeout
+     */
+    private Slot poll(long timeoutNanos) {
+        try {
+            return queue.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            // the writer is stopped by the flag, not by interruption
+            return null;
+        }
+    }
+
+    private void write(List<LedgerEntry> batch) {
+        while (true) {
+            try {
+                transactionRunner.inTransaction(() -> {
+                    ledgerDao.insertAll(batch);
+                    return null;
+                });
+                written.mark(batch.size());
+                return;
+            } catch (RuntimeException e) {
+                if (stopped) {
+                    LOGGER.error("Failed to write {} ledger entries on shutdown, they are lost", batch.size(), e);
+                    return;
+                }
+                LOGGER.error("Failed to write {} ledger entries, the batch is retried", batch.size(), e);
+                Uninterruptibles.sleepUninterruptibly(flushIntervalNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Place of an entry in the queue, taken before the transaction is committed and filled once its outcome is known
+     */
+    private static final class Slot {
+
+        private final CountDownLatch filled = new CountDownLatch(1);
+        private volatile LedgerEntry entry;
+
+        /**
+         * @param entry entry of the committed transaction, null if the transaction is rolled back
+         */
+        void fill(LedgerEntry entry) {
+            this.entry = entry;
+            filled.countDown();
+        }
+
+        /**
+         * @return entry of the slot, null if its transaction is rolled back
+         */
+        LedgerEntry await() {
+            Uninterruptibles.awaitUninterruptibly(filled);
+            return entry;
+        }
+
+    }
+
+}
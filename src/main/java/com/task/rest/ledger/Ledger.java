@@ -0,0 +1,56 @@
+package com.task.rest.ledger;
+
+import com.task.rest.model.dbo.LedgerEntry;
+import com.task.rest.model.dbo.LedgerOperation;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * History of the committed changes of the account balances
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see LedgerEntry
+ */
+public interface Ledger {
+
+    /**
+     * ledger that keeps nothing
+     */
+    Ledger NONE = new Ledger() {
+        @Override
+        public void record(Long accountId, LedgerOperation operation, BigDecimal amount, BigDecimal balance) {
+        }
+
+        @Override
+        public List<LedgerEntry> history(Long accountId, Long afterSeq, int limit) {
+            return new ArrayList<>();
+        }
+    };
+
+    /**
+     * Records the change of the balance made by the current transaction, called in the transaction after the change.
+     * The entry is kept once the transaction is committed and dropped if it's rolled back, the entries of an account are kept
+     * in the order its changes are committed in
+     *
+     * @param accountId id of the account
+     * @param operation operation that changed the balance
+     * @param amount    change of the balance, negative if money is taken from the account
+     * @param balance   balance of the account after the change
+     * @throws IllegalArgumentException if any argument is null
+     */
+    void record(Long accountId, LedgerOperation operation, BigDecimal amount, BigDecimal balance);
+
+    /**
+     * Loads a page of the kept entries of the account ordered by sequence number, the entries of the latest changes may be missing yet
+     *
+     * @param accountId id of the account, the entries of a deleted account are kept as well
+     * @param afterSeq  sequence number of the last entry of the previous page, null for the first page
+     * @param limit     maximum number of entries in the page
+     * @return list of the entries of the account with sequence numbers greater than afterSeq, ordered by sequence number
+     * @throws IllegalArgumentException if accountId is null or limit is non-positive
+     */
+    List<LedgerEntry> history(Long accountId, Long afterSeq, int limit);
+
+}
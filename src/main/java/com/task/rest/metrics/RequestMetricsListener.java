@@ -0,0 +1,138 @@
+package com.task.rest.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.glassfish.jersey.server.internal.process.MappableException;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listener recording the latency and the throughput of every resource method to {@link MetricRegistry},
+ * with the time the requests spent in each stage of their processing
+ * <p>
+ * The metrics of a method are named after the method, e.g. com.task.rest.resource.AccountServiceResource.transfer:
+ * <ul>
+ * <li>latency - timer of the whole requests, from the start of their processing until their response is written,
+ * the suspended requests included</li>
+ * <li>lockWait, dao, serialization - timers of the time the requests spent in the stages, see {@link RequestTimings}</li>
+ * <li>exceptions.&lt;simple name of the exception class&gt; - meter of the requests that ended up with the exception,
+ * counted whatever mapper handled it</li>
+ * </ul>
+ * The requests not matched to a resource method are not recorded
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see RequestTimings
+ * @see SerializationTimingInterceptor
+ */
+public class RequestMetricsListener implements ApplicationEventListener {
+
+    private final MetricRegistry metrics;
+    private final ConcurrentMap<Method, MethodMetrics> metricsByMethod = new ConcurrentHashMap<>();
+
+    public RequestMetricsListener(MetricRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        RequestTimings timings = new RequestTimings();
+        requestEvent.getContainerRequest().setProperty(RequestTimings.PROPERTY, timings);
+        return new TimingListener(timings, System.nanoTime());
+    }
+
+    private MethodMetrics metricsOf(Method method) {
+        MethodMetrics methodMetrics = metricsByMethod.get(method);
+        return methodMetrics != null ? methodMetrics : metricsByMethod.computeIfAbsent(method, MethodMetrics::new);
+    }
+
+    private class TimingListener implements RequestEventListener {
+
+        private final RequestTimings timings;
+        private final long startNanos;
+
+        /**
+         * timings that were current in the request thread before the resource method was invoked
+         */
+        private RequestTimings previous;
+
+        /**
+         * first exception thrown while the request was processed, null if none was
+         */
+        private Throwable exception;
+
+        TimingListener(RequestTimings timings, long startNanos) {
+            this.timings = timings;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void onEvent(RequestEvent event) {
+            switch (event.getType()) {
+                case RESOURCE_METHOD_START:
+                    previous = RequestTimings.enter(timings);
+                    break;
+                case RESOURCE_METHOD_FINISHED:
+                    RequestTimings.exit(previous);
+                    break;
+                case ON_EXCEPTION:
+                    if (exception == null) {
+                        // the failure of a suspended request is wrapped before it's mapped
+                        Throwable thrown = event.getException();
+                        exception = thrown instanceof MappableException && thrown.getCause() != null ? thrown.getCause() : thrown;
+                    }
+                    break;
+                case FINISHED:
+                    ResourceMethod resourceMethod = event.getUriInfo().getMatchedResourceMethod();
+                    if (resourceMethod != null) {
+                        metricsOf(resourceMethod.getInvocable().getHandlingMethod()).record(System.nanoTime() - startNanos, timings, exception);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private class MethodMetrics {
+
+        private final String name;
+        private final Timer latency;
+        private final Timer lockWait;
+        private final Timer dao;
+        private final Timer serialization;
+
+        MethodMetrics(Method method) {
+            this.name = MetricRegistry.name(method.getDeclaringClass(), method.getName());
+            this.latency = metrics.timer(MetricRegistry.name(name, "latency"));
+            this.lockWait = metrics.timer(MetricRegistry.name(name, "lockWait"));
+            this.dao = metrics.timer(MetricRegistry.name(name, "dao"));
+            this.serialization = metrics.timer(MetricRegistry.name(name, "serialization"));
+        }
+
+        /**
+         * The latency is updated last, so the other metrics of a request counted by the latency timer are already recorded
+         */
+        void record(long latencyNanos, RequestTimings timings, Throwable exception) {
+            lockWait.update(timings.getLockWaitNanos(), TimeUnit.NANOSECONDS);
+            dao.update(timings.getDaoNanos(), TimeUnit.NANOSECONDS);
+            serialization.update(timings.getSerializationNanos(), TimeUnit.NANOSECONDS);
+            if (exception != null) {
+                metrics.meter(MetricRegistry.name(name, "exceptions", exception.getClass().getSimpleName())).mark();
+            }
+            latency.update(latencyNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.task.rest.metrics;
+
+/**
+ * Time a request spent in the stages of its processing: waiting for the account locks, in the DAO and in serialization
+ * <p>
+ * The timings of a request are kept as a property of the request and are current in the thread processing it,
+ * {@link com.task.rest.utils.concurrency.OperationExecutor} passes them to the thread running the operation of the request.
+ * The stages are added to the current timings by static methods, nothing is recorded if there are none - a call
+ * made outside of a request, or with the request metrics disabled, costs a thread local lookup.
+ * <p>
+ * A request is processed by one thread at a time and the hand-offs between the threads are ordered
+ * by the executor and the future of the operation, so the timings are not synchronized
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see RequestMetricsListener
+ */
+public final class RequestTimings {
+
+    /**
+     * name of the request property keeping the timings
+     */
+    public static final String PROPERTY = RequestTimings.class.getName();
+
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+
+    private long lockWaitNanos;
+    private long daoNanos;
+    private long serializationNanos;
+
+    /**
+     * @return timings of the request processed by the current thread, null if there's none
+     */
+    public static RequestTimings current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes the timings current in the current thread
+     *
+     * @param timings timings of the request processed by the current thread, may be null
+     * @return the timings that were current before, to be passed to {@link #exit}
+     */
+    public static RequestTimings enter(RequestTimings timings) {
+        RequestTimings previous = CURRENT.get();
+        CURRENT.set(timings);
+        return previous;
+    }
+
+    /**
+     * Makes the timings that were current before {@link #enter} current again
+     */
+    public static void exit(RequestTimings previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public static void addLockWait(long nanos) {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.lockWaitNanos += nanos;
+        }
+    }
+
+    public static void addDao(long nanos) {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.daoNanos += nanos;
+        }
+    }
+
+    void addSerialization(long nanos) {
+        serializationNanos += nanos;
+    }
+
+    /**
+     * @return nanoseconds spent waiting for the account locks
+     */
+    public long getLockWaitNanos() {
+        return lockWaitNanos;
+    }
+
+    /**
+     * @return nanoseconds spent in the DAO calls
+     */
+    public long getDaoNanos() {
+        return daoNanos;
+    }
+
+    /**
+     * @return nanoseconds spent reading the request entity and writing the response entity, except the DAO calls made meanwhile
+     */
+    public long getSerializationNanos() {
+        return serializationNanos;
+    }
+
+}
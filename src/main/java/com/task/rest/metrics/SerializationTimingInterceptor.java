@@ -0,0 +1,54 @@
+package com.task.rest.metrics;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+
+/**
+ * Interceptor adding the time spent reading the request entity and writing the response entity
+ * to the {@link RequestTimings} of the request, whatever the format of the entity is
+ * <p>
+ * A streamed response reads the accounts while it's written, so the timings are current while the entity is written
+ * and the DAO calls made meanwhile are not counted as serialization
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see RequestMetricsListener
+ */
+public class SerializationTimingInterceptor implements ReaderInterceptor, WriterInterceptor {
+
+    @Override
+    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException, WebApplicationException {
+        RequestTimings timings = (RequestTimings) context.getProperty(RequestTimings.PROPERTY);
+        if (timings == null) {
+            return context.proceed();
+        }
+        long start = System.nanoTime();
+        try {
+            return context.proceed();
+        } finally {
+            timings.addSerialization(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        RequestTimings timings = (RequestTimings) context.getProperty(RequestTimings.PROPERTY);
+        if (timings == null) {
+            context.proceed();
+            return;
+        }
+        RequestTimings previous = RequestTimings.enter(timings);
+        long daoNanosBefore = timings.getDaoNanos();
+        long start = System.nanoTime();
+        try {
+            context.proceed();
+        } finally {
+            timings.addSerialization(System.nanoTime() - start - (timings.getDaoNanos() - daoNanosBefore));
+            RequestTimings.exit(previous);
+        }
+    }
+
+}
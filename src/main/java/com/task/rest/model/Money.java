@@ -0,0 +1,335 @@
+package com.task.rest.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.Preconditions;
+import com.task.rest.utils.serialization.MoneyDeserializer;
+import com.task.rest.utils.serialization.MoneySerializer;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Immutable amount of money kept as a long number of units of 10^-{@link #SCALE}
+ * <p>
+ * Amounts with at most {@link #SCALE} fraction digits that fit into a long number of units (about ±92 billion) are added,
+ * subtracted, compared and formatted by long arithmetic, no {@link BigDecimal} is allocated. An overflow or an amount
+ * out of that range falls back to a {@link BigDecimal}, so no amount is ever rounded or truncated.
+ * <p>
+ * The number of fraction digits of the amount it was made of is kept as well, so the amount is formatted
+ * and converted to {@link BigDecimal} with the same scale, the way {@link BigDecimal} keeps it.
+ * Equality is numerical: 1.5 is equal to 1.50
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+@JsonSerialize(using = MoneySerializer.class)
+@JsonDeserialize(using = MoneyDeserializer.class)
+public final class Money extends Number implements Comparable<Money> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * number of fraction digits of a unit
+     */
+    public static final int SCALE = 8;
+
+    /**
+     * maximum length of a formatted amount that fits into long units: sign, 19 digits and the point
+     */
+    public static final int MAX_COMPACT_LENGTH = 21;
+
+    public static final Money ZERO = new Money(0, 0, null);
+
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L};
+
+    /**
+     * maximum number of digits of an unscaled value that surely fits into long
+     */
+    private static final int MAX_COMPACT_PRECISION = 18;
+
+    /**
+     * amount in units of 10^-SCALE, valid if decimal is null
+     */
+    private final long units;
+
+    /**
+     * number of fraction digits the amount is formatted with, valid if decimal is null
+     */
+    private final int scale;
+
+    /**
+     * amount that doesn't fit into long units, null otherwise
+     */
+    private final BigDecimal decimal;
+
+    private Money(long units, int scale, BigDecimal decimal) {
+        this.units = units;
+        this.scale = scale;
+        this.decimal = decimal;
+    }
+
+    /**
+     * @param units amount in units of 10^-{@link #SCALE}
+     * @return amount formatted with {@link #SCALE} fraction digits
+     */
+    public static Money ofUnits(long units) {
+        return new Money(units, SCALE, null);
+    }
+
+    /**
+     * @return amount of unscaled * 10^-scale, the same way {@link BigDecimal#valueOf(long, int)} makes it
+     */
+    public static Money valueOf(long unscaled, int scale) {
+        if (scale >= 0 && scale <= SCALE && unscaled != Long.MIN_VALUE) {
+            long factor = POWERS_OF_TEN[SCALE - scale];
+            if (Math.abs(unscaled) <= Long.MAX_VALUE / factor) {
+                return new Money(unscaled * factor, scale, null);
+            }
+        }
+        return new Money(0, 0, BigDecimal.valueOf(unscaled, scale));
+    }
+
+    /**
+     * @param value amount of money
+     * @return the same amount with the same scale
+     * @throws IllegalArgumentException if value is null
+     */
+    public static Money of(BigDecimal value) {
+        Preconditions.checkArgument(value != null, "value is null");
+        int valueScale = value.scale();
+        if (valueScale >= 0 && valueScale <= SCALE && value.precision() <= MAX_COMPACT_PRECISION) {
+            long unscaled = value.scaleByPowerOfTen(valueScale).longValue();
+            long factor = POWERS_OF_TEN[SCALE - valueScale];
+            if (Math.abs(unscaled) <= Long.MAX_VALUE / factor) {
+                return new Money(unscaled * factor, valueScale, null);
+            }
+        }
+        return new Money(0, 0, value);
+    }
+
+    /**
+     * Parses the amount the same way {@link BigDecimal#BigDecimal(char[], int, int)} does, without allocating it
+     * for a plain amount with at most {@link #SCALE} fraction digits
+     *
+     * @return the parsed amount with the scale of its text
+     * @throws NumberFormatException if the text is not a valid representation of a number
+     */
+    public static Money parse(char[] chars, int offset, int length) {
+        int end = offset + length;
+        int index = offset;
+        boolean negative = false;
+        if (index < end && (chars[index] == '-' || chars[index] == '+')) {
+            negative = chars[index] == '-';
+            index++;
+        }
+        long unscaled = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; index < end; index++) {
+            char c = chars[index];
+            if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || unscaled > (Long.MAX_VALUE - (c - '0')) / 10) {
+                // an exponent, a malformed number or too many digits
+                return of(new BigDecimal(chars, offset, length));
+            }
+            unscaled = unscaled * 10 + (c - '0');
+            digits++;
+            if (fractionDigits >= 0) {
+                fractionDigits++;
+            }
+        }
+        int valueScale = Math.max(fractionDigits, 0);
+        if (digits == 0 || valueScale > SCALE || unscaled > Long.MAX_VALUE / POWERS_OF_TEN[SCALE - valueScale]) {
+            return of(new BigDecimal(chars, offset, length));
+        }
+        long units = unscaled * POWERS_OF_TEN[SCALE - valueScale];
+        return new Money(negative ? -units : units, valueScale, null);
+    }
+
+    /**
+     * @return whether the amount is kept as long units
+     */
+    public boolean isCompact() {
+        return decimal == null;
+    }
+
+    /**
+     * @return amount in units of 10^-{@link #SCALE}
+     * @throws IllegalStateException if the amount doesn't fit into long units
+     */
+    public long getUnits() {
+        Preconditions.checkState(decimal == null, "amount %s doesn't fit into long units", decimal);
+        return units;
+    }
+
+    /**
+     * @return number of the fraction digits of the amount
+     */
+    public int getScale() {
+        return decimal == null ? scale : decimal.scale();
+    }
+
+    /**
+     * @return the amount multiplied by 10^{@link #getScale()}
+     * @throws IllegalStateException if the amount doesn't fit into long units
+     */
+    public long getUnscaled() {
+        Preconditions.checkState(decimal == null, "amount %s doesn't fit into long units", decimal);
+        return units / POWERS_OF_TEN[SCALE - scale];
+    }
+
+    /**
+     * @return sum of the amounts with the larger of their scales
+     * @throws IllegalArgumentException if other is null
+     */
+    public Money add(Money other) {
+        Preconditions.checkArgument(other != null, "other is null");
+        if (decimal == null && other.decimal == null) {
+            long sum = units + other.units;
+            if (((units ^ sum) & (other.units ^ sum)) >= 0) {
+                return new Money(sum, Math.max(scale, other.scale), null);
+            }
+        }
+        return of(toBigDecimal().add(other.toBigDecimal()));
+    }
+
+    /**
+     * @return difference of the amounts with the larger of their scales
+     * @throws IllegalArgumentException if other is null
+     */
+    public Money subtract(Money other) {
+        Preconditions.checkArgument(other != null, "other is null");
+        if (decimal == null && other.decimal == null) {
+            long difference = units - other.units;
+            if (((units ^ other.units) & (units ^ difference)) >= 0) {
+                return new Money(difference, Math.max(scale, other.scale), null);
+            }
+        }
+        return of(toBigDecimal().subtract(other.toBigDecimal()));
+    }
+
+    public Money negate() {
+        if (decimal == null && units != Long.MIN_VALUE) {
+            return new Money(-units, scale, null);
+        }
+        return of(toBigDecimal().negate());
+    }
+
+    public int signum() {
+        return decimal == null ? Long.signum(units) : decimal.signum();
+    }
+
+    /**
+     * @return the amount with exactly {@link #SCALE} fraction digits, extra ones are rounded half up the way the database rounds them
+     */
+    public Money roundToScale() {
+        if (decimal == null) {
+            return scale == SCALE ? this : new Money(units, SCALE, null);
+        }
+        return of(decimal.setScale(SCALE, RoundingMode.HALF_UP));
+    }
+
+    /**
+     * @return the amount with the same scale
+     */
+    public BigDecimal toBigDecimal() {
+        return decimal == null ? BigDecimal.valueOf(getUnscaled(), scale) : decimal;
+    }
+
+    /**
+     * Writes the amount the same way {@link BigDecimal#toPlainString()} does
+     *
+     * @param buffer at least {@link #MAX_COMPACT_LENGTH} characters
+     * @return number of the characters written from the start of the buffer
+     * @throws IllegalStateException if the amount doesn't fit into long units
+     */
+    public int format(char[] buffer) {
+        long unscaled = getUnscaled();
+        // digits are taken from a non-positive number, so Long.MIN_VALUE needs no special case
+        long rest = unscaled < 0 ? unscaled : -unscaled;
+        int position = buffer.length;
+        int digits = 0;
+        do {
+            buffer[--position] = (char) ('0' - rest % 10);
+            rest /= 10;
+            digits++;
+            if (digits == scale) {
+                buffer[--position] = '.';
+            }
+        } while (rest != 0 || digits <= scale);
+        if (unscaled < 0) {
+            buffer[--position] = '-';
+        }
+        int length = buffer.length - position;
+        System.arraycopy(buffer, position, buffer, 0, length);
+        return length;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        if (decimal == null && other.decimal == null) {
+            return Long.compare(units, other.units);
+        }
+        return toBigDecimal().compareTo(other.toBigDecimal());
+    }
+
+    @Override
+    public int intValue() {
+        return (int) longValue();
+    }
+
+    @Override
+    public long longValue() {
+        return decimal == null ? units / POWERS_OF_TEN[SCALE] : decimal.longValue();
+    }
+
+    @Override
+    public float floatValue() {
+        return (float) doubleValue();
+    }
+
+    @Override
+    public double doubleValue() {
+        return decimal == null ? (double) units / POWERS_OF_TEN[SCALE] : decimal.doubleValue();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Money money = (Money) o;
+        return decimal == null && money.decimal == null ? units == money.units : compareTo(money) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        if (decimal == null) {
+            return Long.hashCode(units);
+        }
+        // the same hash as the one of an equal compact amount, if there may be one
+        BigDecimal stripped = decimal.stripTrailingZeros();
+        if (stripped.scale() <= SCALE) {
+            Money compact = of(stripped.scale() < 0 ? stripped.setScale(0) : stripped);
+            if (compact.decimal == null) {
+                return Long.hashCode(compact.units);
+            }
+        }
+        return stripped.hashCode();
+    }
+
+    /**
+     * @return the amount the same way {@link BigDecimal#toPlainString()} does
+     */
+    @Override
+    public String toString() {
+        if (decimal != null) {
+            return decimal.toPlainString();
+        }
+        char[] buffer = new char[MAX_COMPACT_LENGTH];
+        return new String(buffer, 0, format(buffer));
+    }
+
+}
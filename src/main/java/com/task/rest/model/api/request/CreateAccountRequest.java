@@ -1,6 +1,8 @@
 package com.task.rest.model.api.request;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.task.rest.model.Money;
 
 import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Digits;
@@ -17,18 +19,26 @@ import static com.task.rest.model.dbo.Account.SCALE;
 public class CreateAccountRequest {
     @DecimalMin("0.0")
     @Digits(integer = PRECISION, fraction = SCALE)
-    private BigDecimal amount;
+    private Money amount;
 
     public CreateAccountRequest() {
     }
 
     @JsonProperty
     public BigDecimal getAmount() {
+        return amount == null ? null : amount.toBigDecimal();
+    }
+
+    /**
+     * @return the amount as it was read, {@link #getAmount()} allocates a {@link BigDecimal} on every call
+     */
+    @JsonIgnore
+    public Money getMoney() {
         return amount;
     }
 
     public CreateAccountRequest(BigDecimal amount) {
-        this.amount = amount;
+        this.amount = amount == null ? null : Money.of(amount);
     }
 
 }
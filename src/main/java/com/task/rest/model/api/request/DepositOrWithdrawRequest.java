@@ -1,6 +1,8 @@
 package com.task.rest.model.api.request;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.task.rest.model.Money;
 
 import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Digits;
@@ -22,7 +24,7 @@ public class DepositOrWithdrawRequest {
     @NotNull
     @DecimalMin(value = "0.0", inclusive = false)
     @Digits(integer = PRECISION, fraction = SCALE)
-    private BigDecimal amount;
+    private Money amount;
 
     @JsonProperty
     public Long getId() {
@@ -31,6 +33,14 @@ public class DepositOrWithdrawRequest {
 
     @JsonProperty
     public BigDecimal getAmount() {
+        return amount == null ? null : amount.toBigDecimal();
+    }
+
+    /**
+     * @return the amount as it was read, {@link #getAmount()} allocates a {@link BigDecimal} on every call
+     */
+    @JsonIgnore
+    public Money getMoney() {
         return amount;
     }
 
@@ -38,6 +48,11 @@ public class DepositOrWithdrawRequest {
     }
 
     public DepositOrWithdrawRequest(Long id, BigDecimal amount) {
+        this.id = id;
+        this.amount = amount == null ? null : Money.of(amount);
+    }
+
+    public DepositOrWithdrawRequest(Long id, Money amount) {
         this.id = id;
         this.amount = amount;
     }
@@ -0,0 +1,59 @@
+package com.task.rest.model.api.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.task.rest.model.Money;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.constraints.Digits;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+
+import static com.task.rest.model.dbo.Account.PRECISION;
+import static com.task.rest.model.dbo.Account.SCALE;
+
+/**
+ * Represents a leg of a posting - a debit (negative amount) or a credit (positive amount) of an account
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class Leg {
+    @NotNull
+    private Long accountId;
+
+    @NotNull
+    @Digits(integer = PRECISION, fraction = SCALE)
+    private Money amount;
+
+    @JsonProperty
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    @JsonProperty
+    public BigDecimal getAmount() {
+        return amount == null ? null : amount.toBigDecimal();
+    }
+
+    /**
+     * @return the amount as it was read, {@link #getAmount()} allocates a {@link BigDecimal} on every call
+     */
+    @JsonIgnore
+    public Money getMoney() {
+        return amount;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "amount may not be zero")
+    public boolean isNonZero() {
+        return amount == null || amount.signum() != 0;
+    }
+
+    public Leg() {
+    }
+
+    public Leg(Long accountId, BigDecimal amount) {
+        this.accountId = accountId;
+        this.amount = amount == null ? null : Money.of(amount);
+    }
+}
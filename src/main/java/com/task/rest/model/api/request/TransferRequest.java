@@ -1,6 +1,8 @@
 package com.task.rest.model.api.request;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.task.rest.model.Money;
 
 import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Digits;
@@ -25,7 +27,7 @@ public class TransferRequest {
     @NotNull
     @DecimalMin(value = "0.0", inclusive = false)
     @Digits(integer = PRECISION, fraction = SCALE)
-    private BigDecimal amount;
+    private Money amount;
 
     @JsonProperty
     public Long getFromId() {
@@ -39,6 +41,14 @@ public class TransferRequest {
 
     @JsonProperty
     public BigDecimal getAmount() {
+        return amount == null ? null : amount.toBigDecimal();
+    }
+
+    /**
+     * @return the amount as it was read, {@link #getAmount()} allocates a {@link BigDecimal} on every call
+     */
+    @JsonIgnore
+    public Money getMoney() {
         return amount;
     }
 
@@ -46,6 +56,12 @@ public class TransferRequest {
     }
 
     public TransferRequest(Long fromId, Long toId, BigDecimal amount) {
+        this.fromId = fromId;
+        this.toId = toId;
+        this.amount = amount == null ? null : Money.of(amount);
+    }
+
+    public TransferRequest(Long fromId, Long toId, Money amount) {
         this.fromId = fromId;
         this.toId = toId;
         this.amount = amount;
@@ -0,0 +1,33 @@
+package com.task.rest.model.api.response;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.task.rest.model.dbo.Account;
+
+import java.util.List;
+
+/**
+ * Represents a response to a client request for an operation applied to several accounts at once
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class BatchAccountResponse {
+    private final List<Account> accounts;
+
+    private final OperationStatus status;
+
+    @JsonCreator
+    public BatchAccountResponse(@JsonProperty("accounts") List<Account> accounts, @JsonProperty("status") OperationStatus status) {
+        this.accounts = accounts;
+        this.status = status;
+    }
+
+    public List<Account> getAccounts() {
+        return accounts;
+    }
+
+    public OperationStatus getStatus() {
+        return status;
+    }
+
+}
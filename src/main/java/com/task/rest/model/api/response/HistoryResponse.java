@@ -0,0 +1,37 @@
+package com.task.rest.model.api.response;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.task.rest.model.dbo.LedgerEntry;
+
+import java.util.List;
+
+/**
+ * Represents a response for a client request to list a page of the recorded balance changes of an account
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class HistoryResponse {
+    private final List<LedgerEntry> entries;
+
+    /**
+     * sequence number to request the next page after this one, null if there are no more entries
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final Long nextAfterSeq;
+
+    @JsonCreator
+    public HistoryResponse(@JsonProperty("entries") List<LedgerEntry> entries, @JsonProperty("nextAfterSeq") Long nextAfterSeq) {
+        this.entries = entries;
+        this.nextAfterSeq = nextAfterSeq;
+    }
+
+    public List<LedgerEntry> getEntries() {
+        return entries;
+    }
+
+    public Long getNextAfterSeq() {
+        return nextAfterSeq;
+    }
+}
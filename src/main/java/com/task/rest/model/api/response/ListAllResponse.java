@@ -1,25 +1,41 @@
 package com.task.rest.model.api.response;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.task.rest.model.dbo.Account;
 
 import java.util.List;
 
 /**
- * Represents a response for a client request to list all accounts
+ * Represents a response for a client request to list all accounts or a page of them
  *
  * @author Alexander Kotov (kotov.alex.22@gmail.com)
  */
 public class ListAllResponse {
     private final List<Account> accounts;
 
+    /**
+     * id to request the next page after this one, null if there are no more accounts
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final Long nextAfterId;
+
+    public ListAllResponse(List<Account> accounts) {
+        this(accounts, null);
+    }
+
     @JsonCreator
-    public ListAllResponse(@JsonProperty("accounts") List<Account> accounts) {
+    public ListAllResponse(@JsonProperty("accounts") List<Account> accounts, @JsonProperty("nextAfterId") Long nextAfterId) {
         this.accounts = accounts;
+        this.nextAfterId = nextAfterId;
     }
 
     public List<Account> getAccounts() {
         return accounts;
     }
+
+    public Long getNextAfterId() {
+        return nextAfterId;
+    }
 }
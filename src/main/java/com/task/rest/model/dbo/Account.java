@@ -1,18 +1,23 @@
 package com.task.rest.model.dbo;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.google.common.base.Preconditions;
 import com.task.rest.exceptions.InsufficientFundsException;
-import com.task.rest.utils.serialization.BigDecimalSerializer;
+import com.task.rest.model.Money;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
+import javax.persistence.Access;
+import javax.persistence.AccessType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
-import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.Digits;
 import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
@@ -20,30 +25,46 @@ import java.util.Objects;
 
 /**
  * This class represents accounts - domain objects for the money transfer service
+ * <p>
+ * The balance is kept as {@link Money}, so deposits and withdrawals of amounts with at most {@link #SCALE} fraction digits
+ * are long arithmetic. It is stored to and loaded from the database as the {@link BigDecimal} amount
+ * <p>
+ * Accounts are kept in the second-level cache by the read-write strategy when it's enabled,
+ * see {@link com.task.rest.persistence.cache.LocalRegionFactory}
  *
  * @author Alexander Kotov (kotov.alex.22@gmail.com)
  */
 @Entity
 @Table(name = "ACCOUNT")
+@Access(AccessType.FIELD)
+@JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE, isGetterVisibility = JsonAutoDetect.Visibility.NONE,
+        setterVisibility = JsonAutoDetect.Visibility.NONE)
 public class Account {
 
     public static final int PRECISION = 37;
-    public static final int SCALE = 8;
+    public static final int SCALE = Money.SCALE;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_generator")
-    @SequenceGenerator(name = "account_generator", sequenceName = "account_seq", allocationSize = 1)
+    @GeneratedValue(generator = "account_generator")
+    @GenericGenerator(name = "account_generator", strategy = "com.task.rest.persistence.AccountIdGenerator",
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "account_seq"))
     @Column(name = "id", updatable = false, nullable = false)
     @JsonProperty
     private Long id;
 
-    @Column(name = "amount", nullable = false, precision = PRECISION, scale = SCALE)
-    @NotNull
-    @JsonProperty
-    @Digits(integer = PRECISION - SCALE, fraction = SCALE)
-    @JsonSerialize(using = BigDecimalSerializer.class)
-    private BigDecimal amount;
+    /**
+     * not a persistent field, the balance is stored through {@link #getAmount()} and {@link #setAmount}
+     */
+    @JsonProperty("amount")
+    private transient Money balance;
 
+    /**
+     * incremented on every update, used for optimistic concurrency control
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    @JsonIgnore
+    private long version;
 
     public Long getId() {
         return id;
@@ -54,15 +75,32 @@ public class Account {
         return this;
     }
 
+    @Access(AccessType.PROPERTY)
+    @Column(name = "amount", nullable = false, precision = PRECISION, scale = SCALE)
+    @NotNull
+    @Digits(integer = PRECISION - SCALE, fraction = SCALE)
     public BigDecimal getAmount() {
-        return amount;
+        return balance == null ? null : balance.toBigDecimal();
     }
 
     public Account setAmount(BigDecimal amount) {
-        this.amount = amount;
+        this.balance = amount == null ? null : Money.of(amount);
+        return this;
+    }
+
+    public Money getBalance() {
+        return balance;
+    }
+
+    public Account setBalance(Money balance) {
+        this.balance = balance;
         return this;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     /**
      * Updates amount by adding amountToDeposit to the current value
      *
@@ -70,14 +108,21 @@ public class Account {
      * @return updated {@link Account} object
      * @throws IllegalArgumentException when amountToDeposit is null or non-positive
      */
-    public Account deposit(BigDecimal amountToDeposit) {
+    public Account deposit(Money amountToDeposit) {
         Preconditions.checkArgument(amountToDeposit != null, "amountToDeposit can't be null");
         Preconditions.checkArgument(amountToDeposit.signum() > 0, "amountToDeposit can't be negative or zero");
 
-        amount = amount.add(amountToDeposit);
+        balance = balance.add(amountToDeposit);
         return this;
     }
 
+    /**
+     * Adapter of {@link #deposit(Money)} for a {@link BigDecimal} amount
+     */
+    public Account deposit(BigDecimal amountToDeposit) {
+        return deposit(amountToDeposit == null ? null : Money.of(amountToDeposit));
+    }
+
     /**
      * Updates amount by subtracting amountToDeposit from to the current value
      *
@@ -87,23 +132,38 @@ public class Account {
      * @throws InsufficientFundsException when current amount is less than amountToWithdraw
      * @see InsufficientFundsException
      */
-    public Account withdraw(BigDecimal amountToWithdraw) {
+    public Account withdraw(Money amountToWithdraw) {
         Preconditions.checkArgument(amountToWithdraw != null, "amountToWithdraw can't be null");
         Preconditions.checkArgument(amountToWithdraw.signum() > 0, "amountToWithdraw can't be negative or zero");
-        if (amount.compareTo(amountToWithdraw) < 0) {
-            throw new InsufficientFundsException(amount, amountToWithdraw, id);
+        if (balance.compareTo(amountToWithdraw) < 0) {
+            throw new InsufficientFundsException(balance.toBigDecimal(), amountToWithdraw.toBigDecimal(), id);
         }
-        amount = amount.subtract(amountToWithdraw);
+        balance = balance.subtract(amountToWithdraw);
         return this;
     }
 
+    /**
+     * Adapter of {@link #withdraw(Money)} for a {@link BigDecimal} amount
+     */
+    public Account withdraw(BigDecimal amountToWithdraw) {
+        return withdraw(amountToWithdraw == null ? null : Money.of(amountToWithdraw));
+    }
+
     public Account(Long id, BigDecimal amount) {
         this.id = id;
-        this.amount = amount;
+        setAmount(amount);
+    }
+
+    /**
+     * State of a stored account read by a projection query, the object is not attached to any session
+     */
+    public Account(Long id, BigDecimal amount, long version) {
+        this(id, amount);
+        this.version = version;
     }
 
     public Account(BigDecimal amount) {
-        this.amount = amount;
+        setAmount(amount);
     }
 
     public Account() {
@@ -114,13 +174,12 @@ public class Account {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Account account = (Account) o;
-        return Objects.equals(id, account.id) &&
-                ((amount == account.amount) || (amount != null && account.amount != null && amount.compareTo(account.amount) == 0));
+        return Objects.equals(id, account.id) && Objects.equals(balance, account.balance);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, amount);
+        return Objects.hash(id, balance);
     }
 
 }
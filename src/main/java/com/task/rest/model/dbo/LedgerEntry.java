@@ -0,0 +1,130 @@
+package com.task.rest.model.dbo;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.task.rest.utils.serialization.BigDecimalSerializer;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * A committed change of the balance of an account
+ * <p>
+ * Entries are numbered by the database in the order they are written, the entries of an account are written
+ * in the order its changes were committed. Entries are written once and read in ranges, so they are not kept in the second-level cache
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+@Entity
+@Table(name = "LEDGER_ENTRY", indexes = @Index(name = "LEDGER_ENTRY_ACCOUNT_SEQ", columnList = "account_id, seq"))
+@Cacheable(false)
+public class LedgerEntry {
+
+    public static final String TABLE_NAME = "LEDGER_ENTRY";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "seq", updatable = false, nullable = false)
+    @JsonProperty
+    private Long seq;
+
+    @Column(name = "account_id", updatable = false, nullable = false)
+    @JsonProperty
+    private Long accountId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operation", updatable = false, nullable = false, length = 16)
+    @JsonProperty
+    private LedgerOperation operation;
+
+    /**
+     * change of the balance, negative if money is taken from the account
+     */
+    @Column(name = "amount", updatable = false, nullable = false, precision = Account.PRECISION, scale = Account.SCALE)
+    @JsonProperty
+    @JsonSerialize(using = BigDecimalSerializer.class)
+    private BigDecimal amount;
+
+    /**
+     * balance of the account after the change
+     */
+    @Column(name = "balance", updatable = false, nullable = false, precision = Account.PRECISION, scale = Account.SCALE)
+    @JsonProperty
+    @JsonSerialize(using = BigDecimalSerializer.class)
+    private BigDecimal balance;
+
+    /**
+     * time the change was committed at, in milliseconds since the epoch
+     */
+    @Column(name = "created_at", updatable = false, nullable = false)
+    @JsonProperty
+    private long createdAt;
+
+    public LedgerEntry() {
+    }
+
+    @JsonCreator
+    public LedgerEntry(@JsonProperty("seq") Long seq, @JsonProperty("accountId") Long accountId,
+                       @JsonProperty("operation") LedgerOperation operation, @JsonProperty("amount") BigDecimal amount,
+                       @JsonProperty("balance") BigDecimal balance, @JsonProperty("createdAt") long createdAt) {
+        this.seq = seq;
+        this.accountId = accountId;
+        this.operation = operation;
+        this.amount = amount;
+        this.balance = balance;
+        this.createdAt = createdAt;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public LedgerOperation getOperation() {
+        return operation;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LedgerEntry that = (LedgerEntry) o;
+        return createdAt == that.createdAt &&
+                Objects.equals(seq, that.seq) &&
+                Objects.equals(accountId, that.accountId) &&
+                operation == that.operation &&
+                amount.compareTo(that.amount) == 0 &&
+                balance.compareTo(that.balance) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(seq, accountId, operation, createdAt);
+    }
+}
@@ -0,0 +1,15 @@
+package com.task.rest.model.dbo;
+
+/**
+ * Operations changing the balance of an account, recorded by the {@link LedgerEntry}
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public enum LedgerOperation {
+    CREATE,
+    WITHDRAW,
+    DEPOSIT,
+    TRANSFER,
+    POSTING,
+    DELETE
+}
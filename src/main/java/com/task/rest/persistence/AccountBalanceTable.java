@@ -0,0 +1,481 @@
+package com.task.rest.persistence;
+
+import com.google.common.base.Preconditions;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Balances and versions of the accounts by their ids, kept in primitive arrays
+ * <p>
+ * The table is split into a fixed power-of-two number of segments, an id is mapped to its segment by a mixed hash.
+ * Every segment is an open-addressing hash table with linear probing (ids, balances and versions in parallel long arrays,
+ * 0 marks an empty slot) guarded by a lock of its own, so nothing is boxed and operations on different segments do not contend.
+ * Balances are stored as numbers of the smallest units (see {@link #toUnits}), versions are incremented on every modification
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class AccountBalanceTable {
+
+    private static final int MAX_SEGMENTS = 1 << 16;
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    /**
+     * 2^64 divided by the golden ratio - spreads sequential ids over the segments
+     */
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final Segment[] segments;
+    private final int shift;
+
+    /**
+     * Balance and version of an account at the moment it was read
+     */
+    public static final class Row {
+        private final long units;
+        private final long version;
+
+        Row(long units, long version) {
+            this.units = units;
+            this.version = version;
+        }
+
+        public long getUnits() {
+            return units;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * Modification of an account applied by {@link #apply} only if the account still has the expected version
+     */
+    public static final class Change {
+        private final long id;
+        private final long expectedVersion;
+        private final long units;
+        private final boolean delete;
+
+        private Change(long id, long expectedVersion, long units, boolean delete) {
+            this.id = id;
+            this.expectedVersion = expectedVersion;
+            this.units = units;
+            this.delete = delete;
+        }
+
+        public static Change update(long id, long expectedVersion, long units) {
+            Preconditions.checkArgument(units >= 0, "balance is negative");
+            return new Change(id, expectedVersion, units, false);
+        }
+
+        public static Change delete(long id, long expectedVersion) {
+            return new Change(id, expectedVersion, 0, true);
+        }
+    }
+
+    /**
+     * @param segments number of segments, rounded up to the nearest power of two
+     * @throws IllegalArgumentException if segments is non-positive or greater than 2^16
+     */
+    public AccountBalanceTable(int segments) {
+        Preconditions.checkArgument(segments > 0, "number of segments is non-positive");
+        Preconditions.checkArgument(segments <= MAX_SEGMENTS, "number of segments is greater than %s", MAX_SEGMENTS);
+        int size = segments == 1 ? 1 : Integer.highestOneBit(segments - 1) << 1;
+        this.segments = new Segment[size];
+        for (int i = 0; i < size; i++) {
+            this.segments[i] = new Segment();
+        }
+        this.shift = Long.SIZE - Integer.numberOfTrailingZeros(size);
+    }
+
+    /**
+     * Converts the amount to the number of the smallest units ({@link com.task.rest.model.dbo.Account#SCALE} fraction digits),
+     * extra fraction digits are rounded half up the same way the database rounds them
+     *
+     * @param amount amount of money
+     * @param scale  number of fraction digits of a unit
+     * @return number of units
+     * @throws IllegalArgumentException if amount is null or it doesn't fit into a long number of units
+     */
+    public static long toUnits(BigDecimal amount, int scale) {
+        Preconditions.checkArgument(amount != null, "amount is null");
+        try {
+            return amount.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("amount " + amount.toPlainString() + " is out of the range of the in-memory storage", e);
+        }
+    }
+
+    /**
+     * @param id account id
+     * @return current balance and version of the account, null if there is no account with the id
+     */
+    public Row get(long id) {
+        Segment segment = segmentOf(id);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(id);
+            return slot < 0 ? null : new Row(segment.units[slot], segment.versions[slot]);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * @param id account id
+     * @return true if there is an account with the id
+     */
+    public boolean contains(long id) {
+        Segment segment = segmentOf(id);
+        segment.lock.lock();
+        try {
+            return segment.find(id) >= 0;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a new account with version 0
+     *
+     * @param id    positive account id
+     * @param units balance of the account
+     * @return false if there already is an account with the id
+     * @throws IllegalArgumentException if id is non-positive or units is negative
+     */
+    public boolean insert(long id, long units) {
+        Preconditions.checkArgument(id > 0, "id is non-positive");
+        Preconditions.checkArgument(units >= 0, "balance is negative");
+        Segment segment = segmentOf(id);
+        segment.lock.lock();
+        try {
+            if (segment.find(id) >= 0) {
+                return false;
+            }
+            segment.insert(id, units, 0);
+            return true;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * @param id account id
+     * @return false if there is no account with the id
+     */
+    public boolean remove(long id) {
+        Segment segment = segmentOf(id);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(id);
+            if (slot < 0) {
+                return false;
+            }
+            segment.removeAt(slot);
+            return true;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Changes the balance of the account by the signed number of units without checking that the balance stays non-negative,
+     * used to undo the changes of failed transactions
+     *
+     * @param id    account id
+     * @param units signed number of units
+     * @return false if there is no account with the id
+     * @throws ArithmeticException if the balance overflows
+     */
+    public boolean adjust(long id, long units) {
+        Segment segment = segmentOf(id);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(id);
+            if (slot < 0) {
+                return false;
+            }
+            segment.units[slot] = Math.addExact(segment.units[slot], units);
+            segment.versions[slot]++;
+            return true;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Changes the balance of the account by the signed number of units, the account is added with this balance if it doesn't exist.
+     * Used to restore the balances from the deltas, which may come in any order
+     *
+     * @param id    positive account id
+     * @param units signed number of units
+     * @throws IllegalArgumentException if id is non-positive
+     * @throws ArithmeticException      if the balance overflows
+     */
+    public void merge(long id, long units) {
+        Preconditions.checkArgument(id > 0, "id is non-positive");
+        Segment segment = segmentOf(id);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(id);
+            if (slot < 0) {
+                segment.insert(id, units, 0);
+            } else {
+                segment.units[slot] = Math.addExact(segment.units[slot], units);
+                segment.versions[slot]++;
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds units to the balance of the account
+     *
+     * @param id    account id
+     * @param units non-negative number of units
+     * @return false if there is no account with the id
+     * @throws ArithmeticException if the balance overflows
+     */
+    public boolean add(long id, long units) {
+        Preconditions.checkArgument(units >= 0, "units is negative");
+        Segment segment = segmentOf(id);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(id);
+            if (slot < 0) {
+                return false;
+            }
+            segment.units[slot] = Math.addExact(segment.units[slot], units);
+            segment.versions[slot]++;
+            return true;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Subtracts units from the balance of the account if the balance is not less than them
+     *
+     * @param id    account id
+     * @param units non-negative number of units
+     * @return false if there is no account with the id or its balance is less than units
+     */
+    public boolean subtract(long id, long units) {
+        Preconditions.checkArgument(units >= 0, "units is negative");
+        Segment segment = segmentOf(id);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(id);
+            if (slot < 0 || segment.units[slot] < units) {
+                return false;
+            }
+            segment.units[slot] -= units;
+            segment.versions[slot]++;
+            return true;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Applies all the changes atomically: the segments of the changed accounts are locked in their order,
+     * then either all the changes are applied or none of them if any account doesn't exist or its version differs from the expected one
+     *
+     * @param changes changes of distinct accounts
+     * @return false if the changes were not applied because of a conflict
+     */
+    public boolean apply(List<Change> changes) {
+        Preconditions.checkArgument(changes != null, "changes is null");
+        int[] indexes = new int[changes.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = indexOf(changes.get(i).id);
+        }
+        int[] lockOrder = Arrays.stream(indexes).distinct().sorted().toArray();
+
+        int locked = 0;
+        try {
+            for (int index : lockOrder) {
+                segments[index].lock.lock();
+                locked++;
+            }
+            for (int i = 0; i < indexes.length; i++) {
+                Change change = changes.get(i);
+                int slot = segments[indexes[i]].find(change.id);
+                if (slot < 0 || segments[indexes[i]].versions[slot] != change.expectedVersion) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < indexes.length; i++) {
+                Change change = changes.get(i);
+                Segment segment = segments[indexes[i]];
+                int slot = segment.find(change.id);
+                if (change.delete) {
+                    segment.removeAt(slot);
+                } else {
+                    segment.units[slot] = change.units;
+                    segment.versions[slot]++;
+                }
+            }
+            return true;
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                segments[lockOrder[i]].lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return number of accounts in the table
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Copies the ids and the balances of all the accounts. The segments are copied one by one,
+     * so the copy is consistent only if nothing is modified meanwhile
+     *
+     * @return ids and balances in pairs, every id is followed by the balance of its account, in no particular order
+     */
+    public long[] rows() {
+        long[] rows = new long[0];
+        int length = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                if (rows.length < length + segment.size * 2) {
+                    rows = Arrays.copyOf(rows, Math.max(rows.length * 2, length + segment.size * 2));
+                }
+                for (int slot = 0; slot < segment.ids.length; slot++) {
+                    if (segment.ids[slot] != 0) {
+                        rows[length++] = segment.ids[slot];
+                        rows[length++] = segment.units[slot];
+                    }
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return length == rows.length ? rows : Arrays.copyOf(rows, length);
+    }
+
+    /**
+     * @return number of segments of the table
+     */
+    public int segments() {
+        return segments.length;
+    }
+
+    private Segment segmentOf(long id) {
+        return segments[indexOf(id)];
+    }
+
+    private int indexOf(long id) {
+        // the highest bits of the product are the best mixed ones (Fibonacci hashing)
+        return segments.length == 1 ? 0 : (int) ((id * HASH_MULTIPLIER) >>> shift);
+    }
+
+    /**
+     * Open-addressing hash table of a segment, accessed under its lock only
+     */
+    private static final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private long[] ids = new long[INITIAL_SEGMENT_CAPACITY];
+        private long[] units = new long[INITIAL_SEGMENT_CAPACITY];
+        private long[] versions = new long[INITIAL_SEGMENT_CAPACITY];
+        private int size;
+
+        private int find(long id) {
+            int mask = ids.length - 1;
+            for (int slot = slotOf(id, mask); ; slot = (slot + 1) & mask) {
+                if (ids[slot] == id) {
+                    return slot;
+                }
+                if (ids[slot] == 0) {
+                    return -1;
+                }
+            }
+        }
+
+        private void insert(long id, long balance, long version) {
+            // the load factor is kept not greater than 1/2, so probe sequences stay short
+            if ((size + 1) * 2 > ids.length) {
+                resize(ids.length * 2);
+            }
+            int mask = ids.length - 1;
+            int slot = slotOf(id, mask);
+            while (ids[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            ids[slot] = id;
+            units[slot] = balance;
+            versions[slot] = version;
+            size++;
+        }
+
+        /**
+         * Removes the entry by shifting the following entries of the probe sequence back, so no tombstones are left
+         */
+        private void removeAt(int slot) {
+            int mask = ids.length - 1;
+            int free = slot;
+            for (int next = (free + 1) & mask; ids[next] != 0; next = (next + 1) & mask) {
+                int home = slotOf(ids[next], mask);
+                // the entry may be moved to the free slot only if the free slot is cyclically between its home slot and itself
+                boolean movable = free <= next ? (home <= free || home > next) : (home <= free && home > next);
+                if (movable) {
+                    ids[free] = ids[next];
+                    units[free] = units[next];
+                    versions[free] = versions[next];
+                    free = next;
+                }
+            }
+            ids[free] = 0;
+            units[free] = 0;
+            versions[free] = 0;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldIds = ids;
+            long[] oldUnits = units;
+            long[] oldVersions = versions;
+            ids = new long[capacity];
+            units = new long[capacity];
+            versions = new long[capacity];
+            size = 0;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != 0) {
+                    insert(oldIds[i], oldUnits[i], oldVersions[i]);
+                }
+            }
+        }
+
+        private static int slotOf(long id, int mask) {
+            // murmur3 finalizer, independent of the bits the segment is chosen by
+            long hash = id;
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return (int) hash & mask;
+        }
+    }
+
+}
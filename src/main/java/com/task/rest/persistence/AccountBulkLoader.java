@@ -0,0 +1,111 @@
+package com.task.rest.persistence;
+
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import com.task.rest.model.dbo.Account;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Consumer;
+
+/**
+ * Inserts accounts with their ids into the empty account table by JDBC batches, bypassing the persistence context
+ * and the id generator, used to restore the accounts from a snapshot on startup. All the accounts are inserted
+ * in a single transaction, so a source failing half way, e.g. a corrupted snapshot, leaves the table empty
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class AccountBulkLoader {
+
+    /**
+     * number of inserts sent to the database at once, the batches are committed together once all of them are sent
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    private final SessionFactory sessionFactory;
+
+    @Inject
+    public AccountBulkLoader(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Inserts the accounts and restarts the account id sequence right after the greatest inserted id
+     *
+     * @param source passes the accounts to be inserted to the given consumer, the accounts must have ids
+     * @return number of inserted accounts
+     * @throws IllegalArgumentException if source is null or any of accounts has null id or null amount
+     * @throws IllegalStateException    if the account table is not empty
+     * @throws RuntimeException         thrown by the source, nothing is inserted then
+     */
+    public long load(Consumer<Consumer<Account>> source) {
+        Preconditions.checkArgument(source != null, "source is null");
+        long[] result = new long[2];
+        try (Session session = sessionFactory.openSession()) {
+            session.doWork(connection -> {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    try (Statement query = connection.createStatement();
+                         ResultSet existing = query.executeQuery("select 1 from ACCOUNT limit 1")) {
+                        Preconditions.checkState(!existing.next(), "account table is not empty");
+                    }
+                    try (PreparedStatement insert = connection.prepareStatement("insert into ACCOUNT (id, amount, version) values (?, ?, 0)")) {
+                        source.accept(account -> {
+                            Preconditions.checkArgument(account.getId() != null, "try to load account with null id");
+                            Preconditions.checkArgument(account.getAmount() != null, "try to load account with null amount");
+                            try {
+                                insert.setLong(1, account.getId());
+                                insert.setBigDecimal(2, account.getAmount());
+                                insert.addBatch();
+                                if (++result[0] % BATCH_SIZE == 0) {
+                                    insert.executeBatch();
+                                }
+                            } catch (SQLException e) {
+                                throw new BatchFailure(e);
+                            }
+                            result[1] = Math.max(result[1], account.getId());
+                        });
+                        insert.executeBatch();
+                    } catch (BatchFailure e) {
+                        throw e.getCause();
+                    }
+                    if (result[0] > 0) {
+                        try (Statement restart = connection.createStatement()) {
+                            restart.execute("alter sequence account_seq restart with " + (result[1] + 1));
+                        }
+                    }
+                    connection.commit();
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            });
+        }
+        // the inserts bypass Hibernate, so the cached accounts and query results don't know about them
+        sessionFactory.getCache().evictEntityRegion(Account.class);
+        sessionFactory.getCache().evictQueryRegions();
+        return result[0];
+    }
+
+    /**
+     * carries a {@link SQLException} out of the account consumer
+     */
+    private static final class BatchFailure extends RuntimeException {
+        private BatchFailure(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+}
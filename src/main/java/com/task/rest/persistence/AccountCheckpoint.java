@@ -0,0 +1,78 @@
+package com.task.rest.persistence;
+
+import com.google.common.base.Preconditions;
+import com.task.rest.model.Money;
+import com.task.rest.model.dbo.Account;
+
+import java.util.function.Consumer;
+
+/**
+ * Balances of all the accounts of the {@link InMemoryAccountDao} at a position of its journal:
+ * the state the records up to the position add up to. The storage is restored from a checkpoint and the records after it
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see InMemoryAccountDao#checkpoint()
+ */
+public final class AccountCheckpoint {
+
+    /**
+     * checkpoint of the empty storage at the start of the journal
+     */
+    public static final AccountCheckpoint NONE = new AccountCheckpoint(0, 0, new long[0]);
+
+    private final long journalPosition;
+    private final long lastId;
+    private final long[] rows;
+
+    /**
+     * @param journalPosition position of the journal right after the last record the checkpoint contains
+     * @param lastId          greatest account id allocated up to the position, ids of the deleted accounts are not reused
+     * @param rows            ids and balances in pairs, every id is followed by the balance of its account
+     * @throws IllegalArgumentException if journalPosition or lastId is negative, rows is null or of odd length
+     */
+    public AccountCheckpoint(long journalPosition, long lastId, long[] rows) {
+        Preconditions.checkArgument(journalPosition >= 0, "journal position is negative");
+        Preconditions.checkArgument(lastId >= 0, "last id is negative");
+        Preconditions.checkArgument(rows != null && rows.length % 2 == 0, "rows are not id and balance pairs");
+        this.journalPosition = journalPosition;
+        this.lastId = lastId;
+        this.rows = rows;
+    }
+
+    public long getJournalPosition() {
+        return journalPosition;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+
+    /**
+     * @return number of accounts
+     */
+    public int size() {
+        return rows.length / 2;
+    }
+
+    /**
+     * Passes every account as a new object to the consumer
+     *
+     * @param consumer consumer of the accounts
+     */
+    public void forEach(Consumer<Account> consumer) {
+        Preconditions.checkArgument(consumer != null, "consumer is null");
+        for (int i = 0; i < rows.length; i += 2) {
+            consumer.accept(new Account().setId(rows[i]).setBalance(Money.ofUnits(rows[i + 1])));
+        }
+    }
+
+    /**
+     * Inserts all the accounts into the empty table
+     */
+    void restoreTo(AccountBalanceTable table) {
+        for (int i = 0; i < rows.length; i += 2) {
+            Preconditions.checkState(table.insert(rows[i], rows[i + 1]), "account %s is restored twice", rows[i]);
+        }
+    }
+
+}
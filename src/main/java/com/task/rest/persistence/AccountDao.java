@@ -3,8 +3,11 @@ package com.task.rest.persistence;
 import com.task.rest.exceptions.NoSuchAccountException;
 import com.task.rest.model.dbo.Account;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Data access (CRUD) interface for {@link Account} object
@@ -17,6 +20,26 @@ public interface AccountDao {
      */
     List<Account> getAll();
 
+    /**
+     * Loads a page of accounts ordered by id (keyset pagination)
+     *
+     * @param afterId id of the last account of the previous page, null for the first page
+     * @param limit   maximum number of accounts in the page
+     * @return list of accounts with ids greater than afterId, ordered by id
+     * @throws IllegalArgumentException if limit is non-positive
+     */
+    List<Account> getPage(Long afterId, int limit);
+
+    /**
+     * Passes the accounts ordered by id to the consumer one by one,
+     * the accounts are read in a separate session and are not kept in memory once consumed
+     *
+     * @param afterId  accounts with ids greater than afterId are passed, null to pass all the accounts
+     * @param consumer consumer of the accounts
+     * @throws IllegalArgumentException if consumer is null
+     */
+    void scroll(Long afterId, Consumer<Account> consumer);
+
     /**
      * @param id id of the requested account
      * @return {@link Optional} {@link Account} object for the specified id
@@ -25,6 +48,62 @@ public interface AccountDao {
      */
     Optional<Account> findById(Long id);
 
+    /**
+     * Finds the account only to read it, the returned object may be a copy not attached to the current session,
+     * so its modifications are not stored
+     *
+     * @param id id of the requested account
+     * @return {@link Optional} {@link Account} object for the specified id
+     * returns empty object if there is no account with specified id
+     * @throws IllegalArgumentException if id is null
+     */
+    Optional<Account> findByIdForRead(Long id);
+
+    /**
+     * Loads all the accounts with the specified ids at once
+     *
+     * @param ids ids of the requested accounts
+     * @return list of found {@link Account} objects
+     * accounts that do not exist in the storage are missed in the result
+     * @throws IllegalArgumentException if ids is null or contains null
+     */
+    List<Account> findByIds(Collection<Long> ids);
+
+    /**
+     * Finds the accounts only to read them, the returned objects may be copies not attached to the current session,
+     * so their modifications are not stored
+     *
+     * @param ids ids of the requested accounts
+     * @return list of found {@link Account} objects
+     * accounts that do not exist in the storage are missed in the result
+     * @throws IllegalArgumentException if ids is null or contains null
+     */
+    List<Account> findByIdsForRead(Collection<Long> ids);
+
+    /**
+     * Adds the amount to the account by a single update statement, without loading the account
+     *
+     * @param id     id of the account
+     * @param amount amount to be added
+     * @return true if the account was updated, false if there is no account with specified id
+     * @throws IllegalArgumentException if id or amount is null
+     * @throws IllegalArgumentException if amount is non-positive
+     */
+    boolean addAmount(Long id, BigDecimal amount);
+
+    /**
+     * Subtracts the amount from the account by a single update statement, without loading the account,
+     * the account is updated only if its current amount is not less than the subtracted one
+     *
+     * @param id     id of the account
+     * @param amount amount to be subtracted
+     * @return true if the account was updated,
+     * false if there is no account with specified id or its current amount is less than the subtracted one
+     * @throws IllegalArgumentException if id or amount is null
+     * @throws IllegalArgumentException if amount is non-positive
+     */
+    boolean subtractAmount(Long id, BigDecimal amount);
+
     /**
      * Removes specified account from the storage
      *
@@ -54,4 +133,15 @@ public interface AccountDao {
      * @throws IllegalArgumentException if account has null amount
      */
     Account create(Account account);
+
+    /**
+     * Inserts specified accounts to the storage by batches of the configured JDBC batch size,
+     * the session is flushed and cleared after every batch, so entities loaded to it before become detached
+     *
+     * @param accounts {@link Account} objects to be inserted
+     * @return inserted {@link Account} objects in the same order
+     * @throws IllegalArgumentException if accounts is null or contains null
+     * @throws IllegalArgumentException if any of accounts does have id or has null amount
+     */
+    List<Account> createAll(List<Account> accounts);
 }
@@ -5,25 +5,69 @@ import com.google.inject.Inject;
 import com.task.rest.exceptions.NoSuchAccountException;
 import com.task.rest.model.dbo.Account;
 import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.query.Query;
+import org.hibernate.query.QueryProducer;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Implementation for the {@link AccountDao}
+ * <p>
+ * The reads that don't modify the accounts ({@link #getPage}, {@link #scroll} and the ones for read) select the stored state
+ * straight into new {@link Account} objects by a constructor expression: no entity is hydrated or added to the persistence context,
+ * so there's nothing to dirty-check when the session is flushed
  *
  * @author Alexander Kotov (kotov.alex.22@gmail.com)
  * @see AccountDao
  */
 public class AccountDaoImpl extends AbstractDAO<Account> implements AccountDao {
 
+    /**
+     * number of rows fetched from the database at once while scrolling the accounts
+     */
+    private static final int SCROLL_FETCH_SIZE = 1000;
+
+    /**
+     * number of created accounts flushed at once when JDBC batching is disabled
+     */
+    private static final int DEFAULT_CREATE_FLUSH_SIZE = 50;
+
+    /**
+     * maximum number of ids in the IN list of a single query loading accounts by ids
+     */
+    static final int MULTI_LOAD_BATCH_SIZE = 500;
+
+    /**
+     * selects the stored state of the accounts into objects that are not attached to the session
+     */
+    private static final String SELECT_ACCOUNTS = "select new " + Account.class.getName() + "(a.id, a.amount, a.version) from Account a";
+
+    /**
+     * query cache region of {@link #getPage}, Hibernate invalidates it on every write to the account table
+     */
+    public static final String ACCOUNT_PAGES_CACHE_REGION = "account.pages";
+
+    private final SessionFactory sessionFactory;
+
     @Inject
     public AccountDaoImpl(SessionFactory sessionFactory) {
         super(sessionFactory);
+        this.sessionFactory = sessionFactory;
     }
 
     /**
@@ -38,6 +82,44 @@ public class AccountDaoImpl extends AbstractDAO<Account> implements AccountDao {
         return currentSession().createQuery(criteria).getResultList();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Pages are kept in the query cache if it's enabled, until the account table is written again
+     */
+    @Override
+    public List<Account> getPage(Long afterId, int limit) {
+        Preconditions.checkArgument(limit > 0, "limit is non-positive");
+        return createOrderedQuery(currentSession(), afterId)
+                .setMaxResults(limit)
+                .setCacheable(true)
+                .setCacheRegion(ACCOUNT_PAGES_CACHE_REGION)
+                .getResultList();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Accounts are read by a forward-only cursor of a {@link StatelessSession}
+     */
+    @Override
+    public void scroll(Long afterId, Consumer<Account> consumer) {
+        Preconditions.checkArgument(consumer != null, "consumer is null");
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            ScrollableResults results = createOrderedQuery(session, afterId)
+                    .setFetchSize(SCROLL_FETCH_SIZE)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                while (results.next()) {
+                    consumer.accept((Account) results.get(0));
+                }
+            } finally {
+                results.close();
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -47,6 +129,86 @@ public class AccountDaoImpl extends AbstractDAO<Account> implements AccountDao {
         return Optional.ofNullable(get(id));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<Account> findByIdForRead(Long id) {
+        Preconditions.checkArgument(id != null, "try to find account with null id");
+        return currentSession().createQuery(SELECT_ACCOUNTS + " where a.id = :id", Account.class)
+                .setParameter("id", id)
+                .uniqueResultOptional();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Accounts are fetched with multi-id queries with IN lists of at most {@value #MULTI_LOAD_BATCH_SIZE} ids,
+     * the ones already loaded to the session are taken from it
+     */
+    @Override
+    public List<Account> findByIds(Collection<Long> ids) {
+        Preconditions.checkArgument(ids != null, "try to find accounts with null ids");
+        Preconditions.checkArgument(ids.stream().allMatch(Objects::nonNull), "try to find account with null id");
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return currentSession().byMultipleIds(Account.class)
+                .enableSessionCheck(true)
+                .withBatchSize(MULTI_LOAD_BATCH_SIZE)
+                .multiLoad(new ArrayList<>(ids))
+                .stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The accounts are selected by queries with IN lists of at most {@value #MULTI_LOAD_BATCH_SIZE} ids, the accounts are not ordered
+     */
+    @Override
+    public List<Account> findByIdsForRead(Collection<Long> ids) {
+        Preconditions.checkArgument(ids != null, "try to find accounts with null ids");
+        Preconditions.checkArgument(ids.stream().allMatch(Objects::nonNull), "try to find account with null id");
+        List<Long> idList = new ArrayList<>(ids);
+        List<Account> accounts = new ArrayList<>(idList.size());
+        for (int from = 0; from < idList.size(); from += MULTI_LOAD_BATCH_SIZE) {
+            accounts.addAll(currentSession().createQuery(SELECT_ACCOUNTS + " where a.id in (:ids)", Account.class)
+                    .setParameterList("ids", idList.subList(from, Math.min(from + MULTI_LOAD_BATCH_SIZE, idList.size())))
+                    .getResultList());
+        }
+        return accounts;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The version of the account is incremented, so concurrent modifications of the loaded account entity fail on commit
+     */
+    @Override
+    public boolean addAmount(Long id, BigDecimal amount) {
+        checkAmountArguments(id, amount);
+        return currentSession().createQuery("update versioned Account set amount = amount + :amount where id = :id")
+                .setParameter("amount", amount)
+                .setParameter("id", id)
+                .executeUpdate() > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The version of the account is incremented, so concurrent modifications of the loaded account entity fail on commit
+     */
+    @Override
+    public boolean subtractAmount(Long id, BigDecimal amount) {
+        checkAmountArguments(id, amount);
+        return currentSession().createQuery("update versioned Account set amount = amount - :amount where id = :id and amount >= :amount")
+                .setParameter("amount", amount)
+                .setParameter("id", id)
+                .executeUpdate() > 0;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -75,10 +237,48 @@ public class AccountDaoImpl extends AbstractDAO<Account> implements AccountDao {
      */
     @Override
     public Account create(Account account) {
+        checkNewAccount(account);
+        currentSession().save(account);
+        return account;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Account> createAll(List<Account> accounts) {
+        Preconditions.checkArgument(accounts != null, "try to create null accounts");
+        accounts.forEach(AccountDaoImpl::checkNewAccount);
+        int jdbcBatchSize = sessionFactory.getSessionFactoryOptions().getJdbcBatchSize();
+        int flushSize = jdbcBatchSize > 0 ? jdbcBatchSize : DEFAULT_CREATE_FLUSH_SIZE;
+        Session session = currentSession();
+        for (int i = 0; i < accounts.size(); i++) {
+            session.save(accounts.get(i));
+            if ((i + 1) % flushSize == 0) {
+                session.flush();
+                session.clear();
+            }
+        }
+        return accounts;
+    }
+
+    private static Query<Account> createOrderedQuery(QueryProducer session, Long afterId) {
+        if (afterId == null) {
+            return session.createQuery(SELECT_ACCOUNTS + " order by a.id", Account.class);
+        }
+        return session.createQuery(SELECT_ACCOUNTS + " where a.id > :afterId order by a.id", Account.class)
+                .setParameter("afterId", afterId);
+    }
+
+    private static void checkNewAccount(Account account) {
         Preconditions.checkArgument(account != null, "try to create null account");
         Preconditions.checkArgument(account.getId() == null, "try to create account with specified id");
         Preconditions.checkArgument(account.getAmount() != null, "try to create account with null amount");
-        currentSession().save(account);
-        return account;
+    }
+
+    private static void checkAmountArguments(Long id, BigDecimal amount) {
+        Preconditions.checkArgument(id != null, "try to modify account with null id");
+        Preconditions.checkArgument(amount != null, "amount is null");
+        Preconditions.checkArgument(amount.signum() > 0, "amount is non-positive");
     }
 }
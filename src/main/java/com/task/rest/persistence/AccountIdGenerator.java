@@ -0,0 +1,51 @@
+package com.task.rest.persistence;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Sequence based generator of account ids allocating the ids by blocks
+ * <p>
+ * The block size is taken from the {@value #BLOCK_SIZE_SETTING} hibernate property (1 by default).
+ * If it is greater than 1 the ids are generated by the pooled-lo optimizer - every value returned by the sequence
+ * is the first id of a block of the block size ids handed out in memory, so the sequence is called once per block.
+ * The increment of the database sequence must be equal to the block size
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see SequenceStyleGenerator
+ */
+public class AccountIdGenerator extends SequenceStyleGenerator {
+
+    public static final String BLOCK_SIZE_SETTING = "account.id.block_size";
+
+    private static final int DEFAULT_BLOCK_SIZE = 1;
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws MappingException if the block size is non-positive
+     */
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        int blockSize = ConfigurationHelper.getInt(BLOCK_SIZE_SETTING,
+                serviceRegistry.getService(ConfigurationService.class).getSettings(), DEFAULT_BLOCK_SIZE);
+        if (blockSize <= 0) {
+            throw new MappingException(BLOCK_SIZE_SETTING + " is non-positive: " + blockSize);
+        }
+        Properties blockParams = new Properties();
+        blockParams.putAll(params);
+        blockParams.setProperty(INCREMENT_PARAM, String.valueOf(blockSize));
+        if (blockSize > 1) {
+            blockParams.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        }
+        super.configure(type, blockParams, serviceRegistry);
+    }
+
+}
@@ -0,0 +1,427 @@
+package com.task.rest.persistence;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.task.rest.model.Money;
+import com.task.rest.model.dbo.Account;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Caching decorator of the {@link AccountDao} serving {@link #findByIdForRead} from a bounded in-heap cache
+ * <p>
+ * Entries are evicted in the least recently used order when the cache is full. Accounts loaded by {@link #findById},
+ * {@link #findByIds} or {@link #update} and the accounts deleted by {@link #delete} are written to the cache
+ * when the current transaction is committed - while the account locks taken by the service are still held -
+ * and left untouched if it is rolled back. Every entry keeps the account version and is replaced only by a newer one,
+ * so a reader that loaded the account before a concurrent modification never overwrites its result.
+ * Deleted accounts are kept as entries with the greatest version.
+ * Accounts updated by {@link #addAmount} and {@link #subtractAmount} are evicted on commit instead (unless they are loaded
+ * again in the same transaction), the state loaded before such a commit is not cached. Until then they are read
+ * by the updating transaction from the storage, bypassing the cache
+ * <p>
+ * The cache knows only about modifications made through this process, it must be disabled if several service instances share the database
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see AccountDao
+ */
+public class CachingAccountDao implements AccountDao {
+
+    public static final String MAXIMUM_SIZE_FIELD_NAME = "accountCacheSize";
+
+    private final AccountDao delegate;
+    private final SessionFactory sessionFactory;
+    private final Cache<Long, CachedAccount> cache;
+    private final Meter hits;
+    private final Meter misses;
+
+    /**
+     * number of committed transactions that updated accounts by statements bypassing the session
+     */
+    private final AtomicLong committedStatementUpdates = new AtomicLong();
+
+    /**
+     * accounts updated by statements in the transactions not completed yet
+     */
+    private final ConcurrentMap<Transaction, StatementUpdates> statementUpdatesByTransaction = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate    DAO reading and writing the storage
+     * @param metrics     registry of the cache hits, misses and size metrics
+     * @param maximumSize maximum number of cached accounts
+     * @throws IllegalArgumentException if maximumSize is non-positive
+     */
+    @Inject
+    public CachingAccountDao(AccountDaoImpl delegate, SessionFactory sessionFactory, MetricRegistry metrics,
+                             @Named(MAXIMUM_SIZE_FIELD_NAME) int maximumSize) {
+        Preconditions.checkArgument(maximumSize > 0, "maximum cache size is non-positive");
+        this.delegate = delegate;
+        this.sessionFactory = sessionFactory;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+        this.hits = metrics.meter(MetricRegistry.name(CachingAccountDao.class, "hits"));
+        this.misses = metrics.meter(MetricRegistry.name(CachingAccountDao.class, "misses"));
+        metrics.register(MetricRegistry.name(CachingAccountDao.class, "size"), (Gauge<Long>) cache::size);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Account> getAll() {
+        return delegate.getAll();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Account> getPage(Long afterId, int limit) {
+        return delegate.getPage(afterId, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void scroll(Long afterId, Consumer<Account> consumer) {
+        delegate.scroll(afterId, consumer);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The account is written to the cache if the current transaction is committed
+     */
+    @Override
+    public Optional<Account> findById(Long id) {
+        Optional<Account> account = delegate.findById(id);
+        account.ifPresent(this::cacheOnCommit);
+        return account;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A cached account is returned as a new object not attached to any session, a missed one is loaded and cached
+     */
+    @Override
+    public Optional<Account> findByIdForRead(Long id) {
+        Preconditions.checkArgument(id != null, "try to find account with null id");
+        StatementUpdates statementUpdates = currentStatementUpdates();
+        if (statementUpdates != null && statementUpdates.ids.contains(id)) {
+            Optional<Account> account = delegate.findByIdForRead(id);
+            account.ifPresent(statementUpdates::read);
+            return account;
+        }
+        CachedAccount cached = cache.getIfPresent(id);
+        if (cached != null) {
+            hits.mark();
+            return Optional.ofNullable(cached.toAccount(id));
+        }
+        misses.mark();
+        long statementUpdatesBefore = committedStatementUpdates.get();
+        Optional<Account> account = delegate.findByIdForRead(id);
+        account.ifPresent(loaded -> cacheLoaded(loaded, statementUpdatesBefore));
+        return account;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The accounts are written to the cache if the current transaction is committed
+     */
+    @Override
+    public List<Account> findByIds(Collection<Long> ids) {
+        List<Account> accounts = delegate.findByIds(ids);
+        accounts.forEach(this::cacheOnCommit);
+        return accounts;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The cached accounts are returned as new objects not attached to any session, the missed ones are loaded at once and cached.
+     * The accounts are not ordered
+     */
+    @Override
+    public List<Account> findByIdsForRead(Collection<Long> ids) {
+        Preconditions.checkArgument(ids != null, "try to find accounts with null ids");
+        Preconditions.checkArgument(ids.stream().allMatch(Objects::nonNull), "try to find account with null id");
+        StatementUpdates statementUpdates = currentStatementUpdates();
+        List<Account> accounts = new ArrayList<>(ids.size());
+        List<Long> missed = new ArrayList<>();
+        List<Long> updated = new ArrayList<>();
+        for (Long id : ids) {
+            if (statementUpdates != null && statementUpdates.ids.contains(id)) {
+                updated.add(id);
+                continue;
+            }
+            CachedAccount cached = cache.getIfPresent(id);
+            if (cached == null) {
+                missed.add(id);
+            } else if (cached.amount != null) {
+                accounts.add(cached.toAccount(id));
+            }
+        }
+        if (!updated.isEmpty()) {
+            for (Account account : delegate.findByIdsForRead(updated)) {
+                statementUpdates.read(account);
+                accounts.add(account);
+            }
+        }
+        hits.mark(ids.size() - missed.size() - updated.size());
+        if (missed.isEmpty()) {
+            return accounts;
+        }
+        misses.mark(missed.size());
+        long statementUpdatesBefore = committedStatementUpdates.get();
+        for (Account loaded : delegate.findByIdsForRead(missed)) {
+            cacheLoaded(loaded, statementUpdatesBefore);
+            accounts.add(loaded);
+        }
+        return accounts;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The updated account is evicted from the cache if the current transaction is committed
+     */
+    @Override
+    public boolean addAmount(Long id, BigDecimal amount) {
+        boolean updated = delegate.addAmount(id, amount);
+        if (updated) {
+            evictOnCommit(id);
+        }
+        return updated;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The updated account is evicted from the cache if the current transaction is committed
+     */
+    @Override
+    public boolean subtractAmount(Long id, BigDecimal amount) {
+        boolean updated = delegate.subtractAmount(id, amount);
+        if (updated) {
+            evictOnCommit(id);
+        }
+        return updated;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The account is marked as deleted in the cache if the current transaction is committed
+     */
+    @Override
+    public Account delete(Account account) {
+        Account deleted = delegate.delete(account);
+        if (account.getId() != null) {
+            onCommit(() -> put(account.getId(), CachedAccount.DELETED));
+        }
+        return deleted;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The account is written to the cache if the current transaction is committed
+     */
+    @Override
+    public Account update(Account account) {
+        Account updated = delegate.update(account);
+        delegate.findById(account.getId()).ifPresent(this::cacheOnCommit);
+        return updated;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Account create(Account account) {
+        return delegate.create(account);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Account> createAll(List<Account> accounts) {
+        return delegate.createAll(accounts);
+    }
+
+    /**
+     * Caches the state of the managed account entity as it is committed, with all the modifications made to it in the transaction
+     */
+    private void cacheOnCommit(Account account) {
+        onCommit(() -> put(account.getId(), new CachedAccount(account.getBalance(), account.getVersion())));
+    }
+
+    /**
+     * Evicts the account updated by a statement bypassing the session on commit. The new state is not known without reading it back,
+     * it is cached when the account is read next time, by the updating transaction or after it
+     */
+    private void evictOnCommit(Long id) {
+        Transaction transaction = sessionFactory.getCurrentSession().getTransaction();
+        if (!transaction.isActive()) {
+            // nothing is committed outside of a transaction
+            return;
+        }
+        StatementUpdates statementUpdates = statementUpdatesByTransaction.get(transaction);
+        if (statementUpdates == null) {
+            statementUpdates = new StatementUpdates(transaction);
+            statementUpdatesByTransaction.put(transaction, statementUpdates);
+            transaction.registerSynchronization(statementUpdates);
+        }
+        statementUpdates.update(id);
+    }
+
+    /**
+     * @return accounts updated by statements in the current transaction, null if there are none
+     */
+    private StatementUpdates currentStatementUpdates() {
+        if (statementUpdatesByTransaction.isEmpty()) {
+            // no session is looked up unless some transaction updated accounts by statements
+            return null;
+        }
+        return statementUpdatesByTransaction.get(sessionFactory.getCurrentSession().getTransaction());
+    }
+
+    private void onCommit(Runnable action) {
+        Transaction transaction = sessionFactory.getCurrentSession().getTransaction();
+        if (!transaction.isActive()) {
+            // nothing is committed outside of a transaction
+            return;
+        }
+        transaction.registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Caches the account loaded by a read, unless it may be updated by a statement committed since the read started
+     */
+    private void cacheLoaded(Account loaded, long statementUpdatesBefore) {
+        CachedAccount loadedState = new CachedAccount(loaded.getBalance(), loaded.getVersion());
+        put(loaded.getId(), loadedState);
+        if (committedStatementUpdates.get() != statementUpdatesBefore) {
+            // the account may be updated by a statement committed after it was loaded
+            cache.asMap().remove(loaded.getId(), loadedState);
+        }
+    }
+
+    /**
+     * Caches the account state unless a newer one is cached already
+     */
+    private void put(Long id, CachedAccount account) {
+        cache.asMap().merge(id, account, (current, offered) -> offered.version > current.version ? offered : current);
+    }
+
+    /**
+     * Accounts updated by statements in a transaction, evicted when the transaction is committed. The states read by the transaction
+     * after their last update are cached instead, the transaction holds the row locks of the accounts until it's completed
+     */
+    private final class StatementUpdates implements Synchronization {
+
+        private final Transaction transaction;
+
+        /**
+         * the transaction runs in a single thread, the sets are not synchronized
+         */
+        final Set<Long> ids = new HashSet<>();
+        final Map<Long, CachedAccount> readStates = new HashMap<>();
+
+        StatementUpdates(Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        void update(Long id) {
+            ids.add(id);
+            readStates.remove(id);
+        }
+
+        void read(Account account) {
+            readStates.put(account.getId(), new CachedAccount(account.getBalance(), account.getVersion()));
+        }
+
+        @Override
+        public void beforeCompletion() {
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            statementUpdatesByTransaction.remove(transaction, this);
+            if (status == Status.STATUS_COMMITTED) {
+                // counted before the eviction, so that a reader that loaded an account before the commit sees it after caching the old state
+                committedStatementUpdates.incrementAndGet();
+                ids.forEach(cache::invalidate);
+                readStates.forEach(CachingAccountDao.this::put);
+            }
+        }
+    }
+
+    /**
+     * Immutable committed state of an account
+     */
+    private static final class CachedAccount {
+
+        static final CachedAccount DELETED = new CachedAccount(null, Long.MAX_VALUE);
+
+        /**
+         * null for a deleted account
+         */
+        final Money amount;
+
+        final long version;
+
+        CachedAccount(Money amount, long version) {
+            // the same scale as the one of the stored amounts
+            this.amount = amount == null ? null : amount.roundToScale();
+            this.version = version;
+        }
+
+        /**
+         * @return new account object or null if the account is deleted
+         */
+        Account toAccount(Long id) {
+            return amount == null ? null : new Account().setId(id).setBalance(amount);
+        }
+    }
+
+}
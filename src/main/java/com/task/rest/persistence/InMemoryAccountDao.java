@@ -0,0 +1,646 @@
+package com.task.rest.persistence;
+
+import com.google.common.base.Preconditions;
+import com.task.rest.exceptions.NoSuchAccountException;
+import com.task.rest.journal.Journal;
+import com.task.rest.journal.JournalRecord;
+import com.task.rest.model.Money;
+import com.task.rest.model.dbo.Account;
+
+import javax.inject.Inject;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.OptimisticLockException;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Implementation of the {@link AccountDao} keeping the accounts in memory only, in an {@link AccountBalanceTable}
+ * <p>
+ * Nothing is stored in the database and no Hibernate sessions are used. Accounts returned by the finders are plain objects built
+ * from the table rows. Within a transaction (see {@link InMemoryTransactionRunner}) the accounts found by {@link #findById}
+ * and {@link #findByIds} are tracked the same way a session tracks loaded entities: their modifications and deletions are applied
+ * to the table atomically on commit, if none of them was changed by another transaction meanwhile, otherwise
+ * {@link OptimisticLockException} is thrown. Creations and amount updates by {@link #addAmount} and {@link #subtractAmount}
+ * are applied at once and undone if the transaction fails. Outside of a transaction every modification is applied at once.
+ * <p>
+ * Account ids are allocated sequentially from 1 and never reused, so the accounts are listed by scanning the ids in order.
+ * <p>
+ * The net effect of every committed transaction (and of every modification outside of a transaction) is appended
+ * to the {@link Journal} as a single record and the commit waits until the record is durable.
+ * The balances are restored from the journal on construction. A record must not be appended before the records of the changes
+ * it depends on, otherwise a crash could keep e.g. a withdrawal without the deposit it withdrew. So when the storage is journaled,
+ * the accounts changed by a transaction are held by it, the way the database holds the updated rows, until its record is appended:
+ * other modifications of these accounts wait for that, then their records get the later journal positions,
+ * and waiting for a record to be durable waits for all the records before it.
+ * <p>
+ * A {@link #checkpoint} copies the table while no transaction holds any account, so the copy is exactly the state
+ * the journal adds up to at its position. The storage is restored from the latest checkpoint and the records after it
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see AccountDao
+ * @see AccountBalanceTable
+ * @see Journal
+ */
+public class InMemoryAccountDao implements AccountDao {
+
+    public static final int DEFAULT_SEGMENTS = 256;
+
+    /**
+     * time a modification waits for an account held by another transaction
+     */
+    static final long HOLD_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final AccountBalanceTable table;
+    private final Journal journal;
+    private final boolean journaled;
+    private final ConcurrentMap<Long, RowHold> heldRows = new ConcurrentHashMap<>();
+
+    /**
+     * read-locked by every transaction holding accounts, write-locked by {@link #checkpoint}
+     */
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final AtomicLong lastId = new AtomicLong();
+    private final ThreadLocal<Transaction> currentTransaction = new ThreadLocal<>();
+
+    public InMemoryAccountDao() {
+        this(DEFAULT_SEGMENTS, Journal.NONE);
+    }
+
+    @Inject
+    public InMemoryAccountDao(Journal journal) {
+        this(DEFAULT_SEGMENTS, journal);
+    }
+
+    /**
+     * @param segments number of segments of the table, see {@link AccountBalanceTable}
+     * @param journal  journal the accounts are restored from and the committed modifications are appended to
+     */
+    public InMemoryAccountDao(int segments, Journal journal) {
+        this(segments, journal, AccountCheckpoint.NONE);
+    }
+
+    /**
+     * @param segments   number of segments of the table, see {@link AccountBalanceTable}
+     * @param journal    journal the accounts are restored from and the committed modifications are appended to
+     * @param checkpoint checkpoint the accounts are restored from before the journal records after its position
+     */
+    public InMemoryAccountDao(int segments, Journal journal, AccountCheckpoint checkpoint) {
+        Preconditions.checkArgument(journal != null, "journal is null");
+        Preconditions.checkArgument(checkpoint != null, "checkpoint is null");
+        this.table = new AccountBalanceTable(segments);
+        this.journal = journal;
+        this.journaled = journal != Journal.NONE;
+        checkpoint.restoreTo(table);
+        lastId.set(checkpoint.getLastId());
+        Set<Long> deletedIds = new HashSet<>();
+        journal.replay(checkpoint.getJournalPosition(), record -> restore(record, deletedIds));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Account> getAll() {
+        List<Account> accounts = new ArrayList<>();
+        scroll(null, accounts::add);
+        return accounts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Account> getPage(Long afterId, int limit) {
+        Preconditions.checkArgument(limit > 0, "limit is non-positive");
+        List<Account> accounts = new ArrayList<>();
+        long last = lastId.get();
+        for (long id = firstIdAfter(afterId); id <= last && accounts.size() < limit; id++) {
+            read(id).ifPresent(accounts::add);
+        }
+        return accounts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void scroll(Long afterId, Consumer<Account> consumer) {
+        Preconditions.checkArgument(consumer != null, "consumer is null");
+        long last = lastId.get();
+        for (long id = firstIdAfter(afterId); id <= last; id++) {
+            read(id).ifPresent(consumer);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<Account> findById(Long id) {
+        Preconditions.checkArgument(id != null, "try to find account with null id");
+        Transaction transaction = currentTransaction.get();
+        if (transaction == null) {
+            return read(id);
+        }
+        TrackedAccount tracked = transaction.tracked.get(id);
+        if (tracked != null) {
+            return tracked.deleted ? Optional.empty() : Optional.of(tracked.account);
+        }
+        AccountBalanceTable.Row row = table.get(id);
+        if (row == null) {
+            return Optional.empty();
+        }
+        tracked = new TrackedAccount(toAccount(id, row.getUnits()), row.getUnits(), row.getVersion());
+        transaction.tracked.put(id, tracked);
+        return Optional.of(tracked.account);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The account is always a new object, even if the same account is tracked by the current transaction
+     */
+    @Override
+    public Optional<Account> findByIdForRead(Long id) {
+        Preconditions.checkArgument(id != null, "try to find account with null id");
+        return read(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Account> findByIds(Collection<Long> ids) {
+        Preconditions.checkArgument(ids != null, "try to find accounts with null ids");
+        Preconditions.checkArgument(ids.stream().allMatch(Objects::nonNull), "try to find account with null id");
+        List<Account> accounts = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            findById(id).ifPresent(accounts::add);
+        }
+        return accounts;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The accounts are always new objects, even if the same accounts are tracked by the current transaction
+     */
+    @Override
+    public List<Account> findByIdsForRead(Collection<Long> ids) {
+        Preconditions.checkArgument(ids != null, "try to find accounts with null ids");
+        Preconditions.checkArgument(ids.stream().allMatch(Objects::nonNull), "try to find account with null id");
+        List<Account> accounts = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            read(id).ifPresent(accounts::add);
+        }
+        return accounts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addAmount(Long id, BigDecimal amount) {
+        long units = checkAmountUpdate(id, amount);
+        return modify(id, () -> table.add(id, units), () -> table.adjust(id, -units), () -> JournalRecord.delta(id, units));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean subtractAmount(Long id, BigDecimal amount) {
+        long units = checkAmountUpdate(id, amount);
+        return modify(id, () -> table.subtract(id, units), () -> table.adjust(id, units), () -> JournalRecord.delta(id, -units));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Within a transaction the account is removed on commit
+     */
+    @Override
+    public Account delete(Account account) {
+        Preconditions.checkArgument(account != null, "try to delete null account");
+        if (account.getId() == null) {
+            return account;
+        }
+        Transaction transaction = currentTransaction.get();
+        if (transaction == null) {
+            long id = account.getId();
+            modify(id, () -> table.remove(id), () -> {
+            }, () -> JournalRecord.delete(id));
+            return account;
+        }
+        findById(account.getId());
+        TrackedAccount tracked = transaction.tracked.get(account.getId());
+        if (tracked != null) {
+            tracked.deleted = true;
+        }
+        return account;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Within a transaction the amount is stored on commit
+     */
+    @Override
+    public Account update(Account account) {
+        Preconditions.checkArgument(account != null, "try to update null account");
+        Preconditions.checkArgument(account.getId() != null, "try to update contract with null id");
+        Preconditions.checkArgument(account.getAmount() != null, "try to update contract with null amount");
+        long units = toUnits(account);
+        Transaction transaction = currentTransaction.get();
+        if (transaction == null) {
+            // the balance is replaced by a delta to the current one, so it's journaled the same way as the other changes
+            long id = account.getId();
+            long[] delta = new long[1];
+            modify(id, () -> {
+                while (true) {
+                    AccountBalanceTable.Row row = table.get(id);
+                    if (row == null) {
+                        throw new NoSuchAccountException(id);
+                    }
+                    if (table.apply(Collections.singletonList(AccountBalanceTable.Change.update(id, row.getVersion(), units)))) {
+                        delta[0] = units - row.getUnits();
+                        return true;
+                    }
+                }
+            }, () -> {
+            }, () -> JournalRecord.delta(id, delta[0]));
+            return account;
+        }
+        Account tracked = findById(account.getId()).orElseThrow(() -> new NoSuchAccountException(account.getId()));
+        tracked.setAmount(account.getAmount());
+        return account;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Account create(Account account) {
+        checkNewAccount(account);
+        inCurrentOrNewTransaction(() -> insert(account));
+        return account;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All the accounts are checked before any of them is inserted
+     */
+    @Override
+    public List<Account> createAll(List<Account> accounts) {
+        Preconditions.checkArgument(accounts != null, "try to create null accounts");
+        accounts.forEach(InMemoryAccountDao::checkNewAccount);
+        inCurrentOrNewTransaction(() -> {
+            accounts.forEach(this::insert);
+            return accounts;
+        });
+        return accounts;
+    }
+
+    /**
+     * @return number of stored accounts
+     */
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * Copies all the accounts at the current journal position and waits until the journal is durable up to it,
+     * modifications wait while the accounts are copied. The accounts changed by the transactions
+     * that are not committed yet are held by them, so the copy waits until they complete.
+     * Without a journal nothing is held, so the copy may include changes of the transactions in progress
+     *
+     * @return checkpoint of the storage
+     * @throws java.io.UncheckedIOException if the journal failed to write the records
+     */
+    public AccountCheckpoint checkpoint() {
+        AccountCheckpoint checkpoint;
+        checkpointLock.writeLock().lock();
+        try {
+            checkpoint = new AccountCheckpoint(journal.position(), lastId.get(), table.rows());
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+        journal.awaitDurable(checkpoint.getJournalPosition());
+        return checkpoint;
+    }
+
+    /**
+     * Runs the work in the transaction of the current thread (begun if there is no one yet) and commits the transaction
+     * when the work is done, see {@link TransactionRunner#inTransaction}
+     *
+     * @throws OptimisticLockException if any of the accounts modified by the transaction was changed by another one
+     * @throws java.io.UncheckedIOException if the journal failed to write the changes,
+     *                                      the changes are applied in memory in this case
+     */
+    <T> T inTransaction(Supplier<T> work) {
+        Preconditions.checkArgument(work != null, "work is null");
+        Transaction transaction = currentTransaction.get();
+        boolean outermost = transaction == null;
+        if (outermost) {
+            transaction = new Transaction();
+            currentTransaction.set(transaction);
+        }
+        try {
+            T result = work.get();
+            commit(transaction);
+            return result;
+        } catch (RuntimeException e) {
+            rollback(transaction);
+            throw e;
+        } finally {
+            if (outermost) {
+                currentTransaction.remove();
+            }
+        }
+    }
+
+    private <T> T inCurrentOrNewTransaction(Supplier<T> work) {
+        return currentTransaction.get() == null ? inTransaction(work) : work.get();
+    }
+
+    /**
+     * Commits the transaction, the accounts stay held if it fails until {@link #rollback} undoes its changes
+     */
+    private void commit(Transaction transaction) {
+        if (journaled) {
+            // in the order of the ids, so transactions committing the same accounts can't hold them crosswise
+            transaction.tracked.values().stream()
+                    .filter(TrackedAccount::isChanged)
+                    .mapToLong(tracked -> tracked.account.getId())
+                    .sorted()
+                    .forEach(id -> hold(transaction, id));
+        }
+        long position = apply(transaction);
+        release(transaction);
+        if (position > 0) {
+            journal.awaitDurable(position);
+        }
+    }
+
+    /**
+     * Applies the changes of the tracked accounts to the table and appends the record of the transaction to the journal
+     *
+     * @return journal position right after the record, 0 if nothing is appended
+     */
+    private long apply(Transaction transaction) {
+        List<AccountBalanceTable.Change> changes = new ArrayList<>();
+        List<JournalRecord.Entry> entries = new ArrayList<>();
+        for (TrackedAccount tracked : transaction.tracked.values()) {
+            long id = tracked.account.getId();
+            if (tracked.deleted) {
+                changes.add(AccountBalanceTable.Change.delete(id, tracked.version));
+                entries.add(JournalRecord.delete(id));
+            } else {
+                Preconditions.checkArgument(tracked.account.getAmount() != null, "try to update account with null amount");
+                long units = toUnits(tracked.account);
+                if (units != tracked.units) {
+                    changes.add(AccountBalanceTable.Change.update(id, tracked.version, units));
+                    entries.add(JournalRecord.delta(id, units - tracked.units));
+                }
+            }
+        }
+        if (!changes.isEmpty() && !table.apply(changes)) {
+            throw new OptimisticLockException("accounts were changed by another transaction");
+        }
+        // committed in memory, nothing is undone from now on
+        transaction.undo.clear();
+        entries.addAll(0, transaction.entries);
+        transaction.clear();
+        return entries.isEmpty() ? 0 : journal.append(new JournalRecord(entries));
+    }
+
+    private void rollback(Transaction transaction) {
+        try {
+            while (!transaction.undo.isEmpty()) {
+                transaction.undo.pop().run();
+            }
+            transaction.clear();
+        } finally {
+            release(transaction);
+        }
+    }
+
+    /**
+     * Applies the change of the account at once. Within a transaction the account stays held until the transaction completes,
+     * the change is undone if it fails and journaled on commit together with the rest of its changes.
+     * Outside of a transaction the change is journaled at once and this method waits until it's durable
+     *
+     * @param change applies the change, returns false if nothing is changed
+     * @param undo   undoes the applied change
+     * @param entry  journal entry of the applied change
+     * @return result of the change
+     */
+    private boolean modify(long id, BooleanSupplier change, Runnable undo, Supplier<JournalRecord.Entry> entry) {
+        Transaction current = currentTransaction.get();
+        Transaction transaction = current == null ? new Transaction() : current;
+        long position = 0;
+        try {
+            if (journaled) {
+                hold(transaction, id);
+            }
+            if (!change.getAsBoolean()) {
+                return false;
+            }
+            if (current != null) {
+                transaction.undo.push(undo);
+                transaction.entries.add(entry.get());
+                return true;
+            }
+            position = journal.append(new JournalRecord(Collections.singletonList(entry.get())));
+        } finally {
+            if (current == null) {
+                release(transaction);
+            }
+        }
+        journal.awaitDurable(position);
+        return true;
+    }
+
+    /**
+     * Inserts the account within the current transaction
+     */
+    private Account insert(Account account) {
+        Transaction transaction = currentTransaction.get();
+        long units = toUnits(account);
+        long id = lastId.incrementAndGet();
+        if (journaled) {
+            hold(transaction, id);
+        }
+        table.insert(id, units);
+        account.setId(id);
+        transaction.undo.push(() -> table.remove(id));
+        transaction.entries.add(JournalRecord.create(id, units));
+        return account;
+    }
+
+    /**
+     * Holds the account for the transaction until its record is appended, waits while it's held by another one
+     *
+     * @throws LockTimeoutException if the account is held by another transaction for longer than {@link #HOLD_TIMEOUT_MILLIS}
+     */
+    private void hold(Transaction transaction, long id) {
+        if (transaction.hold == null) {
+            checkpointLock.readLock().lock();
+            transaction.hold = new RowHold();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HOLD_TIMEOUT_MILLIS);
+        while (true) {
+            RowHold holder = heldRows.putIfAbsent(id, transaction.hold);
+            if (holder == null) {
+                transaction.heldIds.add(id);
+                return;
+            }
+            if (holder == transaction.hold) {
+                return;
+            }
+            long remaining = deadline - System.nanoTime();
+            boolean released = false;
+            try {
+                released = remaining > 0 && holder.released.await(remaining, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!released) {
+                throw new LockTimeoutException("account " + id + " is held by another transaction");
+            }
+        }
+    }
+
+    private void release(Transaction transaction) {
+        if (transaction.hold == null) {
+            return;
+        }
+        for (Long id : transaction.heldIds) {
+            heldRows.remove(id, transaction.hold);
+        }
+        transaction.heldIds.clear();
+        transaction.hold.released.countDown();
+        transaction.hold = null;
+        checkpointLock.readLock().unlock();
+    }
+
+    /**
+     * Applies the journal record to the table, deltas of deleted accounts are ignored whatever order they come in
+     */
+    private void restore(JournalRecord record, Set<Long> deletedIds) {
+        for (JournalRecord.Entry entry : record.getEntries()) {
+            long id = entry.getId();
+            lastId.accumulateAndGet(id, Math::max);
+            if (entry.getType() == JournalRecord.Type.DELETE) {
+                deletedIds.add(id);
+                table.remove(id);
+            } else if (!deletedIds.contains(id)) {
+                table.merge(id, entry.getUnits());
+            }
+        }
+    }
+
+    private Optional<Account> read(long id) {
+        AccountBalanceTable.Row row = table.get(id);
+        return row == null ? Optional.empty() : Optional.of(toAccount(id, row.getUnits()));
+    }
+
+    private static long firstIdAfter(Long afterId) {
+        return afterId == null || afterId < 0 ? 1 : afterId + 1;
+    }
+
+    private static long checkAmountUpdate(Long id, BigDecimal amount) {
+        Preconditions.checkArgument(id != null, "try to modify account with null id");
+        Preconditions.checkArgument(amount != null, "amount is null");
+        Preconditions.checkArgument(amount.signum() > 0, "amount is non-positive");
+        return toUnits(amount);
+    }
+
+    private static void checkNewAccount(Account account) {
+        Preconditions.checkArgument(account != null, "try to create null account");
+        Preconditions.checkArgument(account.getId() == null, "try to create account with specified id");
+        Preconditions.checkArgument(account.getAmount() != null, "try to create account with null amount");
+        Preconditions.checkArgument(account.getAmount().signum() >= 0, "try to create account with negative amount");
+        toUnits(account);
+    }
+
+    private static long toUnits(BigDecimal amount) {
+        return AccountBalanceTable.toUnits(amount, Account.SCALE);
+    }
+
+    /**
+     * @return units of the balance, taken as they are if the balance is kept as long units
+     */
+    private static long toUnits(Account account) {
+        Money balance = account.getBalance();
+        return balance.isCompact() ? balance.getUnits() : toUnits(balance.toBigDecimal());
+    }
+
+    private static Account toAccount(long id, long units) {
+        return new Account().setId(id).setBalance(Money.ofUnits(units));
+    }
+
+    /**
+     * Account found within a transaction with the balance and the version it had in the table
+     */
+    private static final class TrackedAccount {
+        private final Account account;
+        private final long units;
+        private final long version;
+        private boolean deleted;
+
+        private TrackedAccount(Account account, long units, long version) {
+            this.account = account;
+            this.units = units;
+            this.version = version;
+        }
+
+        private boolean isChanged() {
+            return deleted || account.getAmount() == null || toUnits(account) != units;
+        }
+    }
+
+    /**
+     * Hold of the accounts changed by a transaction since it began or was committed last, released at once
+     */
+    private static final class RowHold {
+        private final CountDownLatch released = new CountDownLatch(1);
+    }
+
+    private static final class Transaction {
+        private final Map<Long, TrackedAccount> tracked = new LinkedHashMap<>();
+        private final Deque<Runnable> undo = new ArrayDeque<>();
+        private final List<JournalRecord.Entry> entries = new ArrayList<>();
+        private final List<Long> heldIds = new ArrayList<>();
+        private RowHold hold;
+
+        private void clear() {
+            tracked.clear();
+            undo.clear();
+            entries.clear();
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.task.rest.persistence;
+
+import com.google.inject.Inject;
+
+import java.util.function.Supplier;
+
+/**
+ * Implementation for the {@link TransactionRunner} over the transactions of the {@link InMemoryAccountDao}
+ * <p>
+ * The transaction of the current thread is committed to the in-memory table, no Hibernate session is opened
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see TransactionRunner
+ * @see InMemoryAccountDao
+ */
+public class InMemoryTransactionRunner implements TransactionRunner {
+
+    private final InMemoryAccountDao accountDao;
+
+    @Inject
+    public InMemoryTransactionRunner(InMemoryAccountDao accountDao) {
+        this.accountDao = accountDao;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws javax.persistence.OptimisticLockException if any of the accounts modified by the transaction was changed by another one
+     */
+    @Override
+    public <T> T inTransaction(Supplier<T> work) {
+        return accountDao.inTransaction(work);
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.task.rest.persistence;
+
+import com.task.rest.model.dbo.LedgerEntry;
+
+import java.util.List;
+
+/**
+ * Data access interface for {@link LedgerEntry} objects
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public interface LedgerDao {
+
+    /**
+     * Inserts the entries in the current transaction in the list order, the sequence numbers are assigned by the database
+     *
+     * @param entries entries without sequence numbers
+     * @throws IllegalArgumentException if entries or any of them is null, or any entry has a sequence number
+     */
+    void insertAll(List<LedgerEntry> entries);
+
+    /**
+     * Loads a page of the entries of the account ordered by sequence number (keyset pagination)
+     *
+     * @param accountId id of the account
+     * @param afterSeq  sequence number of the last entry of the previous page, null for the first page
+     * @param limit     maximum number of entries in the page
+     * @return list of the entries of the account with sequence numbers greater than afterSeq, ordered by sequence number
+     * @throws IllegalArgumentException if accountId is null or limit is non-positive
+     */
+    List<LedgerEntry> findByAccountId(Long accountId, Long afterSeq, int limit);
+
+}
@@ -0,0 +1,76 @@
+package com.task.rest.persistence;
+
+import com.google.common.base.Preconditions;
+import com.task.rest.model.dbo.LedgerEntry;
+import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.Query;
+
+import javax.inject.Inject;
+import java.sql.PreparedStatement;
+import java.util.List;
+
+/**
+ * Implementation of the {@link LedgerDao} over the database
+ * <p>
+ * Entries are inserted by plain JDBC batches: the sequence numbers are identity values, so Hibernate would insert
+ * the entities one statement at a time to read every generated value back
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see LedgerDao
+ */
+public class LedgerDaoImpl extends AbstractDAO<LedgerEntry> implements LedgerDao {
+
+    private static final String INSERT_SQL = "insert into " + LedgerEntry.TABLE_NAME
+            + " (account_id, operation, amount, balance, created_at) values (?, ?, ?, ?, ?)";
+
+    @Inject
+    public LedgerDaoImpl(SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void insertAll(List<LedgerEntry> entries) {
+        Preconditions.checkArgument(entries != null, "entries is null");
+        for (LedgerEntry entry : entries) {
+            Preconditions.checkArgument(entry != null, "entry is null");
+            Preconditions.checkArgument(entry.getSeq() == null, "try to insert entry with specified sequence number");
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        currentSession().doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+                for (LedgerEntry entry : entries) {
+                    statement.setLong(1, entry.getAccountId());
+                    statement.setString(2, entry.getOperation().name());
+                    statement.setBigDecimal(3, entry.getAmount());
+                    statement.setBigDecimal(4, entry.getBalance());
+                    statement.setLong(5, entry.getCreatedAt());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<LedgerEntry> findByAccountId(Long accountId, Long afterSeq, int limit) {
+        Preconditions.checkArgument(accountId != null, "try to find entries of account with null id");
+        Preconditions.checkArgument(limit > 0, "limit is non-positive");
+        Query<LedgerEntry> query = afterSeq == null
+                ? currentSession().createQuery("from LedgerEntry where accountId = :accountId order by seq", LedgerEntry.class)
+                : currentSession().createQuery("from LedgerEntry where accountId = :accountId and seq > :afterSeq order by seq", LedgerEntry.class)
+                .setParameter("afterSeq", afterSeq);
+        return query.setParameter("accountId", accountId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.task.rest.persistence;
+
+/**
+ * Defines where the accounts are stored
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public enum StorageType {
+    /**
+     * accounts are stored in the configured database by Hibernate, see {@link AccountDaoImpl}
+     */
+    DATABASE,
+    /**
+     * accounts are kept in memory only and are lost on restart, no database sessions are opened,
+     * see {@link InMemoryAccountDao}
+     */
+    IN_MEMORY
+}
@@ -0,0 +1,121 @@
+package com.task.rest.persistence;
+
+import com.task.rest.metrics.RequestTimings;
+import com.task.rest.model.dbo.Account;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Decorator of the {@link AccountDao} adding the time spent in its calls to the {@link RequestTimings} of the current request
+ * <p>
+ * The time the consumer of {@link #scroll} spends on the accounts is not counted, the streamed list writes them meanwhile
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see com.task.rest.metrics.RequestMetricsListener
+ */
+public class TimedAccountDao implements AccountDao {
+
+    public static final String DELEGATE_FIELD_NAME = "timedAccountDao.delegate";
+
+    private final AccountDao delegate;
+
+    @Inject
+    public TimedAccountDao(@Named(DELEGATE_FIELD_NAME) AccountDao delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Account> getAll() {
+        return timed(delegate::getAll);
+    }
+
+    @Override
+    public List<Account> getPage(Long afterId, int limit) {
+        return timed(() -> delegate.getPage(afterId, limit));
+    }
+
+    @Override
+    public void scroll(Long afterId, Consumer<Account> consumer) {
+        long[] consumerNanos = new long[1];
+        long start = System.nanoTime();
+        try {
+            delegate.scroll(afterId, account -> {
+                long consumed = System.nanoTime();
+                try {
+                    consumer.accept(account);
+                } finally {
+                    consumerNanos[0] += System.nanoTime() - consumed;
+                }
+            });
+        } finally {
+            RequestTimings.addDao(System.nanoTime() - start - consumerNanos[0]);
+        }
+    }
+
+    @Override
+    public Optional<Account> findById(Long id) {
+        return timed(() -> delegate.findById(id));
+    }
+
+    @Override
+    public Optional<Account> findByIdForRead(Long id) {
+        return timed(() -> delegate.findByIdForRead(id));
+    }
+
+    @Override
+    public List<Account> findByIds(Collection<Long> ids) {
+        return timed(() -> delegate.findByIds(ids));
+    }
+
+    @Override
+    public List<Account> findByIdsForRead(Collection<Long> ids) {
+        return timed(() -> delegate.findByIdsForRead(ids));
+    }
+
+    @Override
+    public boolean addAmount(Long id, BigDecimal amount) {
+        return timed(() -> delegate.addAmount(id, amount));
+    }
+
+    @Override
+    public boolean subtractAmount(Long id, BigDecimal amount) {
+        return timed(() -> delegate.subtractAmount(id, amount));
+    }
+
+    @Override
+    public Account delete(Account account) {
+        return timed(() -> delegate.delete(account));
+    }
+
+    @Override
+    public Account update(Account account) {
+        return timed(() -> delegate.update(account));
+    }
+
+    @Override
+    public Account create(Account account) {
+        return timed(() -> delegate.create(account));
+    }
+
+    @Override
+    public List<Account> createAll(List<Account> accounts) {
+        return timed(() -> delegate.createAll(accounts));
+    }
+
+    private static <T> T timed(Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            RequestTimings.addDao(System.nanoTime() - start);
+        }
+    }
+
+}
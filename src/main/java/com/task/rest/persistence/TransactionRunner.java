@@ -0,0 +1,26 @@
+package com.task.rest.persistence;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs a piece of work in a transaction committed as soon as the work is done, so that the work can be retried after a failed commit
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public interface TransactionRunner {
+
+    /**
+     * Runs the work in the transaction of the session bound to the current thread and commits the transaction when the work is done.
+     * The transaction is begun if it is not active yet (and a new session is opened if there's no current one),
+     * otherwise the work joins it and is committed together with everything done by the enclosing unit of work so far
+     *
+     * @param work work to be done
+     * @param <T>  type of the work result
+     * @return result of the work
+     * @throws IllegalArgumentException if work is null
+     * @throws RuntimeException         thrown by the work or by the commit,
+     *                                  the transaction is rolled back and the session is cleared in this case
+     */
+    <T> T inTransaction(Supplier<T> work);
+
+}
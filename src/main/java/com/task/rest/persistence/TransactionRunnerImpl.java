@@ -0,0 +1,74 @@
+package com.task.rest.persistence;
+
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.context.internal.ManagedSessionContext;
+
+import java.util.function.Supplier;
+
+/**
+ * Implementation for the {@link TransactionRunner} on top of the Hibernate {@link ManagedSessionContext}
+ * (the context {@link io.dropwizard.hibernate.UnitOfWork} binds its sessions to)
+ * <p>
+ * The work reuses the current session and its transaction instead of opening new ones,
+ * so it never waits for another pooled connection while the request already holds one
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see TransactionRunner
+ */
+public class TransactionRunnerImpl implements TransactionRunner {
+
+    private final SessionFactory sessionFactory;
+
+    @Inject
+    public TransactionRunnerImpl(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T inTransaction(Supplier<T> work) {
+        Preconditions.checkArgument(work != null, "work is null");
+        if (ManagedSessionContext.hasBind(sessionFactory)) {
+            return inTransaction(sessionFactory.getCurrentSession(), work);
+        }
+
+        Session session = sessionFactory.openSession();
+        ManagedSessionContext.bind(session);
+        try {
+            return inTransaction(session, work);
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
+
+    private static <T> T inTransaction(Session session, Supplier<T> work) {
+        Transaction transaction = session.getTransaction();
+        if (!transaction.isActive()) {
+            transaction.begin();
+        }
+        try {
+            T result = work.get();
+            transaction.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (transaction.getStatus().canRollback()) {
+                try {
+                    transaction.rollback();
+                } catch (RuntimeException rollbackException) {
+                    e.addSuppressed(rollbackException);
+                }
+            }
+            // entities loaded by the failed transaction are stale now
+            session.clear();
+            throw e;
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.task.rest.persistence.cache;
+
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Region of the {@link LocalRegionFactory} keeping the query results or the update timestamps of the tables,
+ * Hibernate decides whether the kept results are up to date
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+class LocalDataRegion extends LocalRegion implements QueryResultsRegion, TimestampsRegion {
+
+    LocalDataRegion(String name, ConcurrentMap<Object, Object> entries) {
+        super(name, entries);
+    }
+
+    @Override
+    public Object get(SharedSessionContractImplementor session, Object key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public void put(SharedSessionContractImplementor session, Object key, Object value) {
+        entries.put(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        entries.remove(key);
+    }
+
+    @Override
+    public void evictAll() {
+        entries.clear();
+    }
+
+}
@@ -0,0 +1,328 @@
+package com.task.rest.persistence.cache;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.internal.DefaultCacheKeysFactory;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Region of the {@link LocalRegionFactory} keeping the entities by the read-write strategy
+ * <p>
+ * An entity is cached when it's loaded, inserted or updated, as an item with the version and the time it was cached at.
+ * A session reads only the items cached before it was opened. An entity being updated or deleted is replaced by a soft lock
+ * until the transaction completes: the locked entity is read from the database and not cached by the readers meanwhile,
+ * then it's replaced by the committed state, or the lock is released and the entity is cached again by the next reader
+ * of a newer version. A stale state can't replace a newer one, because every entry is replaced atomically and the versions are compared.
+ * A bulk update or delete of the table locks the whole region and empties it, nothing is cached until the statement is committed
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+class LocalEntityRegion extends LocalRegion implements EntityRegion {
+
+    private final CacheDataDescription metadata;
+    private final Comparator versionComparator;
+
+    /**
+     * number of the bulk statements holding the region lock
+     */
+    private final AtomicInteger regionLocks = new AtomicInteger();
+
+    /**
+     * time the region was unlocked at last, the entities loaded by the sessions opened before may be stale
+     */
+    private volatile long regionUnlockedAt;
+
+    private final EntityRegionAccessStrategy readWriteAccess = new ReadWriteAccess();
+
+    LocalEntityRegion(String name, ConcurrentMap<Object, Object> entries, CacheDataDescription metadata) {
+        super(name, entries);
+        this.metadata = metadata;
+        this.versionComparator = metadata.getVersionComparator();
+    }
+
+    /**
+     * @throws CacheException if the access type is not {@link AccessType#READ_WRITE}
+     */
+    @Override
+    public EntityRegionAccessStrategy buildAccessStrategy(AccessType accessType) throws CacheException {
+        if (accessType != AccessType.READ_WRITE) {
+            throw new CacheException("access type " + accessType + " is not supported by region " + getName());
+        }
+        return readWriteAccess;
+    }
+
+    @Override
+    public boolean isTransactionAware() {
+        return false;
+    }
+
+    @Override
+    public CacheDataDescription getCacheDataDescription() {
+        return metadata;
+    }
+
+    /**
+     * @return lock of an entry that was changed while the region was locked or its lock timed out,
+     * the entity is not cached until the lock times out
+     */
+    private SoftLockEntry expiredLock() {
+        long timeout = nextTimestamp() + getTimeout();
+        SoftLockEntry lock = new SoftLockEntry(timeout, null);
+        lock.unlock(timeout);
+        return lock;
+    }
+
+    private class ReadWriteAccess implements EntityRegionAccessStrategy {
+
+        @Override
+        public Object generateCacheKey(Object id, EntityPersister persister, SessionFactoryImplementor factory, String tenantIdentifier) {
+            return DefaultCacheKeysFactory.staticCreateEntityKey(id, persister, factory, tenantIdentifier);
+        }
+
+        @Override
+        public Object getCacheKeyId(Object cacheKey) {
+            return DefaultCacheKeysFactory.staticGetEntityId(cacheKey);
+        }
+
+        @Override
+        public EntityRegion getRegion() {
+            return LocalEntityRegion.this;
+        }
+
+        @Override
+        public Object get(SharedSessionContractImplementor session, Object key, long txTimestamp) {
+            Object entry = entries.get(key);
+            return entry instanceof Item && ((Item) entry).isReadable(txTimestamp) ? ((Item) entry).value : null;
+        }
+
+        @Override
+        public boolean putFromLoad(SharedSessionContractImplementor session, Object key, Object value, long txTimestamp, Object version) {
+            return putFromLoad(session, key, value, txTimestamp, version, false);
+        }
+
+        @Override
+        public boolean putFromLoad(SharedSessionContractImplementor session, Object key, Object value, long txTimestamp, Object version,
+                                   boolean minimalPutOverride) {
+            if (regionLocks.get() > 0 || txTimestamp <= regionUnlockedAt) {
+                return false;
+            }
+            if (minimalPutOverride && entries.containsKey(key)) {
+                return false;
+            }
+            boolean[] put = new boolean[1];
+            entries.compute(key, (k, entry) -> {
+                if (entry == null || ((Entry) entry).isWriteable(txTimestamp, version, versionComparator)) {
+                    put[0] = true;
+                    return new Item(value, version, nextTimestamp());
+                }
+                return entry;
+            });
+            return put[0];
+        }
+
+        @Override
+        public SoftLock lockItem(SharedSessionContractImplementor session, Object key, Object version) {
+            long timeout = nextTimestamp() + getTimeout();
+            return (SoftLock) entries.compute(key, (k, entry) -> entry == null
+                    ? new SoftLockEntry(timeout, version)
+                    : ((Entry) entry).lock(timeout));
+        }
+
+        @Override
+        public void unlockItem(SharedSessionContractImplementor session, Object key, SoftLock lock) {
+            entries.compute(key, (k, entry) -> entry != null && ((Entry) entry).isUnlockable(lock)
+                    ? ((SoftLockEntry) entry).unlock(nextTimestamp())
+                    : expiredLock());
+        }
+
+        /**
+         * The entity is inserted by the transaction, so no other one can have it cached yet
+         */
+        @Override
+        public boolean insert(SharedSessionContractImplementor session, Object key, Object value, Object version) {
+            return false;
+        }
+
+        @Override
+        public boolean afterInsert(SharedSessionContractImplementor session, Object key, Object value, Object version) {
+            boolean[] put = new boolean[1];
+            entries.computeIfAbsent(key, k -> {
+                put[0] = true;
+                return new Item(value, version, nextTimestamp());
+            });
+            return put[0];
+        }
+
+        /**
+         * The entity is locked until the transaction completes, the updated state is cached by {@link #afterUpdate}
+         */
+        @Override
+        public boolean update(SharedSessionContractImplementor session, Object key, Object value, Object currentVersion, Object previousVersion) {
+            return false;
+        }
+
+        @Override
+        public boolean afterUpdate(SharedSessionContractImplementor session, Object key, Object value, Object currentVersion,
+                                   Object previousVersion, SoftLock lock) {
+            boolean[] put = new boolean[1];
+            entries.compute(key, (k, entry) -> {
+                if (entry == null || !((Entry) entry).isUnlockable(lock)) {
+                    return expiredLock();
+                }
+                SoftLockEntry softLock = (SoftLockEntry) entry;
+                if (softLock.concurrent) {
+                    // another transaction updates the entity as well, its state is not known yet
+                    return softLock.unlock(nextTimestamp());
+                }
+                put[0] = true;
+                return new Item(value, currentVersion, nextTimestamp());
+            });
+            return put[0];
+        }
+
+        /**
+         * The lock taken for the deleted entity is kept until the transaction completes
+         */
+        @Override
+        public void remove(SharedSessionContractImplementor session, Object key) {
+        }
+
+        @Override
+        public void removeAll() {
+            entries.clear();
+        }
+
+        @Override
+        public void evict(Object key) {
+            entries.remove(key);
+        }
+
+        @Override
+        public void evictAll() {
+            entries.clear();
+        }
+
+        @Override
+        public SoftLock lockRegion() {
+            regionLocks.incrementAndGet();
+            return null;
+        }
+
+        @Override
+        public void unlockRegion(SoftLock lock) {
+            regionUnlockedAt = nextTimestamp();
+            entries.clear();
+            regionLocks.decrementAndGet();
+        }
+    }
+
+    private abstract static class Entry {
+
+        final Object version;
+
+        Entry(Object version) {
+            this.version = version;
+        }
+
+        /**
+         * @return whether the state of the entity loaded by a session opened at txTimestamp may replace the entry
+         */
+        abstract boolean isWriteable(long txTimestamp, Object newVersion, Comparator versionComparator);
+
+        abstract boolean isUnlockable(SoftLock lock);
+
+        abstract SoftLockEntry lock(long timeout);
+    }
+
+    private static final class Item extends Entry {
+
+        final Object value;
+        final long timestamp;
+
+        Item(Object value, Object version, long timestamp) {
+            super(version);
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+
+        boolean isReadable(long txTimestamp) {
+            return txTimestamp > timestamp;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        boolean isWriteable(long txTimestamp, Object newVersion, Comparator versionComparator) {
+            return version != null && versionComparator.compare(version, newVersion) < 0;
+        }
+
+        @Override
+        boolean isUnlockable(SoftLock lock) {
+            return false;
+        }
+
+        @Override
+        SoftLockEntry lock(long timeout) {
+            return new SoftLockEntry(timeout, version);
+        }
+    }
+
+    /**
+     * Lock of an entity held by one or more transactions, the fields are changed only while the entry is being replaced.
+     * A lock is released only by its holders, it's the same object in the process
+     */
+    private static final class SoftLockEntry extends Entry implements SoftLock {
+
+        long timeout;
+        int holders = 1;
+        boolean concurrent;
+        long unlockTimestamp;
+
+        SoftLockEntry(long timeout, Object version) {
+            super(version);
+            this.timeout = timeout;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        boolean isWriteable(long txTimestamp, Object newVersion, Comparator versionComparator) {
+            if (txTimestamp > timeout) {
+                return true;
+            }
+            if (holders > 0) {
+                return false;
+            }
+            return version == null ? txTimestamp > unlockTimestamp : versionComparator.compare(version, newVersion) < 0;
+        }
+
+        @Override
+        boolean isUnlockable(SoftLock lock) {
+            return this == lock;
+        }
+
+        @Override
+        SoftLockEntry lock(long timeout) {
+            concurrent = true;
+            holders++;
+            this.timeout = timeout;
+            return this;
+        }
+
+        SoftLockEntry unlock(long timestamp) {
+            if (--holders == 0) {
+                unlockTimestamp = timestamp;
+            }
+            return this;
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.task.rest.persistence.cache;
+
+import org.hibernate.cache.spi.Region;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Base of the regions of the {@link LocalRegionFactory}, the entries are kept in a concurrent map
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+abstract class LocalRegion implements Region {
+
+    private final String name;
+
+    protected final ConcurrentMap<Object, Object> entries;
+
+    LocalRegion(String name, ConcurrentMap<Object, Object> entries) {
+        this.name = name;
+        this.entries = entries;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void destroy() {
+        entries.clear();
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * @return -1, the size is not measured
+     */
+    @Override
+    public long getSizeInMemory() {
+        return -1;
+    }
+
+    @Override
+    public long getElementCountInMemory() {
+        return entries.size();
+    }
+
+    @Override
+    public long getElementCountOnDisk() {
+        return 0;
+    }
+
+    @Override
+    public Map toMap() {
+        return new HashMap<>(entries);
+    }
+
+    @Override
+    public long nextTimestamp() {
+        return LocalRegionFactory.timestamp();
+    }
+
+    @Override
+    public int getTimeout() {
+        return LocalRegionFactory.TIMEOUT;
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.task.rest.persistence.cache;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.NaturalIdRegion;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cfg.AvailableSettings;
+
+import javax.persistence.SharedCacheMode;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hibernate {@link RegionFactory} keeping the second-level cache in the heap of the process
+ * <p>
+ * Entity and query results regions are bounded Guava caches: an entry is evicted in the least recently used order
+ * once a region holds {@value #MAXIMUM_SIZE_PROPERTY} entries, and {@value #EXPIRY_PROPERTY} milliseconds after it was written.
+ * The update timestamps region is never evicted - a lost timestamp would make stale query results look up to date.
+ * Entities are cached by the {@link AccessType#READ_WRITE} strategy only, collections and natural ids are not supported.
+ * <p>
+ * The cache knows only about modifications made through this process, it must be disabled if several service instances share the database
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see LocalEntityRegion
+ */
+public class LocalRegionFactory implements RegionFactory {
+
+    public static final String MAXIMUM_SIZE_PROPERTY = "hibernate.cache.local.maximum_size";
+    public static final String EXPIRY_PROPERTY = "hibernate.cache.local.expiry_millis";
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 10000;
+    private static final long DEFAULT_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * number of timestamps in a millisecond, so timestamps taken in the same millisecond are still distinct
+     */
+    private static final int TIMESTAMPS_PER_MILLISECOND = 1 << 12;
+
+    /**
+     * timestamps a soft lock of an entity is held for at most, one minute
+     */
+    static final int TIMEOUT = 60_000 * TIMESTAMPS_PER_MILLISECOND;
+
+    private static final AtomicLong LAST_TIMESTAMP = new AtomicLong();
+
+    private long maximumSize = DEFAULT_MAXIMUM_SIZE;
+    private long expiryMillis = DEFAULT_EXPIRY_MILLIS;
+
+    /**
+     * @return a timestamp greater than all the ones returned before, increasing with the wall clock
+     */
+    static long timestamp() {
+        while (true) {
+            long last = LAST_TIMESTAMP.get();
+            long next = Math.max(System.currentTimeMillis() * TIMESTAMPS_PER_MILLISECOND, last + 1);
+            if (LAST_TIMESTAMP.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * @return Hibernate settings turning on the second-level cache of this factory and the query cache,
+     * every entity is cached unless it's annotated by {@code @Cacheable(false)}
+     * @throws IllegalArgumentException if maximumSize or expiryMillis is non-positive
+     */
+    public static Map<String, String> settings(long maximumSize, long expiryMillis) {
+        Preconditions.checkArgument(maximumSize > 0, "maximum size is non-positive");
+        Preconditions.checkArgument(expiryMillis > 0, "expiry is non-positive");
+        Map<String, String> settings = new HashMap<>();
+        settings.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, Boolean.TRUE.toString());
+        settings.put(AvailableSettings.USE_QUERY_CACHE, Boolean.TRUE.toString());
+        settings.put(AvailableSettings.CACHE_REGION_FACTORY, LocalRegionFactory.class.getName());
+        settings.put(AvailableSettings.JPA_SHARED_CACHE_MODE, SharedCacheMode.DISABLE_SELECTIVE.name());
+        settings.put(AvailableSettings.DEFAULT_CACHE_CONCURRENCY_STRATEGY, AccessType.READ_WRITE.getExternalName());
+        settings.put(MAXIMUM_SIZE_PROPERTY, Long.toString(maximumSize));
+        settings.put(EXPIRY_PROPERTY, Long.toString(expiryMillis));
+        return settings;
+    }
+
+    /**
+     * @throws CacheException if a setting is not a positive number
+     */
+    @Override
+    public void start(SessionFactoryOptions settings, Map<String, Object> configValues) throws CacheException {
+        maximumSize = positiveProperty(configValues, MAXIMUM_SIZE_PROPERTY, DEFAULT_MAXIMUM_SIZE);
+        expiryMillis = positiveProperty(configValues, EXPIRY_PROPERTY, DEFAULT_EXPIRY_MILLIS);
+    }
+
+    /**
+     * Hibernate 5.2 still declares the {@link Properties} variants abstract, they are implemented by the {@link Map} ones
+     */
+    @Deprecated
+    @Override
+    public void start(SessionFactoryOptions settings, Properties properties) throws CacheException {
+        start(settings, toMap(properties));
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public boolean isMinimalPutsEnabledByDefault() {
+        return false;
+    }
+
+    @Override
+    public AccessType getDefaultAccessType() {
+        return AccessType.READ_WRITE;
+    }
+
+    @Override
+    public long nextTimestamp() {
+        return timestamp();
+    }
+
+    @Override
+    public EntityRegion buildEntityRegion(String regionName, Map<String, Object> configValues, CacheDataDescription metadata) throws CacheException {
+        return new LocalEntityRegion(regionName, boundedMap(), metadata);
+    }
+
+    @Override
+    public NaturalIdRegion buildNaturalIdRegion(String regionName, Map<String, Object> configValues, CacheDataDescription metadata) throws CacheException {
+        throw new CacheException("natural ids are not cached, region " + regionName);
+    }
+
+    @Override
+    public CollectionRegion buildCollectionRegion(String regionName, Map<String, Object> configValues, CacheDataDescription metadata) throws CacheException {
+        throw new CacheException("collections are not cached, region " + regionName);
+    }
+
+    @Override
+    public QueryResultsRegion buildQueryResultsRegion(String regionName, Map<String, Object> configValues) {
+        return new LocalDataRegion(regionName, boundedMap());
+    }
+
+    @Override
+    public TimestampsRegion buildTimestampsRegion(String regionName, Map<String, Object> configValues) throws CacheException {
+        return new LocalDataRegion(regionName, new ConcurrentHashMap<>());
+    }
+
+    @Deprecated
+    @Override
+    public EntityRegion buildEntityRegion(String regionName, Properties properties, CacheDataDescription metadata) throws CacheException {
+        return buildEntityRegion(regionName, toMap(properties), metadata);
+    }
+
+    @Deprecated
+    @Override
+    public NaturalIdRegion buildNaturalIdRegion(String regionName, Properties properties, CacheDataDescription metadata) throws CacheException {
+        return buildNaturalIdRegion(regionName, toMap(properties), metadata);
+    }
+
+    @Deprecated
+    @Override
+    public CollectionRegion buildCollectionRegion(String regionName, Properties properties, CacheDataDescription metadata) throws CacheException {
+        return buildCollectionRegion(regionName, toMap(properties), metadata);
+    }
+
+    @Deprecated
+    @Override
+    public QueryResultsRegion buildQueryResultsRegion(String regionName, Properties properties) throws CacheException {
+        return buildQueryResultsRegion(regionName, toMap(properties));
+    }
+
+    @Deprecated
+    @Override
+    public TimestampsRegion buildTimestampsRegion(String regionName, Properties properties) throws CacheException {
+        return buildTimestampsRegion(regionName, toMap(properties));
+    }
+
+    private ConcurrentMap<Object, Object> boundedMap() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expiryMillis, TimeUnit.MILLISECONDS)
+                .build()
+                .asMap();
+    }
+
+    private static Map<String, Object> toMap(Properties properties) {
+        Map<String, Object> configValues = new HashMap<>();
+        properties.stringPropertyNames().forEach(name -> configValues.put(name, properties.getProperty(name)));
+        return configValues;
+    }
+
+    private static long positiveProperty(Map<String, Object> configValues, String name, long defaultValue) {
+        Object configValue = configValues.get(name);
+        if (configValue == null) {
+            return defaultValue;
+        }
+        String value = configValue.toString();
+        try {
+            long parsed = Long.parseLong(value.trim());
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new CacheException(name + " is not a positive number: " + value);
+    }
+
+}
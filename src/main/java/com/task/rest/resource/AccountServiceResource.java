@@ -1,34 +1,86 @@
 package com.task.rest.resource;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Throwables;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.task.rest.idempotency.IdempotencyStore;
+import com.task.rest.idempotency.IdempotentResponse;
 import com.task.rest.model.api.request.CreateAccountRequest;
 import com.task.rest.model.api.request.DepositOrWithdrawRequest;
+import com.task.rest.model.api.request.Leg;
 import com.task.rest.model.api.request.TransferRequest;
+import com.task.rest.model.api.response.BatchAccountResponse;
 import com.task.rest.model.api.response.CrudAccountResponse;
+import com.task.rest.model.api.response.HistoryResponse;
 import com.task.rest.model.api.response.ListAllResponse;
 import com.task.rest.model.api.response.OperationStatus;
 import com.task.rest.model.dbo.Account;
+import com.task.rest.model.dbo.LedgerEntry;
+import com.task.rest.persistence.TransactionRunner;
 import com.task.rest.service.AccountService;
+import com.task.rest.utils.concurrency.OperationExecutor;
+import com.task.rest.utils.serialization.BinaryFormat;
 import io.dropwizard.hibernate.UnitOfWork;
+import org.hibernate.validator.constraints.NotEmpty;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.Variant;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Represents REST Service resource/controller with mappings http methods to corresponding implementations
+ * <p>
+ * The methods modifying existing accounts are asynchronous: the request thread only queues the modification to the {@link OperationExecutor}
+ * and is released, the response is sent when the modification is committed. Such a method has no unit of work -
+ * {@link AccountService} commits the modification itself in a session of its own, so a modification doesn't hold a pooled connection
+ * while it waits for the account locks. When too many modifications are queued, the request is rejected at once with 503 Service Unavailable.
+ * Getting and listing the accounts are not transactional and select the stored state without loading entities to the session -
+ * the session takes a connection only if the accounts are not cached
+ * <p>
+ * Create, withdraw, deposit and transfer accept the {@link IdempotencyStore#KEY_HEADER} header: the response to the first request
+ * with the key is kept by the {@link IdempotencyStore} and returned to the retries of the request without running the operation again.
+ * The keys of different operations don't collide, a retry must repeat the body of the first request
+ * <p>
+ * Getting accounts, listing the accounts, withdraw, deposit and transfer accept and return the compact {@link BinaryFormat}
+ * as well as json, the format is chosen by the Content-Type and Accept headers
  *
  * @author Alexander Kotov (kotov.alex.22@gmail.com)
  */
@@ -39,6 +91,37 @@ public class AccountServiceResource {
 
     public static final String INIT_AMOUNT_FIELD_NAME = "initialMoneyAmount";
 
+    /**
+     * maximum number of accounts in a page of the list
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final String DEFAULT_HISTORY_SIZE = "100";
+
+    /**
+     * maximum number of accounts created by a single request
+     */
+    public static final int MAX_CREATE_BATCH_SIZE = 10000;
+
+    /**
+     * maximum number of accounts requested by a single request
+     */
+    public static final int MAX_GET_BATCH_SIZE = 10000;
+
+    /**
+     * maximum number of transfers applied by a single request, the unit of work holds the locks of all their accounts
+     */
+    public static final int MAX_TRANSFER_BATCH_SIZE = 1000;
+
+    /**
+     * maximum number of legs of a single posting, all their accounts are locked at once
+     */
+    public static final int MAX_POSTING_SIZE = 1000;
+
+    /**
+     * formats of the streamed list of accounts, json is preferred if both are acceptable
+     */
+    private static final List<Variant> LIST_VARIANTS = Variant.mediaTypes(MediaType.APPLICATION_JSON_TYPE, BinaryFormat.MEDIA_TYPE_TYPE).build();
+
     private final AccountService accountService;
 
     /**
@@ -46,45 +129,158 @@ public class AccountServiceResource {
      */
     private final BigDecimal initialMoneyAmount;
 
+    /**
+     * used to write the streamed list of accounts
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * runs the modifications of existing accounts
+     */
+    private final OperationExecutor operationExecutor;
+
+    /**
+     * keeps the responses to the requests with an idempotency key
+     */
+    private final IdempotencyStore idempotencyStore;
+
+    /**
+     * commits an account created with an idempotency key before its response is kept
+     */
+    private final TransactionRunner transactionRunner;
+
     @Inject
-    public AccountServiceResource(AccountService accountService, @Named(INIT_AMOUNT_FIELD_NAME) BigDecimal initialMoneyAmount) {
+    public AccountServiceResource(AccountService accountService, @Named(INIT_AMOUNT_FIELD_NAME) BigDecimal initialMoneyAmount,
+                                  ObjectMapper objectMapper, OperationExecutor operationExecutor,
+                                  IdempotencyStore idempotencyStore, TransactionRunner transactionRunner) {
         this.accountService = accountService;
         this.initialMoneyAmount = initialMoneyAmount;
+        this.objectMapper = objectMapper;
+        this.operationExecutor = operationExecutor;
+        this.idempotencyStore = idempotencyStore;
+        this.transactionRunner = transactionRunner;
     }
 
     /**
      * Mapping for the HTTP POST method for create new account
      *
-     * @param request {@link CreateAccountRequest}
+     * @param idempotencyKey - key of the request and its retries, optional
+     * @param request        {@link CreateAccountRequest}
      * @return {@link Response} object with http status Created and {@link CrudAccountResponse} in its body in case of successful completion
+     * @throws com.task.rest.exceptions.IdempotencyKeyReusedException if the idempotency key was sent with a different request
      * @see CreateAccountRequest
      * @see CrudAccountResponse
      */
     @POST
     @UnitOfWork
     @Path("/create")
-    public Response create(@Valid CreateAccountRequest request) {
+    public Response create(@HeaderParam(IdempotencyStore.KEY_HEADER) @Size(min = 1, max = IdempotencyStore.MAX_KEY_LENGTH) String idempotencyKey,
+                           @Valid CreateAccountRequest request) {
         BigDecimal reqInitValue = request != null ? request.getAmount() : null;
         Account account = new Account(Optional.ofNullable(reqInitValue).orElse(initialMoneyAmount));
-        account = accountService.create(account);
+        if (idempotencyKey == null) {
+            return Response.status(Response.Status.CREATED)
+                    .entity(new CrudAccountResponse(accountService.create(account), OperationStatus.CREATED))
+                    .build();
+        }
+        AtomicBoolean executed = new AtomicBoolean();
+        // the response is kept only after the account is committed, a retry waits for the first request meanwhile
+        CompletableFuture<IdempotentResponse> future = idempotencyStore.execute("create " + idempotencyKey, fingerprint(reqInitValue), () -> {
+            executed.set(true);
+            return CompletableFuture.completedFuture(transactionRunner.inTransaction(() -> new IdempotentResponse(Response.Status.CREATED,
+                    new CrudAccountResponse(accountService.create(account), OperationStatus.CREATED))));
+        });
+        try {
+            return future.join().toResponse(!executed.get());
+        } catch (CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    /**
+     * Mapping for the HTTP POST method for create several new accounts in a single unit of work
+     *
+     * @param requests - list of {@link CreateAccountRequest}, accounts of null requests or requests without amount
+     *                 get the default initial amount
+     * @return {@link Response} object with http status Created and {@link BatchAccountResponse} with the created accounts
+     * in the request order in its body in case of successful completion
+     * @see CreateAccountRequest
+     * @see BatchAccountResponse
+     */
+    @POST
+    @UnitOfWork
+    @Path("/create/batch")
+    public Response createBatch(@Valid @NotEmpty @Size(max = MAX_CREATE_BATCH_SIZE) List<CreateAccountRequest> requests) {
+        List<Account> accounts = requests.stream()
+                .map(request -> new Account(Optional.ofNullable(request).map(CreateAccountRequest::getAmount).orElse(initialMoneyAmount)))
+                .collect(Collectors.toList());
+        accounts = accountService.createAll(accounts);
         return Response.status(Response.Status.CREATED)
-                .entity(new CrudAccountResponse(account, OperationStatus.CREATED))
+                .entity(new BatchAccountResponse(accounts, OperationStatus.CREATED))
                 .build();
     }
 
     /**
-     * Mapping for the HTTP GET method for get list of all account
+     * Mapping for the HTTP GET method for get list of accounts ordered by id
+     * <p>
+     * If the limit is specified, a page of at most limit accounts is returned with the id to request the next page by (if there may be one).
+     * Otherwise all the accounts are streamed to the client as they are read from the storage, so the whole list is never kept in memory
      *
+     * @param afterId - only accounts with greater ids are listed, optional
+     * @param limit   - maximum number of accounts in the page, optional
+     * @param request - chooses the format of the streamed list by the Accept header
      * @return {@link Response} object with http status Ok and {@link ListAllResponse} in its body in case of successful completion
      * @see ListAllResponse
      */
     @GET
-    @UnitOfWork
+    @UnitOfWork(readOnly = true, transactional = false)
     @Path("/list")
-    public Response listAll() {
-        List<Account> accounts = accountService.listAll();
+    @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE})
+    public Response listAll(@QueryParam("afterId") Long afterId, @QueryParam("limit") @Min(1) @Max(MAX_PAGE_SIZE) Integer limit,
+                            @Context Request request) {
+        if (limit != null) {
+            List<Account> accounts = accountService.listPage(afterId, limit);
+            Long nextAfterId = accounts.size() < limit ? null : accounts.get(accounts.size() - 1).getId();
+            return Response.status(Response.Status.OK)
+                    .entity(new ListAllResponse(accounts, nextAfterId))
+                    .build();
+        }
+        // the streamed list is written here, so its format is chosen here as well
+        Variant variant = request.selectVariant(LIST_VARIANTS);
+        if (variant != null && BinaryFormat.MEDIA_TYPE_TYPE.equals(variant.getMediaType())) {
+            StreamingOutput output = outputStream -> writeAccountsBinary(outputStream, afterId);
+            return Response.status(Response.Status.OK)
+                    .entity(output)
+                    .type(BinaryFormat.MEDIA_TYPE_TYPE)
+                    .build();
+        }
+        StreamingOutput output = outputStream -> writeAccounts(outputStream, afterId);
         return Response.status(Response.Status.OK)
-                .entity(new ListAllResponse(accounts))
+                .entity(output)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .build();
+    }
+
+    /**
+     * Mapping for the HTTP GET method for get a page of the recorded balance changes of the account ordered by sequence number
+     * <p>
+     * The changes are written to the ledger in the background, the ones committed in the last moments may be missing yet
+     *
+     * @param id       - specified account id
+     * @param afterSeq - only changes with greater sequence numbers are listed, optional
+     * @param limit    - maximum number of changes in the page, {@value #DEFAULT_HISTORY_SIZE} by default
+     * @see HistoryResponse
+     */
+    @GET
+    @UnitOfWork(readOnly = true)
+    @Path("/history")
+    public Response history(@QueryParam("id") @NotNull Long id, @QueryParam("afterSeq") Long afterSeq,
+                            @QueryParam("limit") @DefaultValue(DEFAULT_HISTORY_SIZE) @Min(1) @Max(MAX_PAGE_SIZE) int limit) {
+        List<LedgerEntry> entries = accountService.history(id, afterSeq, limit);
+        Long nextAfterSeq = entries.size() < limit ? null : entries.get(entries.size() - 1).getSeq();
+        return Response.status(Response.Status.OK)
+                .entity(new HistoryResponse(entries, nextAfterSeq))
                 .build();
     }
 
@@ -96,7 +292,8 @@ public class AccountServiceResource {
      * @see CrudAccountResponse
      */
     @GET
-    @UnitOfWork
+    @UnitOfWork(readOnly = true, transactional = false)
+    @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE})
     public Response getById(@QueryParam("id") @NotNull Long id) {
         final Account account = accountService.get(id);
         return Response.status(Response.Status.OK)
@@ -104,74 +301,247 @@ public class AccountServiceResource {
                 .build();
     }
 
+    /**
+     * Mapping for the HTTP POST method for get several accounts with specified ids at once,
+     * the cached accounts are not read from the storage and the rest are read by a few queries
+     *
+     * @param ids - list of account ids, null ids and ids of not existing accounts are skipped
+     * @return {@link Response} object with http status Ok and {@link ListAllResponse} with the found accounts ordered by id
+     * in its body in case of successful completion
+     * @see ListAllResponse
+     */
+    @POST
+    @UnitOfWork(readOnly = true, transactional = false)
+    @Path("/get")
+    @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE})
+    public Response getByIds(@NotEmpty @Size(max = MAX_GET_BATCH_SIZE) List<Long> ids) {
+        List<Account> accounts = accountService.getAll(ids.stream().filter(Objects::nonNull).collect(Collectors.toList()));
+        return Response.status(Response.Status.OK)
+                .entity(new ListAllResponse(accounts))
+                .build();
+    }
+
     /**
      * Mapping for the HTTP PUT method for withdraw money from the account
      *
-     * @param request - {@link DepositOrWithdrawRequest}
-     * @return {@link Response} object with http status Ok and {@link CrudAccountResponse} in its body in case of successful completion
+     * @param idempotencyKey - key of the request and its retries, optional
+     * @param request        - {@link DepositOrWithdrawRequest}
+     * @param asyncResponse  - resumed by {@link Response} object with http status Ok and {@link CrudAccountResponse} in its body in case of successful completion
+     * @throws com.task.rest.exceptions.OperationQueueFullException if too many modifications are queued
+     * @throws com.task.rest.exceptions.IdempotencyKeyReusedException if the idempotency key was sent with a different request
      * @see DepositOrWithdrawRequest
      * @see CrudAccountResponse
      */
     @PUT
-    @UnitOfWork
     @Path("/withdraw")
-    public Response withdraw(@Valid @NotNull DepositOrWithdrawRequest request) {
-        final Account account = accountService.withdraw(request.getId(), request.getAmount());
-        return Response.status(Response.Status.OK)
-                .entity(new CrudAccountResponse(account, OperationStatus.UPDATED))
-                .build();
+    @Consumes({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE})
+    @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE})
+    public void withdraw(@HeaderParam(IdempotencyStore.KEY_HEADER) @Size(min = 1, max = IdempotencyStore.MAX_KEY_LENGTH) String idempotencyKey,
+                         @Valid @NotNull DepositOrWithdrawRequest request, @Suspended AsyncResponse asyncResponse) {
+        resumeWhenDone(asyncResponse, "withdraw", idempotencyKey, () -> fingerprint(request.getId(), request.getAmount()), () -> {
+            final Account account = accountService.withdraw(request.getId(), request.getMoney());
+            return new CrudAccountResponse(account, OperationStatus.UPDATED);
+        });
     }
 
     /**
      * Mapping for the HTTP PUT method for deposit money to the account
      *
-     * @param request - {@link DepositOrWithdrawRequest}
-     * @return {@link Response} object with http status Ok and {@link CrudAccountResponse} in its body in case of successful completion
+     * @param idempotencyKey - key of the request and its retries, optional
+     * @param request        - {@link DepositOrWithdrawRequest}
+     * @param asyncResponse  - resumed by {@link Response} object with http status Ok and {@link CrudAccountResponse} in its body in case of successful completion
+     * @throws com.task.rest.exceptions.OperationQueueFullException if too many modifications are queued
+     * @throws com.task.rest.exceptions.IdempotencyKeyReusedException if the idempotency key was sent with a different request
      * @see DepositOrWithdrawRequest
      * @see CrudAccountResponse
      */
     @PUT
-    @UnitOfWork
     @Path("/deposit")
-    public Response deposit(@Valid @NotNull DepositOrWithdrawRequest request) {
-        final Account account = accountService.deposit(request.getId(), request.getAmount());
-        return Response.status(Response.Status.OK)
-                .entity(new CrudAccountResponse(account, OperationStatus.UPDATED))
-                .build();
+    @Consumes({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE})
+    @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE})
+    public void deposit(@HeaderParam(IdempotencyStore.KEY_HEADER) @Size(min = 1, max = IdempotencyStore.MAX_KEY_LENGTH) String idempotencyKey,
+                        @Valid @NotNull DepositOrWithdrawRequest request, @Suspended AsyncResponse asyncResponse) {
+        resumeWhenDone(asyncResponse, "deposit", idempotencyKey, () -> fingerprint(request.getId(), request.getAmount()), () -> {
+            final Account account = accountService.deposit(request.getId(), request.getMoney());
+            return new CrudAccountResponse(account, OperationStatus.UPDATED);
+        });
     }
 
     /**
      * Mapping for the HTTP PUT method for transfer money from one account to another
      *
-     * @param request - {@link TransferRequest}
-     * @return {@link Response} object with http status Ok and {@link CrudAccountResponse} in its body in case of successful completion
+     * @param idempotencyKey - key of the request and its retries, optional
+     * @param request        - {@link TransferRequest}
+     * @param asyncResponse  - resumed by {@link Response} object with http status Ok and {@link CrudAccountResponse} in its body in case of successful completion
+     * @throws com.task.rest.exceptions.OperationQueueFullException if too many modifications are queued
+     * @throws com.task.rest.exceptions.IdempotencyKeyReusedException if the idempotency key was sent with a different request
      * @see TransferRequest
      * @see CrudAccountResponse
      */
     @PUT
-    @UnitOfWork
     @Path("/transfer")
-    public Response transfer(@Valid @NotNull TransferRequest request) {
-        final Account account = accountService.transfer(request.getFromId(), request.getToId(), request.getAmount());
-        return Response.status(Response.Status.OK)
-                .entity(new CrudAccountResponse(account, OperationStatus.UPDATED))
-                .build();
+    @Consumes({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE})
+    @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE})
+    public void transfer(@HeaderParam(IdempotencyStore.KEY_HEADER) @Size(min = 1, max = IdempotencyStore.MAX_KEY_LENGTH) String idempotencyKey,
+                         @Valid @NotNull TransferRequest request, @Suspended AsyncResponse asyncResponse) {
+        resumeWhenDone(asyncResponse, "transfer", idempotencyKey, () -> fingerprint(request.getFromId(), request.getToId(), request.getAmount()), () -> {
+            final Account account = accountService.transfer(request.getFromId(), request.getToId(), request.getMoney());
+            return new CrudAccountResponse(account, OperationStatus.UPDATED);
+        });
+    }
+
+    /**
+     * Mapping for the HTTP PUT method for applying a batch of transfers in a single unit of work
+     *
+     * @param requests      - list of at most {@value #MAX_TRANSFER_BATCH_SIZE} {@link TransferRequest} applied in the list order, all or none of them
+     * @param asyncResponse - resumed by {@link Response} object with http status Ok and {@link BatchAccountResponse}
+     *                      with all updated accounts in its body in case of successful completion
+     * @throws com.task.rest.exceptions.OperationQueueFullException if too many modifications are queued
+     * @see TransferRequest
+     * @see BatchAccountResponse
+     */
+    @PUT
+    @Path("/transfer/batch")
+    public void transferBatch(@Valid @NotEmpty @Size(max = MAX_TRANSFER_BATCH_SIZE) List<TransferRequest> requests, @Suspended AsyncResponse asyncResponse) {
+        resumeWhenDone(asyncResponse, () -> {
+            final List<Account> accounts = accountService.transferBatch(requests);
+            return Response.status(Response.Status.OK)
+                    .entity(new BatchAccountResponse(accounts, OperationStatus.UPDATED))
+                    .build();
+        });
+    }
+
+    /**
+     * Mapping for the HTTP PUT method for applying a balanced set of debits and credits to several accounts in a single unit of work
+     *
+     * @param legs          - list of at most {@value #MAX_POSTING_SIZE} {@link Leg}, debits have negative amounts and credits positive ones, all or none of them are applied
+     * @param asyncResponse - resumed by {@link Response} object with http status Ok and {@link BatchAccountResponse}
+     *                      with all involved accounts in its body in case of successful completion
+     * @throws com.task.rest.exceptions.OperationQueueFullException if too many modifications are queued
+     * @see Leg
+     * @see BatchAccountResponse
+     */
+    @PUT
+    @Path("/postings")
+    public void post(@Valid @NotEmpty @Size(max = MAX_POSTING_SIZE) List<Leg> legs, @Suspended AsyncResponse asyncResponse) {
+        resumeWhenDone(asyncResponse, () -> {
+            final List<Account> accounts = accountService.post(legs);
+            return Response.status(Response.Status.OK)
+                    .entity(new BatchAccountResponse(accounts, OperationStatus.UPDATED))
+                    .build();
+        });
     }
 
     /**
      * Mapping for the HTTP DELETE method for delete specified account
      *
-     * @param id - specified account id
-     * @return {@link Response} object with http status Ok and {@link CrudAccountResponse} in its body in case of successful completion
+     * @param id            - specified account id
+     * @param asyncResponse - resumed by {@link Response} object with http status Ok and {@link CrudAccountResponse} in its body in case of successful completion
+     * @throws com.task.rest.exceptions.OperationQueueFullException if too many modifications are queued
      * @see CrudAccountResponse
      */
     @DELETE
-    @UnitOfWork
     @Path("/delete")
-    public Response delete(@QueryParam("id") @NotNull Long id) {
-        final Account account = accountService.delete(id);
-        return Response.status(Response.Status.OK)
-                .entity(new CrudAccountResponse(account, OperationStatus.DELETED))
-                .build();
+    public void delete(@QueryParam("id") @NotNull Long id, @Suspended AsyncResponse asyncResponse) {
+        resumeWhenDone(asyncResponse, () -> {
+            final Account account = accountService.delete(id);
+            return Response.status(Response.Status.OK)
+                    .entity(new CrudAccountResponse(account, OperationStatus.DELETED))
+                    .build();
+        });
+    }
+
+    /**
+     * Queues the operation and resumes the response by its result once it's done, or by the exception it throws
+     */
+    private void resumeWhenDone(AsyncResponse asyncResponse, Supplier<Response> operation) {
+        operationExecutor.submit(operation).whenComplete((response, failure) -> {
+            if (failure == null) {
+                asyncResponse.resume(response);
+            } else {
+                asyncResponse.resume(failure);
+            }
+        });
+    }
+
+    /**
+     * Queues the operation unless there's a kept response to the request with the idempotency key,
+     * resumes the response with status Ok once the operation or the first request with the key is done.
+     * A request with a different fingerprint than the first request with the key is rejected
+     */
+    private void resumeWhenDone(AsyncResponse asyncResponse, String operationName, String idempotencyKey, Supplier<String> fingerprint,
+                                Supplier<CrudAccountResponse> operation) {
+        if (idempotencyKey == null) {
+            resumeWhenDone(asyncResponse, () -> Response.status(Response.Status.OK).entity(operation.get()).build());
+            return;
+        }
+        AtomicBoolean executed = new AtomicBoolean();
+        idempotencyStore.execute(operationName + ' ' + idempotencyKey, fingerprint.get(), () -> {
+            executed.set(true);
+            return operationExecutor.submit(() -> new IdempotentResponse(Response.Status.OK, operation.get()));
+        }).whenComplete((response, failure) -> {
+            if (failure == null) {
+                asyncResponse.resume(response.toResponse(!executed.get()));
+            } else {
+                asyncResponse.resume(failure);
+            }
+        });
     }
+
+    /**
+     * @param fields fields of the request, amounts are compared by value
+     * @return fingerprint of the request kept with its idempotency key
+     */
+    private static String fingerprint(Object... fields) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (Object field : fields) {
+            hasher.putUnencodedChars(field instanceof BigDecimal ? ((BigDecimal) field).stripTrailingZeros().toPlainString() : String.valueOf(field))
+                    .putChar(' ');
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Writes the accounts in the {@link BinaryFormat} of {@link ListAllResponse}, one account at a time
+     */
+    private void writeAccountsBinary(OutputStream outputStream, Long afterId) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+        try {
+            accountService.forEach(afterId, account -> {
+                try {
+                    BinaryFormat.writeListedAccount(output, account);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        BinaryFormat.writeListEnd(output, null);
+        output.flush();
+    }
+
+    /**
+     * Writes the accounts in the same form as {@link ListAllResponse}, one account at a time
+     */
+    private void writeAccounts(OutputStream outputStream, Long afterId) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("accounts");
+            try {
+                accountService.forEach(afterId, account -> {
+                    try {
+                        generator.writeObject(account);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
 }
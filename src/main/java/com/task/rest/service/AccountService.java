@@ -3,13 +3,23 @@ package com.task.rest.service;
 import com.task.rest.exceptions.InsufficientFundsException;
 import com.task.rest.exceptions.NoSuchAccountException;
 import com.task.rest.exceptions.TransferToTheSameAccountException;
+import com.task.rest.exceptions.UnbalancedPostingException;
+import com.task.rest.model.Money;
+import com.task.rest.model.api.request.Leg;
+import com.task.rest.model.api.request.TransferRequest;
 import com.task.rest.model.dbo.Account;
+import com.task.rest.model.dbo.LedgerEntry;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Represents all operations available for execution via REST service
+ * <p>
+ * Modifications of existing accounts (withdraw, deposit, transfer and delete) run in transactions of their own
+ * committed before the methods return, so the callers don't need to start a transaction for them
  *
  * @author Alexander Kotov (kotov.alex.22@gmail.com)
  */
@@ -25,6 +35,16 @@ public interface AccountService {
      */
     Account create(Account account);
 
+    /**
+     * Creates new accounts in the service at once
+     *
+     * @param accounts accounts with initial money amounts
+     * @return created accounts in the same order
+     * @throws IllegalArgumentException if accounts is null or contains null
+     * @throws IllegalArgumentException if any of accounts has specified id or null amount
+     */
+    List<Account> createAll(List<Account> accounts);
+
     /**
      * @param id requested account id
      * @return {@link Account} object associated with id
@@ -33,11 +53,49 @@ public interface AccountService {
      */
     Account get(Long id);
 
+    /**
+     * Loads the accounts with the specified ids at once
+     *
+     * @param ids requested account ids, repeated ids are ignored
+     * @return found accounts ordered by id, accounts that do not exist are missed
+     * @throws IllegalArgumentException if ids is null or contains null
+     */
+    List<Account> getAll(Collection<Long> ids);
+
     /**
      * @return list of all accounts in the service
      */
     List<Account> listAll();
 
+    /**
+     * @param afterId id of the last account of the previous page, null for the first page
+     * @param limit   maximum number of accounts in the page
+     * @return page of accounts with ids greater than afterId, ordered by id
+     * @throws IllegalArgumentException if limit is non-positive
+     */
+    List<Account> listPage(Long afterId, int limit);
+
+    /**
+     * Loads a page of the recorded changes of the account balance, the changes committed in the last moments may be missing yet
+     *
+     * @param id       account id, the changes of a deleted account are kept as well
+     * @param afterSeq sequence number of the last change of the previous page, null for the first page
+     * @param limit    maximum number of changes in the page
+     * @return page of the changes with sequence numbers greater than afterSeq, ordered by sequence number,
+     * empty if the changes are not recorded
+     * @throws IllegalArgumentException if id is null or limit is non-positive
+     */
+    List<LedgerEntry> history(Long id, Long afterSeq, int limit);
+
+    /**
+     * Passes the accounts ordered by id to the consumer one by one without keeping them all in memory
+     *
+     * @param afterId  accounts with ids greater than afterId are passed, null to pass all the accounts
+     * @param consumer consumer of the accounts
+     * @throws IllegalArgumentException if consumer is null
+     */
+    void forEach(Long afterId, Consumer<Account> consumer);
+
     /**
      * Withdraws amount from the specified account
      *
@@ -49,7 +107,14 @@ public interface AccountService {
      * @throws NoSuchAccountException     if storage does not contain account with specified id
      * @throws InsufficientFundsException if account has insufficient funds for withdraw
      */
-    Account withdraw(Long id, BigDecimal amount);
+    Account withdraw(Long id, Money amount);
+
+    /**
+     * Adapter of {@link #withdraw(Long, Money)} for a {@link BigDecimal} amount
+     */
+    default Account withdraw(Long id, BigDecimal amount) {
+        return withdraw(id, amount == null ? null : Money.of(amount));
+    }
 
     /**
      * Deposits amount to the specified account
@@ -61,7 +126,14 @@ public interface AccountService {
      * @throws IllegalArgumentException if amount is null or non-positive
      * @throws NoSuchAccountException   if storage does not contain account with specified id
      */
-    Account deposit(Long id, BigDecimal amount);
+    Account deposit(Long id, Money amount);
+
+    /**
+     * Adapter of {@link #deposit(Long, Money)} for a {@link BigDecimal} amount
+     */
+    default Account deposit(Long id, BigDecimal amount) {
+        return deposit(id, amount == null ? null : Money.of(amount));
+    }
 
     /**
      * Transfers money from one specified account to another
@@ -76,7 +148,48 @@ public interface AccountService {
      * @throws InsufficientFundsException        if account has insufficient funds for transfer
      * @throws TransferToTheSameAccountException if fromId.equals(toId) == true
      */
-    Account transfer(Long fromId, Long toId, BigDecimal amount);
+    Account transfer(Long fromId, Long toId, Money amount);
+
+    /**
+     * Adapter of {@link #transfer(Long, Long, Money)} for a {@link BigDecimal} amount
+     */
+    default Account transfer(Long fromId, Long toId, BigDecimal amount) {
+        return transfer(fromId, toId, amount == null ? null : Money.of(amount));
+    }
+
+    /**
+     * Applies all the specified transfers as a single operation
+     * <p>
+     * Transfers are applied in the order of the list, so money received by an account
+     * can be transferred further by the subsequent transfers of the same batch.
+     * Either all transfers are applied or none of them
+     *
+     * @param transfers transfers to be applied
+     * @return list of all updated {@link Account} objects sorted by id
+     * @throws IllegalArgumentException          if transfers is null or contains null
+     * @throws IllegalArgumentException          if any transfer has null fromId or toId
+     * @throws IllegalArgumentException          if any transfer has null or non-positive amount
+     * @throws NoSuchAccountException            if storage does not contain account with any of the specified ids
+     * @throws InsufficientFundsException        if any account has insufficient funds for its transfer
+     * @throws TransferToTheSameAccountException if any transfer has fromId.equals(toId) == true
+     */
+    List<Account> transferBatch(List<TransferRequest> transfers);
+
+    /**
+     * Applies a balanced set of debits and credits to any number of accounts as a single operation
+     * <p>
+     * The legs of the same account are netted, every account is debited or credited once by its net amount,
+     * so the funds of an account are checked against its net debit only. Either all legs are applied or none of them
+     *
+     * @param legs legs of the posting, negative amounts are debits and positive ones are credits
+     * @return list of all involved {@link Account} objects sorted by id
+     * @throws IllegalArgumentException    if legs is null, empty or contains null
+     * @throws IllegalArgumentException    if any leg has null account id or null or zero amount
+     * @throws UnbalancedPostingException  if the amounts of the legs don't sum up to zero
+     * @throws NoSuchAccountException      if storage does not contain account with any of the specified ids
+     * @throws InsufficientFundsException  if any account has insufficient funds for its net debit
+     */
+    List<Account> post(List<Leg> legs);
 
     /**
      * Removes account with the specified id from the storage
@@ -1,31 +1,74 @@
 package com.task.rest.service;
 
 import com.google.common.base.Preconditions;
+import com.task.rest.contention.ContentionRecorder;
 import com.task.rest.exceptions.NoSuchAccountException;
 import com.task.rest.exceptions.TransferToTheSameAccountException;
+import com.task.rest.exceptions.UnbalancedPostingException;
+import com.task.rest.ledger.Ledger;
+import com.task.rest.metrics.RequestTimings;
+import com.task.rest.model.Money;
+import com.task.rest.model.api.request.Leg;
+import com.task.rest.model.api.request.TransferRequest;
 import com.task.rest.model.dbo.Account;
+import com.task.rest.model.dbo.LedgerEntry;
+import com.task.rest.model.dbo.LedgerOperation;
 import com.task.rest.persistence.AccountDao;
+import com.task.rest.persistence.TransactionRunner;
 import com.task.rest.utils.concurrency.ConcurrentCache;
 
 import javax.inject.Inject;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Implementation of the {@link AccountService}
+ * <p>
+ * Every acquisition of an account lock by {@link #withdraw}, {@link #deposit}, {@link #delete} and {@link #transfer}
+ * is passed to the {@link ContentionRecorder} with the time spent waiting for the lock and the time it was held.
+ * Every change of a balance is recorded to the {@link Ledger} in the transaction that makes it
  *
  * @author Alexander Kotov (kotov.alex.22@gmail.com)
  * @see AccountService
  */
 public class AccountServiceImpl implements AccountService {
-    private final AccountDao accountDao;
-    private final ConcurrentCache<Long, Lock> lockByIdCache;
+    protected final AccountDao accountDao;
+    protected final ConcurrentCache<Long, Lock> lockByIdCache;
+    protected final TransactionRunner transactionRunner;
+    protected final Ledger ledger;
+    private final ContentionRecorder contentionRecorder;
 
     @Inject
-    public AccountServiceImpl(AccountDao accountDao, ConcurrentCache<Long, Lock> lockByIdCache) {
+    public AccountServiceImpl(AccountDao accountDao, ConcurrentCache<Long, Lock> lockByIdCache, TransactionRunner transactionRunner,
+                              ContentionRecorder contentionRecorder, Ledger ledger) {
         this.accountDao = accountDao;
         this.lockByIdCache = lockByIdCache;
+        this.transactionRunner = transactionRunner;
+        this.contentionRecorder = contentionRecorder;
+        this.ledger = ledger;
+    }
+
+    public AccountServiceImpl(AccountDao accountDao, ConcurrentCache<Long, Lock> lockByIdCache, TransactionRunner transactionRunner,
+                              ContentionRecorder contentionRecorder) {
+        this(accountDao, lockByIdCache, transactionRunner, contentionRecorder, Ledger.NONE);
+    }
+
+    public AccountServiceImpl(AccountDao accountDao, ConcurrentCache<Long, Lock> lockByIdCache, TransactionRunner transactionRunner) {
+        this(accountDao, lockByIdCache, transactionRunner, ContentionRecorder.NONE);
     }
 
     /**
@@ -36,7 +79,31 @@ public class AccountServiceImpl implements AccountService {
         Preconditions.checkArgument(account != null, "try to create null account");
         Preconditions.checkArgument(account.getId() == null, "try to create account with specified id");
         Preconditions.checkArgument(account.getAmount() != null, "try to create account with null amount");
-        return accountDao.create(account);
+        Account created = accountDao.create(account);
+        if (ledger != Ledger.NONE) {
+            record(created, LedgerOperation.CREATE, created.getBalance());
+        }
+        return created;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Account> createAll(List<Account> accounts) {
+        Preconditions.checkArgument(accounts != null, "try to create null accounts");
+        for (Account account : accounts) {
+            Preconditions.checkArgument(account != null, "try to create null account");
+            Preconditions.checkArgument(account.getId() == null, "try to create account with specified id");
+            Preconditions.checkArgument(account.getAmount() != null, "try to create account with null amount");
+        }
+        List<Account> created = accountDao.createAll(accounts);
+        if (ledger != Ledger.NONE) {
+            for (Account account : created) {
+                record(account, LedgerOperation.CREATE, account.getBalance());
+            }
+        }
+        return created;
     }
 
     /**
@@ -47,51 +114,81 @@ public class AccountServiceImpl implements AccountService {
         return accountDao.getAll();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Account> listPage(Long afterId, int limit) {
+        Preconditions.checkArgument(limit > 0, "limit is non-positive");
+        return accountDao.getPage(afterId, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<LedgerEntry> history(Long id, Long afterSeq, int limit) {
+        Preconditions.checkArgument(id != null, "try to find history of account with null id");
+        Preconditions.checkArgument(limit > 0, "limit is non-positive");
+        return ledger.history(id, afterSeq, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEach(Long afterId, Consumer<Account> consumer) {
+        Preconditions.checkArgument(consumer != null, "consumer is null");
+        accountDao.scroll(afterId, consumer);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public Account get(Long id) {
         Preconditions.checkArgument(id != null, "try to find account with null id");
-        return accountDao.findById(id).orElseThrow(() -> new NoSuchAccountException(id));
+        return accountDao.findByIdForRead(id).orElseThrow(() -> new NoSuchAccountException(id));
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Account withdraw(Long id, BigDecimal amount) {
-        Preconditions.checkArgument(id != null, "try to modify account with null id");
-        Preconditions.checkArgument(amount != null, "amount is null");
-        Preconditions.checkArgument(amount.signum() > 0, "amount is non-positive");
-        Lock lock = lockByIdCache.get(id);
-        lock.lock();
-        try {
+    public List<Account> getAll(Collection<Long> ids) {
+        Preconditions.checkArgument(ids != null, "try to find accounts with null ids");
+        Preconditions.checkArgument(ids.stream().allMatch(Objects::nonNull), "try to find account with null id");
+        List<Account> accounts = new ArrayList<>(accountDao.findByIdsForRead(new LinkedHashSet<>(ids)));
+        accounts.sort(Comparator.comparing(Account::getId));
+        return accounts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Account withdraw(Long id, Money amount) {
+        checkModificationArguments(id, amount);
+        return executeLocked(id, () -> {
             Account account = accountDao.findById(id).orElseThrow(() -> new NoSuchAccountException(id));
             account.withdraw(amount);
+            record(account, LedgerOperation.WITHDRAW, amount.negate());
             return account;
-        } finally {
-            lock.unlock();
-        }
+        });
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Account deposit(Long id, BigDecimal amount) {
-        Preconditions.checkArgument(id != null, "try to modify account with null id");
-        Preconditions.checkArgument(amount != null, "amount is null");
-        Preconditions.checkArgument(amount.signum() > 0, "amount is non-positive");
-        Lock lock = lockByIdCache.get(id);
-        lock.lock();
-        try {
+    public Account deposit(Long id, Money amount) {
+        checkModificationArguments(id, amount);
+        return executeLocked(id, () -> {
             Account account = accountDao.findById(id).orElseThrow(() -> new NoSuchAccountException(id));
             account.deposit(amount);
+            record(account, LedgerOperation.DEPOSIT, amount);
             return account;
-        } finally {
-            lock.unlock();
-        }
+        });
     }
 
     /**
@@ -100,49 +197,282 @@ public class AccountServiceImpl implements AccountService {
     @Override
     public Account delete(Long id) {
         Preconditions.checkArgument(id != null, "try to delete account with null id");
-        Lock lock = lockByIdCache.get(id);
-        lock.lock();
-        try {
+        return executeLocked(id, () -> {
             Account account = accountDao.findById(id).orElseThrow(() -> new NoSuchAccountException(id));
+            if (ledger != Ledger.NONE) {
+                ledger.record(id, LedgerOperation.DELETE, account.getAmount().negate(), BigDecimal.ZERO);
+            }
             return accountDao.delete(account);
-        } finally {
-            lock.unlock();
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Account transfer(Long fromId, Long toId, Money amount) {
+        checkTransferArguments(fromId, toId, amount);
+        return executeLocked(fromId, toId, () -> {
+            Account fromAccount = accountDao.findById(fromId).orElseThrow(() -> new NoSuchAccountException(fromId));
+            Account toAccount = accountDao.findById(toId).orElseThrow(() -> new NoSuchAccountException(toId));
+            fromAccount.withdraw(amount);
+            toAccount.deposit(amount);
+            record(fromAccount, LedgerOperation.TRANSFER, amount.negate());
+            record(toAccount, LedgerOperation.TRANSFER, amount);
+            return fromAccount;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Locks of all the involved accounts are taken once in the order defined by the lock cache
+     * (the same order {@link #transfer} uses) and held until the whole batch is applied and committed, all accounts are loaded by a single query.
+     * A failed transfer rolls the whole batch back
+     */
+    @Override
+    public List<Account> transferBatch(List<TransferRequest> transfers) {
+        Preconditions.checkArgument(transfers != null, "transfers is null");
+        SortedSet<Long> ids = new TreeSet<>();
+        for (TransferRequest transfer : transfers) {
+            Preconditions.checkArgument(transfer != null, "transfer is null");
+            checkTransferArguments(transfer.getFromId(), transfer.getToId(), transfer.getMoney());
+            ids.add(transfer.getFromId());
+            ids.add(transfer.getToId());
         }
+
+        return executeLocked(ids, () -> {
+            Map<Long, Account> accountById = new HashMap<>();
+            for (Account account : accountDao.findByIds(ids)) {
+                accountById.put(account.getId(), account);
+            }
+            for (Long id : ids) {
+                if (!accountById.containsKey(id)) {
+                    throw new NoSuchAccountException(id);
+                }
+            }
+            for (TransferRequest transfer : transfers) {
+                Money amount = transfer.getMoney();
+                Account fromAccount = accountById.get(transfer.getFromId()).withdraw(amount);
+                Account toAccount = accountById.get(transfer.getToId()).deposit(amount);
+                record(fromAccount, LedgerOperation.TRANSFER, amount.negate());
+                record(toAccount, LedgerOperation.TRANSFER, amount);
+            }
+            List<Account> accounts = new ArrayList<>(accountById.values());
+            accounts.sort(Comparator.comparing(Account::getId));
+            return accounts;
+        });
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * Locks of all the involved accounts are taken once in the order defined by the lock cache
+     * (the same order {@link #transfer} uses), all accounts are loaded by a single query
      */
     @Override
-    public Account transfer(Long fromId, Long toId, BigDecimal amount) {
-        Preconditions.checkArgument(fromId != null, "try to modify account with null id");
-        Preconditions.checkArgument(toId != null, "try to modify account with null id");
-        Preconditions.checkArgument(amount != null, "amount is null");
-        Preconditions.checkArgument(amount.signum() > 0, "amount is non-positive");
-        if (fromId.equals(toId)) {
-            throw new TransferToTheSameAccountException();
+    public List<Account> post(List<Leg> legs) {
+        Map<Long, Money> netAmountById = netAmounts(legs);
+        return executeLocked(netAmountById.keySet(), () -> {
+            List<Account> accounts = new ArrayList<>(accountDao.findByIds(netAmountById.keySet()));
+            accounts.sort(Comparator.comparing(Account::getId));
+            Map<Long, Account> accountById = new HashMap<>();
+            for (Account account : accounts) {
+                accountById.put(account.getId(), account);
+            }
+            for (Map.Entry<Long, Money> entry : netAmountById.entrySet()) {
+                Account account = accountById.get(entry.getKey());
+                if (account == null) {
+                    throw new NoSuchAccountException(entry.getKey());
+                }
+                Money netAmount = entry.getValue();
+                if (netAmount.signum() == 0) {
+                    continue;
+                }
+                if (netAmount.signum() < 0) {
+                    account.withdraw(netAmount.negate());
+                } else {
+                    account.deposit(netAmount);
+                }
+                record(account, LedgerOperation.POSTING, netAmount);
+            }
+            return accounts;
+        });
+    }
+
+    /**
+     * Executes the modification of the account in a transaction under its lock,
+     * the transaction is committed before the lock is released
+     *
+     * @param id        account id
+     * @param operation modification of the account
+     * @param <T>       type of the operation result
+     * @return result of the operation
+     */
+    protected <T> T executeLocked(Long id, Supplier<T> operation) {
+        Lock lock = lockByIdCache.get(id);
+        long waitNanos = acquire(lock);
+        long lockedAt = System.nanoTime();
+        try {
+            return transactionRunner.inTransaction(operation);
+        } finally {
+            lock.unlock();
+            contentionRecorder.record(id, waitNanos, System.nanoTime() - lockedAt);
         }
-        long firstId = Math.min(fromId, toId);
-        long secondId = Math.max(fromId, toId);
-        Lock firstLock = lockByIdCache.get(firstId);
-        Lock secondLock = lockByIdCache.get(secondId);
+    }
 
-        firstLock.lock();
+    /**
+     * Executes the modification of two different accounts in a transaction under both their locks,
+     * the transaction is committed before the locks are released
+     *
+     * @param firstId   id of the first account
+     * @param secondId  id of the second account
+     * @param operation modification of the accounts
+     * @param <T>       type of the operation result
+     * @return result of the operation
+     */
+    protected <T> T executeLocked(Long firstId, Long secondId, Supplier<T> operation) {
+        // locks are taken in the order defined by the cache, ids may share the same lock
+        int order = lockByIdCache.compareKeys(firstId, secondId);
+        Lock firstLock = lockByIdCache.get(order <= 0 ? firstId : secondId);
+        Lock secondLock = order == 0 ? null : lockByIdCache.get(order < 0 ? secondId : firstId);
+
+        long firstWaitNanos = acquire(firstLock);
+        long firstLockedAt = System.nanoTime();
         try {
-            secondLock.lock();
+            long secondWaitNanos = secondLock != null ? acquire(secondLock) : 0;
+            long secondLockedAt = System.nanoTime();
             try {
-                Account fromAccount = accountDao.findById(fromId).orElseThrow(() -> new NoSuchAccountException(fromId));
-                Account toAccount = accountDao.findById(toId).orElseThrow(() -> new NoSuchAccountException(toId));
-                fromAccount.withdraw(amount);
-                toAccount.deposit(amount);
-                return fromAccount;
+                return transactionRunner.inTransaction(operation);
             } finally {
-                secondLock.unlock();
+                if (secondLock != null) {
+                    secondLock.unlock();
+                    contentionRecorder.record(order < 0 ? secondId : firstId, secondWaitNanos, System.nanoTime() - secondLockedAt);
+                }
             }
         } finally {
             firstLock.unlock();
+            contentionRecorder.record(order <= 0 ? firstId : secondId, firstWaitNanos, System.nanoTime() - firstLockedAt);
+        }
+    }
+
+    /**
+     * Executes the modification of several accounts in a transaction under all their locks,
+     * the transaction is committed before the locks are released. Only the first contended lock is recorded
+     * to the {@link ContentionRecorder}, or the first lock if none is contended
+     *
+     * @param ids       distinct ids of the accounts
+     * @param operation modification of the accounts
+     * @param <T>       type of the operation result
+     * @return result of the operation
+     */
+    protected <T> T executeLocked(Collection<Long> ids, Supplier<T> operation) {
+        List<Long> idsInLockOrder = new ArrayList<>(ids);
+        idsInLockOrder.sort(lockByIdCache::compareKeys);
+        List<Lock> locks = new ArrayList<>(ids.size());
+        List<Long> lockIds = new ArrayList<>(ids.size());
+        for (Long id : idsInLockOrder) {
+            Lock lock = lockByIdCache.get(id);
+            // ids sharing the same lock are adjacent in the lock order
+            if (locks.isEmpty() || locks.get(locks.size() - 1) != lock) {
+                locks.add(lock);
+                lockIds.add(id);
+            }
+        }
+
+        int locked = 0;
+        // a single acquisition is recorded per call, the first contended one or the first one if none is contended
+        int recorded = 0;
+        long recordedWaitNanos = 0;
+        long recordedLockedAt = 0;
+        try {
+            for (Lock lock : locks) {
+                long waitNanos = acquire(lock);
+                if (locked == 0 || recordedWaitNanos == 0 && waitNanos > 0) {
+                    recorded = locked;
+                    recordedWaitNanos = waitNanos;
+                    recordedLockedAt = System.nanoTime();
+                }
+                locked++;
+            }
+            return transactionRunner.inTransaction(operation);
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+                if (i == recorded) {
+                    contentionRecorder.record(lockIds.get(i), recordedWaitNanos, System.nanoTime() - recordedLockedAt);
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the lock, the time is measured only if the lock is not free and added to the timings of the current request
+     *
+     * @param lock lock to be taken
+     * @return nanoseconds spent waiting for the lock, 0 if it was free
+     */
+    private static long acquire(Lock lock) {
+        if (lock.tryLock()) {
+            return 0;
         }
+        long start = System.nanoTime();
+        lock.lock();
+        long waitNanos = Math.max(1, System.nanoTime() - start);
+        RequestTimings.addLockWait(waitNanos);
+        return waitNanos;
+    }
+
+    /**
+     * @return net amounts of the accounts of the legs in the ascending order of the ids
+     * @throws UnbalancedPostingException if the amounts of the legs don't sum up to zero
+     */
+    protected static SortedMap<Long, Money> netAmounts(List<Leg> legs) {
+        Preconditions.checkArgument(legs != null, "legs is null");
+        Preconditions.checkArgument(!legs.isEmpty(), "legs is empty");
+        SortedMap<Long, Money> netAmountById = new TreeMap<>();
+        Money imbalance = Money.ZERO;
+        for (Leg leg : legs) {
+            Preconditions.checkArgument(leg != null, "leg is null");
+            Preconditions.checkArgument(leg.getAccountId() != null, "try to modify account with null id");
+            Money amount = leg.getMoney();
+            Preconditions.checkArgument(amount != null, "amount is null");
+            Preconditions.checkArgument(amount.signum() != 0, "amount is zero");
+            netAmountById.merge(leg.getAccountId(), amount, Money::add);
+            imbalance = imbalance.add(amount);
+        }
+        if (imbalance.signum() != 0) {
+            throw new UnbalancedPostingException(imbalance.toBigDecimal());
+        }
+        return netAmountById;
+    }
 
+    protected static void checkModificationArguments(Long id, Money amount) {
+        Preconditions.checkArgument(id != null, "try to modify account with null id");
+        Preconditions.checkArgument(amount != null, "amount is null");
+        Preconditions.checkArgument(amount.signum() > 0, "amount is non-positive");
+    }
+
+    protected static void checkTransferArguments(Long fromId, Long toId, Money amount) {
+        Preconditions.checkArgument(fromId != null, "try to modify account with null id");
+        Preconditions.checkArgument(toId != null, "try to modify account with null id");
+        Preconditions.checkArgument(amount != null, "amount is null");
+        Preconditions.checkArgument(amount.signum() > 0, "amount is non-positive");
+        if (fromId.equals(toId)) {
+            throw new TransferToTheSameAccountException();
+        }
+    }
+
+    /**
+     * Records the change of the account balance to the ledger, the account is not read if nothing is recorded
+     *
+     * @param account account after the change
+     * @param amount  change of the balance, negative if money is taken from the account
+     */
+    protected void record(Account account, LedgerOperation operation, Money amount) {
+        if (ledger != Ledger.NONE) {
+            ledger.record(account.getId(), operation, amount.toBigDecimal(), account.getAmount());
+        }
     }
 
 }
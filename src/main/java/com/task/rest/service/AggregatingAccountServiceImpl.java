@@ -0,0 +1,425 @@
+package com.task.rest.service;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.task.rest.contention.ContendedAccount;
+import com.task.rest.contention.ContentionRecorder;
+import com.task.rest.exceptions.NoSuchAccountException;
+import com.task.rest.ledger.Ledger;
+import com.task.rest.model.Money;
+import com.task.rest.model.api.request.Leg;
+import com.task.rest.model.api.request.TransferRequest;
+import com.task.rest.model.dbo.Account;
+import com.task.rest.model.dbo.LedgerOperation;
+import com.task.rest.persistence.AccountDao;
+import com.task.rest.persistence.TransactionRunner;
+import com.task.rest.utils.concurrency.ConcurrentCache;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Implementation of the {@link AccountService} that deposits to hot accounts without their locks
+ * <p>
+ * An account is hot if it's listed in the configuration or if it's among the accounts that waited longest for their locks
+ * (see {@link ContentionRecorder#hottest}) with enough contended acquisitions. Deposits commute, so a deposit to a hot account
+ * is only added to its {@link PendingDeposits} and acknowledged. The pending deposits are folded into the stored amount
+ * under the account lock periodically, on shutdown and before the account is withdrawn from, transferred from, debited by a posting
+ * or deleted.
+ * {@link #get} returns the stored amount plus the pending deposits, read under the account lock.
+ * The first deposit to a hot account, deposits with more than {@link Account#SCALE} fraction digits and the rest
+ * of the operations are inherited from {@link AccountServiceImpl}
+ * <p>
+ * Pending deposits are kept in memory only, the ones not folded yet are lost by a crash.
+ * The deposits folded at once are recorded to the {@link Ledger} as a single deposit
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see AccountService
+ * @see PendingDeposits
+ */
+public class AggregatingAccountServiceImpl extends AccountServiceImpl implements Managed {
+
+    public static final String IDS_FIELD_NAME = "hotAccounts.ids";
+    public static final String FOLD_INTERVAL_FIELD_NAME = "hotAccounts.foldInterval";
+    public static final String DETECT_LIMIT_FIELD_NAME = "hotAccounts.detectLimit";
+    public static final String DETECT_MIN_CONTENDED_FIELD_NAME = "hotAccounts.detectMinContended";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AggregatingAccountServiceImpl.class);
+
+    private static final int STRIPES = Runtime.getRuntime().availableProcessors() * 2;
+
+    private final ContentionRecorder contentionRecorder;
+    private final Set<Long> configuredIds;
+    private final long foldIntervalMillis;
+    private final int detectLimit;
+    private final long detectMinContended;
+    private final Map<Long, PendingDeposits> pendingById = new ConcurrentHashMap<>();
+    private volatile Set<Long> detectedIds = ImmutableSet.of();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param ids                ids of the accounts that are always hot
+     * @param foldIntervalMillis delay between the end of a fold of all the pending deposits and the start of the next one
+     * @param detectLimit        number of the accounts that waited longest for their locks checked for being hot, 0 disables the detection
+     * @param detectMinContended minimum number of the contended acquisitions of a detected hot account
+     * @throws IllegalArgumentException if ids is null, foldIntervalMillis is non-positive or detectLimit is negative
+     */
+    @Inject
+    public AggregatingAccountServiceImpl(AccountDao accountDao, ConcurrentCache<Long, Lock> lockByIdCache, TransactionRunner transactionRunner,
+                                         ContentionRecorder contentionRecorder, Ledger ledger,
+                                         @Named(IDS_FIELD_NAME) Set<Long> ids,
+                                         @Named(FOLD_INTERVAL_FIELD_NAME) long foldIntervalMillis,
+                                         @Named(DETECT_LIMIT_FIELD_NAME) int detectLimit,
+                                         @Named(DETECT_MIN_CONTENDED_FIELD_NAME) long detectMinContended) {
+        super(accountDao, lockByIdCache, transactionRunner, contentionRecorder, ledger);
+        Preconditions.checkArgument(ids != null, "ids is null");
+        Preconditions.checkArgument(foldIntervalMillis > 0, "fold interval is non-positive");
+        Preconditions.checkArgument(detectLimit >= 0, "detect limit is negative");
+        this.contentionRecorder = contentionRecorder;
+        this.configuredIds = ImmutableSet.copyOf(ids);
+        this.foldIntervalMillis = foldIntervalMillis;
+        this.detectLimit = detectLimit;
+        this.detectMinContended = detectMinContended;
+    }
+
+    public AggregatingAccountServiceImpl(AccountDao accountDao, ConcurrentCache<Long, Lock> lockByIdCache, TransactionRunner transactionRunner,
+                                         ContentionRecorder contentionRecorder, Set<Long> ids, long foldIntervalMillis,
+                                         int detectLimit, long detectMinContended) {
+        this(accountDao, lockByIdCache, transactionRunner, contentionRecorder, Ledger.NONE, ids, foldIntervalMillis, detectLimit, detectMinContended);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The pending deposits of a hot account are added to the returned amount
+     */
+    @Override
+    public Account get(Long id) {
+        Preconditions.checkArgument(id != null, "try to find account with null id");
+        PendingDeposits pending = pendingById.get(id);
+        if (pending == null) {
+            return super.get(id);
+        }
+        Lock lock = lockByIdCache.get(id);
+        lock.lock();
+        try {
+            Account account = super.get(id);
+            return new Account().setId(id).setBalance(account.getBalance().add(Money.ofUnits(pending.sum())));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Hot accounts are read again one by one with their pending deposits
+     */
+    @Override
+    public List<Account> getAll(Collection<Long> ids) {
+        List<Account> accounts = super.getAll(ids);
+        if (pendingById.isEmpty()) {
+            return accounts;
+        }
+        List<Account> result = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            if (!pendingById.containsKey(account.getId())) {
+                result.add(account);
+                continue;
+            }
+            try {
+                result.add(get(account.getId()));
+            } catch (NoSuchAccountException e) {
+                // deleted since it was loaded
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A deposit to a hot account takes no lock, the returned amount includes the pending deposits
+     */
+    @Override
+    public Account deposit(Long id, Money amount) {
+        checkModificationArguments(id, amount);
+        long units = toUnits(amount);
+        if (units < 0 || !isHot(id)) {
+            return super.deposit(id, amount);
+        }
+        PendingDeposits pending = pendingById.get(id);
+        if (pending == null) {
+            // created under the lock once the account is found, so a concurrent delete can't miss it
+            pending = executeLocked(id, () -> {
+                accountDao.findById(id).orElseThrow(() -> new NoSuchAccountException(id));
+                return pendingById.computeIfAbsent(id, key -> new PendingDeposits(STRIPES));
+            });
+        }
+        int stripe = pending.enter();
+        if (stripe < 0) {
+            // the account is being deleted or is no longer hot
+            return super.deposit(id, amount);
+        }
+        try {
+            pending.add(units);
+            // the account can't be deleted until the deposit exits
+            return readPending(id, pending);
+        } finally {
+            pending.exit(stripe);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Account withdraw(Long id, Money amount) {
+        checkModificationArguments(id, amount);
+        fold(id);
+        return super.withdraw(id, amount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Account transfer(Long fromId, Long toId, Money amount) {
+        checkTransferArguments(fromId, toId, amount);
+        fold(fromId);
+        return super.transfer(fromId, toId, amount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Account> transferBatch(List<TransferRequest> transfers) {
+        Preconditions.checkArgument(transfers != null, "transfers is null");
+        Set<Long> folded = new HashSet<>();
+        for (TransferRequest transfer : transfers) {
+            if (transfer != null && transfer.getFromId() != null && folded.add(transfer.getFromId())) {
+                fold(transfer.getFromId());
+            }
+        }
+        return super.transferBatch(transfers);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Account> post(List<Leg> legs) {
+        for (Map.Entry<Long, Money> entry : netAmounts(legs).entrySet()) {
+            if (entry.getValue().signum() < 0) {
+                fold(entry.getKey());
+            }
+        }
+        return super.post(legs);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The pending deposits are folded and closed first, deposits made after that wait for the lock and find no account
+     */
+    @Override
+    public Account delete(Long id) {
+        Preconditions.checkArgument(id != null, "try to delete account with null id");
+        Lock lock = lockByIdCache.get(id);
+        lock.lock();
+        try {
+            PendingDeposits pending = pendingById.get(id);
+            if (pending == null) {
+                return super.delete(id);
+            }
+            pending.close();
+            try {
+                fold(id, pending);
+                Account deleted = super.delete(id);
+                pendingById.remove(id);
+                return deleted;
+            } catch (RuntimeException e) {
+                pending.reopen();
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param id account id
+     * @return true if the deposits to the account are aggregated
+     */
+    public boolean isHot(Long id) {
+        return configuredIds.contains(id) || detectedIds.contains(id);
+    }
+
+    /**
+     * Folds the pending deposits of all the accounts and forgets the accounts that are no longer hot
+     */
+    public void foldAll() {
+        for (Map.Entry<Long, PendingDeposits> entry : pendingById.entrySet()) {
+            Long id = entry.getKey();
+            try {
+                if (isHot(id)) {
+                    fold(id, entry.getValue());
+                } else {
+                    retire(id, entry.getValue());
+                }
+            } catch (RuntimeException e) {
+                // the deposits stay pending until the next fold
+                LOGGER.error("Failed to fold the pending deposits of the account {}", id, e);
+            }
+        }
+    }
+
+    /**
+     * Replaces the detected hot accounts by the accounts that waited longest for their locks now
+     */
+    public void detectHotAccounts() {
+        if (detectLimit == 0) {
+            return;
+        }
+        Set<Long> detected = new HashSet<>();
+        for (ContendedAccount account : contentionRecorder.hottest(detectLimit)) {
+            if (account.getContended() >= detectMinContended) {
+                detected.add(account.getId());
+            }
+        }
+        if (!detected.equals(detectedIds)) {
+            LOGGER.info("Deposits to the accounts {} are aggregated", detected);
+        }
+        detectedIds = ImmutableSet.copyOf(detected);
+    }
+
+    /**
+     * Schedules the periodic folds
+     */
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("deposit-fold").setDaemon(true).build());
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                detectHotAccounts();
+                foldAll();
+            } catch (RuntimeException e) {
+                // the next fold is still scheduled
+                LOGGER.error("Failed to fold the pending deposits", e);
+            }
+        }, foldIntervalMillis, foldIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Waits for the running fold and folds the rest of the pending deposits
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        foldAll();
+    }
+
+    private void fold(Long id) {
+        PendingDeposits pending = pendingById.get(id);
+        if (pending != null && pending.sum() != 0) {
+            fold(id, pending);
+        }
+    }
+
+    /**
+     * Adds the pending deposits to the stored amount, they are subtracted from the pending ones once committed
+     */
+    private void fold(Long id, PendingDeposits pending) {
+        Lock lock = lockByIdCache.get(id);
+        lock.lock();
+        try {
+            long units = pending.sum();
+            if (units == 0) {
+                return;
+            }
+            long folded = 0;
+            pending.startFold();
+            try {
+                transactionRunner.inTransaction(() -> {
+                    Account account = accountDao.findById(id).orElseThrow(() -> new NoSuchAccountException(id));
+                    Money amount = Money.ofUnits(units);
+                    account.deposit(amount);
+                    // the folded deposits are recorded as one
+                    record(account, LedgerOperation.DEPOSIT, amount);
+                    return account;
+                });
+                folded = units;
+            } finally {
+                pending.endFold(folded);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Folds the pending deposits of an account that is no longer hot and forgets them, further deposits take the lock
+     */
+    private void retire(Long id, PendingDeposits pending) {
+        Lock lock = lockByIdCache.get(id);
+        lock.lock();
+        try {
+            pending.close();
+            try {
+                fold(id, pending);
+                pendingById.remove(id);
+            } catch (RuntimeException e) {
+                pending.reopen();
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the account with the stored amount plus the pending deposits, read without the lock between two folds
+     */
+    private Account readPending(Long id, PendingDeposits pending) {
+        while (true) {
+            long sequence = pending.foldSequence();
+            if ((sequence & 1) == 0) {
+                Account account = transactionRunner.inTransaction(() -> accountDao.findByIdForRead(id))
+                        .orElseThrow(() -> new NoSuchAccountException(id));
+                long units = pending.sum();
+                if (sequence == pending.foldSequence()) {
+                    return new Account().setId(id).setBalance(account.getBalance().add(Money.ofUnits(units)));
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * @return amount in units of 10^-{@link Account#SCALE}, -1 if it has more fraction digits or doesn't fit into long
+     */
+    private static long toUnits(Money amount) {
+        return amount.isCompact() ? amount.getUnits() : -1;
+    }
+
+}
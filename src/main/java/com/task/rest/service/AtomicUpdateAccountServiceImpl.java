@@ -0,0 +1,122 @@
+package com.task.rest.service;
+
+import com.task.rest.contention.ContentionRecorder;
+import com.task.rest.exceptions.InsufficientFundsException;
+import com.task.rest.exceptions.NoSuchAccountException;
+import com.task.rest.ledger.Ledger;
+import com.task.rest.model.Money;
+import com.task.rest.model.dbo.Account;
+import com.task.rest.model.dbo.LedgerOperation;
+import com.task.rest.persistence.AccountDao;
+import com.task.rest.persistence.TransactionRunner;
+import com.task.rest.utils.concurrency.ConcurrentCache;
+
+import javax.inject.Inject;
+import java.math.BigDecimal;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Implementation of the {@link AccountService} that modifies account amounts by single update statements
+ * <p>
+ * Withdraw, deposit and transfer take no locks and do not load the accounts before the update,
+ * concurrent modifications of the same account are serialized by the database row lock held until the commit.
+ * Updated accounts are read back after the update by {@link AccountDao#findByIdForRead}, only to be returned to the caller,
+ * so no managed entity is loaded to the session.
+ * The rest of the operations are inherited from {@link AccountServiceImpl}
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see AccountService
+ * @see AccountServiceImpl
+ */
+public class AtomicUpdateAccountServiceImpl extends AccountServiceImpl {
+
+    @Inject
+    public AtomicUpdateAccountServiceImpl(AccountDao accountDao, ConcurrentCache<Long, Lock> lockByIdCache, TransactionRunner transactionRunner,
+                                          ContentionRecorder contentionRecorder, Ledger ledger) {
+        super(accountDao, lockByIdCache, transactionRunner, contentionRecorder, ledger);
+    }
+
+    public AtomicUpdateAccountServiceImpl(AccountDao accountDao, ConcurrentCache<Long, Lock> lockByIdCache, TransactionRunner transactionRunner,
+                                          ContentionRecorder contentionRecorder) {
+        this(accountDao, lockByIdCache, transactionRunner, contentionRecorder, Ledger.NONE);
+    }
+
+    public AtomicUpdateAccountServiceImpl(AccountDao accountDao, ConcurrentCache<Long, Lock> lockByIdCache, TransactionRunner transactionRunner) {
+        this(accountDao, lockByIdCache, transactionRunner, ContentionRecorder.NONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Account withdraw(Long id, Money amount) {
+        checkModificationArguments(id, amount);
+        return transactionRunner.inTransaction(() -> {
+            subtractAmount(id, amount.toBigDecimal());
+            Account account = load(id);
+            record(account, LedgerOperation.WITHDRAW, amount.negate());
+            return account;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Account deposit(Long id, Money amount) {
+        checkModificationArguments(id, amount);
+        return transactionRunner.inTransaction(() -> {
+            addAmount(id, amount.toBigDecimal());
+            Account account = load(id);
+            record(account, LedgerOperation.DEPOSIT, amount);
+            return account;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Accounts are updated in the order of their ids, so opposite transfers can't deadlock in the database
+     */
+    @Override
+    public Account transfer(Long fromId, Long toId, Money amount) {
+        checkTransferArguments(fromId, toId, amount);
+        // the statements are bound to the BigDecimal amount
+        BigDecimal decimal = amount.toBigDecimal();
+        return transactionRunner.inTransaction(() -> {
+            if (fromId < toId) {
+                subtractAmount(fromId, decimal);
+                addAmount(toId, decimal);
+            } else {
+                addAmount(toId, decimal);
+                subtractAmount(fromId, decimal);
+            }
+            Account fromAccount = load(fromId);
+            if (ledger != Ledger.NONE) {
+                // the recipient is loaded only for the ledger
+                record(fromAccount, LedgerOperation.TRANSFER, amount.negate());
+                record(load(toId), LedgerOperation.TRANSFER, amount);
+            }
+            return fromAccount;
+        });
+    }
+
+    private void addAmount(Long id, BigDecimal amount) {
+        if (!accountDao.addAmount(id, amount)) {
+            throw new NoSuchAccountException(id);
+        }
+    }
+
+    private void subtractAmount(Long id, BigDecimal amount) {
+        if (!accountDao.subtractAmount(id, amount)) {
+            // nothing is updated either if there's no such account or if it has not enough money
+            Account account = load(id);
+            throw new InsufficientFundsException(account.getAmount(), amount, id);
+        }
+    }
+
+    private Account load(Long id) {
+        return accountDao.findByIdForRead(id).orElseThrow(() -> new NoSuchAccountException(id));
+    }
+
+}
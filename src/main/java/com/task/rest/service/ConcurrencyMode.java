@@ -0,0 +1,28 @@
+package com.task.rest.service;
+
+/**
+ * Defines how concurrent modifications of the same accounts are isolated from each other
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public enum ConcurrencyMode {
+    /**
+     * modifications take in-process locks of the accounts, see {@link AccountServiceImpl}
+     */
+    PESSIMISTIC,
+    /**
+     * modifications are checked against account versions on commit and retried on conflicts,
+     * see {@link OptimisticAccountServiceImpl}
+     */
+    OPTIMISTIC,
+    /**
+     * withdraw, deposit and transfer update account amounts by single statements without loading the accounts,
+     * see {@link AtomicUpdateAccountServiceImpl}
+     */
+    ATOMIC_UPDATE,
+    /**
+     * every account is modified by the single thread of its shard without locks,
+     * see {@link ShardedAccountServiceImpl}
+     */
+    SHARDED
+}
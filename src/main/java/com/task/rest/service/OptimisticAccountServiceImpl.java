@@ -0,0 +1,117 @@
+package com.task.rest.service;
+
+import com.google.common.base.Preconditions;
+import com.task.rest.contention.ContentionRecorder;
+import com.task.rest.exceptions.ConcurrentUpdateException;
+import com.task.rest.ledger.Ledger;
+import com.task.rest.persistence.AccountDao;
+import com.task.rest.persistence.TransactionRunner;
+import com.task.rest.utils.concurrency.ConcurrentCache;
+import org.hibernate.StaleStateException;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.OptimisticLockException;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * Optimistic implementation of the {@link AccountService}
+ * <p>
+ * Modifications do not take the in-process account locks, every attempt runs in a transaction of its own
+ * and conflicting updates are detected by the account version on commit, so several service instances may share the same database.
+ * An attempt failed because of a conflict is retried after a random delay (exponential backoff with full jitter)
+ * up to the configured number of attempts, then {@link ConcurrentUpdateException} is thrown
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see AccountService
+ * @see AccountServiceImpl
+ */
+public class OptimisticAccountServiceImpl extends AccountServiceImpl {
+
+    public static final String MAX_ATTEMPTS_FIELD_NAME = "optimisticLocking.maxAttempts";
+    public static final String BACKOFF_FIELD_NAME = "optimisticLocking.backoff";
+    public static final String MAX_BACKOFF_FIELD_NAME = "optimisticLocking.maxBackoff";
+
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * @param maxAttempts      maximum number of attempts to apply a modification
+     * @param backoffMillis    upper bound of the delay before the first retry, doubled for every next one
+     * @param maxBackoffMillis upper bound of the delay before any retry
+     * @throws IllegalArgumentException if maxAttempts is non-positive or any of delays is negative
+     */
+    @Inject
+    public OptimisticAccountServiceImpl(AccountDao accountDao, ConcurrentCache<Long, Lock> lockByIdCache, TransactionRunner transactionRunner,
+                                        Ledger ledger,
+                                        @Named(MAX_ATTEMPTS_FIELD_NAME) int maxAttempts,
+                                        @Named(BACKOFF_FIELD_NAME) long backoffMillis,
+                                        @Named(MAX_BACKOFF_FIELD_NAME) long maxBackoffMillis) {
+        super(accountDao, lockByIdCache, transactionRunner, ContentionRecorder.NONE, ledger);
+        Preconditions.checkArgument(maxAttempts > 0, "max attempts is non-positive");
+        Preconditions.checkArgument(backoffMillis >= 0, "backoff is negative");
+        Preconditions.checkArgument(maxBackoffMillis >= 0, "max backoff is negative");
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public OptimisticAccountServiceImpl(AccountDao accountDao, ConcurrentCache<Long, Lock> lockByIdCache, TransactionRunner transactionRunner,
+                                        int maxAttempts, long backoffMillis, long maxBackoffMillis) {
+        this(accountDao, lockByIdCache, transactionRunner, Ledger.NONE, maxAttempts, backoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * Executes the modification in a transaction of its own without taking any locks, retried on conflicts
+     */
+    @Override
+    protected <T> T executeLocked(Long id, Supplier<T> operation) {
+        return executeWithRetries(operation);
+    }
+
+    /**
+     * Executes the modification in a transaction of its own without taking any locks, retried on conflicts
+     */
+    @Override
+    protected <T> T executeLocked(Long firstId, Long secondId, Supplier<T> operation) {
+        return executeWithRetries(operation);
+    }
+
+    /**
+     * Executes the modification in a transaction of its own without taking any locks, retried on conflicts
+     */
+    @Override
+    protected <T> T executeLocked(Collection<Long> ids, Supplier<T> operation) {
+        return executeWithRetries(operation);
+    }
+
+    private <T> T executeWithRetries(Supplier<T> operation) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionRunner.inTransaction(operation);
+            } catch (OptimisticLockException | StaleStateException e) {
+                if (attempt >= maxAttempts) {
+                    throw new ConcurrentUpdateException(e);
+                }
+                pause(attempt, e);
+            }
+        }
+    }
+
+    private void pause(int attempt, RuntimeException conflict) {
+        long bound = attempt > Long.numberOfLeadingZeros(backoffMillis) ? maxBackoffMillis
+                : Math.min(maxBackoffMillis, backoffMillis << (attempt - 1));
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrentUpdateException(conflict);
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.task.rest.service;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deposits made to an account without its lock and not yet folded into its stored amount, in units of 10^-{@link com.task.rest.model.dbo.Account#SCALE}
+ * <p>
+ * Deposits are added to a {@link LongAdder}, so concurrent deposits neither wait for each other nor contend for a single counter.
+ * Folding is done under the account lock: the sum is added to the stored amount and subtracted from the adder once committed.
+ * While a fold is in progress the {@link #foldSequence} is odd, a reader of the stored amount and the sum retries
+ * until it sees the same even sequence before and after the reads.
+ * <p>
+ * A closed instance takes no more deposits, {@link #close} waits for the deposits in progress to be ended first.
+ * The deposits in progress are counted per stripe of threads, a deposit enters and exits the same stripe
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+final class PendingDeposits {
+
+    /**
+     * distance between the counters of adjacent stripes, in longs - they don't share a cache line
+     */
+    private static final int PADDING = 16;
+
+    private final LongAdder units = new LongAdder();
+    private final AtomicLongArray inProgress;
+    private final int stripeMask;
+    private volatile boolean closed;
+    private volatile long foldSequence;
+
+    /**
+     * @param stripes number of the stripes of the deposits in progress, rounded up to the nearest power of two
+     * @throws IllegalArgumentException if stripes is non-positive or greater than 2^24
+     */
+    PendingDeposits(int stripes) {
+        Preconditions.checkArgument(stripes > 0 && stripes <= 1 << 24, "number of stripes is not in [1, 2^24]");
+        int size = Integer.highestOneBit(stripes - 1) << 1;
+        this.stripeMask = Math.max(1, size) - 1;
+        this.inProgress = new AtomicLongArray((stripeMask + 1) * PADDING);
+    }
+
+    /**
+     * Starts a deposit unless the instance is closed, the deposit must be ended by {@link #exit} if it's started
+     *
+     * @return stripe of the deposit, -1 if the instance is closed
+     */
+    int enter() {
+        int index = (int) (Thread.currentThread().getId() & stripeMask) * PADDING;
+        inProgress.incrementAndGet(index);
+        if (closed) {
+            inProgress.decrementAndGet(index);
+            return -1;
+        }
+        return index;
+    }
+
+    /**
+     * @param units deposited units, added between {@link #enter} and {@link #exit}
+     */
+    void add(long units) {
+        this.units.add(units);
+    }
+
+    /**
+     * Ends the deposit
+     *
+     * @param stripe stripe returned by {@link #enter}
+     */
+    void exit(int stripe) {
+        inProgress.decrementAndGet(stripe);
+    }
+
+    /**
+     * @return units deposited and not folded yet
+     */
+    long sum() {
+        return units.sum();
+    }
+
+    /**
+     * @return even number of the completed folds, odd while a fold is in progress
+     */
+    long foldSequence() {
+        return foldSequence;
+    }
+
+    /**
+     * Marks the start of a fold, called under the account lock
+     */
+    void startFold() {
+        foldSequence++;
+    }
+
+    /**
+     * Marks the end of a fold, called under the account lock
+     *
+     * @param folded units added to the stored amount by the committed fold, 0 if it failed
+     */
+    void endFold(long folded) {
+        units.add(-folded);
+        foldSequence++;
+    }
+
+    /**
+     * Rejects further deposits and waits until the deposits in progress are ended, called under the account lock
+     */
+    void close() {
+        closed = true;
+        for (int i = 0; i <= stripeMask; i++) {
+            while (inProgress.get(i * PADDING) != 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Takes deposits again after the account failed to be deleted, called under the account lock
+     */
+    void reopen() {
+        closed = false;
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.task.rest.service;
+
+import com.task.rest.contention.ContentionRecorder;
+import com.task.rest.exceptions.NoSuchAccountException;
+import com.task.rest.ledger.Ledger;
+import com.task.rest.model.Money;
+import com.task.rest.model.dbo.Account;
+import com.task.rest.model.dbo.LedgerOperation;
+import com.task.rest.persistence.AccountDao;
+import com.task.rest.persistence.TransactionRunner;
+import com.task.rest.utils.concurrency.ConcurrentCache;
+import com.task.rest.utils.concurrency.ShardedExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * Implementation of the {@link AccountService} that modifies every account by the single thread of its shard
+ * <p>
+ * Account ids are partitioned over the shards of the {@link ShardedExecutor}. Withdraw, deposit and delete
+ * run in the thread of the account shard and take no locks - no other thread modifies the account.
+ * A transfer between accounts of the same shard runs there as a whole. A transfer between shards is handed off:
+ * <ol>
+ * <li>the shard of the sender checks that the recipient exists, withdraws the amount and commits</li>
+ * <li>then the shard of the recipient deposits the amount and commits</li>
+ * <li>if the recipient is deleted in between, the shard of the sender deposits the amount back
+ * and the transfer fails with {@link NoSuchAccountException}</li>
+ * </ol>
+ * The method returns when all the steps are committed. Ordering guarantees:
+ * <ul>
+ * <li>modifications of the same account are applied one by one in the order they are queued to its shard,
+ * so the modifications made by one caller are applied in the order of the calls</li>
+ * <li>the withdrawal of a transfer happens before its deposit, the sender never goes below zero</li>
+ * <li>in between, the amount is in flight: it's not seen by readers of the recipient or of all the accounts,
+ * and other modifications of the recipient may be applied before the deposit</li>
+ * </ul>
+ * A batch of transfers parks the shards of all its accounts and runs in the calling thread, see {@link ShardedExecutor#executeExclusively}.
+ * The rest of the operations are inherited from {@link AccountServiceImpl}
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see AccountService
+ * @see ShardedExecutor
+ */
+public class ShardedAccountServiceImpl extends AccountServiceImpl {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedAccountServiceImpl.class);
+
+    private final ShardedExecutor executor;
+
+    @Inject
+    public ShardedAccountServiceImpl(AccountDao accountDao, ConcurrentCache<Long, Lock> lockByIdCache, TransactionRunner transactionRunner,
+                                     Ledger ledger, ShardedExecutor executor) {
+        super(accountDao, lockByIdCache, transactionRunner, ContentionRecorder.NONE, ledger);
+        this.executor = executor;
+    }
+
+    public ShardedAccountServiceImpl(AccountDao accountDao, ConcurrentCache<Long, Lock> lockByIdCache, TransactionRunner transactionRunner,
+                                     ShardedExecutor executor) {
+        this(accountDao, lockByIdCache, transactionRunner, Ledger.NONE, executor);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Transfers between the shards are handed off from the shard of the sender to the shard of the recipient
+     */
+    @Override
+    public Account transfer(Long fromId, Long toId, Money amount) {
+        checkTransferArguments(fromId, toId, amount);
+        int fromShard = executor.shardOf(fromId);
+        int toShard = executor.shardOf(toId);
+        if (fromShard == toShard) {
+            return super.transfer(fromId, toId, amount);
+        }
+
+        CompletableFuture<Account> transferred = executor.submit(fromShard, () -> transactionRunner.inTransaction(() -> {
+            // a transfer to a missing account fails before anything is withdrawn
+            accountDao.findByIdForRead(toId).orElseThrow(() -> new NoSuchAccountException(toId));
+            Account fromAccount = load(fromId);
+            fromAccount.withdraw(amount);
+            record(fromAccount, LedgerOperation.TRANSFER, amount.negate());
+            return fromAccount;
+        })).thenCompose(fromAccount -> deposit(fromAccount, toShard, toId, amount));
+        return ShardedExecutor.await(transferred);
+    }
+
+    /**
+     * Second step of a transfer between the shards, called by the shard thread of the sender
+     *
+     * @return future completed by the sender once the amount is deposited to the recipient,
+     * or by the failure of the deposit once the amount is returned to the sender
+     */
+    private CompletableFuture<Account> deposit(Account fromAccount, int toShard, Long toId, Money amount) {
+        CompletableFuture<Account> result = new CompletableFuture<>();
+        executor.submit(toShard, () -> transactionRunner.inTransaction(() -> {
+            Account toAccount = load(toId);
+            toAccount.deposit(amount);
+            record(toAccount, LedgerOperation.TRANSFER, amount);
+            return fromAccount;
+        })).whenComplete((account, failure) -> {
+            if (failure == null) {
+                result.complete(account);
+                return;
+            }
+            executor.submit(executor.shardOf(fromAccount.getId()), () -> transactionRunner.inTransaction(() -> {
+                Account refunded = load(fromAccount.getId());
+                refunded.deposit(amount);
+                record(refunded, LedgerOperation.TRANSFER, amount);
+                return null;
+            })).whenComplete((ignored, refundFailure) -> {
+                if (refundFailure != null) {
+                    LOGGER.error("Failed to return {} to the account {} after a failed transfer to the account {}",
+                            amount, fromAccount.getId(), toId, refundFailure);
+                    failure.addSuppressed(refundFailure);
+                }
+                result.completeExceptionally(failure);
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Runs the modification of the account in a transaction by the thread of the account shard, no lock is taken
+     */
+    @Override
+    protected <T> T executeLocked(Long id, Supplier<T> operation) {
+        return executor.execute(executor.shardOf(id), () -> transactionRunner.inTransaction(operation));
+    }
+
+    /**
+     * Runs the modification of the accounts in a transaction by the thread of their shard if they share it,
+     * otherwise in the calling thread while both shards are parked
+     */
+    @Override
+    protected <T> T executeLocked(Long firstId, Long secondId, Supplier<T> operation) {
+        int firstShard = executor.shardOf(firstId);
+        int secondShard = executor.shardOf(secondId);
+        if (firstShard == secondShard) {
+            return executor.execute(firstShard, () -> transactionRunner.inTransaction(operation));
+        }
+        return executor.executeExclusively(Arrays.asList(firstShard, secondShard), () -> transactionRunner.inTransaction(operation));
+    }
+
+    /**
+     * Runs the modification of the accounts in a transaction in the calling thread while the shards of all the accounts are parked
+     */
+    @Override
+    protected <T> T executeLocked(Collection<Long> ids, Supplier<T> operation) {
+        List<Integer> shards = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            shards.add(executor.shardOf(id));
+        }
+        return executor.executeExclusively(shards, () -> transactionRunner.inTransaction(operation));
+    }
+
+    private Account load(Long id) {
+        return accountDao.findById(id).orElseThrow(() -> new NoSuchAccountException(id));
+    }
+
+}
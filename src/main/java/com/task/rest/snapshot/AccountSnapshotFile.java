@@ -0,0 +1,225 @@
+package com.task.rest.snapshot;
+
+import com.google.common.base.Preconditions;
+import com.task.rest.model.dbo.Account;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary format of an account snapshot file
+ * <p>
+ * The file starts with a header (magic number, format version, scale of the amounts, then the journal position and the last account id
+ * of an in-memory storage snapshot, zeros otherwise) followed by the rows,
+ * a row is the account id and the unscaled amount as a length-prefixed two's-complement big-endian number.
+ * The rows are terminated by a zero id, the number of rows and the CRC32 of all the preceding bytes.
+ * A file is written under a temporary name and renamed once it's complete and forced to the disk,
+ * so a crash never leaves a partially written snapshot
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public final class AccountSnapshotFile {
+
+    private static final int MAGIC = 0x41434e54;
+    private static final byte FORMAT_VERSION = 2;
+
+    /**
+     * format without the journal position and the last account id, still read
+     */
+    private static final byte FORMAT_VERSION_1 = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private AccountSnapshotFile() {
+    }
+
+    /**
+     * Journal position and last account id of an in-memory storage snapshot, zeros for a database snapshot
+     */
+    public static final class Header {
+        private final int scale;
+        private final long journalPosition;
+        private final long lastId;
+
+        private Header(int scale, long journalPosition, long lastId) {
+            this.scale = scale;
+            this.journalPosition = journalPosition;
+            this.lastId = lastId;
+        }
+
+        public long getJournalPosition() {
+            return journalPosition;
+        }
+
+        public long getLastId() {
+            return lastId;
+        }
+    }
+
+    /**
+     * Writes the accounts passed by the source to the file, replacing it if it exists
+     *
+     * @param file   snapshot file
+     * @param source passes the accounts to be written to the given consumer
+     * @return number of written accounts
+     * @throws IllegalArgumentException if file or source is null
+     * @throws IOException              if the file can't be written
+     */
+    public static long write(Path file, Consumer<Consumer<Account>> source) throws IOException {
+        return write(file, 0, 0, source);
+    }
+
+    /**
+     * Writes the accounts passed by the source to the file, replacing it if it exists
+     *
+     * @param file            snapshot file
+     * @param journalPosition position of the journal the accounts are taken at
+     * @param lastId          greatest account id allocated up to the journal position
+     * @param source          passes the accounts to be written to the given consumer
+     * @return number of written accounts
+     * @throws IllegalArgumentException if file or source is null, journalPosition or lastId is negative
+     * @throws IOException              if the file can't be written
+     */
+    public static long write(Path file, long journalPosition, long lastId, Consumer<Consumer<Account>> source) throws IOException {
+        Preconditions.checkArgument(file != null, "file is null");
+        Preconditions.checkArgument(journalPosition >= 0, "journal position is negative");
+        Preconditions.checkArgument(lastId >= 0, "last id is negative");
+        Preconditions.checkArgument(source != null, "source is null");
+        Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(Account.SCALE);
+            out.writeLong(journalPosition);
+            out.writeLong(lastId);
+            long[] count = new long[1];
+            try {
+                source.accept(account -> {
+                    try {
+                        writeRow(out, account);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.writeLong(0);
+            out.writeLong(count[0]);
+            out.flush();
+            new DataOutputStream(buffered).writeInt((int) crc.getValue());
+            buffered.flush();
+            channel.force(true);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return count[0];
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Passes all the accounts of the file to the consumer in the order they were written
+     * <p>
+     * The checksum covers the whole file and is verified after the last account is passed,
+     * so the consumer must discard the accounts if an exception is thrown
+     *
+     * @param file     snapshot file
+     * @param consumer consumer of the accounts
+     * @return number of read accounts
+     * @throws IllegalArgumentException if file or consumer is null
+     * @throws IOException              if the file can't be read, is truncated or corrupted
+     */
+    public static long read(Path file, Consumer<Account> consumer) throws IOException {
+        Preconditions.checkArgument(file != null, "file is null");
+        Preconditions.checkArgument(consumer != null, "consumer is null");
+        try (InputStream buffered = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            CRC32 crc = new CRC32();
+            DataInputStream in = new DataInputStream(new CheckedInputStream(buffered, crc));
+            int scale = readHeader(file, in).scale;
+            long count = 0;
+            for (long id = in.readLong(); id != 0; id = in.readLong()) {
+                byte[] unscaled = new byte[in.readUnsignedByte()];
+                in.readFully(unscaled);
+                consumer.accept(new Account(new BigDecimal(new BigInteger(unscaled), scale)).setId(id));
+                count++;
+            }
+            if (in.readLong() != count) {
+                throw new IOException("number of accounts doesn't match in the account snapshot " + file);
+            }
+            int checksum = (int) crc.getValue();
+            if (new DataInputStream(buffered).readInt() != checksum || buffered.read() >= 0) {
+                throw new IOException("account snapshot " + file + " is corrupted");
+            }
+            return count;
+        } catch (EOFException e) {
+            throw new IOException("account snapshot " + file + " is truncated", e);
+        } catch (NumberFormatException e) {
+            throw new IOException("account snapshot " + file + " is corrupted", e);
+        }
+    }
+
+    /**
+     * Reads the header only, the rest of the file is verified by {@link #read}
+     *
+     * @param file snapshot file
+     * @return header of the file
+     * @throws IllegalArgumentException if file is null
+     * @throws IOException              if the file can't be read or is not an account snapshot
+     */
+    public static Header readHeader(Path file) throws IOException {
+        Preconditions.checkArgument(file != null, "file is null");
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return readHeader(file, in);
+        } catch (EOFException e) {
+            throw new IOException("account snapshot " + file + " is truncated", e);
+        }
+    }
+
+    private static Header readHeader(Path file, DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException(file + " is not an account snapshot");
+        }
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION && version != FORMAT_VERSION_1) {
+            throw new IOException("unsupported format version " + version + " of the account snapshot " + file);
+        }
+        int scale = in.readInt();
+        return version == FORMAT_VERSION_1
+                ? new Header(scale, 0, 0)
+                : new Header(scale, in.readLong(), in.readLong());
+    }
+
+    private static void writeRow(DataOutputStream out, Account account) throws IOException {
+        Preconditions.checkArgument(account.getId() != null && account.getId() > 0, "account id is not positive");
+        byte[] unscaled = account.getAmount().setScale(Account.SCALE, RoundingMode.UNNECESSARY).unscaledValue().toByteArray();
+        out.writeLong(account.getId());
+        out.writeByte(unscaled.length);
+        out.write(unscaled);
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.task.rest.snapshot;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.task.rest.persistence.AccountBulkLoader;
+import com.task.rest.persistence.AccountDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes all the accounts of the database to a snapshot file and restores them from the latest snapshot on startup
+ * <p>
+ * The accounts are read by {@link AccountDao#scroll} - a single forward-only query of a stateless session,
+ * so a snapshot takes no account locks and doesn't keep the accounts in memory. A snapshot is also written on shutdown,
+ * after the server stops accepting requests, so nothing is lost by a graceful restart.
+ * If the latest snapshot is corrupted, the accounts are restored from the next older retained one
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see AccountSnapshotFile
+ */
+public class AccountSnapshotter extends PeriodicSnapshotter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccountSnapshotter.class);
+
+    private final AccountDao accountDao;
+    private final AccountBulkLoader bulkLoader;
+
+    /**
+     * @throws IllegalArgumentException if directory is null, intervalMillis or retained is non-positive
+     */
+    @Inject
+    public AccountSnapshotter(AccountDao accountDao, AccountBulkLoader bulkLoader,
+                              @Named(DIRECTORY_FIELD_NAME) String directory,
+                              @Named(INTERVAL_FIELD_NAME) long intervalMillis,
+                              @Named(RETAINED_FIELD_NAME) int retained) {
+        super(directory, intervalMillis, retained);
+        this.accountDao = accountDao;
+        this.bulkLoader = bulkLoader;
+    }
+
+    /**
+     * Inserts the accounts of the latest snapshot that is not corrupted into the empty storage
+     *
+     * @return number of restored accounts, 0 if there is no snapshot
+     * @throws UncheckedIOException  if none of the snapshots can be read, thrown for the latest one with the rest suppressed
+     * @throws IllegalStateException if the storage is not empty
+     */
+    public long restore() {
+        List<Path> snapshots = snapshots(directory);
+        if (snapshots.isEmpty()) {
+            LOGGER.info("There is no account snapshot in {}", directory);
+            return 0;
+        }
+        UncheckedIOException failure = null;
+        for (Path snapshot : snapshots) {
+            long start = System.nanoTime();
+            try {
+                long count = bulkLoader.load(consumer -> {
+                    try {
+                        AccountSnapshotFile.read(snapshot, consumer);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("failed to restore the accounts from " + snapshot, e);
+                    }
+                });
+                LOGGER.info("{} accounts are restored from {} in {} ms", count, snapshot,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return count;
+            } catch (UncheckedIOException e) {
+                // the accounts inserted before the failure are rolled back, the table is empty again
+                LOGGER.error("Failed to restore the accounts from {}, trying an older snapshot", snapshot, e);
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        throw failure;
+    }
+
+    @Override
+    protected long write(Path snapshot) throws IOException {
+        return AccountSnapshotFile.write(snapshot, consumer -> accountDao.scroll(null, consumer));
+    }
+
+}
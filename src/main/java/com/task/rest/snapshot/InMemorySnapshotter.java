@@ -0,0 +1,107 @@
+package com.task.rest.snapshot;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.task.rest.journal.Journal;
+import com.task.rest.model.dbo.Account;
+import com.task.rest.persistence.AccountBalanceTable;
+import com.task.rest.persistence.AccountCheckpoint;
+import com.task.rest.persistence.InMemoryAccountDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Periodically writes checkpoints of the in-memory storage to snapshot files and deletes the journal segments they cover
+ * <p>
+ * A snapshot keeps the journal position of its {@link AccountCheckpoint}, on startup the storage is restored from the latest snapshot
+ * and the journal records after its position only. The segments before the position of the oldest retained snapshot are deleted,
+ * so the storage can still be restored from an older snapshot if the latest one is corrupted
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see InMemoryAccountDao#checkpoint()
+ */
+public class InMemorySnapshotter extends PeriodicSnapshotter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemorySnapshotter.class);
+
+    private final InMemoryAccountDao accountDao;
+    private final Journal journal;
+
+    /**
+     * @throws IllegalArgumentException if directory is null, intervalMillis or retained is non-positive
+     */
+    @Inject
+    public InMemorySnapshotter(InMemoryAccountDao accountDao, Journal journal,
+                               @Named(DIRECTORY_FIELD_NAME) String directory,
+                               @Named(INTERVAL_FIELD_NAME) long intervalMillis,
+                               @Named(RETAINED_FIELD_NAME) int retained) {
+        super(directory, intervalMillis, retained);
+        this.accountDao = accountDao;
+        this.journal = journal;
+    }
+
+    /**
+     * Reads the latest snapshot in the directory that is not corrupted
+     *
+     * @param directory directory of the snapshot files
+     * @return checkpoint of the snapshot, {@link AccountCheckpoint#NONE} if there are no snapshots
+     * @throws UncheckedIOException if there are snapshots, but none of them can be read
+     */
+    public static AccountCheckpoint restore(Path directory) {
+        List<Path> snapshots = snapshots(directory);
+        if (snapshots.isEmpty()) {
+            LOGGER.info("There is no account snapshot in {}", directory);
+            return AccountCheckpoint.NONE;
+        }
+        IOException failure = null;
+        for (Path snapshot : snapshots) {
+            long start = System.nanoTime();
+            try {
+                AccountCheckpoint checkpoint = read(snapshot);
+                LOGGER.info("{} accounts are restored from {} in {} ms", checkpoint.size(), snapshot,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return checkpoint;
+            } catch (IOException e) {
+                LOGGER.error("Failed to restore the accounts from {}, trying an older snapshot", snapshot, e);
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        throw new UncheckedIOException("failed to restore the accounts from any snapshot in " + directory, failure);
+    }
+
+    @Override
+    protected long write(Path snapshot) throws IOException {
+        AccountCheckpoint checkpoint = accountDao.checkpoint();
+        return AccountSnapshotFile.write(snapshot, checkpoint.getJournalPosition(), checkpoint.getLastId(), checkpoint::forEach);
+    }
+
+    /**
+     * Deletes the journal segments before the position of the oldest retained snapshot
+     */
+    @Override
+    protected void afterSnapshot(List<Path> retainedSnapshots) throws IOException {
+        journal.deleteBefore(AccountSnapshotFile.readHeader(retainedSnapshots.get(0)).getJournalPosition());
+    }
+
+    private static AccountCheckpoint read(Path snapshot) throws IOException {
+        AccountSnapshotFile.Header header = AccountSnapshotFile.readHeader(snapshot);
+        LongStream.Builder rows = LongStream.builder();
+        AccountSnapshotFile.read(snapshot, account -> {
+            rows.add(account.getId());
+            rows.add(AccountBalanceTable.toUnits(account.getAmount(), Account.SCALE));
+        });
+        return new AccountCheckpoint(header.getJournalPosition(), header.getLastId(), rows.build().toArray());
+    }
+
+}
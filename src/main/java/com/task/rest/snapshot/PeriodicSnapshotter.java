@@ -0,0 +1,207 @@
+package com.task.rest.snapshot;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Periodically writes all the accounts of a storage to a snapshot file, once more on shutdown, and keeps the latest ones
+ * <p>
+ * A snapshot file is named by a number increasing with the time it was written at, see {@link AccountSnapshotFile} for its format
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see AccountSnapshotter
+ * @see InMemorySnapshotter
+ */
+public abstract class PeriodicSnapshotter implements Managed {
+
+    public static final String DIRECTORY_FIELD_NAME = "snapshot.directory";
+    public static final String INTERVAL_FIELD_NAME = "snapshot.interval";
+    public static final String RETAINED_FIELD_NAME = "snapshot.retained";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PeriodicSnapshotter.class);
+
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("accounts-(\\d{20})\\.snapshot(\\.tmp)?");
+
+    protected final Path directory;
+    private final long intervalMillis;
+    private final int retained;
+
+    // the last snapshot is named by a greater number even if the clock goes back
+    private long lastNumber;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @throws IllegalArgumentException if directory is null, intervalMillis or retained is non-positive
+     */
+    protected PeriodicSnapshotter(String directory, long intervalMillis, int retained) {
+        Preconditions.checkArgument(directory != null, "directory is null");
+        Preconditions.checkArgument(intervalMillis > 0, "interval is non-positive");
+        Preconditions.checkArgument(retained > 0, "number of retained snapshots is non-positive");
+        this.directory = Paths.get(directory);
+        this.intervalMillis = intervalMillis;
+        this.retained = retained;
+    }
+
+    /**
+     * @param directory directory of the snapshot files
+     * @return the latest snapshot file in the directory, empty if there are none or the directory doesn't exist
+     * @throws UncheckedIOException if the directory can't be read
+     */
+    public static Optional<Path> latestSnapshot(Path directory) {
+        List<Path> snapshots = snapshots(directory);
+        return snapshots.isEmpty() ? Optional.empty() : Optional.of(snapshots.get(0));
+    }
+
+    /**
+     * @param directory directory of the snapshot files
+     * @return the snapshot files in the directory from the latest one to the oldest one,
+     * empty if there are none or the directory doesn't exist
+     * @throws UncheckedIOException if the directory can't be read
+     */
+    public static List<Path> snapshots(Path directory) {
+        List<Long> numbers = snapshotNumbers(directory);
+        List<Path> snapshots = new ArrayList<>(numbers.size());
+        for (int i = numbers.size() - 1; i >= 0; i--) {
+            snapshots.add(snapshotPath(directory, numbers.get(i)));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Writes all the accounts to a new snapshot file and deletes the old ones beyond the number of retained snapshots
+     *
+     * @return number of written accounts
+     * @throws UncheckedIOException if the snapshot can't be written
+     */
+    public synchronized long snapshot() {
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            deleteTemporaryFiles();
+            List<Long> numbers = snapshotNumbers(directory);
+            long number = Math.max(System.currentTimeMillis(),
+                    Math.max(lastNumber, numbers.isEmpty() ? 0 : numbers.get(numbers.size() - 1)) + 1);
+            Path snapshot = snapshotPath(directory, number);
+            long count = write(snapshot);
+            lastNumber = number;
+            numbers.add(number);
+            for (Long old : numbers.subList(0, Math.max(0, numbers.size() - retained))) {
+                Files.deleteIfExists(snapshotPath(directory, old));
+            }
+            afterSnapshot(numbers.subList(Math.max(0, numbers.size() - retained), numbers.size()).stream()
+                    .map(retainedNumber -> snapshotPath(directory, retainedNumber))
+                    .collect(Collectors.toList()));
+            LOGGER.info("{} accounts are written to {} in {} ms", count, snapshot,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write an account snapshot to " + directory, e);
+        }
+    }
+
+    /**
+     * Schedules the periodic snapshots
+     */
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("account-snapshot").setDaemon(true).build());
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (RuntimeException e) {
+                // the next snapshot is still scheduled
+                LOGGER.error("Failed to write an account snapshot", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Waits for the running snapshot and writes the final one
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to write the final account snapshot", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes all the accounts of the storage to the snapshot file
+     *
+     * @return number of written accounts
+     */
+    protected abstract long write(Path snapshot) throws IOException;
+
+    /**
+     * Called once a snapshot is written and the old ones are deleted
+     *
+     * @param retainedSnapshots snapshot files kept, from the oldest one to the latest one
+     */
+    protected void afterSnapshot(List<Path> retainedSnapshots) throws IOException {
+    }
+
+    /**
+     * Deletes the files of the snapshots that were being written during a crash
+     */
+    private void deleteTemporaryFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = SNAPSHOT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && matcher.group(2) != null) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static List<Long> snapshotNumbers(Path directory) {
+        List<Long> numbers = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return numbers;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SNAPSHOT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && matcher.group(2) == null) {
+                    numbers.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to list the account snapshots in " + directory, e);
+        }
+        numbers.sort(Long::compare);
+        return numbers;
+    }
+
+    private static Path snapshotPath(Path directory, long number) {
+        return directory.resolve(String.format("accounts-%020d.snapshot", number));
+    }
+
+}
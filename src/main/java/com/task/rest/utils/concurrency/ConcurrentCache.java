@@ -14,4 +14,16 @@ public interface ConcurrentCache<K, V> {
      */
     V get(K key);
 
-}
+    /**
+     * Defines the global order in which values of the cache have to be acquired
+     * when a caller needs several of them at once (e.g. several locks):
+     * callers that take values one by one in this order can not deadlock each other
+     *
+     * @param first  first key
+     * @param second second key
+     * @return a negative integer, zero, or a positive integer as the value associated with the first key
+     * precedes, is the same as, or follows the value associated with the second key
+     */
+    int compareKeys(K first, K second);
+
+}
\ No newline at end of file
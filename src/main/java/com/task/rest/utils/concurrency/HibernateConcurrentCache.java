@@ -13,7 +13,7 @@ import java.util.function.Supplier;
  * @see ConcurrentCache
  * @see ConcurrentReferenceHashMap
  */
-public class HibernateConcurrentCache<K, V> implements ConcurrentCache<K, V> {
+public class HibernateConcurrentCache<K extends Comparable<? super K>, V> implements ConcurrentCache<K, V> {
     private static final int INIT_CAPACITY = 16;
     private final ConcurrentReferenceHashMap<K, V> map = new ConcurrentReferenceHashMap<>(INIT_CAPACITY, ReferenceType.STRONG, ReferenceType.WEAK);
     private final Supplier<V> factory;
@@ -28,4 +28,14 @@ public class HibernateConcurrentCache<K, V> implements ConcurrentCache<K, V> {
         return map.computeIfAbsent(key, k -> factory.get());
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Every key has its own value, so values are ordered by the natural order of their keys
+     */
+    @Override
+    public int compareKeys(K first, K second) {
+        return first.compareTo(second);
+    }
+
 }
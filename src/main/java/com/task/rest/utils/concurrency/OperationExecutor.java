@@ -0,0 +1,154 @@
+package com.task.rest.utils.concurrency;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.task.rest.exceptions.OperationQueueFullException;
+import com.task.rest.metrics.RequestTimings;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Executor of the operations suspended by the request threads, with a fixed number of threads and a bounded queue
+ * <p>
+ * An operation waiting for account locks blocks one of these threads instead of a request thread of the server,
+ * so reads are still served while modifications of hot accounts wait. When the queue is full the operation is rejected
+ * at once rather than queued, the client is told to retry later.
+ * <p>
+ * With virtual threads (JDK 21 or later) every operation runs in a virtual thread of its own as soon as it's submitted,
+ * an operation blocked on a lock or on I/O releases its carrier thread. The number of operations in flight is still bounded
+ * by the number of threads plus the queue size
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see VirtualThreads
+ */
+public class OperationExecutor implements AutoCloseable {
+
+    public static final String THREADS_FIELD_NAME = "operations.threads";
+    public static final String QUEUE_SIZE_FIELD_NAME = "operations.queueSize";
+    public static final String RETRY_AFTER_FIELD_NAME = "operations.retryAfter";
+    public static final String VIRTUAL_THREADS_FIELD_NAME = "operations.virtualThreads";
+
+    private static final String THREAD_NAME_PREFIX = "account-operation-";
+
+    private final ExecutorService executor;
+    private final long retryAfterSeconds;
+
+    /**
+     * operations in flight of the virtual threads, null if the operations are run by the thread pool
+     */
+    private final Semaphore inFlight;
+
+    /**
+     * @param threads           number of threads running the operations
+     * @param queueSize         maximum number of operations waiting for a free thread
+     * @param retryAfterSeconds number of seconds the client of a rejected operation is advised to wait
+     * @param virtualThreads    whether every operation runs in a virtual thread of its own
+     * @throws IllegalArgumentException if threads, queueSize or retryAfterSeconds is non-positive
+     * @throws IllegalStateException    if virtualThreads is true and the running JDK has no virtual threads
+     */
+    @Inject
+    public OperationExecutor(@Named(THREADS_FIELD_NAME) int threads, @Named(QUEUE_SIZE_FIELD_NAME) int queueSize,
+                             @Named(RETRY_AFTER_FIELD_NAME) long retryAfterSeconds,
+                             @Named(VIRTUAL_THREADS_FIELD_NAME) boolean virtualThreads) {
+        Preconditions.checkArgument(threads > 0, "number of threads is non-positive");
+        Preconditions.checkArgument(queueSize > 0, "queue size is non-positive");
+        Preconditions.checkArgument(retryAfterSeconds > 0, "retry after is non-positive");
+        if (virtualThreads) {
+            this.executor = VirtualThreads.newThreadPerTaskExecutor(THREAD_NAME_PREFIX);
+            this.inFlight = new Semaphore((int) Math.min(Integer.MAX_VALUE, (long) threads + queueSize));
+        } else {
+            this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                    new ThreadFactoryBuilder().setNameFormat(THREAD_NAME_PREFIX + "%d").build());
+            this.inFlight = null;
+        }
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @param threads           number of threads running the operations
+     * @param queueSize         maximum number of operations waiting for a free thread
+     * @param retryAfterSeconds number of seconds the client of a rejected operation is advised to wait
+     * @throws IllegalArgumentException if threads, queueSize or retryAfterSeconds is non-positive
+     */
+    public OperationExecutor(int threads, int queueSize, long retryAfterSeconds) {
+        this(threads, queueSize, retryAfterSeconds, false);
+    }
+
+    /**
+     * Queues the operation
+     *
+     * @param operation operation to be run
+     * @param <T>       type of the operation result
+     * @return future completed by the result of the operation or by the exception it throws
+     * @throws IllegalArgumentException    if operation is null
+     * @throws OperationQueueFullException if the queue is full or the executor is closed
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        Preconditions.checkArgument(operation != null, "operation is null");
+        if (inFlight != null && !inFlight.tryAcquire()) {
+            throw new OperationQueueFullException(retryAfterSeconds);
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        // the stages of the operation are timed as the ones of the request that submitted it
+        RequestTimings timings = RequestTimings.current();
+        try {
+            executor.execute(() -> {
+                RequestTimings previous = RequestTimings.enter(timings);
+                try {
+                    future.complete(operation.get());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    RequestTimings.exit(previous);
+                    if (inFlight != null) {
+                        inFlight.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (inFlight != null) {
+                inFlight.release();
+            }
+            throw new OperationQueueFullException(retryAfterSeconds);
+        }
+        return future;
+    }
+
+    /**
+     * @return number of operations waiting for a free thread, always 0 with virtual threads
+     */
+    public int queued() {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+    }
+
+    /**
+     * Rejects new operations and waits until the queued ones are completed
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,309 @@
+package com.task.rest.utils.concurrency;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Collection;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Executor of the tasks partitioned by keys over a fixed power-of-two number of shards,
+ * every shard runs its tasks one by one in a single thread of its own (single writer)
+ * <p>
+ * A key is always mapped to the same shard, so tasks of the same key never run concurrently
+ * and are run in the order they are submitted. Every shard admits a bounded number of queued tasks,
+ * submitters wait for a free place when the shard is full. Tasks submitted by the shard threads themselves
+ * (handoffs from one shard to another) are never blocked, otherwise two full shards handing tasks off to each other
+ * would wait for each other forever
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class ShardedExecutor implements AutoCloseable {
+
+    public static final String SHARDS_FIELD_NAME = "sharding.shards";
+    public static final String QUEUE_SIZE_FIELD_NAME = "sharding.queueSize";
+
+    private static final int MAX_SHARDS = 1 << 16;
+
+    /**
+     * 2^64 divided by the golden ratio - spreads sequential keys over the shards
+     */
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private static final Runnable STOP = () -> {
+    };
+
+    private final Shard[] shards;
+    private final int shift;
+
+    /**
+     * barriers of the exclusive tasks are queued to all the shards under this lock,
+     * so they are in the same relative order in all the queues and can't wait for each other.
+     * Not a monitor: a virtual thread waiting for a free place in a shard while holding a monitor would pin its carrier thread
+     */
+    private final Lock barrierLock = new ReentrantLock();
+
+    /**
+     * number of the submitted tasks that are not completed yet
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Object idle = new Object();
+    private volatile boolean closed;
+
+    /**
+     * @param shards    number of shards, rounded up to the nearest power of two
+     * @param queueSize maximum number of queued tasks of a shard submitted by other threads than the shard threads
+     * @throws IllegalArgumentException if shards is non-positive or greater than 2^16, or queueSize is non-positive
+     */
+    @Inject
+    public ShardedExecutor(@Named(SHARDS_FIELD_NAME) int shards, @Named(QUEUE_SIZE_FIELD_NAME) int queueSize) {
+        Preconditions.checkArgument(shards > 0, "number of shards is non-positive");
+        Preconditions.checkArgument(shards <= MAX_SHARDS, "number of shards is greater than %s", MAX_SHARDS);
+        Preconditions.checkArgument(queueSize > 0, "queue size is non-positive");
+        int size = shards == 1 ? 1 : Integer.highestOneBit(shards - 1) << 1;
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            this.shards[i] = new Shard(i, queueSize);
+        }
+        this.shift = Long.SIZE - Integer.numberOfTrailingZeros(size);
+        for (Shard shard : this.shards) {
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * @return number of shards
+     */
+    public int size() {
+        return shards.length;
+    }
+
+    /**
+     * @param key key of the task
+     * @return index of the shard the key is mapped to
+     * @throws IllegalArgumentException if key is null
+     */
+    public int shardOf(Long key) {
+        Preconditions.checkArgument(key != null, "key is null");
+        // the highest bits of the product are the best mixed ones (Fibonacci hashing)
+        return shards.length == 1 ? 0 : (int) ((key * HASH_MULTIPLIER) >>> shift);
+    }
+
+    /**
+     * Queues the task to the shard, waits for a free place if the shard is full and the caller is not a shard thread
+     *
+     * @param shard index of the shard
+     * @param task  task to be run by the shard thread
+     * @param <T>   type of the task result
+     * @return future completed by the result of the task or by the exception it throws
+     * @throws IllegalArgumentException if shard is out of range or task is null
+     * @throws IllegalStateException    if the executor is closed and the caller is not a shard thread
+     */
+    public <T> CompletableFuture<T> submit(int shard, Supplier<T> task) {
+        Preconditions.checkArgument(shard >= 0 && shard < shards.length, "shard %s is out of range", shard);
+        Preconditions.checkArgument(task != null, "task is null");
+        CompletableFuture<T> future = new CompletableFuture<>();
+        enqueue(shards[shard], () -> {
+            try {
+                future.complete(task.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Runs the task by the shard thread and waits for its result, the task is run in place if the caller is the shard thread
+     *
+     * @param shard index of the shard
+     * @param task  task to be run by the shard thread
+     * @param <T>   type of the task result
+     * @return result of the task
+     * @throws IllegalArgumentException if shard is out of range or task is null
+     * @throws IllegalStateException    if the executor is closed, or the caller is a thread of another shard
+     * @throws RuntimeException         thrown by the task
+     */
+    public <T> T execute(int shard, Supplier<T> task) {
+        Preconditions.checkArgument(shard >= 0 && shard < shards.length, "shard %s is out of range", shard);
+        Thread current = Thread.currentThread();
+        if (current == shards[shard].thread) {
+            return task.get();
+        }
+        checkNotShardThread(current);
+        return await(submit(shard, task));
+    }
+
+    /**
+     * Runs the task in the calling thread while the threads of the shards are parked:
+     * the tasks queued to the shards before are completed first, the ones queued after wait for this task
+     *
+     * @param shardIndexes indexes of the shards to be parked
+     * @param task         task to be run
+     * @param <T>          type of the task result
+     * @return result of the task
+     * @throws IllegalArgumentException if shardIndexes is null or contains an index out of range, or task is null
+     * @throws IllegalStateException    if the executor is closed, or the caller is a shard thread
+     * @throws RuntimeException         thrown by the task
+     */
+    public <T> T executeExclusively(Collection<Integer> shardIndexes, Supplier<T> task) {
+        Preconditions.checkArgument(shardIndexes != null, "shard indexes is null");
+        Preconditions.checkArgument(task != null, "task is null");
+        for (Integer shard : shardIndexes) {
+            Preconditions.checkArgument(shard != null && shard >= 0 && shard < shards.length, "shard %s is out of range", shard);
+        }
+        SortedSet<Integer> distinct = new TreeSet<>(shardIndexes);
+        checkNotShardThread(Thread.currentThread());
+
+        CountDownLatch parked = new CountDownLatch(distinct.size());
+        CountDownLatch released = new CountDownLatch(1);
+        barrierLock.lock();
+        try {
+            for (Integer shard : distinct) {
+                enqueue(shards[shard], () -> {
+                    parked.countDown();
+                    Uninterruptibles.awaitUninterruptibly(released);
+                });
+            }
+        } finally {
+            barrierLock.unlock();
+        }
+        try {
+            Uninterruptibles.awaitUninterruptibly(parked);
+            return task.get();
+        } finally {
+            released.countDown();
+        }
+    }
+
+    /**
+     * Waits for the future completed by a task of the executor
+     *
+     * @param future future of the task
+     * @param <T>    type of the task result
+     * @return result of the task
+     * @throws RuntimeException thrown by the task
+     */
+    public static <T> T await(Future<T> future) {
+        try {
+            return Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            Throwables.throwIfUnchecked(cause);
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Stops accepting tasks from other threads than the shard threads, waits until all the submitted tasks
+     * (and the tasks they hand off to other shards) are completed and stops the shard threads
+     */
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        synchronized (idle) {
+            while (pending.get() > 0) {
+                try {
+                    idle.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        for (Shard shard : shards) {
+            shard.queue.add(STOP);
+        }
+        for (Shard shard : shards) {
+            Uninterruptibles.joinUninterruptibly(shard.thread);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(Shard shard, Runnable task) {
+        boolean external = !(Thread.currentThread() instanceof ShardThread);
+        // counted before the check, so close() either sees the task or the task sees the closed executor
+        pending.incrementAndGet();
+        if (external && closed) {
+            completed();
+            throw new IllegalStateException("executor is closed");
+        }
+        if (external) {
+            shard.admission.acquireUninterruptibly();
+            shard.queue.add(() -> {
+                shard.admission.release();
+                task.run();
+            });
+        } else {
+            shard.queue.add(task);
+        }
+    }
+
+    private void completed() {
+        if (pending.decrementAndGet() == 0 && closed) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+
+    private static void checkNotShardThread(Thread thread) {
+        // a shard waiting for another one may wait for a shard that waits for it
+        Preconditions.checkState(!(thread instanceof ShardThread), "shard thread can't wait for another shard");
+    }
+
+    private final class Shard implements Runnable {
+        private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+        private final Semaphore admission;
+        private final Thread thread;
+
+        private Shard(int index, int queueSize) {
+            this.admission = new Semaphore(queueSize);
+            this.thread = new ShardThread(this, "shard-" + index);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task = Uninterruptibles.takeUninterruptibly(queue);
+                if (task == STOP) {
+                    return;
+                }
+                try {
+                    task.run();
+                } finally {
+                    completed();
+                }
+            }
+        }
+    }
+
+    private static final class ShardThread extends Thread {
+        private ShardThread(Runnable target, String name) {
+            super(target, name);
+            setDaemon(true);
+        }
+    }
+
+}
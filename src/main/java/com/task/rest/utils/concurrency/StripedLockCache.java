@@ -0,0 +1,85 @@
+package com.task.rest.utils.concurrency;
+
+import com.google.common.base.Preconditions;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped implementation of the {@link ConcurrentCache} for locks by account id
+ * <p>
+ * Keeps a fixed power-of-two array of {@link ReentrantLock}s created once on construction,
+ * every id is mapped to one of them by a mixed hash, so different ids may share the same lock.
+ * Nothing is allocated on {@link #get} and memory use does not depend on the number of distinct ids
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see ConcurrentCache
+ */
+public class StripedLockCache implements ConcurrentCache<Long, Lock> {
+
+    public static final String STRIPES_FIELD_NAME = "lockStripes";
+
+    private static final int MAX_STRIPES = 1 << 30;
+
+    /**
+     * 2^64 divided by the golden ratio - spreads sequential ids over the stripes
+     */
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final Lock[] stripes;
+    private final int shift;
+
+    /**
+     * @param stripes number of locks, rounded up to the nearest power of two
+     * @throws IllegalArgumentException if stripes is non-positive or greater than 2^30
+     */
+    @Inject
+    public StripedLockCache(@Named(STRIPES_FIELD_NAME) int stripes) {
+        Preconditions.checkArgument(stripes > 0, "number of stripes is non-positive");
+        Preconditions.checkArgument(stripes <= MAX_STRIPES, "number of stripes is greater than %s", MAX_STRIPES);
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.shift = Long.SIZE - Integer.numberOfTrailingZeros(size);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if key is null
+     */
+    @Override
+    public Lock get(Long key) {
+        return stripes[indexOf(key)];
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Locks are ordered by their position in the stripes array, ids mapped to the same stripe are equal in this order
+     *
+     * @throws IllegalArgumentException if any of keys is null
+     */
+    @Override
+    public int compareKeys(Long first, Long second) {
+        return Integer.compare(indexOf(first), indexOf(second));
+    }
+
+    /**
+     * @return number of locks in the cache
+     */
+    public int size() {
+        return stripes.length;
+    }
+
+    private int indexOf(Long key) {
+        Preconditions.checkArgument(key != null, "try to get lock for null id");
+        // the highest bits of the product are the best mixed ones (Fibonacci hashing)
+        return stripes.length == 1 ? 0 : (int) ((key * HASH_MULTIPLIER) >>> shift);
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.task.rest.utils.serialization;
+
+import com.task.rest.model.Money;
+import com.task.rest.model.api.request.DepositOrWithdrawRequest;
+import com.task.rest.model.api.request.TransferRequest;
+import com.task.rest.model.api.response.CrudAccountResponse;
+import com.task.rest.model.api.response.ListAllResponse;
+import com.task.rest.model.api.response.OperationStatus;
+import com.task.rest.model.dbo.Account;
+
+import javax.ws.rs.core.MediaType;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary representation of the account operations, an alternative to json for the callers sending a lot of them
+ * <p>
+ * The values are written one after another with no names, all numbers are big-endian:
+ * <ul>
+ * <li>amount - int8 scale and int64 unscaled value, the amount is unscaled * 10^-scale. An amount with more than
+ * {@link Money#SCALE} fraction digits or out of the range of long units is written as int8 {@value #DECIMAL_AMOUNT}
+ * followed by its plain string in modified UTF-8 with an int16 length prefix, a missing one as int8 {@value #NULL_AMOUNT}</li>
+ * <li>{@link DepositOrWithdrawRequest} - int64 id, amount</li>
+ * <li>{@link TransferRequest} - int64 fromId, int64 toId, amount</li>
+ * <li>account - int64 id, amount</li>
+ * <li>{@link CrudAccountResponse} - int8 ordinal of {@link OperationStatus}, account</li>
+ * <li>{@link ListAllResponse} - each account preceded by int8 1, the end of the list marked by int8 0,
+ * then int8 1 and int64 nextAfterId or int8 0 if there's no next page. The length isn't known in advance,
+ * so the whole list can be streamed the same way</li>
+ * </ul>
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see BinaryMessageBodyReader
+ * @see BinaryMessageBodyWriter
+ */
+public final class BinaryFormat {
+
+    public static final String MEDIA_TYPE = "application/x-account-binary";
+    public static final MediaType MEDIA_TYPE_TYPE = MediaType.valueOf(MEDIA_TYPE);
+
+    static final byte NULL_AMOUNT = -128;
+    static final byte DECIMAL_AMOUNT = -127;
+
+    private static final byte ABSENT = 0;
+    private static final byte PRESENT = 1;
+
+    private static final OperationStatus[] STATUSES = OperationStatus.values();
+
+    private BinaryFormat() {
+    }
+
+    /**
+     * @return whether messages of the type have the binary representation
+     */
+    public static boolean isSupported(Class<?> type) {
+        return type == TransferRequest.class || type == DepositOrWithdrawRequest.class
+                || type == CrudAccountResponse.class || type == ListAllResponse.class;
+    }
+
+    public static DepositOrWithdrawRequest readDepositOrWithdrawRequest(DataInput input) throws IOException {
+        long id = input.readLong();
+        return new DepositOrWithdrawRequest(id, readAmount(input));
+    }
+
+    public static void writeDepositOrWithdrawRequest(DataOutput output, DepositOrWithdrawRequest request) throws IOException {
+        output.writeLong(request.getId());
+        writeAmount(output, request.getMoney());
+    }
+
+    public static TransferRequest readTransferRequest(DataInput input) throws IOException {
+        long fromId = input.readLong();
+        long toId = input.readLong();
+        return new TransferRequest(fromId, toId, readAmount(input));
+    }
+
+    public static void writeTransferRequest(DataOutput output, TransferRequest request) throws IOException {
+        output.writeLong(request.getFromId());
+        output.writeLong(request.getToId());
+        writeAmount(output, request.getMoney());
+    }
+
+    public static CrudAccountResponse readCrudAccountResponse(DataInput input) throws IOException {
+        int status = input.readByte();
+        if (status < 0 || status >= STATUSES.length) {
+            throw new IOException("unknown operation status " + status);
+        }
+        return new CrudAccountResponse(readAccount(input), STATUSES[status]);
+    }
+
+    public static void writeCrudAccountResponse(DataOutput output, CrudAccountResponse response) throws IOException {
+        output.writeByte(response.getStatus().ordinal());
+        writeAccount(output, response.getAccount());
+    }
+
+    public static ListAllResponse readListAllResponse(DataInput input) throws IOException {
+        List<Account> accounts = new ArrayList<>();
+        while (input.readByte() == PRESENT) {
+            accounts.add(readAccount(input));
+        }
+        Long nextAfterId = input.readByte() == PRESENT ? input.readLong() : null;
+        return new ListAllResponse(accounts, nextAfterId);
+    }
+
+    public static void writeListAllResponse(DataOutput output, ListAllResponse response) throws IOException {
+        for (Account account : response.getAccounts()) {
+            writeListedAccount(output, account);
+        }
+        writeListEnd(output, response.getNextAfterId());
+    }
+
+    /**
+     * Writes an account of a streamed {@link ListAllResponse}
+     */
+    public static void writeListedAccount(DataOutput output, Account account) throws IOException {
+        output.writeByte(PRESENT);
+        writeAccount(output, account);
+    }
+
+    /**
+     * Ends a streamed {@link ListAllResponse}
+     *
+     * @param nextAfterId id to request the next page after the listed accounts, null if there are no more accounts
+     */
+    public static void writeListEnd(DataOutput output, Long nextAfterId) throws IOException {
+        output.writeByte(ABSENT);
+        if (nextAfterId == null) {
+            output.writeByte(ABSENT);
+        } else {
+            output.writeByte(PRESENT);
+            output.writeLong(nextAfterId);
+        }
+    }
+
+    private static Account readAccount(DataInput input) throws IOException {
+        long id = input.readLong();
+        Money amount = readAmount(input);
+        if (amount == null) {
+            throw new IOException("account " + id + " has no amount");
+        }
+        return new Account().setId(id).setBalance(amount);
+    }
+
+    private static void writeAccount(DataOutput output, Account account) throws IOException {
+        output.writeLong(account.getId());
+        writeAmount(output, account.getBalance());
+    }
+
+    private static Money readAmount(DataInput input) throws IOException {
+        byte scale = input.readByte();
+        if (scale == NULL_AMOUNT) {
+            return null;
+        }
+        if (scale == DECIMAL_AMOUNT) {
+            try {
+                return Money.of(new BigDecimal(input.readUTF()));
+            } catch (NumberFormatException e) {
+                throw new IOException("malformed amount", e);
+            }
+        }
+        return Money.valueOf(input.readLong(), scale);
+    }
+
+    private static void writeAmount(DataOutput output, Money amount) throws IOException {
+        if (amount == null) {
+            output.writeByte(NULL_AMOUNT);
+        } else if (amount.isCompact()) {
+            output.writeByte(amount.getScale());
+            output.writeLong(amount.getUnscaled());
+        } else {
+            output.writeByte(DECIMAL_AMOUNT);
+            output.writeUTF(amount.toString());
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.task.rest.utils.serialization;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Sends the entities that have no {@link BinaryFormat} as json, even if the client accepts only the binary format.
+ * The validation errors are built by Dropwizard with no media type, so the one negotiated for the resource method is taken otherwise
+ * and no writer is found for them
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+@Provider
+public class BinaryFormatFallbackFilter implements ContainerResponseFilter {
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        if (responseContext.hasEntity() && BinaryFormat.MEDIA_TYPE_TYPE.isCompatible(responseContext.getMediaType())
+                && !BinaryFormat.isSupported(responseContext.getEntityClass())
+                && !StreamingOutput.class.isAssignableFrom(responseContext.getEntityClass())) {
+            responseContext.getHeaders().putSingle(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_TYPE);
+        }
+    }
+}
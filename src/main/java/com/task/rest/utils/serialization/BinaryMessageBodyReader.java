@@ -0,0 +1,79 @@
+package com.task.rest.utils.serialization;
+
+import com.task.rest.model.api.request.DepositOrWithdrawRequest;
+import com.task.rest.model.api.request.TransferRequest;
+import com.task.rest.model.api.response.CrudAccountResponse;
+import com.task.rest.model.api.response.ListAllResponse;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Reads the account operations in the {@link BinaryFormat}, the fields are read in their order with no databinding
+ * <p>
+ * A truncated or malformed body, or one with bytes left after the message, is rejected with 400 Bad Request
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see BinaryFormat
+ */
+@Provider
+@Consumes(BinaryFormat.MEDIA_TYPE)
+public class BinaryMessageBodyReader implements MessageBodyReader<Object> {
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return BinaryFormat.isSupported(type);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        DataInputStream input = new DataInputStream(entityStream);
+        Object message;
+        try {
+            message = read(type, input);
+            if (input.read() != -1) {
+                throw new IOException("unexpected bytes after the message");
+            }
+        } catch (EOFException e) {
+            throw badRequest("the message is truncated", e);
+        } catch (IOException e) {
+            throw badRequest(e.getMessage(), e);
+        }
+        return message;
+    }
+
+    /**
+     * @return exception with the response built here, so it isn't mapped to 500 Internal Server Error
+     */
+    private static WebApplicationException badRequest(String reason, IOException e) {
+        return new WebApplicationException(e, Response.status(Response.Status.BAD_REQUEST)
+                .entity("Unable to process binary message: " + reason)
+                .type(MediaType.TEXT_PLAIN)
+                .build());
+    }
+
+    private static Object read(Class<?> type, DataInputStream input) throws IOException {
+        if (type == TransferRequest.class) {
+            return BinaryFormat.readTransferRequest(input);
+        }
+        if (type == DepositOrWithdrawRequest.class) {
+            return BinaryFormat.readDepositOrWithdrawRequest(input);
+        }
+        if (type == CrudAccountResponse.class) {
+            return BinaryFormat.readCrudAccountResponse(input);
+        }
+        return BinaryFormat.readListAllResponse(input);
+    }
+}
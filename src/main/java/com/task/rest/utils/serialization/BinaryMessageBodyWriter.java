@@ -0,0 +1,54 @@
+package com.task.rest.utils.serialization;
+
+import com.task.rest.model.api.request.DepositOrWithdrawRequest;
+import com.task.rest.model.api.request.TransferRequest;
+import com.task.rest.model.api.response.CrudAccountResponse;
+import com.task.rest.model.api.response.ListAllResponse;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Writes the account operations in the {@link BinaryFormat}, the fields are written in their order with no databinding
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ * @see BinaryFormat
+ */
+@Provider
+@Produces(BinaryFormat.MEDIA_TYPE)
+public class BinaryMessageBodyWriter implements MessageBodyWriter<Object> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return BinaryFormat.isSupported(type);
+    }
+
+    @Override
+    public long getSize(Object message, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object message, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        DataOutputStream output = new DataOutputStream(entityStream);
+        if (message instanceof CrudAccountResponse) {
+            BinaryFormat.writeCrudAccountResponse(output, (CrudAccountResponse) message);
+        } else if (message instanceof ListAllResponse) {
+            BinaryFormat.writeListAllResponse(output, (ListAllResponse) message);
+        } else if (message instanceof TransferRequest) {
+            BinaryFormat.writeTransferRequest(output, (TransferRequest) message);
+        } else {
+            BinaryFormat.writeDepositOrWithdrawRequest(output, (DepositOrWithdrawRequest) message);
+        }
+        output.flush();
+    }
+}
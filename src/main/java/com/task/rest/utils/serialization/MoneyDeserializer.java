@@ -0,0 +1,45 @@
+package com.task.rest.utils.serialization;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.task.rest.model.Money;
+
+import java.io.IOException;
+
+/**
+ * Deserializes Money value from json number or String, the same values are accepted as by the deserializer of BigDecimal
+ * <p>
+ * The amount is parsed from the characters of the parser, no String or BigDecimal is allocated for a plain amount
+ * with at most {@link Money#SCALE} fraction digits. An empty String is deserialized as null
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class MoneyDeserializer extends JsonDeserializer<Money> {
+    @Override
+    public Money deserialize(JsonParser jsonParser, DeserializationContext context) throws IOException {
+        JsonToken token = jsonParser.getCurrentToken();
+        if (token != JsonToken.VALUE_STRING && token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT) {
+            return (Money) context.handleUnexpectedToken(Money.class, jsonParser);
+        }
+        char[] chars = jsonParser.getTextCharacters();
+        int offset = jsonParser.getTextOffset();
+        int length = jsonParser.getTextLength();
+        while (length > 0 && Character.isWhitespace(chars[offset])) {
+            offset++;
+            length--;
+        }
+        while (length > 0 && Character.isWhitespace(chars[offset + length - 1])) {
+            length--;
+        }
+        if (length == 0) {
+            return null;
+        }
+        try {
+            return Money.parse(chars, offset, length);
+        } catch (NumberFormatException e) {
+            return (Money) context.handleWeirdStringValue(Money.class, jsonParser.getText(), "not a valid representation");
+        }
+    }
+}
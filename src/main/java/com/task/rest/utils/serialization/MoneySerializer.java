@@ -0,0 +1,30 @@
+package com.task.rest.utils.serialization;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.task.rest.model.Money;
+
+import java.io.IOException;
+
+/**
+ * Serializes Money value to json as plain String, the same way {@link BigDecimalSerializer} does
+ * <p>
+ * An amount that fits into long units is formatted into a buffer of the serializing thread, no String is allocated
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class MoneySerializer extends JsonSerializer<Money> {
+
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[Money.MAX_COMPACT_LENGTH]);
+
+    @Override
+    public void serialize(Money value, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException {
+        if (value.isCompact()) {
+            char[] buffer = BUFFER.get();
+            jsonGenerator.writeString(buffer, 0, value.format(buffer));
+        } else {
+            jsonGenerator.writeString(value.toString());
+        }
+    }
+}
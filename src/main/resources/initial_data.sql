@@ -1,5 +1,6 @@
-insert into ACCOUNT values (account_seq.nextval, 0);
-insert into ACCOUNT values (account_seq.nextval, 200);
-insert into ACCOUNT values (account_seq.nextval, 300.004);
-insert into ACCOUNT values (account_seq.nextval, 123.321);
-insert into ACCOUNT values (account_seq.nextval, 777.0074);
\ No newline at end of file
+insert into ACCOUNT (id, amount, version) values (1, 0, 0);
+insert into ACCOUNT (id, amount, version) values (2, 200, 0);
+insert into ACCOUNT (id, amount, version) values (3, 300.004, 0);
+insert into ACCOUNT (id, amount, version) values (4, 123.321, 0);
+insert into ACCOUNT (id, amount, version) values (5, 777.0074, 0);
+alter sequence account_seq restart with 6;
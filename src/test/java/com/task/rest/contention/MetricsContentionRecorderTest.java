@@ -0,0 +1,79 @@
+package com.task.rest.contention;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class MetricsContentionRecorderTest {
+
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    private final MetricsContentionRecorder recorder = new MetricsContentionRecorder(metrics, 4);
+
+    @Test
+    public void testRecord_ShouldUpdateHistogramsAndSketch() throws Exception {
+        recorder.record(1L, 0, 100);
+        recorder.record(2L, 50, 200);
+        recorder.record(2L, 70, 300);
+
+        assertThat(metrics.histogram(MetricRegistry.name(MetricsContentionRecorder.class, "lockWait")).getCount()).isEqualTo(3);
+        assertThat(metrics.histogram(MetricRegistry.name(MetricsContentionRecorder.class, "lockHold")).getSnapshot().getMax()).isEqualTo(300);
+        assertThat(metrics.counter(MetricRegistry.name(MetricsContentionRecorder.class, "contended")).getCount()).isEqualTo(2);
+        assertThat(metrics.getGauges().get(MetricRegistry.name(MetricsContentionRecorder.class, "sketchDropped")).getValue()).isEqualTo(0L);
+        // uncontended acquisitions are not counted by the sketch
+        assertThat(recorder.hottest(10)).extracting(ContendedAccount::getId).containsExactly(2L);
+        assertThat(recorder.hottest(10).get(0).getWaitNanos()).isEqualTo(120);
+    }
+
+    @Test
+    public void testRecord_ShouldKeepLatestAcquisitionsInHistograms() throws Exception {
+        recorder.record(1L, 1_000_000, 1_000_000);
+        for (int i = 0; i < MetricsContentionRecorder.WINDOW_SIZE; i++) {
+            recorder.record(1L, 0, 10);
+        }
+
+        // the long acquisition is out of the window
+        assertThat(metrics.histogram(MetricRegistry.name(MetricsContentionRecorder.class, "lockWait")).getSnapshot().getMax()).isEqualTo(0);
+        assertThat(metrics.histogram(MetricRegistry.name(MetricsContentionRecorder.class, "lockHold")).getSnapshot().getMax()).isEqualTo(10);
+    }
+
+    @Test
+    public void testReset_ShouldForgetSketchOnly() throws Exception {
+        recorder.record(1L, 10, 10);
+
+        recorder.reset();
+
+        assertThat(recorder.hottest(10)).isEmpty();
+        assertThat(metrics.histogram(MetricRegistry.name(MetricsContentionRecorder.class, "lockWait")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRecord_ShouldNotAllocate() throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < 100_000; i++) {
+            recorder.record(i % 16, i % 3, i);
+        }
+
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            recorder.record(i % 16, i % 3, i);
+        }
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        // a single allocation per record would take megabytes, the measurement itself may take a few bytes
+        assertThat(allocated).isLessThan(1024);
+    }
+
+}
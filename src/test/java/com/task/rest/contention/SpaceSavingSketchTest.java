@@ -0,0 +1,134 @@
+package com.task.rest.contention;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class SpaceSavingSketchTest {
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    @Test
+    public void testConstructor_ShouldThrowIllegalArgumentException_WhenCapacityIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("capacity is non-positive");
+        new SpaceSavingSketch(0);
+    }
+
+    @Test
+    public void testAdd_ShouldThrowIllegalArgumentException_WhenWeightIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("weight is non-positive");
+        new SpaceSavingSketch(1).add(1L, 0);
+    }
+
+    @Test
+    public void testTop_ShouldReturnExactWeights_WhenKeysFitInCapacity() throws Exception {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(3);
+        sketch.add(1L, 10);
+        sketch.add(2L, 30);
+        sketch.add(1L, 15);
+        sketch.add(3L, 5);
+
+        List<ContendedAccount> top = sketch.top(2);
+
+        assertThat(top).hasSize(2);
+        assertThat(top.get(0).getId()).isEqualTo(2L);
+        assertThat(top.get(0).getWaitNanos()).isEqualTo(30);
+        assertThat(top.get(0).getContended()).isEqualTo(1);
+        assertThat(top.get(1).getId()).isEqualTo(1L);
+        assertThat(top.get(1).getWaitNanos()).isEqualTo(25);
+        assertThat(top.get(1).getError()).isEqualTo(0);
+        assertThat(top.get(1).getContended()).isEqualTo(2);
+    }
+
+    @Test
+    public void testAdd_ShouldReplaceLightestKey_WhenSketchIsFull() throws Exception {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(2);
+        sketch.add(1L, 10);
+        sketch.add(2L, 3);
+
+        sketch.add(3L, 4);
+
+        List<ContendedAccount> top = sketch.top(10);
+        assertThat(top).extracting(ContendedAccount::getId).containsExactly(1L, 3L);
+        assertThat(top.get(1).getWaitNanos()).isEqualTo(7);
+        assertThat(top.get(1).getError()).isEqualTo(3);
+        assertThat(top.get(1).getContended()).isEqualTo(1);
+    }
+
+    @Test
+    public void testTop_ShouldKeepHeavyHitters_WhenThereAreManyLightKeys() throws Exception {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(8);
+        for (long i = 0; i < 10_000; i++) {
+            sketch.add(1_000_000L + i, 1);
+            if (i % 10 == 0) {
+                sketch.add(7L, 5);
+            }
+            if (i % 20 == 0) {
+                sketch.add(42L, 5);
+            }
+        }
+
+        List<ContendedAccount> top = sketch.top(2);
+
+        assertThat(top).extracting(ContendedAccount::getId).containsExactly(7L, 42L);
+        assertThat(top.get(0).getWaitNanos()).isGreaterThanOrEqualTo(5_000);
+        assertThat(top.get(0).getWaitNanos() - top.get(0).getError()).isLessThanOrEqualTo(5_000);
+    }
+
+    @Test
+    public void testAdd_ShouldCountEveryOccurrenceAsAddedOrDropped_WhenThreadsAddConcurrently() throws Exception {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(4);
+        int threads = 4;
+        int occurrences = 100_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> added = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            added.add(executor.submit(() -> {
+                long count = 0;
+                for (int i = 0; i < occurrences; i++) {
+                    if (sketch.add(1L, 1)) {
+                        count++;
+                    }
+                }
+                return count;
+            }));
+        }
+        long addedTotal = 0;
+        for (Future<Long> future : added) {
+            addedTotal += future.get();
+        }
+        executor.shutdown();
+
+        List<ContendedAccount> top = sketch.top(1);
+        assertThat(top.get(0).getContended()).isEqualTo(addedTotal);
+        assertThat(top.get(0).getWaitNanos()).isEqualTo(addedTotal);
+        assertThat(addedTotal + sketch.getDropped()).isEqualTo((long) threads * occurrences);
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(2);
+        sketch.add(1L, 10);
+
+        sketch.clear();
+
+        assertThat(sketch.top(10)).isEmpty();
+        sketch.add(2L, 1);
+        assertThat(sketch.top(10)).extracting(ContendedAccount::getId).containsExactly(2L);
+    }
+
+}
@@ -0,0 +1,251 @@
+package com.task.rest.idempotency;
+
+import com.codahale.metrics.MetricRegistry;
+import com.task.rest.exceptions.IdempotencyKeyReusedException;
+import com.task.rest.model.api.response.CrudAccountResponse;
+import com.task.rest.model.api.response.OperationStatus;
+import com.task.rest.model.dbo.Account;
+import io.dropwizard.jackson.Jackson;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class BoundedIdempotencyStoreTest {
+
+    private static final long EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final String FINGERPRINT = "fingerprint";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final BoundedIdempotencyStore store = store(100, metrics);
+
+    @Test
+    public void testConstructor_ShouldThrowIllegalArgumentException_WhenMaximumSizeIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("maximum size is non-positive");
+        new BoundedIdempotencyStore(0, EXPIRY_MILLIS, Jackson.newObjectMapper(), new MetricRegistry());
+    }
+
+    @Test
+    public void testExecute_ShouldRunOperationOnce_WhenKeyIsRepeated() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+
+        IdempotentResponse first = store.execute("key", FINGERPRINT, () -> {
+            runs.incrementAndGet();
+            return CompletableFuture.completedFuture(response(1L, BigDecimal.TEN));
+        }).get();
+        IdempotentResponse retry = store.execute("key", FINGERPRINT, () -> {
+            runs.incrementAndGet();
+            return CompletableFuture.completedFuture(response(1L, BigDecimal.ONE));
+        }).get();
+
+        assertThat(runs.get()).isEqualTo(1);
+        assertThat(retry).isSameAs(first);
+        assertThat(metrics.meter(MetricRegistry.name(BoundedIdempotencyStore.class, "replays")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testExecute_ShouldRejectRequestWithDifferentFingerprint_WhenKeyIsRepeated() throws Exception {
+        CompletableFuture<IdempotentResponse> inProgress = new CompletableFuture<>();
+        store.execute("key", FINGERPRINT, () -> inProgress);
+
+        CompletableFuture<IdempotentResponse> different = store.execute("key", "another fingerprint", () -> {
+            fail("operation of a different request is run");
+            return null;
+        });
+        inProgress.complete(response(1L, BigDecimal.TEN));
+
+        try {
+            different.get();
+            fail("request with a different fingerprint is not rejected");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(IdempotencyKeyReusedException.class);
+            assertThat(((IdempotencyKeyReusedException) e.getCause()).getCode()).isEqualTo(IdempotencyKeyReusedException.UNPROCESSABLE_ENTITY);
+        }
+        assertThat(store.execute("key", "another fingerprint", () -> null).isCompletedExceptionally()).isTrue();
+        assertThat(metrics.meter(MetricRegistry.name(BoundedIdempotencyStore.class, "replays")).getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testExecute_ShouldCompleteRetryByResultOfOperationInProgress() throws Exception {
+        CompletableFuture<IdempotentResponse> inProgress = new CompletableFuture<>();
+        CompletableFuture<IdempotentResponse> first = store.execute("key", FINGERPRINT, () -> inProgress);
+
+        CompletableFuture<IdempotentResponse> retry = store.execute("key", FINGERPRINT, () -> {
+            fail("operation in progress is run again");
+            return null;
+        });
+        assertThat(retry.isDone()).isFalse();
+        IdempotentResponse response = response(1L, BigDecimal.TEN);
+        inProgress.complete(response);
+
+        assertThat(first.get()).isSameAs(response);
+        assertThat(retry.get()).isSameAs(response);
+    }
+
+    @Test
+    public void testExecute_ShouldRunOperationAgain_WhenItFailed() throws Exception {
+        IllegalStateException exception = new IllegalStateException("operation failed");
+        CompletableFuture<IdempotentResponse> failed = new CompletableFuture<>();
+        failed.completeExceptionally(exception);
+
+        try {
+            store.execute("key", FINGERPRINT, () -> failed).get();
+            fail("operation failed");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isSameAs(exception);
+        }
+        IdempotentResponse response = response(1L, BigDecimal.TEN);
+
+        assertThat(store.execute("key", FINGERPRINT, () -> CompletableFuture.completedFuture(response)).get()).isSameAs(response);
+    }
+
+    @Test
+    public void testExecute_ShouldReleaseKey_WhenOperationThrowsException() throws Exception {
+        IllegalStateException exception = new IllegalStateException("queue is full");
+
+        try {
+            store.execute("key", FINGERPRINT, () -> {
+                throw exception;
+            });
+            fail("operation failed");
+        } catch (IllegalStateException e) {
+            assertThat(e).isSameAs(exception);
+        }
+        IdempotentResponse response = response(1L, BigDecimal.TEN);
+
+        assertThat(store.execute("key", FINGERPRINT, () -> CompletableFuture.completedFuture(response)).get()).isSameAs(response);
+    }
+
+    @Test
+    public void testExecute_ShouldKeepAtMostMaximumSizeResults() throws Exception {
+        BoundedIdempotencyStore small = store(2, new MetricRegistry());
+        for (long id = 1; id <= 10; id++) {
+            IdempotentResponse response = response(id, BigDecimal.ONE);
+            small.execute("key" + id, FINGERPRINT, () -> CompletableFuture.completedFuture(response));
+        }
+        AtomicInteger runs = new AtomicInteger();
+
+        small.execute("key1", FINGERPRINT, () -> {
+            runs.incrementAndGet();
+            return CompletableFuture.completedFuture(response(1L, BigDecimal.ONE));
+        });
+
+        assertThat(runs.get()).isEqualTo(1);
+        assertThat(metrics.getGauges()).containsKey(MetricRegistry.name(BoundedIdempotencyStore.class, "size"));
+    }
+
+    @Test
+    public void testExecute_ShouldNotEvictOperationInProgress_WhenCacheIsFull() throws Exception {
+        BoundedIdempotencyStore small = store(2, new MetricRegistry());
+        CompletableFuture<IdempotentResponse> inProgress = new CompletableFuture<>();
+        small.execute("key", FINGERPRINT, () -> inProgress);
+        for (long id = 1; id <= 10; id++) {
+            IdempotentResponse response = response(id, BigDecimal.ONE);
+            small.execute("key" + id, FINGERPRINT, () -> CompletableFuture.completedFuture(response));
+        }
+
+        CompletableFuture<IdempotentResponse> retry = small.execute("key", FINGERPRINT, () -> {
+            fail("operation in progress is run again");
+            return null;
+        });
+        IdempotentResponse response = response(1L, BigDecimal.TEN);
+        inProgress.complete(response);
+
+        assertThat(retry.get()).isSameAs(response);
+        assertThat(small.execute("key", FINGERPRINT, () -> {
+            fail("completed operation is run again");
+            return null;
+        }).get()).isSameAs(response);
+    }
+
+    @Test
+    public void testStart_ShouldReadResultsSavedByStop() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("idempotency.json");
+        store.setFile(file.toString());
+        IdempotentResponse response = response(1L, new BigDecimal("100.03"));
+        store.execute("kept", FINGERPRINT, () -> CompletableFuture.completedFuture(response));
+        store.execute("in progress", FINGERPRINT, CompletableFuture::new);
+        store.stop();
+
+        BoundedIdempotencyStore restored = store(100, new MetricRegistry());
+        restored.setFile(file.toString());
+        restored.start();
+        IdempotentResponse replayed = restored.execute("kept", FINGERPRINT, () -> {
+            fail("kept operation is run again");
+            return null;
+        }).get();
+        AtomicInteger runs = new AtomicInteger();
+        restored.execute("in progress", FINGERPRINT, () -> {
+            runs.incrementAndGet();
+            return CompletableFuture.completedFuture(response);
+        });
+
+        assertThat(replayed.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
+        assertThat(replayed.getCompletedAt()).isEqualTo(response.getCompletedAt());
+        assertThat(replayed.getEntity().getAccount()).isEqualTo(new Account(1L, new BigDecimal("100.03")));
+        assertThat(replayed.getEntity().getStatus()).isEqualTo(OperationStatus.UPDATED);
+        assertThat(runs.get()).isEqualTo(1);
+        assertThat(restored.execute("kept", "another fingerprint", () -> null).isCompletedExceptionally()).isTrue();
+        assertThat(Files.exists(file.resolveSibling("idempotency.json.tmp"))).isFalse();
+    }
+
+    @Test
+    public void testStart_ShouldSkipExpiredResults() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("idempotency.json");
+        store.setFile(file.toString());
+        IdempotentResponse expired = new IdempotentResponse(Response.Status.OK.getStatusCode(),
+                new CrudAccountResponse(new Account(1L, BigDecimal.ONE), OperationStatus.UPDATED), System.currentTimeMillis() - EXPIRY_MILLIS);
+        store.execute("expired", FINGERPRINT, () -> CompletableFuture.completedFuture(expired));
+        store.stop();
+
+        BoundedIdempotencyStore restored = store(100, new MetricRegistry());
+        restored.setFile(file.toString());
+        restored.start();
+        IdempotentResponse response = response(1L, BigDecimal.TEN);
+
+        assertThat(restored.execute("expired", FINGERPRINT, () -> CompletableFuture.completedFuture(response)).get()).isSameAs(response);
+    }
+
+    @Test
+    public void testResponse_ShouldNotChangeWithAccountItWasBuiltFrom() throws Exception {
+        Account account = new Account(1L, BigDecimal.ONE);
+        IdempotentResponse response = new IdempotentResponse(Response.Status.OK, new CrudAccountResponse(account, OperationStatus.UPDATED));
+
+        account.deposit(BigDecimal.TEN);
+
+        assertThat(response.getEntity().getAccount().getAmount()).isEqualByComparingTo(BigDecimal.ONE);
+        assertThat(response.toResponse(true).getHeaderString(IdempotencyStore.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(response.toResponse(false).getHeaderString(IdempotencyStore.REPLAYED_HEADER)).isNull();
+    }
+
+    private static BoundedIdempotencyStore store(int maximumSize, MetricRegistry metrics) {
+        return new BoundedIdempotencyStore(maximumSize, EXPIRY_MILLIS, Jackson.newObjectMapper(), metrics);
+    }
+
+    private static IdempotentResponse response(Long id, BigDecimal amount) {
+        return new IdempotentResponse(Response.Status.OK, new CrudAccountResponse(new Account(id, amount), OperationStatus.UPDATED));
+    }
+
+}
@@ -0,0 +1,231 @@
+package com.task.rest.journal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class FileJournalTest {
+
+    private static final long SEGMENT_SIZE = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    @Test
+    public void testAppend_ShouldThrowIllegalStateException_WhenJournalIsNotReplayed() throws Exception {
+        expectedEx.expect(IllegalStateException.class);
+        expectedEx.expectMessage("journal is not replayed yet");
+        new FileJournal(folder.getRoot().toPath(), SEGMENT_SIZE, true).append(record(1));
+    }
+
+    @Test
+    public void testReplay_ShouldThrowIllegalStateException_WhenJournalIsReplayedAlready() throws Exception {
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), SEGMENT_SIZE, true)) {
+            journal.replay(record -> {
+            });
+            expectedEx.expect(IllegalStateException.class);
+            expectedEx.expectMessage("journal is replayed already");
+            journal.replay(record -> {
+            });
+        }
+    }
+
+    @Test
+    public void testReplay_ShouldReturnAppendedRecordsInOrder() throws Exception {
+        List<JournalRecord> records = Arrays.asList(
+                new JournalRecord(Collections.singletonList(JournalRecord.create(1, 100))),
+                new JournalRecord(Arrays.asList(JournalRecord.delta(1, -30), JournalRecord.delta(2, 30))),
+                new JournalRecord(Collections.singletonList(JournalRecord.delete(2))));
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), SEGMENT_SIZE, true)) {
+            journal.replay(record -> {
+            });
+            long position = 0;
+            for (JournalRecord record : records) {
+                position = journal.append(record);
+            }
+            journal.awaitDurable(position);
+            assertThat(journal.position()).isEqualTo(position);
+        }
+
+        assertThat(replay(SEGMENT_SIZE)).containsExactlyElementsOf(records);
+    }
+
+    @Test
+    public void testReplay_ShouldContinueAfterTheLastRecord() throws Exception {
+        long position;
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), SEGMENT_SIZE, true)) {
+            journal.replay(record -> {
+            });
+            position = journal.append(record(1));
+        }
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), SEGMENT_SIZE, true)) {
+            journal.replay(record -> {
+            });
+            assertThat(journal.position()).isEqualTo(position);
+            journal.awaitDurable(journal.append(record(2)));
+        }
+
+        assertThat(replay(SEGMENT_SIZE)).containsExactly(record(1), record(2));
+    }
+
+    @Test
+    public void testReplay_ShouldCutOffTornRecord() throws Exception {
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), SEGMENT_SIZE, true)) {
+            journal.replay(record -> {
+            });
+            journal.append(record(1));
+            journal.awaitDurable(journal.append(record(2)));
+        }
+        Path segment = folder.getRoot().toPath().resolve(String.format("journal-%020d.log", 0));
+        long validSize = Files.size(segment);
+        // a record that was being written during a crash
+        Files.write(segment, new byte[]{0, 0, 0, 21, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        assertThat(replay(SEGMENT_SIZE)).containsExactly(record(1), record(2));
+        assertThat(Files.size(segment)).isEqualTo(validSize);
+    }
+
+    @Test
+    public void testAppend_ShouldStartNewSegment_WhenCurrentOneIsFull() throws Exception {
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), 100, false)) {
+            journal.replay(record -> {
+            });
+            for (int i = 1; i <= 20; i++) {
+                journal.awaitDurable(journal.append(record(i)));
+            }
+        }
+
+        File[] segments = folder.getRoot().listFiles();
+        assertThat(segments).hasSize(5);
+        List<JournalRecord> expected = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            expected.add(record(i));
+        }
+        assertThat(replay(100)).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void testReplay_ShouldSkipRecordsBeforePosition_AndDeleteSegmentsBeforeIt() throws Exception {
+        long position;
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), 100, false)) {
+            journal.replay(record -> {
+            });
+            for (int i = 1; i <= 12; i++) {
+                journal.awaitDurable(journal.append(record(i)));
+            }
+            position = journal.position();
+            for (int i = 13; i <= 20; i++) {
+                journal.awaitDurable(journal.append(record(i)));
+            }
+            journal.deleteBefore(position);
+        }
+
+        // the segment with the records 9 - 12 ends right at the position, the next one starts at it
+        assertThat(folder.getRoot().listFiles()).hasSize(2);
+        List<JournalRecord> records = new ArrayList<>();
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), 100, false)) {
+            journal.replay(position, records::add);
+        }
+        List<JournalRecord> expected = new ArrayList<>();
+        for (int i = 13; i <= 20; i++) {
+            expected.add(record(i));
+        }
+        assertThat(records).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void testReplay_ShouldAppendAfterPosition_WhenJournalIsEmpty() throws Exception {
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), SEGMENT_SIZE, false)) {
+            journal.replay(1000, record -> {
+            });
+            assertThat(journal.append(record(1))).isGreaterThan(1000);
+        }
+
+        List<JournalRecord> records = new ArrayList<>();
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), SEGMENT_SIZE, false)) {
+            journal.replay(1000, records::add);
+        }
+        assertThat(records).containsExactly(record(1));
+    }
+
+    @Test
+    public void testReplay_ShouldThrowUncheckedIOException_WhenJournalStartsAfterPosition() throws Exception {
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), SEGMENT_SIZE, false)) {
+            journal.replay(1000, record -> {
+            });
+            journal.awaitDurable(journal.append(record(1)));
+        }
+
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), SEGMENT_SIZE, false)) {
+            expectedEx.expect(UncheckedIOException.class);
+            journal.replay(500, record -> {
+            });
+        }
+    }
+
+    @Test
+    public void testAppend_ShouldKeepAllRecords_WhenAppendedConcurrently() throws Exception {
+        int threads = 8;
+        int recordsPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), SEGMENT_SIZE, true)) {
+            journal.replay(record -> {
+            });
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int first = thread * recordsPerThread;
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < first + recordsPerThread; i++) {
+                        journal.awaitDurable(journal.append(record(i + 1)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<JournalRecord> records = replay(SEGMENT_SIZE);
+        assertThat(records).hasSize(threads * recordsPerThread);
+        assertThat(records.stream().mapToLong(record -> record.getEntries().get(0).getId()).distinct().count())
+                .isEqualTo(threads * recordsPerThread);
+    }
+
+    private List<JournalRecord> replay(long segmentSize) {
+        List<JournalRecord> records = new ArrayList<>();
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), segmentSize, true)) {
+            journal.replay(records::add);
+        }
+        return records;
+    }
+
+    private static JournalRecord record(long id) {
+        return new JournalRecord(Collections.singletonList(JournalRecord.create(id, id * 10)));
+    }
+
+}
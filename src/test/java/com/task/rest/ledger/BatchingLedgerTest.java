@@ -0,0 +1,210 @@
+package com.task.rest.ledger;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.task.rest.model.dbo.LedgerEntry;
+import com.task.rest.model.dbo.LedgerOperation;
+import com.task.rest.persistence.LedgerDao;
+import com.task.rest.persistence.LedgerDaoImpl;
+import com.task.rest.persistence.TransactionRunnerImpl;
+import io.dropwizard.testing.junit.DAOTestRule;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mockito;
+
+import javax.transaction.Synchronization;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class BatchingLedgerTest {
+
+    private static final long FLUSH_INTERVAL_MILLIS = 20;
+
+    @Rule
+    public DAOTestRule database = DAOTestRule.newBuilder().addEntityClass(LedgerEntry.class).build();
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final TransactionRunnerImpl transactionRunner = new TransactionRunnerImpl(database.getSessionFactory());
+    private final LedgerDao ledgerDao = spy(new LedgerDaoImpl(database.getSessionFactory()));
+    private BatchingLedger ledger;
+
+    @After
+    public void tearDown() {
+        if (ledger != null) {
+            ledger.stop();
+        }
+    }
+
+    @Test
+    public void testConstructor_ShouldThrowIllegalArgumentException_WhenBatchSizeIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("batch size is non-positive");
+        new BatchingLedger(database.getSessionFactory(), ledgerDao, transactionRunner, metrics, 0, FLUSH_INTERVAL_MILLIS, 16);
+    }
+
+    @Test
+    public void testRecord_ShouldThrowIllegalStateException_WhenThereIsNoActiveTransaction() throws Exception {
+        ledger = ledger(10, 16);
+        expectedEx.expect(IllegalStateException.class);
+        expectedEx.expectMessage("no active transaction");
+        ledger.record(1L, LedgerOperation.DEPOSIT, BigDecimal.ONE, BigDecimal.ONE);
+    }
+
+    @Test
+    public void testRecord_ShouldWriteEntriesOfCommittedTransactionOnly() throws Exception {
+        ledger = ledger(10, 16);
+        ledger.start();
+
+        transactionRunner.inTransaction(() -> {
+            ledger.record(1L, LedgerOperation.WITHDRAW, new BigDecimal("-1.5"), new BigDecimal("8.5"));
+            ledger.record(2L, LedgerOperation.DEPOSIT, new BigDecimal("1.5"), new BigDecimal("11.5"));
+            return null;
+        });
+        try {
+            transactionRunner.inTransaction(() -> {
+                ledger.record(1L, LedgerOperation.WITHDRAW, BigDecimal.TEN.negate(), BigDecimal.ZERO);
+                throw new IllegalStateException("rolled back");
+            });
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        awaitWritten(2);
+
+        List<LedgerEntry> history = history(1L);
+        assertThat(history).hasSize(1);
+        assertThat(history.get(0).getAmount()).isEqualByComparingTo("-1.5");
+        assertThat(history.get(0).getBalance()).isEqualByComparingTo("8.5");
+        assertThat(history(2L)).hasSize(1);
+    }
+
+    @Test
+    public void testWriter_ShouldInsertQueuedEntriesByBatchesOfAtMostBatchSize() throws Exception {
+        ledger = ledger(3, 16);
+        recordDeposits(1L, 7);
+
+        ledger.start();
+        awaitWritten(7);
+
+        Mockito.verify(ledgerDao, Mockito.times(3)).insertAll(anyListOf(LedgerEntry.class));
+        assertThat(history(1L)).extracting(entry -> entry.getBalance().intValue()).containsExactly(1, 2, 3, 4, 5, 6, 7);
+    }
+
+    @Test
+    public void testWriter_ShouldWriteNotFullBatchAfterFlushInterval() throws Exception {
+        ledger = ledger(100, 16);
+        ledger.start();
+
+        recordDeposits(1L, 1);
+        awaitWritten(1);
+
+        assertThat(history(1L)).hasSize(1);
+    }
+
+    @Test
+    public void testWriter_ShouldRetryFailedBatch() throws Exception {
+        ledger = ledger(10, 16);
+        doThrow(new IllegalStateException("database is unavailable"))
+                .doCallRealMethod()
+                .when(ledgerDao).insertAll(anyListOf(LedgerEntry.class));
+        ledger.start();
+
+        recordDeposits(1L, 2);
+        awaitWritten(2);
+
+        assertThat(history(1L)).hasSize(2);
+    }
+
+    @Test
+    public void testStop_ShouldWriteQueuedEntries() throws Exception {
+        ledger = ledger(2, 16);
+        recordDeposits(1L, 5);
+        ledger.start();
+
+        ledger.stop();
+
+        assertThat(history(1L)).hasSize(5);
+        assertThat(metrics.getGauges().get(MetricRegistry.name(BatchingLedger.class, "queued")).getValue()).isEqualTo(0);
+    }
+
+    @Test
+    public void testRecord_ShouldQueueEntriesInCommitOrder_WhenLaterTransactionCompletesFirst() throws Exception {
+        ledger = ledger(10, 16);
+        ledger.start();
+        CountDownLatch committed = new CountDownLatch(1);
+        CountDownLatch overtaken = new CountDownLatch(1);
+
+        // the first transaction is committed, but its completion is delayed until the second one completes
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> first = executor.submit(() -> transactionRunner.inTransaction(() -> {
+            database.getSessionFactory().getCurrentSession().getTransaction().registerSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    committed.countDown();
+                    Uninterruptibles.awaitUninterruptibly(overtaken);
+                }
+            });
+            ledger.record(1L, LedgerOperation.DEPOSIT, BigDecimal.ONE, BigDecimal.ONE);
+            return null;
+        }));
+        committed.await();
+        recordDeposit(1L, BigDecimal.valueOf(2));
+        overtaken.countDown();
+        first.get();
+        executor.shutdown();
+        awaitWritten(2);
+
+        assertThat(history(1L)).extracting(entry -> entry.getBalance().intValue()).containsExactly(1, 2);
+    }
+
+    private BatchingLedger ledger(int batchSize, int queueSize) {
+        return new BatchingLedger(database.getSessionFactory(), ledgerDao, transactionRunner, metrics, batchSize, FLUSH_INTERVAL_MILLIS, queueSize);
+    }
+
+    private void recordDeposits(Long accountId, int count) {
+        for (int i = 1; i <= count; i++) {
+            recordDeposit(accountId, BigDecimal.valueOf(i));
+        }
+    }
+
+    private void recordDeposit(Long accountId, BigDecimal balance) {
+        transactionRunner.inTransaction(() -> {
+            ledger.record(accountId, LedgerOperation.DEPOSIT, BigDecimal.ONE, balance);
+            return null;
+        });
+    }
+
+    private void awaitWritten(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (metrics.meter(MetricRegistry.name(BatchingLedger.class, "written")).getCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(metrics.meter(MetricRegistry.name(BatchingLedger.class, "written")).getCount()).isEqualTo(count);
+    }
+
+    private List<LedgerEntry> history(Long accountId) {
+        return transactionRunner.inTransaction(() -> ledger.history(accountId, null, 100));
+    }
+
+}
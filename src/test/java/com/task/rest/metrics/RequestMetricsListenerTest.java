@@ -0,0 +1,156 @@
+package com.task.rest.metrics;
+
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.task.rest.exceptions.InsufficientFundsException;
+import com.task.rest.exceptions.mappers.DefaultExceptionsProvider;
+import com.task.rest.exceptions.mappers.ServiceExceptionsProvider;
+import com.task.rest.idempotency.IdempotencyStore;
+import com.task.rest.model.Money;
+import com.task.rest.model.api.request.DepositOrWithdrawRequest;
+import com.task.rest.model.dbo.Account;
+import com.task.rest.persistence.TransactionRunner;
+import com.task.rest.resource.AccountServiceResource;
+import com.task.rest.service.AccountService;
+import com.task.rest.utils.concurrency.OperationExecutor;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.testing.junit.ResourceTestRule;
+import org.glassfish.jersey.test.grizzly.GrizzlyTestContainerFactory;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class RequestMetricsListenerTest {
+
+    private static final String RESOURCE_NAME = AccountServiceResource.class.getName();
+    private static final long DAO_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long LOCK_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(7);
+
+    private static final AccountService accountService = mock(AccountService.class);
+    private static final MetricRegistry metrics = new MetricRegistry();
+
+    private static final TransactionRunner transactionRunner = new TransactionRunner() {
+        @Override
+        public <T> T inTransaction(Supplier<T> work) {
+            return work.get();
+        }
+    };
+
+    @ClassRule
+    public static final ResourceTestRule resources = ResourceTestRule.builder()
+            .setTestContainerFactory(new GrizzlyTestContainerFactory())
+            .addResource(new AccountServiceResource(accountService, BigDecimal.TEN, Jackson.newObjectMapper(),
+                    new OperationExecutor(1, 10, 1), IdempotencyStore.NONE, transactionRunner))
+            .addResource(new ServiceExceptionsProvider())
+            .addResource(new DefaultExceptionsProvider())
+            .addProvider(new RequestMetricsListener(metrics))
+            .addProvider(SerializationTimingInterceptor.class)
+            .build();
+
+    @After
+    public void tearDown() {
+        reset(accountService);
+    }
+
+    @Test
+    public void testGetById_ShouldRecordLatencyAndStages() {
+        when(accountService.get(1L)).thenAnswer(invocation -> {
+            // the request lasts at least as long as the stage it reports
+            Uninterruptibles.sleepUninterruptibly(DAO_NANOS, TimeUnit.NANOSECONDS);
+            RequestTimings.addDao(DAO_NANOS);
+            return new Account(1L, BigDecimal.ONE);
+        });
+
+        Response response = resources.target("/accounts").queryParam("id", 1L).request().get();
+
+        assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
+        Timer latency = awaitRecorded("getById");
+        assertThat(latency.getSnapshot().getMax()).isGreaterThanOrEqualTo(DAO_NANOS);
+        assertThat(timer("getById", "dao").getSnapshot().getMax()).isEqualTo(DAO_NANOS);
+        assertThat(timer("getById", "lockWait").getSnapshot().getMax()).isZero();
+        assertThat(timer("getById", "serialization").getSnapshot().getMax()).isPositive();
+    }
+
+    @Test
+    public void testDeposit_ShouldRecordStagesOfOperationThread() {
+        when(accountService.deposit(eq(1L), any(Money.class))).thenAnswer(invocation -> {
+            assertThat(Thread.currentThread().getName()).startsWith("account-operation-");
+            Uninterruptibles.sleepUninterruptibly(LOCK_WAIT_NANOS + DAO_NANOS, TimeUnit.NANOSECONDS);
+            RequestTimings.addLockWait(LOCK_WAIT_NANOS);
+            RequestTimings.addDao(DAO_NANOS);
+            return new Account(1L, BigDecimal.ONE);
+        });
+
+        Response response = resources.target("/accounts/deposit").request()
+                .put(Entity.json(new DepositOrWithdrawRequest(1L, BigDecimal.ONE)));
+
+        assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
+        Timer latency = awaitRecorded("deposit");
+        assertThat(latency.getSnapshot().getMax()).isGreaterThanOrEqualTo(LOCK_WAIT_NANOS + DAO_NANOS);
+        assertThat(timer("deposit", "lockWait").getSnapshot().getMax()).isEqualTo(LOCK_WAIT_NANOS);
+        assertThat(timer("deposit", "dao").getSnapshot().getMax()).isEqualTo(DAO_NANOS);
+        // both the request and the response entities are counted
+        assertThat(timer("deposit", "serialization").getSnapshot().getMax()).isPositive();
+    }
+
+    @Test
+    public void testWithdraw_ShouldCountExceptionType() {
+        when(accountService.withdraw(eq(1L), any(Money.class)))
+                .thenThrow(new InsufficientFundsException(BigDecimal.ZERO, BigDecimal.ONE, 1L));
+
+        Response response = resources.target("/accounts/withdraw").request()
+                .put(Entity.json(new DepositOrWithdrawRequest(1L, BigDecimal.ONE)));
+
+        assertThat(response.getStatus()).isEqualTo(Response.Status.BAD_REQUEST.getStatusCode());
+        awaitRecorded("withdraw");
+        Metered exceptions = metrics.getMeters().get(MetricRegistry.name(RESOURCE_NAME, "withdraw", "exceptions",
+                InsufficientFundsException.class.getSimpleName()));
+        assertThat(exceptions).isNotNull();
+        assertThat(exceptions.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testNotMatchedRequest_ShouldNotBeRecorded() {
+        int timers = metrics.getTimers().size();
+
+        resources.target("/unknown").request().get();
+
+        assertThat(metrics.getTimers()).hasSize(timers);
+    }
+
+    /**
+     * The request is recorded once its response is written, the client may get the response a bit earlier
+     */
+    private static Timer awaitRecorded(String method) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (timer(method, "latency") == null || timer(method, "latency").getCount() == 0) {
+            assertThat(System.nanoTime()).as("the request of %s is not recorded", method).isLessThan(deadline);
+            Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+        }
+        assertThat(timer(method, "latency").getCount()).isEqualTo(1);
+        return timer(method, "latency");
+    }
+
+    private static Timer timer(String method, String stage) {
+        return metrics.getTimers().get(MetricRegistry.name(RESOURCE_NAME, method, stage));
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.task.rest.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class MoneyTest {
+
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    @Test
+    public void testParse_ShouldKeepScaleOfText() throws Exception {
+        for (String text : new String[]{"0", "100.001", "-0.5", "+7", "1.", ".25", "0.00000001", "92233720368.54775807"}) {
+            Money money = parse(text);
+
+            assertThat(money.isCompact()).as(text).isTrue();
+            assertThat(money.toBigDecimal()).as(text).isEqualTo(new BigDecimal(text));
+        }
+    }
+
+    @Test
+    public void testParse_ShouldFallBackToBigDecimal_WhenAmountDoesNotFitIntoUnits() throws Exception {
+        for (String text : new String[]{"92233720368.54775808", "0.000000001", "1E+3", "123456789012345678901234567890"}) {
+            Money money = parse(text);
+
+            assertThat(money.isCompact()).as(text).isFalse();
+            assertThat(money.toBigDecimal()).as(text).isEqualTo(new BigDecimal(text));
+        }
+    }
+
+    @Test
+    public void testParse_ShouldThrowNumberFormatException_WhenTextIsNotNumber() throws Exception {
+        expectedEx.expect(NumberFormatException.class);
+        parse("1.2.3");
+    }
+
+    @Test
+    public void testOf_ShouldKeepScaleOfValue() throws Exception {
+        BigDecimal value = new BigDecimal("100.0010");
+
+        Money money = Money.of(value);
+
+        assertThat(money.isCompact()).isTrue();
+        assertThat(money.getUnits()).isEqualTo(10_000_100_000L);
+        assertThat(money.toBigDecimal()).isEqualTo(value);
+        assertThat(money.toString()).isEqualTo("100.0010");
+    }
+
+    @Test
+    public void testOf_ShouldThrowIllegalArgumentException_WhenValueIsNull() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("value is null");
+        Money.of(null);
+    }
+
+    @Test
+    public void testGetUnits_ShouldThrowIllegalStateException_WhenAmountDoesNotFitIntoUnits() throws Exception {
+        expectedEx.expect(IllegalStateException.class);
+        Money.of(new BigDecimal("0.123456789")).getUnits();
+    }
+
+    @Test
+    public void testAdd_ShouldTakeLargerScale() throws Exception {
+        Money sum = Money.of(new BigDecimal("1.5")).add(Money.of(new BigDecimal("2.25")));
+
+        assertThat(sum.isCompact()).isTrue();
+        assertThat(sum.toBigDecimal()).isEqualTo(new BigDecimal("3.75"));
+        assertThat(Money.of(new BigDecimal("10")).subtract(Money.of(new BigDecimal("0.001"))).toString()).isEqualTo("9.999");
+    }
+
+    @Test
+    public void testAdd_ShouldFallBackToBigDecimal_WhenUnitsOverflow() throws Exception {
+        Money max = Money.ofUnits(Long.MAX_VALUE);
+
+        Money sum = max.add(Money.ofUnits(1));
+        Money difference = Money.ofUnits(Long.MIN_VALUE).subtract(Money.ofUnits(1));
+
+        assertThat(sum.isCompact()).isFalse();
+        assertThat(sum.toBigDecimal()).isEqualTo(max.toBigDecimal().add(new BigDecimal("0.00000001")));
+        assertThat(difference.isCompact()).isFalse();
+        assertThat(difference.toBigDecimal()).isEqualTo(BigDecimal.valueOf(Long.MIN_VALUE, Money.SCALE).subtract(new BigDecimal("0.00000001")));
+        assertThat(sum.subtract(Money.ofUnits(1))).isEqualTo(max);
+    }
+
+    @Test
+    public void testToString_ShouldFormatAsPlainBigDecimal() throws Exception {
+        for (String text : new String[]{"0", "0.00", "-0.00000001", "123.321", "-92233720368.54775808", "1000"}) {
+            Money money = Money.of(new BigDecimal(text));
+
+            assertThat(money.toString()).as(text).isEqualTo(new BigDecimal(text).toPlainString());
+        }
+        assertThat(Money.ofUnits(Long.MIN_VALUE).toString()).isEqualTo(BigDecimal.valueOf(Long.MIN_VALUE, Money.SCALE).toPlainString());
+    }
+
+    @Test
+    public void testEquals_ShouldCompareNumerically() throws Exception {
+        Money compact = Money.of(new BigDecimal("1.5"));
+        Money fallback = Money.of(new BigDecimal("1.500000000"));
+
+        assertThat(compact).isEqualTo(Money.of(new BigDecimal("1.50")));
+        assertThat(compact).isEqualTo(fallback);
+        assertThat(compact.hashCode()).isEqualTo(fallback.hashCode());
+        assertThat(compact.compareTo(Money.of(new BigDecimal("1.49999999")))).isPositive();
+        assertThat(Money.of(new BigDecimal("100")).hashCode()).isEqualTo(Money.of(new BigDecimal("1E+2")).hashCode());
+    }
+
+    @Test
+    public void testSerialization_ShouldKeepScale() throws Exception {
+        Money money = Money.of(new BigDecimal("100.00100000"));
+        Money fallback = Money.of(new BigDecimal("0.123456789"));
+
+        assertThat(MAPPER.writeValueAsString(money)).isEqualTo("\"100.00100000\"");
+        assertThat(MAPPER.writeValueAsString(fallback)).isEqualTo("\"0.123456789\"");
+        assertThat(MAPPER.readValue("\" 100.00100000 \"", Money.class).toBigDecimal()).isEqualTo(money.toBigDecimal());
+        assertThat(MAPPER.readValue("100.5", Money.class).toBigDecimal()).isEqualTo(new BigDecimal("100.5"));
+        assertThat(MAPPER.readValue("\"\"", Money.class)).isNull();
+    }
+
+    private static Money parse(String text) {
+        return Money.parse(text.toCharArray(), 0, text.length());
+    }
+
+}
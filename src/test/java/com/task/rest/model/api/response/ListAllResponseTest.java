@@ -32,4 +32,17 @@ public class ListAllResponseTest {
         assertThat(MAPPER.writeValueAsString(response)).isEqualTo(expected);
     }
 
+    @Test
+    public void testSerializationToJSON_WithNextAfterId() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        accounts.add(new Account(1L, new BigDecimal("100.10000000")));
+        accounts.add(new Account(2L, new BigDecimal("100.00100000")));
+        ListAllResponse response = new ListAllResponse(accounts, 2L);
+
+        final String expected = MAPPER.writeValueAsString(
+                MAPPER.readValue(fixture("fixtures/response/list-page-response.json"), ListAllResponse.class));
+
+        assertThat(MAPPER.writeValueAsString(response)).isEqualTo(expected);
+    }
+
 }
\ No newline at end of file
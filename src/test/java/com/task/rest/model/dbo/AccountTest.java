@@ -2,6 +2,7 @@ package com.task.rest.model.dbo;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.task.rest.exceptions.InsufficientFundsException;
+import com.task.rest.model.Money;
 import io.dropwizard.jackson.Jackson;
 import io.dropwizard.testing.junit.DAOTestRule;
 import org.junit.Rule;
@@ -50,7 +51,7 @@ public class AccountTest {
     public void testDeposit_ThrowsIllegalArgumentException_WhenTryToDepositNullAmount() throws Exception {
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("amountToDeposit can't be null");
-        account.deposit(null);
+        account.deposit((Money) null);
     }
 
     @Test
@@ -81,7 +82,7 @@ public class AccountTest {
     public void testWithdraw_ThrowsIllegalArgumentException_WhenTryToWithdrawNullAmount() throws Exception {
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("amountToWithdraw can't be null");
-        account.withdraw(null);
+        account.withdraw((Money) null);
     }
 
     @Test
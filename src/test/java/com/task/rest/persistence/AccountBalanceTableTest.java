@@ -0,0 +1,177 @@
+package com.task.rest.persistence;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class AccountBalanceTableTest {
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    @Test
+    public void testConstructor_ShouldThrowIllegalArgumentException_WhenSegmentsIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("number of segments is non-positive");
+        new AccountBalanceTable(0);
+    }
+
+    @Test
+    public void testConstructor_ShouldRoundSegmentsUpToPowerOfTwo() throws Exception {
+        assertThat(new AccountBalanceTable(1).segments()).isEqualTo(1);
+        assertThat(new AccountBalanceTable(3).segments()).isEqualTo(4);
+        assertThat(new AccountBalanceTable(100).segments()).isEqualTo(128);
+    }
+
+    @Test
+    public void testToUnits() throws Exception {
+        assertThat(AccountBalanceTable.toUnits(new BigDecimal("1"), 8)).isEqualTo(100_000_000L);
+        assertThat(AccountBalanceTable.toUnits(new BigDecimal("0.00000001"), 8)).isEqualTo(1L);
+        assertThat(AccountBalanceTable.toUnits(new BigDecimal("0.000000015"), 8)).isEqualTo(2L);
+        assertThat(AccountBalanceTable.toUnits(new BigDecimal("0.000000014"), 8)).isEqualTo(1L);
+    }
+
+    @Test
+    public void testToUnits_ShouldThrowIllegalArgumentException_WhenAmountDoesNotFitIntoLong() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("amount 100000000000 is out of the range of the in-memory storage");
+        AccountBalanceTable.toUnits(new BigDecimal("100000000000"), 8);
+    }
+
+    @Test
+    public void testInsert_ShouldThrowIllegalArgumentException_WhenIdIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("id is non-positive");
+        new AccountBalanceTable(4).insert(0, 1);
+    }
+
+    @Test
+    public void testInsert_ShouldReturnFalse_WhenIdExists() throws Exception {
+        AccountBalanceTable table = new AccountBalanceTable(4);
+        assertTrue(table.insert(1, 10));
+        assertFalse(table.insert(1, 20));
+        assertThat(table.get(1).getUnits()).isEqualTo(10);
+        assertThat(table.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGet_ShouldReturnNull_WhenIdDoesNotExist() throws Exception {
+        assertNull(new AccountBalanceTable(4).get(1));
+    }
+
+    @Test
+    public void testAddAndSubtract_ShouldIncrementVersion() throws Exception {
+        AccountBalanceTable table = new AccountBalanceTable(4);
+        table.insert(7, 100);
+        assertThat(table.get(7).getVersion()).isEqualTo(0);
+
+        assertTrue(table.add(7, 50));
+        assertTrue(table.subtract(7, 30));
+        assertFalse(table.subtract(7, 121));
+        assertFalse(table.add(8, 1));
+
+        assertThat(table.get(7).getUnits()).isEqualTo(120);
+        assertThat(table.get(7).getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    public void testAdd_ShouldThrowArithmeticException_WhenBalanceOverflows() throws Exception {
+        AccountBalanceTable table = new AccountBalanceTable(4);
+        table.insert(1, Long.MAX_VALUE);
+
+        expectedEx.expect(ArithmeticException.class);
+        table.add(1, 1);
+    }
+
+    @Test
+    public void testAdjustAndMerge_ShouldApplySignedDeltas() throws Exception {
+        AccountBalanceTable table = new AccountBalanceTable(4);
+        table.insert(1, 10);
+
+        assertTrue(table.adjust(1, -15));
+        assertFalse(table.adjust(2, 1));
+        table.merge(2, -5);
+        table.merge(2, 20);
+
+        assertThat(table.get(1).getUnits()).isEqualTo(-5);
+        assertThat(table.get(2).getUnits()).isEqualTo(15);
+    }
+
+    @Test
+    public void testApply_ShouldApplyAllChanges_WhenVersionsMatch() throws Exception {
+        AccountBalanceTable table = new AccountBalanceTable(4);
+        table.insert(1, 100);
+        table.insert(2, 200);
+        table.insert(3, 300);
+
+        assertTrue(table.apply(Arrays.asList(
+                AccountBalanceTable.Change.update(1, 0, 50),
+                AccountBalanceTable.Change.update(2, 0, 250),
+                AccountBalanceTable.Change.delete(3, 0))));
+
+        assertThat(table.get(1).getUnits()).isEqualTo(50);
+        assertThat(table.get(1).getVersion()).isEqualTo(1);
+        assertThat(table.get(2).getUnits()).isEqualTo(250);
+        assertNull(table.get(3));
+    }
+
+    @Test
+    public void testApply_ShouldApplyNothing_WhenAnyVersionDiffers() throws Exception {
+        AccountBalanceTable table = new AccountBalanceTable(4);
+        table.insert(1, 100);
+        table.insert(2, 200);
+        table.add(2, 1);
+
+        assertFalse(table.apply(Arrays.asList(
+                AccountBalanceTable.Change.update(1, 0, 50),
+                AccountBalanceTable.Change.update(2, 0, 250))));
+        assertFalse(table.apply(Arrays.asList(
+                AccountBalanceTable.Change.update(1, 0, 50),
+                AccountBalanceTable.Change.delete(3, 0))));
+
+        assertThat(table.get(1).getUnits()).isEqualTo(100);
+        assertThat(table.get(1).getVersion()).isEqualTo(0);
+        assertThat(table.get(2).getUnits()).isEqualTo(201);
+    }
+
+    @Test
+    public void testRandomOperations_ShouldMatchHashMap() throws Exception {
+        // a single small segment to make it resize and shift probe sequences on removals a lot
+        AccountBalanceTable table = new AccountBalanceTable(1);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long id = 1 + random.nextInt(2000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertThat(table.insert(id, i)).isEqualTo(expected.putIfAbsent(id, (long) i) == null);
+                    break;
+                case 1:
+                    assertThat(table.remove(id)).isEqualTo(expected.remove(id) != null);
+                    break;
+                default:
+                    AccountBalanceTable.Row row = table.get(id);
+                    assertThat(row == null ? null : row.getUnits()).isEqualTo(expected.get(id));
+            }
+        }
+        assertThat(table.size()).isEqualTo(expected.size());
+        for (long id = 1; id <= 2000; id++) {
+            assertThat(table.contains(id)).isEqualTo(expected.containsKey(id));
+        }
+    }
+
+}
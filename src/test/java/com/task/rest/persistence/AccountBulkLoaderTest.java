@@ -0,0 +1,100 @@
+package com.task.rest.persistence;
+
+import com.task.rest.model.dbo.Account;
+import io.dropwizard.testing.junit.DAOTestRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class AccountBulkLoaderTest {
+
+    @Rule
+    public DAOTestRule database = DAOTestRule.newBuilder().addEntityClass(Account.class).build();
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    private AccountBulkLoader bulkLoader;
+
+    private AccountDaoImpl accountDao;
+
+    @Before
+    public void setUp() {
+        bulkLoader = new AccountBulkLoader(database.getSessionFactory());
+        accountDao = new AccountDaoImpl(database.getSessionFactory());
+    }
+
+    @Test
+    public void testLoad_ShouldInsertAccountsWithTheirIds() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        for (long id = 1; id <= 2500; id++) {
+            accounts.add(new Account(new BigDecimal(id).movePointLeft(3)).setId(id * 2));
+        }
+
+        assertThat(bulkLoader.load(consumer -> accounts.forEach(consumer))).isEqualTo(accounts.size());
+
+        List<Account> loaded = new ArrayList<>();
+        accountDao.scroll(null, loaded::add);
+        assertThat(loaded).containsExactlyElementsOf(accounts);
+    }
+
+    @Test
+    public void testLoad_ShouldRestartIdSequenceAfterGreatestId() throws Exception {
+        bulkLoader.load(consumer -> {
+            consumer.accept(new Account(BigDecimal.ONE).setId(7L));
+            consumer.accept(new Account(BigDecimal.ONE).setId(3L));
+        });
+
+        Account created = database.inTransaction(() -> accountDao.create(new Account(BigDecimal.TEN)));
+
+        assertThat(created.getId()).isEqualTo(8L);
+    }
+
+    @Test
+    public void testLoad_ShouldInsertNothing_WhenSourceFailsAfterSeveralBatches() throws Exception {
+        IllegalStateException failure = new IllegalStateException("snapshot is corrupted");
+        try {
+            bulkLoader.load(consumer -> {
+                for (long id = 1; id <= 2500; id++) {
+                    consumer.accept(new Account(BigDecimal.ONE).setId(id));
+                }
+                throw failure;
+            });
+            fail("source failed");
+        } catch (IllegalStateException e) {
+            assertThat(e).isSameAs(failure);
+        }
+
+        List<Account> loaded = new ArrayList<>();
+        accountDao.scroll(null, loaded::add);
+        assertThat(loaded).isEmpty();
+    }
+
+    @Test
+    public void testLoad_ShouldThrowIllegalStateException_WhenTableIsNotEmpty() throws Exception {
+        database.inTransaction(() -> accountDao.create(new Account(BigDecimal.TEN)));
+
+        expectedEx.expect(IllegalStateException.class);
+        expectedEx.expectMessage("account table is not empty");
+        bulkLoader.load(consumer -> consumer.accept(new Account(BigDecimal.ONE).setId(100L)));
+    }
+
+    @Test
+    public void testLoad_ShouldThrowIllegalArgumentException_WhenAccountHasNullId() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("try to load account with null id");
+        bulkLoader.load(consumer -> consumer.accept(new Account(BigDecimal.ONE)));
+    }
+
+}
@@ -4,6 +4,7 @@ import com.task.rest.exceptions.NoSuchAccountException;
 import com.task.rest.model.dbo.Account;
 import io.dropwizard.testing.junit.DAOTestRule;
 import org.apache.commons.collections4.CollectionUtils;
+import org.hibernate.Session;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -14,6 +15,8 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -65,6 +68,57 @@ public class AccountDaoImplTest {
         assertTrue(CollectionUtils.isEqualCollection(accounts, accountDao.getAll()));
     }
 
+    @Test
+    public void testGetPage_ShouldThrowIllegalArgumentException_WhenLimitIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("limit is non-positive");
+        accountDao.getPage(null, 0);
+    }
+
+    @Test
+    public void testGetPage() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            accounts.add(new Account(new BigDecimal(i)));
+        }
+
+        // create
+        database.inTransaction(() -> accounts.forEach(acc -> database.getSessionFactory().getCurrentSession().save(acc)));
+
+        // check
+        assertThat(accountDao.getPage(null, 2)).containsExactly(accounts.get(0), accounts.get(1));
+        assertThat(accountDao.getPage(accounts.get(1).getId(), 2)).containsExactly(accounts.get(2), accounts.get(3));
+        assertThat(accountDao.getPage(accounts.get(3).getId(), 2)).containsExactly(accounts.get(4));
+        assertThat(accountDao.getPage(accounts.get(4).getId(), 2)).isEmpty();
+    }
+
+    @Test
+    public void testScroll_ShouldThrowIllegalArgumentException_WhenConsumerIsNull() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("consumer is null");
+        accountDao.scroll(null, null);
+    }
+
+    @Test
+    public void testScroll() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            accounts.add(new Account(new BigDecimal(i)));
+        }
+
+        // create
+        database.inTransaction(() -> accounts.forEach(acc -> database.getSessionFactory().getCurrentSession().save(acc)));
+
+        // check
+        List<Account> all = new ArrayList<>();
+        accountDao.scroll(null, all::add);
+        assertThat(all).containsExactlyElementsOf(accounts);
+
+        List<Account> afterSecond = new ArrayList<>();
+        accountDao.scroll(accounts.get(1).getId(), afterSecond::add);
+        assertThat(afterSecond).containsExactlyElementsOf(accounts.subList(2, 5));
+    }
+
     @Test
     public void testFindById_ShouldThrowIllegalArgumentException_WhenIdIsNull() throws Exception {
         expectedEx.expect(IllegalArgumentException.class);
@@ -94,6 +148,159 @@ public class AccountDaoImplTest {
                 isEqualToComparingFieldByField(database.getSessionFactory().getCurrentSession().get(Account.class, 1L));
     }
 
+    @Test
+    public void testFindByIdForRead_ShouldReturnAccountNotAttachedToSession() throws Exception {
+        Account account = new Account(new BigDecimal("100.03"));
+        database.inTransaction(() -> database.getSessionFactory().getCurrentSession().save(account));
+        database.inTransaction(() -> accountDao.findById(1L).get().deposit(BigDecimal.ONE));
+        Session session = database.getSessionFactory().getCurrentSession();
+        session.clear();
+
+        Account found = accountDao.findByIdForRead(1L).get();
+
+        assertThat(found.getAmount()).isEqualByComparingTo("101.03");
+        assertThat(found.getVersion()).isEqualTo(1);
+        assertThat(session.contains(found)).isFalse();
+        assertThat(accountDao.findByIdForRead(2L)).isEmpty();
+    }
+
+    @Test
+    public void testGetPage_ShouldReturnAccountsNotAttachedToSession() throws Exception {
+        database.inTransaction(() -> {
+            database.getSessionFactory().getCurrentSession().save(new Account(BigDecimal.ONE));
+            database.getSessionFactory().getCurrentSession().save(new Account(BigDecimal.TEN));
+        });
+        Session session = database.getSessionFactory().getCurrentSession();
+        session.clear();
+
+        List<Account> page = accountDao.getPage(null, 10);
+
+        assertThat(page).extracting(Account::getId).containsExactly(1L, 2L);
+        assertThat(page).noneMatch(session::contains);
+    }
+
+    @Test
+    public void testFindByIds_ShouldThrowIllegalArgumentException_WhenIdsIsNull() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("try to find accounts with null ids");
+        accountDao.findByIds(null);
+    }
+
+    @Test
+    public void testFindByIds_ShouldThrowIllegalArgumentException_WhenIdsContainNull() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("try to find account with null id");
+        accountDao.findByIds(Arrays.asList(1L, null));
+    }
+
+    @Test
+    public void testFindByIds_ShouldReturnEmptyList_WhenIdsIsEmpty() throws Exception {
+        assertThat(accountDao.findByIds(Collections.emptyList())).isEmpty();
+    }
+
+    @Test
+    public void testFindByIds_ShouldSkipNotExistedAccounts() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        accounts.add(new Account(new BigDecimal("100.03")));
+        accounts.add(new Account(new BigDecimal("190.07")));
+        accounts.add(new Account(new BigDecimal("100.0345")));
+
+        // create
+        database.inTransaction(() -> accounts.forEach(acc -> database.getSessionFactory().getCurrentSession().save(acc)));
+
+        // check
+        assertThat(accountDao.findByIds(Arrays.asList(1L, 3L, 10L))).containsExactly(accounts.get(0), accounts.get(2));
+    }
+
+    @Test
+    public void testFindByIdsForRead_ShouldLoadMoreAccountsThanFitIntoSingleQuery() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < AccountDaoImpl.MULTI_LOAD_BATCH_SIZE + 10; i++) {
+            accounts.add(new Account(BigDecimal.valueOf(i)));
+        }
+        List<Long> ids = new ArrayList<>();
+
+        // create
+        database.inTransaction(() -> accounts.forEach(acc -> ids.add((Long) database.getSessionFactory().getCurrentSession().save(acc))));
+        database.getSessionFactory().getCurrentSession().clear();
+        ids.add(0L);
+
+        // check
+        assertTrue(CollectionUtils.isEqualCollection(accounts, accountDao.findByIdsForRead(ids)));
+    }
+
+    @Test
+    public void testAddAmount_ShouldThrowIllegalArgumentException_WhenAmountIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("amount is non-positive");
+        accountDao.addAmount(1L, BigDecimal.ZERO);
+    }
+
+    @Test
+    public void testAddAmount_ShouldReturnFalse_WhenAccountDoesNotExist() throws Exception {
+        assertThat(database.inTransaction(() -> accountDao.addAmount(1L, BigDecimal.TEN))).isFalse();
+    }
+
+    @Test
+    public void testAddAmount() throws Exception {
+        // create
+        Account account = new Account(new BigDecimal("100.03"));
+        database.inTransaction(() -> database.getSessionFactory().getCurrentSession().save(account));
+        database.getSessionFactory().getCurrentSession().clear();
+
+        // add
+        assertThat(database.inTransaction(() -> accountDao.addAmount(account.getId(), new BigDecimal("0.07")))).isTrue();
+
+        // check
+        Account updated = accountDao.findById(account.getId()).get();
+        assertThat(updated.getAmount()).isEqualByComparingTo("100.1");
+        assertThat(updated.getVersion()).isEqualTo(account.getVersion() + 1);
+    }
+
+    @Test
+    public void testSubtractAmount_ShouldThrowIllegalArgumentException_WhenIdIsNull() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("try to modify account with null id");
+        accountDao.subtractAmount(null, BigDecimal.TEN);
+    }
+
+    @Test
+    public void testSubtractAmount_ShouldReturnFalse_WhenAccountDoesNotExist() throws Exception {
+        assertThat(database.inTransaction(() -> accountDao.subtractAmount(1L, BigDecimal.TEN))).isFalse();
+    }
+
+    @Test
+    public void testSubtractAmount_ShouldReturnFalseAndKeepAmount_WhenItIsNotEnoughFunds() throws Exception {
+        // create
+        Account account = new Account(new BigDecimal("100.03"));
+        database.inTransaction(() -> database.getSessionFactory().getCurrentSession().save(account));
+        database.getSessionFactory().getCurrentSession().clear();
+
+        // subtract
+        assertThat(database.inTransaction(() -> accountDao.subtractAmount(account.getId(), new BigDecimal("100.031")))).isFalse();
+
+        // check
+        Account notUpdated = accountDao.findById(account.getId()).get();
+        assertThat(notUpdated.getAmount()).isEqualByComparingTo("100.03");
+        assertThat(notUpdated.getVersion()).isEqualTo(account.getVersion());
+    }
+
+    @Test
+    public void testSubtractAmount() throws Exception {
+        // create
+        Account account = new Account(new BigDecimal("100.03"));
+        database.inTransaction(() -> database.getSessionFactory().getCurrentSession().save(account));
+        database.getSessionFactory().getCurrentSession().clear();
+
+        // subtract whole amount
+        assertThat(database.inTransaction(() -> accountDao.subtractAmount(account.getId(), new BigDecimal("100.03")))).isTrue();
+
+        // check
+        Account updated = accountDao.findById(account.getId()).get();
+        assertThat(updated.getAmount()).isEqualByComparingTo("0");
+        assertThat(updated.getVersion()).isEqualTo(account.getVersion() + 1);
+    }
+
     @Test
     public void testDelete_DoesNothing_WhenAccountDoesNotHaveIdOrWhenItDoesNotExist() throws Exception {
         // pre checks
@@ -133,6 +340,20 @@ public class AccountDaoImplTest {
         assertThat(database.getSessionFactory().getCurrentSession().get(Account.class, 1L)).isNull();
     }
 
+    @Test
+    public void testUpdate_ShouldIncrementVersion_WhenAccountIsModified() throws Exception {
+        // create
+        Account account = new Account(new BigDecimal("100.03"));
+        database.inTransaction(() -> database.getSessionFactory().getCurrentSession().save(account));
+        long version = account.getVersion();
+
+        // modify
+        database.inTransaction(() -> accountDao.findById(account.getId()).get().deposit(BigDecimal.ONE));
+
+        // check
+        assertThat(accountDao.findById(account.getId()).get().getVersion()).isEqualTo(version + 1);
+    }
+
     @Test
     public void testUpdate_ShouldThrowIllegalArgumentException_WhenAccountIsNull() throws Exception {
         expectedEx.expect(IllegalArgumentException.class);
@@ -222,4 +443,28 @@ public class AccountDaoImplTest {
         assertThat(database.getSessionFactory().getCurrentSession().get(Account.class, 1L)).isEqualToComparingFieldByField(account);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testCreateAll_ShouldThrowIllegalArgumentException_WhenAnyAccountIsNull() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("try to create null account");
+        accountDao.createAll(Arrays.asList(new Account(BigDecimal.ONE), null));
+    }
+
+    @Test
+    public void testCreateAll() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            accounts.add(new Account(new BigDecimal(i)));
+        }
+
+        // create
+        List<Account> insertedAccounts = database.inTransaction(() -> accountDao.createAll(accounts));
+
+        // check
+        assertThat(insertedAccounts).isSameAs(accounts);
+        assertThat(accounts).extracting(Account::getId).doesNotContainNull().doesNotHaveDuplicates();
+        database.getSessionFactory().getCurrentSession().clear();
+        assertThat(accountDao.getAll()).hasSameElementsAs(accounts);
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.task.rest.persistence;
+
+import com.task.rest.model.dbo.Account;
+import io.dropwizard.testing.junit.DAOTestRule;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class AccountIdGeneratorTest {
+
+    private static final int BLOCK_SIZE = 50;
+
+    @Rule
+    public DAOTestRule database = DAOTestRule.newBuilder()
+            .addEntityClass(Account.class)
+            .setProperty(AccountIdGenerator.BLOCK_SIZE_SETTING, String.valueOf(BLOCK_SIZE))
+            .setProperty("hibernate.jdbc.batch_size", String.valueOf(BLOCK_SIZE))
+            .setProperty("hibernate.generate_statistics", "true")
+            .build();
+
+    private AccountDaoImpl accountDao;
+
+    @Before
+    public void setUp() {
+        accountDao = new AccountDaoImpl(database.getSessionFactory());
+    }
+
+    @Test
+    public void testCreate_ShouldAllocateIdsByBlocks() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < BLOCK_SIZE + 1; i++) {
+            accounts.add(new Account(new BigDecimal(i)));
+        }
+
+        // create
+        database.inTransaction(() -> accounts.forEach(accountDao::create));
+
+        // check - ids are consecutive, the sequence is called once per block
+        assertThat(accounts).extracting(Account::getId)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, BLOCK_SIZE + 1).boxed().collect(Collectors.toList()));
+        assertThat(currentSequenceValue()).isEqualTo(BLOCK_SIZE + 1);
+    }
+
+    @Test
+    public void testCreateAll_ShouldInsertAccountsByJdbcBatches() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 2 * BLOCK_SIZE; i++) {
+            accounts.add(new Account(new BigDecimal(i)));
+        }
+        Statistics statistics = database.getSessionFactory().getStatistics();
+        statistics.clear();
+
+        // create
+        database.inTransaction(() -> accountDao.createAll(accounts));
+
+        // check - two sequence calls and two batches of inserts
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(2 * BLOCK_SIZE);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(4);
+    }
+
+    private long currentSequenceValue() {
+        Object value = database.getSessionFactory().getCurrentSession()
+                .createNativeQuery("select current_value from information_schema.sequences where sequence_name = 'ACCOUNT_SEQ'")
+                .getSingleResult();
+        return ((BigInteger) value).longValue();
+    }
+
+}
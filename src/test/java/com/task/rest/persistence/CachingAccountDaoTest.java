@@ -0,0 +1,327 @@
+package com.task.rest.persistence;
+
+import com.codahale.metrics.MetricRegistry;
+import com.task.rest.model.dbo.Account;
+import io.dropwizard.testing.junit.DAOTestRule;
+import org.hibernate.Session;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class CachingAccountDaoTest {
+
+    private static final int MAXIMUM_SIZE = 2;
+
+    @Rule
+    public DAOTestRule database = DAOTestRule.newBuilder().addEntityClass(Account.class).build();
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    private MetricRegistry metrics;
+
+    private CachingAccountDao accountDao;
+
+    @Before
+    public void setUp() {
+        metrics = new MetricRegistry();
+        accountDao = new CachingAccountDao(new AccountDaoImpl(database.getSessionFactory()), database.getSessionFactory(), metrics, MAXIMUM_SIZE);
+    }
+
+    @Test
+    public void testConstructor_ShouldThrowIllegalArgumentException_WhenMaximumSizeIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("maximum cache size is non-positive");
+        new CachingAccountDao(new AccountDaoImpl(database.getSessionFactory()), database.getSessionFactory(), metrics, 0);
+    }
+
+    @Test
+    public void testFindByIdForRead_ShouldThrowIllegalArgumentException_WhenIdIsNull() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("try to find account with null id");
+        accountDao.findByIdForRead(null);
+    }
+
+    @Test
+    public void testFindByIdForRead_ShouldServeCachedAccount() throws Exception {
+        Account account = createAccount("100.03");
+
+        // first read loads the account, the second one is served from the cache
+        assertThat(accountDao.findByIdForRead(account.getId())).contains(account);
+        deleteInAnotherSession(account.getId());
+        assertThat(accountDao.findByIdForRead(account.getId())).contains(account);
+
+        // check
+        assertThat(hits()).isEqualTo(1);
+        assertThat(misses()).isEqualTo(1);
+        assertThat(metrics.getGauges().get(MetricRegistry.name(CachingAccountDao.class, "size")).getValue()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testFindByIdForRead_ShouldNotCacheMissedAccount() throws Exception {
+        assertThat(accountDao.findByIdForRead(1L)).isEmpty();
+        assertThat(accountDao.findByIdForRead(1L)).isEmpty();
+
+        // check
+        assertThat(hits()).isEqualTo(0);
+        assertThat(misses()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFindByIdForRead_ShouldEvictLeastRecentlyUsedAccount() throws Exception {
+        Account first = createAccount("1");
+        Account second = createAccount("2");
+        Account third = createAccount("3");
+
+        // read
+        accountDao.findByIdForRead(first.getId());
+        accountDao.findByIdForRead(second.getId());
+        accountDao.findByIdForRead(first.getId());
+        accountDao.findByIdForRead(third.getId());
+        accountDao.findByIdForRead(first.getId());
+        accountDao.findByIdForRead(second.getId());
+
+        // check - the second account was evicted by the third one
+        assertThat(hits()).isEqualTo(2);
+        assertThat(misses()).isEqualTo(4);
+    }
+
+    @Test
+    public void testFindByIdsForRead_ShouldServeCachedAccountsAndLoadMissedOnesAtOnce() throws Exception {
+        Account first = createAccount("100.03");
+        Account second = createAccount("190.07");
+        accountDao.findByIdForRead(first.getId());
+
+        // the first account is served from the cache, the second one is loaded with the not existing one
+        assertThat(accountDao.findByIdsForRead(Arrays.asList(first.getId(), second.getId(), 10L))).containsOnly(first, second);
+        deleteInAnotherSession(second.getId());
+        assertThat(accountDao.findByIdsForRead(Arrays.asList(first.getId(), second.getId()))).containsOnly(first, second);
+
+        // check
+        assertThat(hits()).isEqualTo(3);
+        assertThat(misses()).isEqualTo(3);
+    }
+
+    @Test
+    public void testFindByIdsForRead_ShouldSkipCachedDeletedAccount() throws Exception {
+        Account account = createAccount("100");
+        accountDao.findByIdForRead(account.getId());
+
+        // delete
+        database.inTransaction(() -> accountDao.delete(accountDao.findById(account.getId()).get()));
+
+        // check
+        assertThat(accountDao.findByIdsForRead(Arrays.asList(account.getId()))).isEmpty();
+        assertThat(hits()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDeposit_ShouldBeWrittenThrough_WhenTransactionIsCommitted() throws Exception {
+        Account account = createAccount("100");
+        accountDao.findByIdForRead(account.getId());
+
+        // modify
+        database.inTransaction(() -> accountDao.findById(account.getId()).get().deposit(new BigDecimal("0.1")));
+
+        // check
+        assertThat(accountDao.findByIdForRead(account.getId()).map(Account::getAmount)).contains(new BigDecimal("100.10000000"));
+        assertThat(hits()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDeposit_ShouldNotBeWrittenThrough_WhenTransactionIsRolledBack() throws Exception {
+        Account account = createAccount("100");
+        accountDao.findByIdForRead(account.getId());
+
+        // modify
+        try {
+            database.inTransaction(() -> {
+                accountDao.findById(account.getId()).get().deposit(BigDecimal.ONE);
+                throw new IllegalStateException("rollback");
+            });
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // check
+        assertThat(accountDao.findByIdForRead(account.getId()).map(Account::getAmount)).contains(new BigDecimal("100.00000000"));
+    }
+
+    @Test
+    public void testTransfer_ShouldBeWrittenThrough_WhenAccountsAreLoadedTogether() throws Exception {
+        Account from = createAccount("100");
+        Account to = createAccount("0");
+
+        // modify
+        database.inTransaction(() -> accountDao.findByIds(Arrays.asList(from.getId(), to.getId())).forEach(account -> {
+            if (account.getId().equals(from.getId())) {
+                account.withdraw(BigDecimal.TEN);
+            } else {
+                account.deposit(BigDecimal.TEN);
+            }
+        }));
+
+        // check
+        assertThat(accountDao.findByIdForRead(from.getId()).map(Account::getAmount)).contains(new BigDecimal("90.00000000"));
+        assertThat(accountDao.findByIdForRead(to.getId()).map(Account::getAmount)).contains(new BigDecimal("10.00000000"));
+        assertThat(hits()).isEqualTo(2);
+    }
+
+    @Test
+    public void testAddAndSubtractAmount_ShouldEvictAccount() throws Exception {
+        Account account = createAccount("100");
+        accountDao.findByIdForRead(account.getId());
+
+        // modify
+        database.inTransaction(() -> {
+            accountDao.addAmount(account.getId(), BigDecimal.TEN);
+            accountDao.subtractAmount(account.getId(), BigDecimal.ONE);
+        });
+
+        // check
+        database.getSessionFactory().getCurrentSession().clear();
+        assertThat(accountDao.findByIdForRead(account.getId()).map(Account::getAmount)).contains(new BigDecimal("109.00000000"));
+        assertThat(hits()).isEqualTo(0);
+        assertThat(misses()).isEqualTo(2);
+    }
+
+    @Test
+    public void testAddAmount_ShouldBeWrittenThrough_WhenAccountIsLoadedAfterUpdate() throws Exception {
+        Account account = createAccount("100");
+
+        // modify - the account loaded before the update is out of date, the one loaded after it is cached
+        database.inTransaction(() -> {
+            accountDao.findById(account.getId());
+            accountDao.addAmount(account.getId(), BigDecimal.TEN);
+            database.getSessionFactory().getCurrentSession().clear();
+            accountDao.findById(account.getId());
+        });
+
+        // check
+        assertThat(accountDao.findByIdForRead(account.getId()).map(Account::getAmount)).contains(new BigDecimal("110.00000000"));
+        assertThat(hits()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFindByIdForRead_ShouldReadUpdatedAccount_WhenItIsUpdatedInTheSameTransaction() throws Exception {
+        Account account = createAccount("100");
+        accountDao.findByIdForRead(account.getId());
+
+        // modify - the cached state is out of date in the updating transaction, the one read after the update is cached
+        BigDecimal amount = database.inTransaction(() -> {
+            accountDao.addAmount(account.getId(), BigDecimal.TEN);
+            return accountDao.findByIdForRead(account.getId()).get().getAmount();
+        });
+
+        // check
+        assertThat(amount).isEqualByComparingTo("110");
+        assertThat(accountDao.findByIdForRead(account.getId()).map(Account::getAmount)).contains(new BigDecimal("110.00000000"));
+        assertThat(hits()).isEqualTo(1);
+        assertThat(misses()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFindByIdsForRead_ShouldReadUpdatedAccounts_WhenTheyAreUpdatedInTheSameTransaction() throws Exception {
+        Account updated = createAccount("100");
+        Account other = createAccount("200");
+        accountDao.findByIdsForRead(Arrays.asList(updated.getId(), other.getId()));
+
+        // modify
+        List<Account> accounts = database.inTransaction(() -> {
+            accountDao.subtractAmount(updated.getId(), BigDecimal.TEN);
+            return accountDao.findByIdsForRead(Arrays.asList(updated.getId(), other.getId()));
+        });
+
+        // check - the account not updated is served from the cache
+        assertThat(accounts).extracting(Account::getAmount).usingElementComparator(BigDecimal::compareTo)
+                .containsExactlyInAnyOrder(new BigDecimal("90"), new BigDecimal("200"));
+        assertThat(hits()).isEqualTo(1);
+        assertThat(misses()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFindByIdForRead_ShouldNotCacheUpdatedAccount_WhenTransactionIsRolledBack() throws Exception {
+        Account account = createAccount("100");
+        accountDao.findByIdForRead(account.getId());
+
+        // modify and roll back
+        try {
+            database.inTransaction(() -> {
+                accountDao.addAmount(account.getId(), BigDecimal.TEN);
+                accountDao.findByIdForRead(account.getId());
+                throw new IllegalStateException("rollback");
+            });
+            fail("the transaction is expected to be rolled back");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // check - the state cached before the transaction is kept
+        assertThat(accountDao.findByIdForRead(account.getId()).map(Account::getAmount)).contains(new BigDecimal("100.00000000"));
+        assertThat(hits()).isEqualTo(1);
+        assertThat(misses()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSubtractAmount_ShouldEvictAccount_WhenOutOfDateAccountIsLoadedBeforeUpdate() throws Exception {
+        Account account = createAccount("100");
+
+        // modify
+        database.inTransaction(() -> {
+            accountDao.findById(account.getId());
+            accountDao.subtractAmount(account.getId(), BigDecimal.TEN);
+        });
+
+        // check
+        database.getSessionFactory().getCurrentSession().clear();
+        assertThat(accountDao.findByIdForRead(account.getId()).map(Account::getAmount)).contains(new BigDecimal("90.00000000"));
+        assertThat(hits()).isEqualTo(0);
+    }
+
+    @Test
+    public void testDelete_ShouldBeWrittenThrough() throws Exception {
+        Account account = createAccount("100");
+        accountDao.findByIdForRead(account.getId());
+
+        // delete
+        database.inTransaction(() -> accountDao.delete(accountDao.findById(account.getId()).get()));
+
+        // check
+        assertThat(accountDao.findByIdForRead(account.getId())).isEmpty();
+        assertThat(hits()).isEqualTo(1);
+    }
+
+    private Account createAccount(String amount) {
+        Account account = database.inTransaction(() -> accountDao.create(new Account(new BigDecimal(amount))));
+        database.getSessionFactory().getCurrentSession().clear();
+        return account;
+    }
+
+    private void deleteInAnotherSession(Long id) {
+        try (Session session = database.getSessionFactory().openSession()) {
+            session.beginTransaction();
+            session.createQuery("delete from Account where id = :id").setParameter("id", id).executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    private long hits() {
+        return metrics.meter(MetricRegistry.name(CachingAccountDao.class, "hits")).getCount();
+    }
+
+    private long misses() {
+        return metrics.meter(MetricRegistry.name(CachingAccountDao.class, "misses")).getCount();
+    }
+
+}
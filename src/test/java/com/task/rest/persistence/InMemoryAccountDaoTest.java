@@ -0,0 +1,334 @@
+package com.task.rest.persistence;
+
+import com.task.rest.exceptions.InsufficientFundsException;
+import com.task.rest.exceptions.NoSuchAccountException;
+import com.task.rest.journal.FileJournal;
+import com.task.rest.journal.Journal;
+import com.task.rest.journal.JournalRecord;
+import com.task.rest.model.dbo.Account;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import javax.persistence.OptimisticLockException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class InMemoryAccountDaoTest {
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private InMemoryAccountDao accountDao;
+    private InMemoryTransactionRunner transactionRunner;
+
+    @Before
+    public void setUp() {
+        accountDao = new InMemoryAccountDao(4, Journal.NONE);
+        transactionRunner = new InMemoryTransactionRunner(accountDao);
+    }
+
+    @Test
+    public void testCreateAll_ShouldAssignSequentialIds() throws Exception {
+        List<Account> accounts = accountDao.createAll(Arrays.asList(
+                new Account(new BigDecimal("100.03")), new Account(new BigDecimal("190.07")), new Account(BigDecimal.ZERO)));
+
+        assertThat(accounts).extracting(Account::getId).containsExactly(1L, 2L, 3L);
+        assertThat(accountDao.getAll()).containsExactlyElementsOf(accounts);
+    }
+
+    @Test
+    public void testCreateAll_ShouldCreateNothing_WhenAnyAccountIsInvalid() throws Exception {
+        try {
+            accountDao.createAll(Arrays.asList(new Account(BigDecimal.ONE), new Account(null)));
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("try to create account with null amount");
+        }
+        assertThat(accountDao.size()).isZero();
+    }
+
+    @Test
+    public void testCreate_ShouldThrowIllegalArgumentException_WhenAmountIsOutOfRange() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("is out of the range of the in-memory storage");
+        accountDao.create(new Account(new BigDecimal("1e12")));
+    }
+
+    @Test
+    public void testFindById_ShouldReturnAccountWithScaledAmount() throws Exception {
+        accountDao.create(new Account(new BigDecimal("10.123456789")));
+
+        Optional<Account> account = accountDao.findById(1L);
+
+        assertTrue(account.isPresent());
+        assertThat(account.get().getAmount()).isEqualTo(new BigDecimal("10.12345679"));
+        assertFalse(accountDao.findById(2L).isPresent());
+    }
+
+    @Test
+    public void testGetPageAndScroll_ShouldSkipDeletedAccounts() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            accountDao.create(new Account(BigDecimal.valueOf(i)));
+        }
+        accountDao.delete(new Account(3L, null));
+
+        assertThat(accountDao.getPage(null, 3)).extracting(Account::getId).containsExactly(1L, 2L, 4L);
+        assertThat(accountDao.getPage(4L, 10)).extracting(Account::getId).containsExactly(5L, 6L);
+        List<Long> ids = new ArrayList<>();
+        accountDao.scroll(2L, account -> ids.add(account.getId()));
+        assertThat(ids).containsExactly(4L, 5L, 6L);
+    }
+
+    @Test
+    public void testInTransaction_ShouldStoreModificationsOfFoundAccountsOnCommit() throws Exception {
+        accountDao.createAll(Arrays.asList(new Account(new BigDecimal("100")), new Account(new BigDecimal("50"))));
+
+        transactionRunner.inTransaction(() -> {
+            Account from = accountDao.findById(1L).get();
+            Account to = accountDao.findById(2L).get();
+            from.withdraw(new BigDecimal("30"));
+            to.deposit(new BigDecimal("30"));
+            assertThat(accountDao.findById(1L).get()).isSameAs(from);
+            // not committed yet
+            assertThat(accountDao.findByIdForRead(1L).get().getAmount()).isEqualByComparingTo("100");
+            return from;
+        });
+
+        assertThat(accountDao.findByIdForRead(1L).get().getAmount()).isEqualByComparingTo("70");
+        assertThat(accountDao.findByIdForRead(2L).get().getAmount()).isEqualByComparingTo("80");
+    }
+
+    @Test
+    public void testInTransaction_ShouldStoreNothing_WhenWorkFails() throws Exception {
+        accountDao.createAll(Arrays.asList(new Account(new BigDecimal("100")), new Account(new BigDecimal("50"))));
+
+        try {
+            transactionRunner.inTransaction(() -> {
+                accountDao.subtractAmount(1L, new BigDecimal("10"));
+                accountDao.create(new Account(BigDecimal.ONE));
+                accountDao.findById(2L).get().deposit(new BigDecimal("20"));
+                return accountDao.findById(2L).get().withdraw(new BigDecimal("1000"));
+            });
+            fail("InsufficientFundsException expected");
+        } catch (InsufficientFundsException e) {
+            // expected
+        }
+
+        assertThat(accountDao.getAll()).containsExactly(
+                new Account(1L, new BigDecimal("100")), new Account(2L, new BigDecimal("50")));
+    }
+
+    @Test
+    public void testInTransaction_ShouldThrowOptimisticLockException_WhenAccountIsChangedByAnotherTransaction() throws Exception {
+        accountDao.createAll(Arrays.asList(new Account(new BigDecimal("100")), new Account(new BigDecimal("50"))));
+
+        try {
+            transactionRunner.inTransaction(() -> {
+                accountDao.findById(1L).get().deposit(BigDecimal.ONE);
+                accountDao.findById(2L).get().deposit(BigDecimal.ONE);
+                // concurrent modification by another thread
+                Thread thread = new Thread(() -> accountDao.update(new Account(2L, new BigDecimal("60"))));
+                thread.start();
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return null;
+            });
+            fail("OptimisticLockException expected");
+        } catch (OptimisticLockException e) {
+            // expected
+        }
+
+        assertThat(accountDao.findByIdForRead(1L).get().getAmount()).isEqualByComparingTo("100");
+        assertThat(accountDao.findByIdForRead(2L).get().getAmount()).isEqualByComparingTo("60");
+    }
+
+    @Test
+    public void testFindByIdsForRead_ShouldReturnCommittedAccounts() throws Exception {
+        accountDao.createAll(Arrays.asList(new Account(new BigDecimal("100")), new Account(new BigDecimal("50"))));
+
+        transactionRunner.inTransaction(() -> {
+            accountDao.findById(2L).get().deposit(BigDecimal.TEN);
+            assertThat(accountDao.findByIdsForRead(Arrays.asList(1L, 2L, 3L))).extracting(Account::getAmount)
+                    .usingElementComparator(BigDecimal::compareTo)
+                    .containsExactly(new BigDecimal("100"), new BigDecimal("50"));
+            return null;
+        });
+
+        assertThat(accountDao.findByIdsForRead(Arrays.asList(2L, 1L))).extracting(Account::getAmount)
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("60"), new BigDecimal("100"));
+    }
+
+    @Test
+    public void testDelete_ShouldRemoveAccountOnCommit() throws Exception {
+        accountDao.create(new Account(BigDecimal.TEN));
+
+        transactionRunner.inTransaction(() -> {
+            accountDao.delete(accountDao.findById(1L).get());
+            assertFalse(accountDao.findById(1L).isPresent());
+            assertTrue(accountDao.findByIdForRead(1L).isPresent());
+            return null;
+        });
+
+        assertFalse(accountDao.findByIdForRead(1L).isPresent());
+        assertThat(accountDao.size()).isZero();
+    }
+
+    @Test
+    public void testUpdate_ShouldThrowNoSuchAccountException_WhenAccountDoesNotExist() throws Exception {
+        expectedEx.expect(NoSuchAccountException.class);
+        expectedEx.expectMessage("There's no account with id: 5");
+        accountDao.update(new Account(5L, BigDecimal.ONE));
+    }
+
+    @Test
+    public void testAddAndSubtractAmount() throws Exception {
+        accountDao.create(new Account(BigDecimal.TEN));
+
+        assertTrue(accountDao.addAmount(1L, new BigDecimal("0.5")));
+        assertTrue(accountDao.subtractAmount(1L, new BigDecimal("10.5")));
+        assertFalse(accountDao.subtractAmount(1L, new BigDecimal("0.00000001")));
+        assertFalse(accountDao.addAmount(2L, BigDecimal.ONE));
+
+        assertThat(accountDao.findById(1L).get().getAmount()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    public void testConstructor_ShouldRestoreCommittedModificationsFromJournal() throws Exception {
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), 1024 * 1024, true)) {
+            InMemoryAccountDao dao = new InMemoryAccountDao(4, journal);
+            InMemoryTransactionRunner runner = new InMemoryTransactionRunner(dao);
+            dao.createAll(Arrays.asList(new Account(new BigDecimal("100")), new Account(new BigDecimal("50")),
+                    new Account(new BigDecimal("10"))));
+            runner.inTransaction(() -> dao.findById(1L).get().withdraw(new BigDecimal("30.5")));
+            runner.inTransaction(() -> dao.findById(2L).get().deposit(new BigDecimal("30.5")));
+            dao.subtractAmount(2L, new BigDecimal("0.5"));
+            dao.update(new Account(1L, new BigDecimal("70")));
+            runner.inTransaction(() -> dao.delete(dao.findById(3L).get()));
+            try {
+                runner.inTransaction(() -> {
+                    dao.addAmount(1L, new BigDecimal("1000"));
+                    return dao.findById(2L).get().withdraw(new BigDecimal("1000"));
+                });
+                fail("InsufficientFundsException expected");
+            } catch (InsufficientFundsException e) {
+                // not journaled
+            }
+        }
+
+        try (FileJournal journal = new FileJournal(folder.getRoot().toPath(), 1024 * 1024, true)) {
+            InMemoryAccountDao restored = new InMemoryAccountDao(4, journal);
+
+            assertThat(restored.getAll()).containsExactly(
+                    new Account(1L, new BigDecimal("70")), new Account(2L, new BigDecimal("80")));
+            // ids of deleted accounts are not reused
+            assertThat(restored.create(new Account(BigDecimal.ONE)).getId()).isEqualTo(4L);
+        }
+    }
+
+    @Test
+    public void testSubtractAmount_ShouldWaitUntilDepositItDependsOnIsJournaled() throws Exception {
+        RecordingJournal journal = new RecordingJournal();
+        InMemoryAccountDao dao = new InMemoryAccountDao(4, journal);
+        InMemoryTransactionRunner runner = new InMemoryTransactionRunner(dao);
+        dao.create(new Account(BigDecimal.ZERO));
+        CountDownLatch deposited = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        // the deposit is applied to the table at once, but journaled on commit only
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> deposit = executor.submit(() -> runner.inTransaction(() -> {
+            dao.addAmount(1L, new BigDecimal("100"));
+            deposited.countDown();
+            awaitUninterruptibly(commit);
+            return null;
+        }));
+        Future<Boolean> withdrawal;
+        try {
+            deposited.await();
+            withdrawal = executor.submit(() -> dao.subtractAmount(1L, new BigDecimal("100")));
+            Thread.sleep(100);
+            assertFalse(withdrawal.isDone());
+            commit.countDown();
+            deposit.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        // check
+        assertTrue(withdrawal.get(10, TimeUnit.SECONDS));
+        assertThat(journal.records).hasSize(3);
+        assertThat(journal.records.get(1).getEntries().get(0).getUnits()).isPositive();
+        assertThat(journal.records.get(2).getEntries().get(0).getUnits()).isNegative();
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * keeps the appended records in their order, every record is durable at once
+     */
+    private static final class RecordingJournal implements Journal {
+        private final List<JournalRecord> records = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void replay(long position, Consumer<JournalRecord> consumer) {
+        }
+
+        @Override
+        public long position() {
+            return records.size();
+        }
+
+        @Override
+        public long append(JournalRecord record) {
+            records.add(record);
+            return records.size();
+        }
+
+        @Override
+        public void awaitDurable(long position) {
+        }
+
+        @Override
+        public void deleteBefore(long position) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.task.rest.persistence;
+
+import com.task.rest.model.dbo.LedgerEntry;
+import com.task.rest.model.dbo.LedgerOperation;
+import io.dropwizard.testing.junit.DAOTestRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class LedgerDaoImplTest {
+
+    @Rule
+    public DAOTestRule database = DAOTestRule.newBuilder().addEntityClass(LedgerEntry.class).build();
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    private LedgerDaoImpl ledgerDao;
+
+    @Before
+    public void setUp() {
+        ledgerDao = new LedgerDaoImpl(database.getSessionFactory());
+    }
+
+    @Test
+    public void testInsertAll_ShouldThrowIllegalArgumentException_WhenSequenceNumberIsSpecified() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("try to insert entry with specified sequence number");
+        ledgerDao.insertAll(Collections.singletonList(new LedgerEntry(1L, 1L, LedgerOperation.DEPOSIT, BigDecimal.ONE, BigDecimal.ONE, 0L)));
+    }
+
+    @Test
+    public void testInsertAll_ShouldNumberEntriesInOrderOfList() throws Exception {
+        List<LedgerEntry> entries = Arrays.asList(
+                entry(1L, LedgerOperation.CREATE, "100.0345", "100.0345"),
+                entry(2L, LedgerOperation.CREATE, "10", "10"),
+                entry(1L, LedgerOperation.WITHDRAW, "-0.0345", "100"),
+                entry(1L, LedgerOperation.TRANSFER, "-40", "60"),
+                entry(2L, LedgerOperation.TRANSFER, "40", "50"));
+
+        database.inTransaction(() -> ledgerDao.insertAll(entries));
+
+        List<LedgerEntry> history = database.inTransaction(() -> ledgerDao.findByAccountId(1L, null, 10));
+        assertThat(history).extracting(LedgerEntry::getOperation)
+                .containsExactly(LedgerOperation.CREATE, LedgerOperation.WITHDRAW, LedgerOperation.TRANSFER);
+        assertThat(history.get(1).getSeq()).isGreaterThan(history.get(0).getSeq());
+        assertThat(history.get(2).getSeq()).isGreaterThan(history.get(1).getSeq());
+        assertThat(history.get(2)).isEqualTo(new LedgerEntry(history.get(2).getSeq(), 1L, LedgerOperation.TRANSFER,
+                new BigDecimal("-40"), new BigDecimal("60"), 3L));
+    }
+
+    @Test
+    public void testFindByAccountId_ShouldReturnPageAfterSequenceNumber() throws Exception {
+        List<LedgerEntry> entries = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            entries.add(entry(7L, LedgerOperation.DEPOSIT, "1", String.valueOf(i)));
+        }
+        database.inTransaction(() -> ledgerDao.insertAll(entries));
+        List<LedgerEntry> first = database.inTransaction(() -> ledgerDao.findByAccountId(7L, null, 2));
+
+        List<LedgerEntry> second = database.inTransaction(() -> ledgerDao.findByAccountId(7L, first.get(1).getSeq(), 2));
+        List<LedgerEntry> last = database.inTransaction(() -> ledgerDao.findByAccountId(7L, second.get(1).getSeq(), 2));
+
+        assertThat(first).extracting(entry -> entry.getBalance().intValue()).containsExactly(1, 2);
+        assertThat(second).extracting(entry -> entry.getBalance().intValue()).containsExactly(3, 4);
+        assertThat(last).extracting(entry -> entry.getBalance().intValue()).containsExactly(5);
+        assertThat(database.inTransaction(() -> ledgerDao.findByAccountId(8L, null, 2))).isEmpty();
+    }
+
+    @Test
+    public void testFindByAccountId_ShouldThrowIllegalArgumentException_WhenLimitIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("limit is non-positive");
+        ledgerDao.findByAccountId(1L, null, 0);
+    }
+
+    private long createdAt;
+
+    private LedgerEntry entry(Long accountId, LedgerOperation operation, String amount, String balance) {
+        return new LedgerEntry(null, accountId, operation, new BigDecimal(amount), new BigDecimal(balance), createdAt++);
+    }
+
+}
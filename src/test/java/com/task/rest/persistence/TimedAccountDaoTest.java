@@ -0,0 +1,81 @@
+package com.task.rest.persistence;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.task.rest.metrics.RequestTimings;
+import com.task.rest.model.dbo.Account;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class TimedAccountDaoTest {
+
+    private static final long SLEEP_MILLIS = 20;
+
+    private final AccountDao delegate = mock(AccountDao.class);
+    private final AccountDao accountDao = new TimedAccountDao(delegate);
+    private final RequestTimings timings = new RequestTimings();
+
+    private RequestTimings previous;
+
+    @Before
+    public void setup() {
+        previous = RequestTimings.enter(timings);
+    }
+
+    @After
+    public void tearDown() {
+        RequestTimings.exit(previous);
+    }
+
+    @Test
+    public void testFindById_ShouldAddTimeOfCallToCurrentTimings() throws Exception {
+        Account account = new Account(1L, BigDecimal.ONE);
+        when(delegate.findById(1L)).thenAnswer(invocation -> {
+            Uninterruptibles.sleepUninterruptibly(SLEEP_MILLIS, TimeUnit.MILLISECONDS);
+            return Optional.of(account);
+        });
+
+        assertThat(accountDao.findById(1L)).contains(account);
+        assertThat(timings.getDaoNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(SLEEP_MILLIS));
+    }
+
+    @Test
+    public void testScroll_ShouldNotCountTimeOfConsumer() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Account> consumer = invocation.getArgumentAt(1, Consumer.class);
+            consumer.accept(new Account(1L, BigDecimal.ONE));
+            consumer.accept(new Account(2L, BigDecimal.ONE));
+            return null;
+        }).when(delegate).scroll(eq(null), any());
+
+        accountDao.scroll(null, account -> Uninterruptibles.sleepUninterruptibly(SLEEP_MILLIS, TimeUnit.MILLISECONDS));
+
+        assertThat(timings.getDaoNanos()).isPositive().isLessThan(TimeUnit.MILLISECONDS.toNanos(SLEEP_MILLIS));
+    }
+
+    @Test
+    public void testCreate_ShouldRecordNothing_WhenThereAreNoCurrentTimings() throws Exception {
+        RequestTimings.exit(null);
+        Account account = new Account(BigDecimal.ONE);
+        when(delegate.create(account)).thenReturn(account);
+
+        assertThat(accountDao.create(account)).isSameAs(account);
+        assertThat(timings.getDaoNanos()).isZero();
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.task.rest.persistence;
+
+import com.task.rest.model.dbo.Account;
+import io.dropwizard.testing.junit.DAOTestRule;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import javax.persistence.OptimisticLockException;
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class TransactionRunnerImplTest {
+
+    @Rule
+    public DAOTestRule database = DAOTestRule.newBuilder().addEntityClass(Account.class).build();
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    private TransactionRunnerImpl transactionRunner;
+
+    private AccountDaoImpl accountDao;
+
+    @Before
+    public void setUp() {
+        transactionRunner = new TransactionRunnerImpl(database.getSessionFactory());
+        accountDao = new AccountDaoImpl(database.getSessionFactory());
+    }
+
+    @Test
+    public void testInTransaction_ShouldThrowIllegalArgumentException_WhenWorkIsNull() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("work is null");
+        transactionRunner.inTransaction(null);
+    }
+
+    @Test
+    public void testInTransaction_ShouldJoinAndCommitTransactionOfCurrentSession() throws Exception {
+        Session session = database.getSessionFactory().getCurrentSession();
+        Transaction enclosingTransaction = session.beginTransaction();
+
+        // create in the enclosing transaction
+        Account account = transactionRunner.inTransaction(() -> {
+            assertThat(database.getSessionFactory().getCurrentSession()).isSameAs(session);
+            assertThat(session.getTransaction()).isSameAs(enclosingTransaction);
+            return accountDao.create(new Account(BigDecimal.TEN));
+        });
+
+        // check
+        assertThat(enclosingTransaction.getStatus()).isEqualTo(TransactionStatus.COMMITTED);
+        try (Session anotherSession = database.getSessionFactory().openSession()) {
+            assertThat(anotherSession.get(Account.class, account.getId())).isEqualTo(account);
+        }
+    }
+
+    @Test
+    public void testInTransaction_ShouldBeginTransaction_WhenItIsNotActive() throws Exception {
+        // create in a new transaction
+        Account account = transactionRunner.inTransaction(() -> {
+            assertThat(database.getSessionFactory().getCurrentSession().getTransaction().isActive()).isTrue();
+            return accountDao.create(new Account(BigDecimal.TEN));
+        });
+
+        // check
+        try (Session anotherSession = database.getSessionFactory().openSession()) {
+            assertThat(anotherSession.get(Account.class, account.getId())).isEqualTo(account);
+        }
+    }
+
+    @Test
+    public void testInTransaction_ShouldOpenSession_WhenThereIsNoCurrentOne() throws Exception {
+        Session session = ManagedSessionContext.unbind(database.getSessionFactory());
+        try {
+            // create in a new transaction
+            Account account = transactionRunner.inTransaction(() -> accountDao.create(new Account(BigDecimal.TEN)));
+
+            // check
+            assertThat(ManagedSessionContext.hasBind(database.getSessionFactory())).isFalse();
+            assertThat(session.get(Account.class, account.getId())).isEqualTo(account);
+        } finally {
+            ManagedSessionContext.bind(session);
+        }
+    }
+
+    @Test
+    public void testInTransaction_ShouldRollbackWork_WhenWorkFailed() throws Exception {
+        // create in a new transaction
+        try {
+            transactionRunner.inTransaction(() -> {
+                accountDao.create(new Account(BigDecimal.TEN));
+                throw new IllegalStateException("failure");
+            });
+        } catch (IllegalStateException e) {
+            // check
+            assertThat(accountDao.getAll()).isEmpty();
+            return;
+        }
+        throw new AssertionError("IllegalStateException is expected");
+    }
+
+    @Test
+    public void testInTransaction_ShouldThrowOptimisticLockException_WhenAccountWasConcurrentlyUpdated() throws Exception {
+        Account account = transactionRunner.inTransaction(() -> accountDao.create(new Account(BigDecimal.TEN)));
+
+        // modify
+        try {
+            transactionRunner.inTransaction(() -> {
+                Account loaded = accountDao.findById(account.getId()).get();
+                depositInAnotherSession(account.getId(), BigDecimal.ONE);
+                return loaded.withdraw(BigDecimal.ONE);
+            });
+        } catch (OptimisticLockException e) {
+            // check - the stale account is not kept in the session, so the next attempt sees the concurrent update
+            Account reloaded = transactionRunner.inTransaction(() -> accountDao.findById(account.getId()).get());
+            assertThat(reloaded.getAmount()).isEqualByComparingTo("11");
+            assertThat(reloaded.getVersion()).isEqualTo(account.getVersion() + 1);
+            return;
+        }
+        throw new AssertionError("OptimisticLockException is expected");
+    }
+
+    private void depositInAnotherSession(Long id, BigDecimal amount) {
+        try (Session session = database.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.get(Account.class, id).deposit(amount);
+            transaction.commit();
+        }
+    }
+
+}
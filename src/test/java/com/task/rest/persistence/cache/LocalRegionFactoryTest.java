@@ -0,0 +1,160 @@
+package com.task.rest.persistence.cache;
+
+import com.task.rest.model.dbo.Account;
+import com.task.rest.persistence.AccountDaoImpl;
+import io.dropwizard.testing.junit.DAOTestRule;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class LocalRegionFactoryTest {
+
+    @Rule
+    public DAOTestRule database = cachedDatabase();
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    private AccountDaoImpl accountDao;
+
+    private Statistics statistics;
+
+    @Before
+    public void setUp() {
+        accountDao = new AccountDaoImpl(database.getSessionFactory());
+        statistics = database.getSessionFactory().getStatistics();
+    }
+
+    @Test
+    public void testSettings_ShouldThrowIllegalArgumentException_WhenMaximumSizeIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("maximum size is non-positive");
+        LocalRegionFactory.settings(0, 1);
+    }
+
+    @Test
+    public void testSettings_ShouldThrowIllegalArgumentException_WhenExpiryIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("expiry is non-positive");
+        LocalRegionFactory.settings(1, 0);
+    }
+
+    @Test
+    public void testFindById_ShouldReadCreatedAccountFromCache_InNextSession() throws Exception {
+        Account account = inNewSession(() -> accountDao.create(new Account(new BigDecimal("100.03"))));
+
+        Optional<Account> found = inNewSession(() -> accountDao.findById(account.getId()));
+
+        // check
+        assertThat(found).hasValueSatisfying(acc -> assertThat(acc.getAmount()).isEqualByComparingTo("100.03"));
+        assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFindById_ShouldReadUpdatedAccountFromCache() throws Exception {
+        Account account = inNewSession(() -> accountDao.create(new Account(new BigDecimal("100.03"))));
+        inNewSession(() -> accountDao.update(new Account(account.getId(), new BigDecimal("7.50"))));
+
+        Optional<Account> found = inNewSession(() -> accountDao.findById(account.getId()));
+
+        // check
+        assertThat(found).hasValueSatisfying(acc -> assertThat(acc.getAmount()).isEqualByComparingTo("7.50"));
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFindById_ShouldNotReturnDeletedAccount() throws Exception {
+        Account account = inNewSession(() -> accountDao.create(new Account(new BigDecimal("100.03"))));
+        inNewSession(() -> accountDao.delete(account));
+
+        // check
+        assertThat(inNewSession(() -> accountDao.findById(account.getId()))).isEmpty();
+    }
+
+    @Test
+    public void testAddAmount_ShouldEvictCachedAccounts() throws Exception {
+        Account account = inNewSession(() -> accountDao.create(new Account(new BigDecimal("100.03"))));
+        assertThat(inNewSession(() -> accountDao.addAmount(account.getId(), new BigDecimal("0.97")))).isTrue();
+
+        Optional<Account> reloaded = inNewSession(() -> accountDao.findById(account.getId()));
+        Optional<Account> cached = inNewSession(() -> accountDao.findById(account.getId()));
+
+        // check
+        assertThat(reloaded).hasValueSatisfying(acc -> assertThat(acc.getAmount()).isEqualByComparingTo("101"));
+        assertThat(cached).hasValueSatisfying(acc -> assertThat(acc.getAmount()).isEqualByComparingTo("101"));
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(1);
+        assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGetPage_ShouldReadCachedQueryResults_UntilAccountIsUpdated() throws Exception {
+        Account account = inNewSession(() -> accountDao.create(new Account(new BigDecimal("1.00"))));
+        inNewSession(() -> accountDao.create(new Account(new BigDecimal("2.00"))));
+
+        List<Account> loaded = inNewSession(() -> accountDao.getPage(null, 10));
+        List<Account> cached = inNewSession(() -> accountDao.getPage(null, 10));
+        List<Account> otherPage = inNewSession(() -> accountDao.getPage(account.getId(), 10));
+        inNewSession(() -> accountDao.addAmount(account.getId(), BigDecimal.ONE));
+        List<Account> reloaded = inNewSession(() -> accountDao.getPage(null, 10));
+
+        // check
+        assertThat(loaded).hasSize(2);
+        assertThat(cached).isEqualTo(loaded);
+        assertThat(cached.get(0).getAmount()).isEqualByComparingTo("1.00");
+        assertThat(otherPage).hasSize(1);
+        assertThat(reloaded.get(0).getAmount()).isEqualByComparingTo("2.00");
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+        assertThat(statistics.getQueryCacheMissCount()).isEqualTo(3);
+    }
+
+    private static DAOTestRule cachedDatabase() {
+        DAOTestRule.Builder builder = DAOTestRule.newBuilder()
+                .addEntityClass(Account.class)
+                .setProperty(AvailableSettings.GENERATE_STATISTICS, Boolean.TRUE.toString());
+        LocalRegionFactory.settings(100, TimeUnit.MINUTES.toMillis(1)).forEach(builder::setProperty);
+        return builder.build();
+    }
+
+    /**
+     * runs the work in a transaction of a session opened for it, as a request does
+     */
+    private <T> T inNewSession(Supplier<T> work) {
+        SessionFactory sessionFactory = database.getSessionFactory();
+        Session previous = ManagedSessionContext.unbind(sessionFactory);
+        try (Session session = sessionFactory.openSession()) {
+            ManagedSessionContext.bind(session);
+            Transaction transaction = session.beginTransaction();
+            try {
+                T result = work.get();
+                transaction.commit();
+                return result;
+            } catch (RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            }
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            ManagedSessionContext.bind(previous);
+        }
+    }
+
+}
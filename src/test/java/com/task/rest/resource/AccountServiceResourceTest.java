@@ -1,36 +1,69 @@
 package com.task.rest.resource;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.task.rest.exceptions.IdempotencyKeyReusedException;
 import com.task.rest.exceptions.InsufficientFundsException;
 import com.task.rest.exceptions.NoSuchAccountException;
 import com.task.rest.exceptions.TransferToTheSameAccountException;
+import com.task.rest.exceptions.UnbalancedPostingException;
 import com.task.rest.exceptions.mappers.DefaultExceptionsProvider;
+import com.task.rest.exceptions.mappers.OperationQueueFullExceptionsProvider;
 import com.task.rest.exceptions.mappers.ServiceExceptionsProvider;
+import com.task.rest.idempotency.BoundedIdempotencyStore;
+import com.task.rest.idempotency.IdempotencyStore;
+import com.task.rest.model.Money;
 import com.task.rest.model.api.request.CreateAccountRequest;
 import com.task.rest.model.api.request.DepositOrWithdrawRequest;
+import com.task.rest.model.api.request.Leg;
 import com.task.rest.model.api.request.TransferRequest;
+import com.task.rest.model.api.response.BatchAccountResponse;
 import com.task.rest.model.api.response.CrudAccountResponse;
+import com.task.rest.model.api.response.HistoryResponse;
 import com.task.rest.model.api.response.ListAllResponse;
 import com.task.rest.model.api.response.OperationStatus;
 import com.task.rest.model.dbo.Account;
+import com.task.rest.model.dbo.LedgerEntry;
+import com.task.rest.model.dbo.LedgerOperation;
+import com.task.rest.persistence.TransactionRunner;
 import com.task.rest.service.AccountService;
+import com.task.rest.utils.concurrency.OperationExecutor;
+import com.task.rest.utils.serialization.BinaryFormat;
+import com.task.rest.utils.serialization.BinaryFormatFallbackFilter;
+import com.task.rest.utils.serialization.BinaryMessageBodyReader;
+import com.task.rest.utils.serialization.BinaryMessageBodyWriter;
+import io.dropwizard.jackson.Jackson;
 import io.dropwizard.testing.junit.ResourceTestRule;
+import org.glassfish.jersey.test.grizzly.GrizzlyTestContainerFactory;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -54,11 +87,33 @@ public class AccountServiceResourceTest {
     private static final String AMOUNT_NOT_NULL_VALIDATION_FAIL_MSG = "{\"errors\":[\"amount may not be null\"]}";
 
 
+    private static final long RETRY_AFTER_SECONDS = 3;
+
+    // a single thread and a single queued operation, so the queue is easily filled up
+    private static final OperationExecutor operationExecutor = new OperationExecutor(1, 1, RETRY_AFTER_SECONDS);
+
+    private static final IdempotencyStore idempotencyStore = new BoundedIdempotencyStore(100, TimeUnit.MINUTES.toMillis(1),
+            Jackson.newObjectMapper(), new MetricRegistry());
+
+    private static final TransactionRunner transactionRunner = new TransactionRunner() {
+        @Override
+        public <T> T inTransaction(Supplier<T> work) {
+            return work.get();
+        }
+    };
+
     @ClassRule
     public static final ResourceTestRule resources = ResourceTestRule.builder()
-            .addResource(new AccountServiceResource(accountService, DEFAULT_INIT_AMOUNT))
+            .setTestContainerFactory(new GrizzlyTestContainerFactory())
+            .addResource(new AccountServiceResource(accountService, DEFAULT_INIT_AMOUNT, Jackson.newObjectMapper(), operationExecutor,
+                    idempotencyStore, transactionRunner))
             .addResource(new ServiceExceptionsProvider())
+            .addResource(new OperationQueueFullExceptionsProvider())
             .addResource(new DefaultExceptionsProvider())
+            .addProvider(BinaryMessageBodyReader.class)
+            .addProvider(BinaryMessageBodyWriter.class)
+            .addProvider(BinaryFormatFallbackFilter.class)
+            .setClientConfigurator(config -> config.register(BinaryMessageBodyReader.class).register(BinaryMessageBodyWriter.class))
             .build();
 
     @Before
@@ -182,19 +237,197 @@ public class AccountServiceResourceTest {
         verify(accountService).create(any(Account.class));
     }
 
+    @Test
+    public void testCreate_ShouldReturnKeptResponse_WhenRequestIsRetriedWithTheSameIdempotencyKey() throws Exception {
+        CreateAccountRequest request = new CreateAccountRequest(BigDecimal.ONE);
+        CrudAccountResponse expectedResponse = new CrudAccountResponse(new Account(DEFAULT_ID_FOR_CREATED_ACCOUNT, BigDecimal.ONE), OperationStatus.CREATED);
+
+        Response first = resources.target("/accounts/create").request().header(IdempotencyStore.KEY_HEADER, "create-retried")
+                .post(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
+        Response retry = resources.target("/accounts/create").request().header(IdempotencyStore.KEY_HEADER, "create-retried")
+                .post(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
+
+        verify(accountService).create(any(Account.class));
+        assertThat(first.getStatus()).isEqualTo(Response.Status.CREATED.getStatusCode());
+        assertThat(first.readEntity(CrudAccountResponse.class)).isEqualToComparingFieldByField(expectedResponse);
+        assertThat(first.getHeaderString(IdempotencyStore.REPLAYED_HEADER)).isNull();
+        assertThat(retry.getStatus()).isEqualTo(Response.Status.CREATED.getStatusCode());
+        assertThat(retry.readEntity(CrudAccountResponse.class)).isEqualToComparingFieldByField(expectedResponse);
+        assertThat(retry.getHeaderString(IdempotencyStore.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    public void testCreate_ShouldRejectRequest_WhenIdempotencyKeyIsReusedWithDifferentAmount() throws Exception {
+        Response first = resources.target("/accounts/create").request().header(IdempotencyStore.KEY_HEADER, "create-reused")
+                .post(Entity.entity(new CreateAccountRequest(BigDecimal.ONE), MediaType.APPLICATION_JSON_TYPE));
+        Response reused = resources.target("/accounts/create").request().header(IdempotencyStore.KEY_HEADER, "create-reused")
+                .post(Entity.entity(new CreateAccountRequest(BigDecimal.TEN), MediaType.APPLICATION_JSON_TYPE));
+
+        verify(accountService).create(any(Account.class));
+        assertThat(first.getStatus()).isEqualTo(Response.Status.CREATED.getStatusCode());
+        assertThat(reused.getStatus()).isEqualTo(IdempotencyKeyReusedException.UNPROCESSABLE_ENTITY);
+    }
+
+    @Test
+    public void testCreate_WithTooLongIdempotencyKey() throws Exception {
+        char[] key = new char[IdempotencyStore.MAX_KEY_LENGTH + 1];
+        Arrays.fill(key, 'k');
+
+        Response response = resources.target("/accounts/create").request().header(IdempotencyStore.KEY_HEADER, new String(key))
+                .post(Entity.entity(new CreateAccountRequest(BigDecimal.ONE), MediaType.APPLICATION_JSON_TYPE));
+
+        verifyZeroInteractions(accountService);
+        assertThat(response.getStatus()).isEqualTo(Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
+    @Test
+    public void testCreateBatch_WithEmptyList() throws Exception {
+        Response response = resources.target("/accounts/create/batch").request()
+                .post(Entity.entity(Collections.emptyList(), MediaType.APPLICATION_JSON_TYPE));
+
+        verifyZeroInteractions(accountService);
+        assertThat(response.readEntity(String.class)).isEqualTo("{\"errors\":[\"The request body may not be empty\"]}");
+        assertThat(response.getStatus()).isEqualTo(HTTP_UNPROCESSABLE_ENTITY_CODE);
+    }
+
+    @Test
+    public void testCreateBatch_WithNegativeAmount() throws Exception {
+        List<CreateAccountRequest> requests = Arrays.asList(new CreateAccountRequest(BigDecimal.ONE), new CreateAccountRequest(new BigDecimal("-1")));
+
+        Response response = resources.target("/accounts/create/batch").request()
+                .post(Entity.entity(requests, MediaType.APPLICATION_JSON_TYPE));
+
+        verifyZeroInteractions(accountService);
+        assertThat(response.readEntity(String.class)).isEqualTo(AMOUNT_GREATER_OR_EQUAL_ZERO_VALIDATION_FAIL_MSG);
+        assertThat(response.getStatus()).isEqualTo(HTTP_UNPROCESSABLE_ENTITY_CODE);
+    }
+
+    @Test
+    public void testCreateBatch_WithTooManyAccounts() throws Exception {
+        List<CreateAccountRequest> requests = Collections.nCopies(AccountServiceResource.MAX_CREATE_BATCH_SIZE + 1, new CreateAccountRequest());
+
+        Response response = resources.target("/accounts/create/batch").request()
+                .post(Entity.entity(requests, MediaType.APPLICATION_JSON_TYPE));
+
+        verifyZeroInteractions(accountService);
+        assertThat(response.readEntity(String.class)).isEqualTo("{\"errors\":[\"The request body size must be between 0 and 10000\"]}");
+        assertThat(response.getStatus()).isEqualTo(HTTP_UNPROCESSABLE_ENTITY_CODE);
+    }
+
+    @Test
+    public void testCreateBatch() throws Exception {
+        BigDecimal amount = new BigDecimal("123.45");
+        List<CreateAccountRequest> requests = Arrays.asList(new CreateAccountRequest(amount), new CreateAccountRequest(null));
+        when(accountService.createAll(any())).thenAnswer(invocation -> {
+            List<Account> accounts = argument(invocation, 0);
+            for (int i = 0; i < accounts.size(); i++) {
+                accounts.get(i).setId(i + 1L);
+            }
+            return accounts;
+        });
+
+        Response response = resources.target("/accounts/create/batch").request()
+                .post(Entity.entity(requests, MediaType.APPLICATION_JSON_TYPE));
+        BatchAccountResponse batchAccountResponse = response.readEntity(BatchAccountResponse.class);
+        BatchAccountResponse expectedResponse = new BatchAccountResponse(
+                Arrays.asList(new Account(1L, amount), new Account(2L, DEFAULT_INIT_AMOUNT)), OperationStatus.CREATED);
+
+        verify(accountService).createAll(any());
+        assertThat(batchAccountResponse).isEqualToComparingFieldByField(expectedResponse);
+        assertThat(response.getStatus()).isEqualTo(Response.Status.CREATED.getStatusCode());
+    }
+
     @Test
     public void testListAll() throws Exception {
         List<Account> accounts = new ArrayList<>();
         accounts.add(new Account(3L, new BigDecimal("100.03")));
         accounts.add(new Account(4L, new BigDecimal("190.07")));
         accounts.add(new Account(5L, new BigDecimal("100.0345")));
-        when(accountService.listAll()).thenReturn(accounts);
+        doAnswer(invocation -> {
+            accounts.forEach(argument(invocation, 1));
+            return null;
+        }).when(accountService).forEach(eq(null), anyAccountConsumer());
 
         ListAllResponse response = resources.target("/accounts/list").request().get().readEntity(ListAllResponse.class);
 
         ListAllResponse expectedResponse = new ListAllResponse(accounts);
         assertThat(response).isEqualToComparingFieldByField(expectedResponse);
-        verify(accountService).listAll();
+        verify(accountService).forEach(eq(null), anyAccountConsumer());
+    }
+
+    @Test
+    public void testListAll_WithAfterId() throws Exception {
+        List<Account> accounts = Collections.singletonList(new Account(5L, new BigDecimal("100.0345")));
+        doAnswer(invocation -> {
+            accounts.forEach(argument(invocation, 1));
+            return null;
+        }).when(accountService).forEach(eq(4L), anyAccountConsumer());
+
+        ListAllResponse response = resources.target("/accounts/list").queryParam("afterId", 4).request().get().readEntity(ListAllResponse.class);
+
+        assertThat(response).isEqualToComparingFieldByField(new ListAllResponse(accounts));
+        verify(accountService).forEach(eq(4L), anyAccountConsumer());
+    }
+
+    @Test
+    public void testListAll_WithLimit() throws Exception {
+        List<Account> accounts = Arrays.asList(new Account(3L, new BigDecimal("100.03")), new Account(4L, new BigDecimal("190.07")));
+        when(accountService.listPage(2L, 2)).thenReturn(accounts);
+
+        ListAllResponse response = resources.target("/accounts/list").queryParam("afterId", 2).queryParam("limit", 2)
+                .request().get().readEntity(ListAllResponse.class);
+
+        assertThat(response).isEqualToComparingFieldByField(new ListAllResponse(accounts, 4L));
+        verify(accountService).listPage(2L, 2);
+    }
+
+    @Test
+    public void testListAll_WithLimit_ShouldNotReturnNextAfterId_WhenPageIsNotFull() throws Exception {
+        List<Account> accounts = Collections.singletonList(new Account(1L, new BigDecimal("100.03")));
+        when(accountService.listPage(null, 2)).thenReturn(accounts);
+
+        ListAllResponse response = resources.target("/accounts/list").queryParam("limit", 2)
+                .request().get().readEntity(ListAllResponse.class);
+
+        assertThat(response).isEqualToComparingFieldByField(new ListAllResponse(accounts, null));
+    }
+
+    @Test
+    public void testListAll_WithTooBigLimit() throws Exception {
+        Response response = resources.target("/accounts/list").queryParam("limit", AccountServiceResource.MAX_PAGE_SIZE + 1).request().get();
+        assertThat(response.getStatus()).isEqualTo(400);
+        assertThat(response.readEntity(String.class)).isEqualTo("{\"errors\":[\"query param limit must be less than or equal to 1000\"]}");
+    }
+
+    @Test
+    public void testHistory() throws Exception {
+        List<LedgerEntry> entries = Arrays.asList(
+                new LedgerEntry(5L, 1L, LedgerOperation.DEPOSIT, new BigDecimal("10.05"), new BigDecimal("110.05"), 1000L),
+                new LedgerEntry(9L, 1L, LedgerOperation.TRANSFER, new BigDecimal("-0.05"), new BigDecimal("110"), 2000L));
+        when(accountService.history(1L, 4L, 2)).thenReturn(entries);
+
+        HistoryResponse response = resources.target("/accounts/history").queryParam("id", 1).queryParam("afterSeq", 4)
+                .queryParam("limit", 2).request().get().readEntity(HistoryResponse.class);
+
+        assertThat(response.getEntries()).isEqualTo(entries);
+        assertThat(response.getNextAfterSeq()).isEqualTo(9L);
+    }
+
+    @Test
+    public void testHistory_ShouldUseDefaultLimitAndNotReturnNextAfterSeq_WhenPageIsNotFull() throws Exception {
+        when(accountService.history(1L, null, Integer.parseInt(AccountServiceResource.DEFAULT_HISTORY_SIZE))).thenReturn(Collections.emptyList());
+
+        Response response = resources.target("/accounts/history").queryParam("id", 1).request().get();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.readEntity(String.class)).isEqualTo("{\"entries\":[]}");
+    }
+
+    @Test
+    public void testHistory_WithNullId() throws Exception {
+        Response response = resources.target("/accounts/history").request().get();
+        assertThat(response.getStatus()).isEqualTo(400);
+        assertThat(response.readEntity(String.class)).isEqualTo("{\"errors\":[\"query param id may not be null\"]}");
     }
 
     @Test
@@ -211,7 +444,7 @@ public class AccountServiceResourceTest {
 
     @Test
     public void testWithdraw_WithNullAmount() throws Exception {
-        DepositOrWithdrawRequest request = new DepositOrWithdrawRequest(1L, null);
+        DepositOrWithdrawRequest request = new DepositOrWithdrawRequest(1L, (BigDecimal) null);
 
         Response response = resources.target("/accounts/withdraw").request()
                 .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
@@ -261,12 +494,12 @@ public class AccountServiceResourceTest {
     public void testWithdraw_WithNotExistedId() throws Exception {
         BigDecimal amount = new BigDecimal("0.12345678");
         DepositOrWithdrawRequest request = new DepositOrWithdrawRequest(1L, amount);
-        when(accountService.withdraw(1L, amount)).thenThrow(new NoSuchAccountException(1L));
+        when(accountService.withdraw(1L, Money.of(amount))).thenThrow(new NoSuchAccountException(1L));
 
         Response response = resources.target("/accounts/withdraw").request()
                 .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
 
-        verify(accountService).withdraw(1L, amount);
+        verify(accountService).withdraw(1L, Money.of(amount));
         assertThat(response.readEntity(String.class)).isEqualTo("There's no account with id: 1");
         assertThat(response.getStatus()).isEqualTo(Response.Status.BAD_REQUEST.getStatusCode());
     }
@@ -275,14 +508,14 @@ public class AccountServiceResourceTest {
     public void testWithdraw_WithInsufficientFunds() throws Exception {
         BigDecimal amount = new BigDecimal("0.12345678");
         DepositOrWithdrawRequest request = new DepositOrWithdrawRequest(1L, amount);
-        when(accountService.withdraw(1L, amount)).thenThrow(new InsufficientFundsException(BigDecimal.ZERO, amount, 1L));
+        when(accountService.withdraw(1L, Money.of(amount))).thenThrow(new InsufficientFundsException(BigDecimal.ZERO, amount, 1L));
 
         Response response = resources.target("/accounts/withdraw").request()
                 .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
 
         String expectedEntityAsString = "Current amount (0) is less than amount to withdraw (0.12345678) for the account with id = 1";
 
-        verify(accountService).withdraw(1L, amount);
+        verify(accountService).withdraw(1L, Money.of(amount));
         assertThat(response.readEntity(String.class)).isEqualTo(expectedEntityAsString);
         assertThat(response.getStatus()).isEqualTo(Response.Status.BAD_REQUEST.getStatusCode());
     }
@@ -292,7 +525,7 @@ public class AccountServiceResourceTest {
         BigDecimal amount = new BigDecimal("0.12345678");
         Account expectedAccount = new Account(1L, BigDecimal.TEN);
         DepositOrWithdrawRequest request = new DepositOrWithdrawRequest(1L, amount);
-        when(accountService.withdraw(1L, amount)).thenReturn(expectedAccount);
+        when(accountService.withdraw(1L, Money.of(amount))).thenReturn(expectedAccount);
 
         Response response = resources.target("/accounts/withdraw").request()
                 .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
@@ -302,7 +535,7 @@ public class AccountServiceResourceTest {
 
         assertThat(crudAccountResponse).isEqualToComparingFieldByField(expectedResponse);
         assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
-        verify(accountService).withdraw(1L, amount);
+        verify(accountService).withdraw(1L, Money.of(amount));
     }
 
     @Test
@@ -319,7 +552,7 @@ public class AccountServiceResourceTest {
 
     @Test
     public void testDeposit_WithNullAmount() throws Exception {
-        DepositOrWithdrawRequest request = new DepositOrWithdrawRequest(1L, null);
+        DepositOrWithdrawRequest request = new DepositOrWithdrawRequest(1L, (BigDecimal) null);
 
         Response response = resources.target("/accounts/deposit").request()
                 .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
@@ -371,12 +604,12 @@ public class AccountServiceResourceTest {
     public void testDeposit_WithNotExistedId() throws Exception {
         BigDecimal amount = new BigDecimal("0.12345678");
         DepositOrWithdrawRequest request = new DepositOrWithdrawRequest(1L, amount);
-        when(accountService.deposit(1L, amount)).thenThrow(new NoSuchAccountException(1L));
+        when(accountService.deposit(1L, Money.of(amount))).thenThrow(new NoSuchAccountException(1L));
 
         Response response = resources.target("/accounts/deposit").request()
                 .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
 
-        verify(accountService).deposit(1L, amount);
+        verify(accountService).deposit(1L, Money.of(amount));
         assertThat(response.readEntity(String.class)).isEqualTo("There's no account with id: 1");
         assertThat(response.getStatus()).isEqualTo(Response.Status.BAD_REQUEST.getStatusCode());
     }
@@ -386,7 +619,7 @@ public class AccountServiceResourceTest {
         BigDecimal amount = new BigDecimal("0.12345678");
         Account expectedAccount = new Account(1L, BigDecimal.TEN);
         DepositOrWithdrawRequest request = new DepositOrWithdrawRequest(1L, amount);
-        when(accountService.deposit(1L, amount)).thenReturn(expectedAccount);
+        when(accountService.deposit(1L, Money.of(amount))).thenReturn(expectedAccount);
 
         Response response = resources.target("/accounts/deposit").request()
                 .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
@@ -396,7 +629,7 @@ public class AccountServiceResourceTest {
 
         assertThat(crudAccountResponse).isEqualToComparingFieldByField(expectedResponse);
         assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
-        verify(accountService).deposit(1L, amount);
+        verify(accountService).deposit(1L, Money.of(amount));
     }
 
     @Test
@@ -425,7 +658,7 @@ public class AccountServiceResourceTest {
 
     @Test
     public void testTransfer_WithNullAmount() throws Exception {
-        TransferRequest request = new TransferRequest(1L, 2L, null);
+        TransferRequest request = new TransferRequest(1L, 2L, (BigDecimal) null);
 
         Response response = resources.target("/accounts/transfer").request()
                 .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
@@ -476,12 +709,12 @@ public class AccountServiceResourceTest {
     public void testTransfer_WithNotExistedId() throws Exception {
         BigDecimal amount = new BigDecimal("0.12345678");
         TransferRequest request = new TransferRequest(1L, 2L, amount);
-        when(accountService.transfer(1L, 2L, amount)).thenThrow(new NoSuchAccountException(1L));
+        when(accountService.transfer(1L, 2L, Money.of(amount))).thenThrow(new NoSuchAccountException(1L));
 
         Response response = resources.target("/accounts/transfer").request()
                 .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
 
-        verify(accountService).transfer(1L, 2L, amount);
+        verify(accountService).transfer(1L, 2L, Money.of(amount));
         assertThat(response.readEntity(String.class)).isEqualTo("There's no account with id: 1");
         assertThat(response.getStatus()).isEqualTo(Response.Status.BAD_REQUEST.getStatusCode());
     }
@@ -490,14 +723,14 @@ public class AccountServiceResourceTest {
     public void testTransfer_WithInsufficientFunds() throws Exception {
         BigDecimal amount = new BigDecimal("0.12345678");
         TransferRequest request = new TransferRequest(1L, 2L, amount);
-        when(accountService.transfer(1L, 2L, amount)).thenThrow(new InsufficientFundsException(BigDecimal.ZERO, amount, 1L));
+        when(accountService.transfer(1L, 2L, Money.of(amount))).thenThrow(new InsufficientFundsException(BigDecimal.ZERO, amount, 1L));
 
         Response response = resources.target("/accounts/transfer").request()
                 .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
 
         String expectedEntityAsString = "Current amount (0) is less than amount to withdraw (0.12345678) for the account with id = 1";
 
-        verify(accountService).transfer(1L, 2L, amount);
+        verify(accountService).transfer(1L, 2L, Money.of(amount));
         assertThat(response.readEntity(String.class)).isEqualTo(expectedEntityAsString);
         assertThat(response.getStatus()).isEqualTo(Response.Status.BAD_REQUEST.getStatusCode());
     }
@@ -506,12 +739,12 @@ public class AccountServiceResourceTest {
     public void testTransfer_WithTransferToTheSameAccount() throws Exception {
         BigDecimal amount = new BigDecimal("0.12345678");
         TransferRequest request = new TransferRequest(1L, 2L, amount);
-        when(accountService.transfer(1L, 2L, amount)).thenThrow(new TransferToTheSameAccountException());
+        when(accountService.transfer(1L, 2L, Money.of(amount))).thenThrow(new TransferToTheSameAccountException());
 
         Response response = resources.target("/accounts/transfer").request()
                 .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
 
-        verify(accountService).transfer(1L, 2L, amount);
+        verify(accountService).transfer(1L, 2L, Money.of(amount));
         assertThat(response.readEntity(String.class)).isEqualTo(TRANSFER_MONEY_TO_THE_SAME_ACCOUNT_MSG);
         assertThat(response.getStatus()).isEqualTo(Response.Status.BAD_REQUEST.getStatusCode());
     }
@@ -521,18 +754,246 @@ public class AccountServiceResourceTest {
         BigDecimal amount = new BigDecimal("0.12345678");
         Account expectedAccount = new Account(1L, BigDecimal.TEN);
         TransferRequest request = new TransferRequest(1L, 2L, amount);
-        when(accountService.transfer(1L, 2L, amount)).thenReturn(expectedAccount);
+        when(accountService.transfer(1L, 2L, Money.of(amount))).thenReturn(expectedAccount);
 
         Response response = resources.target("/accounts/transfer").request()
                 .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
         CrudAccountResponse crudAccountResponse = response.readEntity(CrudAccountResponse.class);
         CrudAccountResponse expectedResponse = new CrudAccountResponse(expectedAccount, OperationStatus.UPDATED);
 
-        verify(accountService).transfer(1L, 2L, amount);
+        verify(accountService).transfer(1L, 2L, Money.of(amount));
         assertThat(crudAccountResponse).isEqualToComparingFieldByField(expectedResponse);
         assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
     }
 
+    @Test
+    public void testTransfer_WhenOperationQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // the first operation takes the only thread, the second one takes the only place in the queue
+            operationExecutor.submit(() -> {
+                started.countDown();
+                return Uninterruptibles.awaitUninterruptibly(release, 1, TimeUnit.MINUTES);
+            });
+            assertThat(started.await(1, TimeUnit.MINUTES)).isTrue();
+            operationExecutor.submit(() -> Uninterruptibles.awaitUninterruptibly(release, 1, TimeUnit.MINUTES));
+
+            Response response = resources.target("/accounts/transfer").request()
+                    .put(Entity.entity(new TransferRequest(1L, 2L, BigDecimal.ONE), MediaType.APPLICATION_JSON_TYPE));
+
+            verifyZeroInteractions(accountService);
+            assertThat(response.readEntity(String.class)).isEqualTo("Too many operations are waiting, try again later");
+            assertThat(response.getStatus()).isEqualTo(Response.Status.SERVICE_UNAVAILABLE.getStatusCode());
+            assertThat(response.getHeaderString(HttpHeaders.RETRY_AFTER)).isEqualTo(String.valueOf(RETRY_AFTER_SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testTransferBatch_WithEmptyList() throws Exception {
+        Response response = resources.target("/accounts/transfer/batch").request()
+                .put(Entity.entity(Collections.emptyList(), MediaType.APPLICATION_JSON_TYPE));
+
+        verifyZeroInteractions(accountService);
+        assertThat(response.readEntity(String.class)).isEqualTo("{\"errors\":[\"The request body may not be empty\"]}");
+        assertThat(response.getStatus()).isEqualTo(HTTP_UNPROCESSABLE_ENTITY_CODE);
+    }
+
+    @Test
+    public void testTransferBatch_WithNotValidTransfer() throws Exception {
+        List<TransferRequest> requests = Arrays.asList(
+                new TransferRequest(1L, 2L, BigDecimal.ONE),
+                new TransferRequest(1L, 2L, new BigDecimal("0.123456789")));
+
+        Response response = resources.target("/accounts/transfer/batch").request()
+                .put(Entity.entity(requests, MediaType.APPLICATION_JSON_TYPE));
+
+        verifyZeroInteractions(accountService);
+        assertThat(response.readEntity(String.class)).isEqualTo("{\"errors\":[\"amount numeric value out of bounds (<37 digits>.<8 digits> expected)\"]}");
+        assertThat(response.getStatus()).isEqualTo(HTTP_UNPROCESSABLE_ENTITY_CODE);
+    }
+
+    @Test
+    public void testTransferBatch_WithTooManyTransfers() throws Exception {
+        List<TransferRequest> requests = Collections.nCopies(AccountServiceResource.MAX_TRANSFER_BATCH_SIZE + 1,
+                new TransferRequest(1L, 2L, BigDecimal.ONE));
+
+        Response response = resources.target("/accounts/transfer/batch").request()
+                .put(Entity.entity(requests, MediaType.APPLICATION_JSON_TYPE));
+
+        verifyZeroInteractions(accountService);
+        assertThat(response.readEntity(String.class)).isEqualTo("{\"errors\":[\"The request body size must be between 0 and 1000\"]}");
+        assertThat(response.getStatus()).isEqualTo(HTTP_UNPROCESSABLE_ENTITY_CODE);
+    }
+
+    @Test
+    public void testTransferBatch_WithInsufficientFunds() throws Exception {
+        BigDecimal amount = new BigDecimal("0.12345678");
+        List<TransferRequest> requests = Collections.singletonList(new TransferRequest(1L, 2L, amount));
+        when(accountService.transferBatch(any())).thenThrow(new InsufficientFundsException(BigDecimal.ZERO, amount, 1L));
+
+        Response response = resources.target("/accounts/transfer/batch").request()
+                .put(Entity.entity(requests, MediaType.APPLICATION_JSON_TYPE));
+
+        String expectedEntityAsString = "Current amount (0) is less than amount to withdraw (0.12345678) for the account with id = 1";
+
+        verify(accountService).transferBatch(any());
+        assertThat(response.readEntity(String.class)).isEqualTo(expectedEntityAsString);
+        assertThat(response.getStatus()).isEqualTo(Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
+    @Test
+    public void testTransferBatch() throws Exception {
+        BigDecimal amount = new BigDecimal("0.12345678");
+        List<Account> expectedAccounts = Arrays.asList(new Account(1L, BigDecimal.TEN), new Account(2L, BigDecimal.ONE));
+        List<TransferRequest> requests = Arrays.asList(new TransferRequest(1L, 2L, amount), new TransferRequest(2L, 1L, amount));
+        when(accountService.transferBatch(any())).thenReturn(expectedAccounts);
+
+        Response response = resources.target("/accounts/transfer/batch").request()
+                .put(Entity.entity(requests, MediaType.APPLICATION_JSON_TYPE));
+        BatchAccountResponse batchAccountResponse = response.readEntity(BatchAccountResponse.class);
+        BatchAccountResponse expectedResponse = new BatchAccountResponse(expectedAccounts, OperationStatus.UPDATED);
+
+        verify(accountService).transferBatch(any());
+        assertThat(batchAccountResponse).isEqualToComparingFieldByField(expectedResponse);
+        assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
+    }
+
+    @Test
+    public void testPost_WithZeroAmount() throws Exception {
+        List<Leg> legs = Arrays.asList(new Leg(1L, BigDecimal.ZERO), new Leg(2L, BigDecimal.ZERO));
+
+        Response response = resources.target("/accounts/postings").request()
+                .put(Entity.entity(legs, MediaType.APPLICATION_JSON_TYPE));
+
+        verifyZeroInteractions(accountService);
+        assertThat(response.readEntity(String.class)).contains("amount may not be zero");
+        assertThat(response.getStatus()).isEqualTo(HTTP_UNPROCESSABLE_ENTITY_CODE);
+    }
+
+    @Test
+    public void testPost_WithTooManyLegs() throws Exception {
+        List<Leg> legs = Collections.nCopies(AccountServiceResource.MAX_POSTING_SIZE + 1, new Leg(1L, BigDecimal.ONE));
+
+        Response response = resources.target("/accounts/postings").request()
+                .put(Entity.entity(legs, MediaType.APPLICATION_JSON_TYPE));
+
+        verifyZeroInteractions(accountService);
+        assertThat(response.readEntity(String.class)).isEqualTo("{\"errors\":[\"The request body size must be between 0 and 1000\"]}");
+        assertThat(response.getStatus()).isEqualTo(HTTP_UNPROCESSABLE_ENTITY_CODE);
+    }
+
+    @Test
+    public void testPost_WithUnbalancedLegs() throws Exception {
+        List<Leg> legs = Arrays.asList(new Leg(1L, BigDecimal.ONE.negate()), new Leg(2L, BigDecimal.TEN));
+        when(accountService.post(any())).thenThrow(new UnbalancedPostingException(new BigDecimal("9")));
+
+        Response response = resources.target("/accounts/postings").request()
+                .put(Entity.entity(legs, MediaType.APPLICATION_JSON_TYPE));
+
+        verify(accountService).post(any());
+        assertThat(response.readEntity(String.class)).isEqualTo("Debits and credits of the posting are not balanced, their sum is 9");
+        assertThat(response.getStatus()).isEqualTo(Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
+    @Test
+    public void testPost() throws Exception {
+        List<Account> expectedAccounts = Arrays.asList(new Account(1L, BigDecimal.TEN), new Account(2L, BigDecimal.ONE), new Account(3L, BigDecimal.ONE));
+        List<Leg> legs = Arrays.asList(new Leg(1L, new BigDecimal("-2")), new Leg(2L, BigDecimal.ONE), new Leg(3L, BigDecimal.ONE));
+        when(accountService.post(any())).thenReturn(expectedAccounts);
+
+        Response response = resources.target("/accounts/postings").request()
+                .put(Entity.entity(legs, MediaType.APPLICATION_JSON_TYPE));
+        BatchAccountResponse batchAccountResponse = response.readEntity(BatchAccountResponse.class);
+        BatchAccountResponse expectedResponse = new BatchAccountResponse(expectedAccounts, OperationStatus.UPDATED);
+
+        verify(accountService).post(any());
+        assertThat(batchAccountResponse).isEqualToComparingFieldByField(expectedResponse);
+        assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
+    }
+
+    @Test
+    public void testDeposit_ShouldRunOnce_WhenRequestIsRetriedWithTheSameIdempotencyKey() throws Exception {
+        DepositOrWithdrawRequest request = new DepositOrWithdrawRequest(1L, BigDecimal.ONE);
+        when(accountService.deposit(1L, Money.of(BigDecimal.ONE))).thenReturn(new Account(1L, BigDecimal.TEN));
+        CrudAccountResponse expectedResponse = new CrudAccountResponse(new Account(1L, BigDecimal.TEN), OperationStatus.UPDATED);
+
+        Response first = resources.target("/accounts/deposit").request().header(IdempotencyStore.KEY_HEADER, "deposit-retried")
+                .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
+        Response retry = resources.target("/accounts/deposit").request().header(IdempotencyStore.KEY_HEADER, "deposit-retried")
+                .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
+
+        verify(accountService).deposit(1L, Money.of(BigDecimal.ONE));
+        assertThat(first.readEntity(CrudAccountResponse.class)).isEqualToComparingFieldByField(expectedResponse);
+        assertThat(retry.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
+        assertThat(retry.readEntity(CrudAccountResponse.class)).isEqualToComparingFieldByField(expectedResponse);
+        assertThat(retry.getHeaderString(IdempotencyStore.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    public void testDeposit_ShouldReplay_WhenRetryHasTheSameAmountInAnotherScale() throws Exception {
+        when(accountService.deposit(1L, Money.of(BigDecimal.ONE))).thenReturn(new Account(1L, BigDecimal.TEN));
+
+        resources.target("/accounts/deposit").request().header(IdempotencyStore.KEY_HEADER, "deposit-rescaled")
+                .put(Entity.entity(new DepositOrWithdrawRequest(1L, BigDecimal.ONE), MediaType.APPLICATION_JSON_TYPE)).close();
+        Response retry = resources.target("/accounts/deposit").request().header(IdempotencyStore.KEY_HEADER, "deposit-rescaled")
+                .put(Entity.entity(new DepositOrWithdrawRequest(1L, new BigDecimal("1.00")), MediaType.APPLICATION_JSON_TYPE));
+
+        verify(accountService).deposit(1L, Money.of(BigDecimal.ONE));
+        assertThat(retry.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
+        assertThat(retry.getHeaderString(IdempotencyStore.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    public void testDeposit_ShouldRejectRequest_WhenIdempotencyKeyIsReusedForAnotherAccount() throws Exception {
+        when(accountService.deposit(1L, Money.of(BigDecimal.ONE))).thenReturn(new Account(1L, BigDecimal.TEN));
+
+        resources.target("/accounts/deposit").request().header(IdempotencyStore.KEY_HEADER, "deposit-reused")
+                .put(Entity.entity(new DepositOrWithdrawRequest(1L, BigDecimal.ONE), MediaType.APPLICATION_JSON_TYPE)).close();
+        Response reused = resources.target("/accounts/deposit").request().header(IdempotencyStore.KEY_HEADER, "deposit-reused")
+                .put(Entity.entity(new DepositOrWithdrawRequest(2L, BigDecimal.ONE), MediaType.APPLICATION_JSON_TYPE));
+
+        verify(accountService).deposit(1L, Money.of(BigDecimal.ONE));
+        verify(accountService, never()).deposit(eq(2L), any(Money.class));
+        assertThat(reused.getStatus()).isEqualTo(IdempotencyKeyReusedException.UNPROCESSABLE_ENTITY);
+        assertThat(reused.readEntity(String.class)).contains("deposit-reused");
+    }
+
+    @Test
+    public void testWithdraw_ShouldRunAgain_WhenFirstRequestWithTheIdempotencyKeyFailed() throws Exception {
+        DepositOrWithdrawRequest request = new DepositOrWithdrawRequest(1L, BigDecimal.ONE);
+        when(accountService.withdraw(1L, Money.of(BigDecimal.ONE)))
+                .thenThrow(new InsufficientFundsException(BigDecimal.ZERO, BigDecimal.ONE, 1L))
+                .thenReturn(new Account(1L, BigDecimal.ZERO));
+
+        Response first = resources.target("/accounts/withdraw").request().header(IdempotencyStore.KEY_HEADER, "withdraw-failed")
+                .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
+        Response retry = resources.target("/accounts/withdraw").request().header(IdempotencyStore.KEY_HEADER, "withdraw-failed")
+                .put(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
+
+        verify(accountService, times(2)).withdraw(1L, Money.of(BigDecimal.ONE));
+        assertThat(first.getStatus()).isEqualTo(Response.Status.BAD_REQUEST.getStatusCode());
+        assertThat(retry.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
+        assertThat(retry.getHeaderString(IdempotencyStore.REPLAYED_HEADER)).isNull();
+    }
+
+    @Test
+    public void testTransfer_ShouldRunBoth_WhenIdempotencyKeyIsReusedByAnotherOperation() throws Exception {
+        when(accountService.deposit(1L, Money.of(BigDecimal.ONE))).thenReturn(new Account(1L, BigDecimal.TEN));
+        when(accountService.transfer(2L, 1L, Money.of(BigDecimal.ONE))).thenReturn(new Account(2L, BigDecimal.ONE));
+
+        resources.target("/accounts/deposit").request().header(IdempotencyStore.KEY_HEADER, "shared")
+                .put(Entity.entity(new DepositOrWithdrawRequest(1L, BigDecimal.ONE), MediaType.APPLICATION_JSON_TYPE)).close();
+        Response response = resources.target("/accounts/transfer").request().header(IdempotencyStore.KEY_HEADER, "shared")
+                .put(Entity.entity(new TransferRequest(2L, 1L, BigDecimal.ONE), MediaType.APPLICATION_JSON_TYPE));
+
+        verify(accountService).transfer(2L, 1L, Money.of(BigDecimal.ONE));
+        assertThat(response.readEntity(CrudAccountResponse.class).getAccount()).isEqualTo(new Account(2L, BigDecimal.ONE));
+        assertThat(response.getHeaderString(IdempotencyStore.REPLAYED_HEADER)).isNull();
+    }
+
     @Test
     public void testDelete_WithNullId() throws Exception {
         Response response = resources.target("/accounts/delete").queryParam("id").request().delete();
@@ -566,4 +1027,103 @@ public class AccountServiceResourceTest {
         assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
         verify(accountService).delete(1L);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetByIds_WithEmptyList() throws Exception {
+        Response response = resources.target("/accounts/get").request()
+                .post(Entity.entity(Collections.emptyList(), MediaType.APPLICATION_JSON_TYPE));
+
+        verifyZeroInteractions(accountService);
+        assertThat(response.readEntity(String.class)).isEqualTo("{\"errors\":[\"The request body may not be empty\"]}");
+        assertThat(response.getStatus()).isEqualTo(HTTP_UNPROCESSABLE_ENTITY_CODE);
+    }
+
+    @Test
+    public void testGetByIds() throws Exception {
+        List<Account> accounts = Arrays.asList(new Account(1L, new BigDecimal("100.03")), new Account(3L, new BigDecimal("190.07")));
+        when(accountService.getAll(Arrays.asList(3L, 2L, 1L))).thenReturn(accounts);
+
+        Response response = resources.target("/accounts/get").request()
+                .post(Entity.entity(Arrays.asList(3L, null, 2L, 1L), MediaType.APPLICATION_JSON_TYPE));
+
+        assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
+        assertThat(response.readEntity(ListAllResponse.class)).isEqualToComparingFieldByField(new ListAllResponse(accounts));
+        verify(accountService).getAll(Arrays.asList(3L, 2L, 1L));
+    }
+
+    @Test
+    public void testListAll_InBinaryFormat() throws Exception {
+        List<Account> accounts = Arrays.asList(new Account(4L, new BigDecimal("190.07")), new Account(5L, new BigDecimal("100.0345")));
+        doAnswer(invocation -> {
+            accounts.forEach(argument(invocation, 1));
+            return null;
+        }).when(accountService).forEach(eq(null), anyAccountConsumer());
+
+        Response response = resources.target("/accounts/list").request(BinaryFormat.MEDIA_TYPE_TYPE).get();
+
+        assertThat(response.getMediaType()).isEqualTo(BinaryFormat.MEDIA_TYPE_TYPE);
+        assertThat(response.readEntity(ListAllResponse.class)).isEqualToComparingFieldByField(new ListAllResponse(accounts));
+    }
+
+    @Test
+    public void testGetById_InBinaryFormat() throws Exception {
+        Account expectedAccount = new Account(1L, new BigDecimal("100.00100000"));
+        when(accountService.get(1L)).thenReturn(expectedAccount);
+
+        Response response = resources.target("/accounts").queryParam("id", 1L).request(BinaryFormat.MEDIA_TYPE_TYPE).get();
+
+        assertThat(response.getMediaType()).isEqualTo(BinaryFormat.MEDIA_TYPE_TYPE);
+        CrudAccountResponse entity = response.readEntity(CrudAccountResponse.class);
+        assertThat(entity.getAccount().getAmount()).isEqualTo(expectedAccount.getAmount());
+        assertThat(entity.getStatus()).isEqualTo(OperationStatus.READ);
+    }
+
+    @Test
+    public void testTransfer_InBinaryFormat() throws Exception {
+        BigDecimal amount = new BigDecimal("0.12345678");
+        Account expectedAccount = new Account(1L, BigDecimal.TEN);
+        when(accountService.transfer(1L, 2L, Money.of(amount))).thenReturn(expectedAccount);
+
+        Response response = resources.target("/accounts/transfer").request(BinaryFormat.MEDIA_TYPE_TYPE)
+                .put(Entity.entity(new TransferRequest(1L, 2L, amount), BinaryFormat.MEDIA_TYPE_TYPE));
+
+        verify(accountService).transfer(1L, 2L, Money.of(amount));
+        assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
+        assertThat(response.readEntity(CrudAccountResponse.class)).isEqualToComparingFieldByField(
+                new CrudAccountResponse(expectedAccount, OperationStatus.UPDATED));
+    }
+
+    @Test
+    public void testDeposit_InBinaryFormat_WithNotValidAmount() throws Exception {
+        DepositOrWithdrawRequest request = new DepositOrWithdrawRequest(1L, new BigDecimal("-1"));
+
+        Response response = resources.target("/accounts/deposit").request(BinaryFormat.MEDIA_TYPE_TYPE)
+                .put(Entity.entity(request, BinaryFormat.MEDIA_TYPE_TYPE));
+
+        verifyZeroInteractions(accountService);
+        assertThat(response.getMediaType()).isEqualTo(MediaType.APPLICATION_JSON_TYPE);
+        assertThat(response.readEntity(String.class)).isEqualTo(AMOUNT_GREATER_THAN_ZERO_VALIDATION_FAIL_MSG);
+        assertThat(response.getStatus()).isEqualTo(HTTP_UNPROCESSABLE_ENTITY_CODE);
+    }
+
+    @Test
+    public void testWithdraw_InBinaryFormat_WithTruncatedBody() throws Exception {
+        Response response = resources.target("/accounts/withdraw").request()
+                .put(Entity.entity(new byte[]{0, 0, 0, 1}, BinaryFormat.MEDIA_TYPE_TYPE));
+
+        verifyZeroInteractions(accountService);
+        assertThat(response.readEntity(String.class)).isEqualTo("Unable to process binary message: the message is truncated");
+        assertThat(response.getStatus()).isEqualTo(Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Consumer<Account> anyAccountConsumer() {
+        return any(Consumer.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T argument(InvocationOnMock invocation, int index) {
+        return (T) invocation.getArguments()[index];
+    }
+
+}
@@ -1,28 +1,53 @@
 package com.task.rest.service;
 
+import com.task.rest.contention.ContentionRecorder;
 import com.task.rest.exceptions.InsufficientFundsException;
 import com.task.rest.exceptions.NoSuchAccountException;
 import com.task.rest.exceptions.TransferToTheSameAccountException;
+import com.task.rest.exceptions.UnbalancedPostingException;
+import com.task.rest.ledger.Ledger;
+import com.task.rest.model.Money;
+import com.task.rest.model.api.request.Leg;
+import com.task.rest.model.api.request.TransferRequest;
 import com.task.rest.model.dbo.Account;
+import com.task.rest.model.dbo.LedgerOperation;
 import com.task.rest.persistence.AccountDao;
+import com.task.rest.persistence.TransactionRunner;
 import com.task.rest.utils.concurrency.ConcurrentCache;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.mockito.stubbing.Answer;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -52,12 +77,21 @@ public class AccountServiceImplTest {
             };
 
             when(cache.get(anyLong())).thenAnswer(answer);
+            when(cache.compareKeys(anyLong(), anyLong())).thenAnswer(invocation ->
+                    Long.compare(invocation.getArgumentAt(0, Long.class), invocation.getArgumentAt(1, Long.class)));
             return cache;
         }
     }
 
     private final static Map<Long, Lock> cacheStub = new ConcurrentHashMap<>();
 
+    private final TransactionRunner transactionRunner = mock(TransactionRunner.class);
+
+    @Before
+    public void setUp() {
+        when(transactionRunner.inTransaction(any(Supplier.class))).thenAnswer(invocation -> invocation.getArgumentAt(0, Supplier.class).get());
+    }
+
     @Rule
     public ExpectedException expectedEx = ExpectedException.none();
 
@@ -65,7 +99,7 @@ public class AccountServiceImplTest {
     public void testCreate_ShouldThrowIllegalArgumentException_WhenAccountIsNull() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("try to create null account");
 
@@ -81,7 +115,7 @@ public class AccountServiceImplTest {
     public void testCreate_ShouldThrowIllegalArgumentException_WhenIdIsNotNull() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("try to create account with specified id");
 
@@ -99,7 +133,7 @@ public class AccountServiceImplTest {
     public void testCreate_ShouldThrowIllegalArgumentException_WhenAmountIsNull() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("try to create account with null amount");
 
@@ -117,7 +151,7 @@ public class AccountServiceImplTest {
     public void testCreate() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
 
         // prepare mock
         BigDecimal amount = BigDecimal.TEN;
@@ -142,11 +176,112 @@ public class AccountServiceImplTest {
         assertTrue(account == result);
     }
 
+    @Test
+    public void testCreateAll_ShouldThrowIllegalArgumentException_WhenAccountsIsNull() throws Exception {
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cacheMockBuilder.buildCache(), transactionRunner);
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("try to create null accounts");
+
+        // create
+        accountService.createAll(null);
+    }
+
+    @Test
+    public void testCreateAll_ShouldThrowIllegalArgumentException_WhenAnyAccountHasId() throws Exception {
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cacheMockBuilder.buildCache(), transactionRunner);
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("try to create account with specified id");
+
+        // create
+        try {
+            accountService.createAll(Arrays.asList(new Account(BigDecimal.ONE), new Account(1L, BigDecimal.ZERO)));
+        } finally {
+            // check
+            verifyZeroInteractions(dao);
+        }
+    }
+
+    @Test
+    public void testCreateAll() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+
+        // prepare mock
+        List<Account> accounts = Arrays.asList(new Account(BigDecimal.ONE), new Account(BigDecimal.TEN));
+        when(dao.createAll(accounts)).thenReturn(accounts);
+
+        // create
+        List<Account> result = accountService.createAll(accounts);
+
+        // check
+        verifyZeroInteractions(cache);
+        Mockito.verify(dao, times(1)).createAll(accounts);
+        verifyNoMoreInteractions(dao);
+        assertTrue(accounts == result);
+    }
+
+    @Test
+    public void testListPage_ShouldThrowIllegalArgumentException_WhenLimitIsNonPositive() throws Exception {
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cacheMockBuilder.buildCache(), transactionRunner);
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("limit is non-positive");
+        accountService.listPage(null, 0);
+    }
+
+    @Test
+    public void testListPage() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+        // prepare mock
+        List<Account> accounts = Arrays.asList(new Account(3L, BigDecimal.ONE), new Account(4L, BigDecimal.TEN));
+        when(dao.getPage(2L, 2)).thenReturn(accounts);
+
+        // listPage
+        List<Account> result = accountService.listPage(2L, 2);
+
+        // check
+        verifyZeroInteractions(cache);
+        Mockito.verify(dao, times(1)).getPage(2L, 2);
+        verifyNoMoreInteractions(dao);
+        assertTrue(accounts == result);
+    }
+
+    @Test
+    public void testForEach_ShouldThrowIllegalArgumentException_WhenConsumerIsNull() throws Exception {
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cacheMockBuilder.buildCache(), transactionRunner);
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("consumer is null");
+        accountService.forEach(null, null);
+    }
+
+    @Test
+    public void testForEach() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+        Consumer<Account> consumer = account -> {
+        };
+
+        // forEach
+        accountService.forEach(1L, consumer);
+
+        // check
+        verifyZeroInteractions(cache);
+        Mockito.verify(dao, times(1)).scroll(1L, consumer);
+        verifyNoMoreInteractions(dao);
+    }
+
     @Test
     public void testListAll() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         // prepare mock
         List<Account> accounts = new ArrayList<>();
         accounts.add(new Account(1L, BigDecimal.ONE));
@@ -171,7 +306,7 @@ public class AccountServiceImplTest {
     public void testGet_ShouldThrowIllegalArgumentException_WhenIdIsNull() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("try to find account with null id");
         // get
@@ -186,20 +321,20 @@ public class AccountServiceImplTest {
     public void testGet_ShouldThrowNoSuchAccountException_WhenAccountWithSuchIdDoesNotExist() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(NoSuchAccountException.class);
         expectedEx.expectMessage("There's no account with id: 2");
 
         // prepare mock
         long id = 2L;
-        when(dao.findById(id)).thenReturn(Optional.empty());
+        when(dao.findByIdForRead(id)).thenReturn(Optional.empty());
 
         // get
         accountService.get(id);
 
         // check
         verifyZeroInteractions(cache);
-        Mockito.verify(dao, times(1)).findById(id);
+        Mockito.verify(dao, times(1)).findByIdForRead(id);
         verifyNoMoreInteractions(dao);
     }
 
@@ -207,12 +342,12 @@ public class AccountServiceImplTest {
     public void testGet() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         // prepare mock
         long id = 1L;
         Account account = mock(Account.class);
 
-        when(dao.findById(id)).thenReturn(Optional.of(account));
+        when(dao.findByIdForRead(id)).thenReturn(Optional.of(account));
 
         // get
         Account result = accountService.get(id);
@@ -221,17 +356,47 @@ public class AccountServiceImplTest {
         verifyZeroInteractions(cache);
         verifyZeroInteractions(account);
 
-        Mockito.verify(dao, times(1)).findById(1L);
+        Mockito.verify(dao, times(1)).findByIdForRead(1L);
         verifyNoMoreInteractions(dao);
 
         assertTrue(account == result);
     }
 
+    @Test
+    public void testGetAll_ShouldThrowIllegalArgumentException_WhenIdsContainNull() throws Exception {
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cacheMockBuilder.buildCache(), transactionRunner);
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("try to find account with null id");
+
+        accountService.getAll(Arrays.asList(1L, null));
+    }
+
+    @Test
+    public void testGetAll_ShouldLoadAccountsOnceOrderedById() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+        // prepare mock
+        Account first = new Account(1L, BigDecimal.ONE);
+        Account third = new Account(3L, BigDecimal.TEN);
+        when(dao.findByIdsForRead(anyCollectionOf(Long.class))).thenReturn(Arrays.asList(third, first));
+
+        // get
+        List<Account> result = accountService.getAll(Arrays.asList(3L, 2L, 1L, 3L));
+
+        // check
+        verifyZeroInteractions(cache);
+        verify(dao, times(1)).findByIdsForRead(new LinkedHashSet<>(Arrays.asList(3L, 2L, 1L)));
+        verifyNoMoreInteractions(dao);
+        assertThat(result).containsExactly(first, third);
+    }
+
     @Test
     public void testWithdraw_ShouldThrowIllegalArgumentException_WhenIdIsNull() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("try to modify account with null id");
         // withdraw
@@ -245,11 +410,11 @@ public class AccountServiceImplTest {
     public void testWithdraw_ShouldThrowIllegalArgumentException_WhenAmountIsNull() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("amount is null");
         // withdraw
-        accountService.withdraw(1L, null);
+        accountService.withdraw(1L, (Money) null);
         // check
         verifyZeroInteractions(cache);
         verifyZeroInteractions(dao);
@@ -259,7 +424,7 @@ public class AccountServiceImplTest {
     public void testWithdraw_ShouldThrowIllegalArgumentException_WhenAmountIsNegative() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("amount is non-positive");
         // withdraw
@@ -273,7 +438,7 @@ public class AccountServiceImplTest {
     public void testWithdraw_ShouldThrowIllegalArgumentException_WhenAmountIsZero() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("amount is non-positive");
         // withdraw
@@ -287,7 +452,7 @@ public class AccountServiceImplTest {
     public void testWithdraw_ShouldThrowNoSuchAccountException_WhenAccountWithSuchIdDoesNotExist() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(NoSuchAccountException.class);
         expectedEx.expectMessage("There's no account with id: 2");
 
@@ -308,16 +473,16 @@ public class AccountServiceImplTest {
     public void testWithdraw_ShouldThrowInsufficientFundsException() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(InsufficientFundsException.class);
         expectedEx.expectMessage("Current amount (0) is less than amount to withdraw (1) for the account with id = 1");
 
         // prepare mock
         long id = 1L;
-        BigDecimal amount = BigDecimal.ONE;
+        Money amount = Money.of(BigDecimal.ONE);
 
         Account account = mock(Account.class);
-        when(account.withdraw(amount)).thenThrow(new InsufficientFundsException(BigDecimal.ZERO, amount, id));
+        when(account.withdraw(amount)).thenThrow(new InsufficientFundsException(BigDecimal.ZERO, amount.toBigDecimal(), id));
         when(dao.findById(id)).thenReturn(Optional.of(account));
 
         // withdraw
@@ -337,10 +502,10 @@ public class AccountServiceImplTest {
     public void testWithdraw() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         // prepare mock
         long id = 1L;
-        BigDecimal amount = BigDecimal.ONE;
+        Money amount = Money.of(BigDecimal.ONE);
 
         Account account = mock(Account.class);
         when(account.withdraw(amount)).thenReturn(account);
@@ -365,7 +530,7 @@ public class AccountServiceImplTest {
     public void testDeposit_ShouldThrowIllegalArgumentException_WhenIdIsNull() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("try to modify account with null id");
         // deposit
@@ -379,11 +544,11 @@ public class AccountServiceImplTest {
     public void testDeposit_ShouldThrowIllegalArgumentException_WhenAmountIsNull() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("amount is null");
         // deposit
-        accountService.deposit(1L, null);
+        accountService.deposit(1L, (Money) null);
         // check
         verifyZeroInteractions(cache);
         verifyZeroInteractions(dao);
@@ -393,7 +558,7 @@ public class AccountServiceImplTest {
     public void testDeposit_ShouldThrowIllegalArgumentException_WhenAmountIsNegative() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("amount is non-positive");
         // deposit
@@ -407,7 +572,7 @@ public class AccountServiceImplTest {
     public void testDeposit_ShouldThrowIllegalArgumentException_WhenAmountIsZero() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("amount is non-positive");
         // deposit
@@ -421,7 +586,7 @@ public class AccountServiceImplTest {
     public void testDeposit_ShouldThrowNoSuchAccountException_WhenAccountWithSuchIdDoesNotExist() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(NoSuchAccountException.class);
         expectedEx.expectMessage("There's no account with id: 2");
 
@@ -442,10 +607,10 @@ public class AccountServiceImplTest {
     public void testDeposit() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         // prepare mock
         long id = 1L;
-        BigDecimal amount = BigDecimal.ONE;
+        Money amount = Money.of(BigDecimal.ONE);
 
         Account account = mock(Account.class);
         when(account.deposit(amount)).thenReturn(account);
@@ -470,7 +635,7 @@ public class AccountServiceImplTest {
     public void testDelete_ShouldThrowIllegalArgumentException_WhenIdIsNull() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("try to delete account with null id");
         //delete
@@ -484,7 +649,7 @@ public class AccountServiceImplTest {
     public void testDelete_ShouldThrowNoSuchAccountException_WhenAccountWithSuchIdDoesNotExist() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(NoSuchAccountException.class);
         expectedEx.expectMessage("There's no account with id: 2");
 
@@ -505,7 +670,7 @@ public class AccountServiceImplTest {
     public void testDelete() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
 
         // prepare mock
         long id = 2L;
@@ -531,7 +696,7 @@ public class AccountServiceImplTest {
     public void TestTransfer_ShouldThrowIllegalArgumentException_WhenFirstIdIsNull() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("try to modify account with null id");
         // transfer
@@ -545,7 +710,7 @@ public class AccountServiceImplTest {
     public void TestTransfer_ShouldThrowIllegalArgumentException_WhenSecondIdIsNull() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("try to modify account with null id");
         // transfer
@@ -559,11 +724,11 @@ public class AccountServiceImplTest {
     public void TestTransfer_ShouldThrowIllegalArgumentException_WhenAmountIsNull() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("amount is null");
         // transfer
-        accountService.transfer(3L, 2L, null);
+        accountService.transfer(3L, 2L, (Money) null);
         // check
         verifyZeroInteractions(cache);
         verifyZeroInteractions(dao);
@@ -573,7 +738,7 @@ public class AccountServiceImplTest {
     public void TestTransfer_ShouldThrowIllegalArgumentException_WhenAmountIsNegative() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("amount is non-positive");
         // transfer
@@ -587,7 +752,7 @@ public class AccountServiceImplTest {
     public void TestTransfer_ShouldThrowIllegalArgumentException_WhenAmountIsZero() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(IllegalArgumentException.class);
         expectedEx.expectMessage("amount is non-positive");
         // transfer
@@ -601,7 +766,7 @@ public class AccountServiceImplTest {
     public void TestTransfer_ShouldThrowTransferToTheSameAccountException_WhenIdsAreEqual() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(TransferToTheSameAccountException.class);
         expectedEx.expectMessage("Transfer money to the same account is forbidden");
         // transfer
@@ -615,7 +780,7 @@ public class AccountServiceImplTest {
     public void TestTransfer_ShouldThrowNoSuchAccountException_WhenAccountWithFirstIdDoesNotExist() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(NoSuchAccountException.class);
         expectedEx.expectMessage("There's no account with id: 2");
 
@@ -639,7 +804,7 @@ public class AccountServiceImplTest {
     public void TestTransfer_ShouldThrowNoSuchAccountException_WhenAccountWithSecondIdDoesNotExist() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(NoSuchAccountException.class);
         expectedEx.expectMessage("There's no account with id: 3");
 
@@ -666,7 +831,7 @@ public class AccountServiceImplTest {
     public void TestTransfer_ShouldThrowInsufficientFundsException_WhenItIsNotEnoughFundsForTransfer() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
         expectedEx.expect(InsufficientFundsException.class);
         expectedEx.expectMessage("Current amount (0) is less than amount to withdraw (1) for the account with id = 2");
 
@@ -677,7 +842,7 @@ public class AccountServiceImplTest {
         Account accountTo = mock(Account.class);
         when(dao.findById(firstId)).thenReturn(Optional.of(accountFrom));
         when(dao.findById(secondId)).thenReturn(Optional.of(accountTo));
-        BigDecimal amountToWithdraw = BigDecimal.ONE;
+        Money amountToWithdraw = Money.of(BigDecimal.ONE);
         when(accountFrom.withdraw(amountToWithdraw)).thenThrow(new InsufficientFundsException(BigDecimal.ZERO, BigDecimal.ONE, firstId));
 
         // transfer
@@ -701,7 +866,7 @@ public class AccountServiceImplTest {
     public void TestTransfer() throws Exception {
         ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
         AccountDao dao = mock(AccountDao.class);
-        accountService = new AccountServiceImpl(dao, cache);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
 
         // prepare mock
         long firstId = 2L;
@@ -710,7 +875,7 @@ public class AccountServiceImplTest {
         Account accountTo = mock(Account.class);
         when(dao.findById(firstId)).thenReturn(Optional.of(accountFrom));
         when(dao.findById(secondId)).thenReturn(Optional.of(accountTo));
-        BigDecimal amountToWithdraw = BigDecimal.ONE;
+        Money amountToWithdraw = Money.of(BigDecimal.ONE);
         when(accountFrom.withdraw(amountToWithdraw)).thenReturn(accountFrom);
         when(accountTo.deposit(amountToWithdraw)).thenReturn(accountTo);
 
@@ -718,6 +883,7 @@ public class AccountServiceImplTest {
         Account result = accountService.transfer(firstId, secondId, BigDecimal.ONE);
 
         // check
+        verify(cache, times(1)).compareKeys(firstId, secondId);
         verify(cache, times(1)).get(firstId);
         verify(cache, times(1)).get(secondId);
         verifyNoMoreInteractions(cache);
@@ -734,5 +900,502 @@ public class AccountServiceImplTest {
         assertTrue(result == accountFrom);
     }
 
+    @Test
+    public void TestTransfer_ShouldLockOnce_WhenAccountsShareTheSameLock() throws Exception {
+        ConcurrentCache<Long, Lock> cache = mock(ConcurrentCache.class);
+        Lock lock = mock(Lock.class);
+        when(cache.get(anyLong())).thenReturn(lock);
+        when(cache.compareKeys(anyLong(), anyLong())).thenReturn(0);
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+
+        // prepare mock
+        long firstId = 3L;
+        long secondId = 2L;
+        Account accountFrom = new Account(firstId, BigDecimal.TEN);
+        Account accountTo = new Account(secondId, BigDecimal.ZERO);
+        when(dao.findById(firstId)).thenReturn(Optional.of(accountFrom));
+        when(dao.findById(secondId)).thenReturn(Optional.of(accountTo));
+
+        // transfer
+        Account result = accountService.transfer(firstId, secondId, BigDecimal.ONE);
+
+        // check
+        verify(cache, times(1)).compareKeys(firstId, secondId);
+        verify(cache, times(1)).get(firstId);
+        verifyNoMoreInteractions(cache);
+
+        InOrder lockOrder = inOrder(lock);
+        lockOrder.verify(lock).tryLock();
+        lockOrder.verify(lock).lock();
+        lockOrder.verify(lock).unlock();
+        verifyNoMoreInteractions(lock);
+
+        assertTrue(result == accountFrom);
+        assertTrue(new BigDecimal("9").compareTo(accountFrom.getAmount()) == 0);
+        assertTrue(BigDecimal.ONE.compareTo(accountTo.getAmount()) == 0);
+    }
+
+    @Test
+    public void TestTransferBatch_ShouldThrowIllegalArgumentException_WhenTransfersIsNull() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("transfers is null");
+        // transfer
+        accountService.transferBatch(null);
+        // check
+        verifyZeroInteractions(cache);
+        verifyZeroInteractions(dao);
+    }
+
+    @Test
+    public void TestTransferBatch_ShouldThrowIllegalArgumentException_WhenAnyAmountIsNonPositive() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("amount is non-positive");
+        // transfer
+        accountService.transferBatch(Arrays.asList(
+                new TransferRequest(1L, 2L, BigDecimal.ONE),
+                new TransferRequest(2L, 3L, BigDecimal.ZERO)));
+        // check
+        verifyZeroInteractions(cache);
+        verifyZeroInteractions(dao);
+    }
+
+    @Test
+    public void TestTransferBatch_ShouldThrowTransferToTheSameAccountException_WhenAnyIdsAreEqual() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+        expectedEx.expect(TransferToTheSameAccountException.class);
+        expectedEx.expectMessage("Transfer money to the same account is forbidden");
+        // transfer
+        accountService.transferBatch(Arrays.asList(
+                new TransferRequest(1L, 2L, BigDecimal.ONE),
+                new TransferRequest(3L, 3L, BigDecimal.ONE)));
+        // check
+        verifyZeroInteractions(cache);
+        verifyZeroInteractions(dao);
+    }
+
+    @Test
+    public void TestTransferBatch_ShouldThrowNoSuchAccountException_WhenAnyAccountDoesNotExist() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+        expectedEx.expect(NoSuchAccountException.class);
+        expectedEx.expectMessage("There's no account with id: 3");
+
+        // prepare mock
+        Account first = new Account(1L, BigDecimal.TEN);
+        Account second = new Account(2L, BigDecimal.TEN);
+        when(dao.findByIds(anyCollectionOf(Long.class))).thenReturn(Arrays.asList(first, second));
+
+        try {
+            // transfer
+            accountService.transferBatch(Arrays.asList(
+                    new TransferRequest(1L, 2L, BigDecimal.ONE),
+                    new TransferRequest(2L, 3L, BigDecimal.ONE)));
+        } finally {
+            // check
+            verify(dao, times(1)).findByIds(new TreeSet<>(Arrays.asList(1L, 2L, 3L)));
+            verifyNoMoreInteractions(dao);
+            assertTrue(BigDecimal.TEN.compareTo(first.getAmount()) == 0);
+            assertTrue(BigDecimal.TEN.compareTo(second.getAmount()) == 0);
+        }
+    }
+
+    @Test
+    public void TestTransferBatch_ShouldThrowInsufficientFundsException_WhenItIsNotEnoughFundsForAnyTransfer() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+        expectedEx.expect(InsufficientFundsException.class);
+        expectedEx.expectMessage("Current amount (6) is less than amount to withdraw (7) for the account with id = 2");
+
+        // prepare mock
+        Account first = new Account(1L, BigDecimal.TEN);
+        Account second = new Account(2L, BigDecimal.ONE);
+        when(dao.findByIds(anyCollectionOf(Long.class))).thenReturn(Arrays.asList(first, second));
+
+        // transfer
+        accountService.transferBatch(Arrays.asList(
+                new TransferRequest(1L, 2L, new BigDecimal("5")),
+                new TransferRequest(2L, 1L, new BigDecimal("7"))));
+    }
+
+    @Test
+    public void TestTransferBatch() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+
+        // prepare mock
+        Account first = new Account(1L, BigDecimal.TEN);
+        Account second = new Account(2L, BigDecimal.ZERO);
+        Account third = new Account(3L, BigDecimal.ONE);
+        when(dao.findByIds(anyCollectionOf(Long.class))).thenReturn(Arrays.asList(third, first, second));
+
+        // transfer
+        List<Account> result = accountService.transferBatch(Arrays.asList(
+                new TransferRequest(3L, 2L, BigDecimal.ONE),
+                new TransferRequest(1L, 2L, new BigDecimal("4")),
+                new TransferRequest(2L, 3L, new BigDecimal("5"))));
+
+        // check
+        InOrder lockOrder = inOrder(cache);
+        lockOrder.verify(cache).get(1L);
+        lockOrder.verify(cache).get(2L);
+        lockOrder.verify(cache).get(3L);
+        verify(cache, atLeastOnce()).compareKeys(anyLong(), anyLong());
+        verifyNoMoreInteractions(cache);
+
+        verify(dao, times(1)).findByIds(new TreeSet<>(Arrays.asList(1L, 2L, 3L)));
+        verifyNoMoreInteractions(dao);
+
+        assertThat(result).containsExactly(
+                new Account(1L, new BigDecimal("6")),
+                new Account(2L, BigDecimal.ZERO),
+                new Account(3L, new BigDecimal("5")));
+        assertTrue(result.get(0) == first);
+    }
+
+    @Test
+    public void testDeposit_ShouldCommitBeforeLockIsReleased() throws Exception {
+        ConcurrentCache<Long, Lock> cache = mock(ConcurrentCache.class);
+        Lock lock = mock(Lock.class);
+        when(cache.get(1L)).thenReturn(lock);
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+
+        // prepare mock
+        when(dao.findById(1L)).thenReturn(Optional.of(new Account(1L, BigDecimal.TEN)));
+
+        // deposit
+        accountService.deposit(1L, BigDecimal.ONE);
+
+        // check
+        InOrder order = inOrder(lock, transactionRunner);
+        order.verify(lock).lock();
+        order.verify(transactionRunner).inTransaction(any(Supplier.class));
+        order.verify(lock).unlock();
+    }
+
+    @Test
+    public void TestTransferBatch_ShouldLockSharedLockOnce() throws Exception {
+        ConcurrentCache<Long, Lock> cache = mock(ConcurrentCache.class);
+        Lock evenLock = mock(Lock.class);
+        Lock oddLock = mock(Lock.class);
+        when(cache.get(anyLong())).thenAnswer(invocation -> invocation.getArgumentAt(0, Long.class) % 2 == 0 ? evenLock : oddLock);
+        // odd ids precede even ones in the lock order
+        when(cache.compareKeys(anyLong(), anyLong())).thenAnswer(invocation ->
+                Long.compare(1 - invocation.getArgumentAt(0, Long.class) % 2, 1 - invocation.getArgumentAt(1, Long.class) % 2));
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+
+        // prepare mock
+        when(dao.findByIds(anyCollectionOf(Long.class))).thenReturn(Arrays.asList(
+                new Account(1L, BigDecimal.TEN), new Account(2L, BigDecimal.TEN),
+                new Account(3L, BigDecimal.TEN), new Account(4L, BigDecimal.TEN)));
+
+        // transfer
+        accountService.transferBatch(Arrays.asList(
+                new TransferRequest(1L, 2L, BigDecimal.ONE),
+                new TransferRequest(4L, 3L, BigDecimal.ONE)));
+
+        // check - the mocked locks are never free, each one is tried before it's waited for
+        InOrder lockOrder = inOrder(oddLock, evenLock);
+        lockOrder.verify(oddLock).tryLock();
+        lockOrder.verify(oddLock).lock();
+        lockOrder.verify(evenLock).tryLock();
+        lockOrder.verify(evenLock).lock();
+        lockOrder.verify(evenLock).unlock();
+        lockOrder.verify(oddLock).unlock();
+        verifyNoMoreInteractions(oddLock, evenLock);
+    }
+
+    @Test
+    public void testTransfer_ShouldRecordWaitAndHoldOfBothLocks() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        ContentionRecorder recorder = mock(ContentionRecorder.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner, recorder);
+
+        // prepare mock
+        when(dao.findById(3L)).thenReturn(Optional.of(new Account(3L, BigDecimal.TEN)));
+        when(dao.findById(2L)).thenReturn(Optional.of(new Account(2L, BigDecimal.ZERO)));
+
+        // transfer
+        accountService.transfer(3L, 2L, BigDecimal.ONE);
+
+        // check - the locks are free, the second one in the lock order is released first
+        InOrder order = inOrder(recorder);
+        order.verify(recorder).record(eq(3L), eq(0L), anyLong());
+        order.verify(recorder).record(eq(2L), eq(0L), anyLong());
+        verifyNoMoreInteractions(recorder);
+    }
+
+    @Test
+    public void testWithdraw_ShouldRecordWait_WhenLockIsContended() throws Exception {
+        ConcurrentCache<Long, Lock> cache = mock(ConcurrentCache.class);
+        ReentrantLock lock = new ReentrantLock();
+        when(cache.get(1L)).thenReturn(lock);
+        AccountDao dao = mock(AccountDao.class);
+        AtomicLong recordedWait = new AtomicLong(-1);
+        AtomicLong recordedHold = new AtomicLong(-1);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner, (id, waitNanos, holdNanos) -> {
+            recordedWait.set(waitNanos);
+            recordedHold.set(holdNanos);
+        });
+
+        // prepare mock
+        when(dao.findById(1L)).thenReturn(Optional.of(new Account(1L, BigDecimal.TEN)));
+
+        // withdraw while another thread holds the lock
+        CountDownLatch done = new CountDownLatch(1);
+        lock.lock();
+        try {
+            new Thread(() -> {
+                accountService.withdraw(1L, BigDecimal.ONE);
+                done.countDown();
+            }).start();
+            while (!lock.hasQueuedThreads()) {
+                Thread.yield();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // check
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        assertThat(recordedWait.get()).isPositive();
+        assertThat(recordedHold.get()).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    public void testTransferBatch_ShouldRecordFirstLock_WhenNoLockIsContended() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        ContentionRecorder recorder = mock(ContentionRecorder.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner, recorder);
+
+        // prepare mock
+        when(dao.findByIds(anyCollectionOf(Long.class))).thenReturn(Arrays.asList(
+                new Account(1L, BigDecimal.TEN), new Account(2L, BigDecimal.TEN), new Account(3L, BigDecimal.TEN)));
+
+        // transfer
+        accountService.transferBatch(Arrays.asList(
+                new TransferRequest(3L, 2L, BigDecimal.ONE),
+                new TransferRequest(2L, 1L, BigDecimal.ONE)));
+
+        // check - a single acquisition is recorded for the whole batch
+        verify(recorder).record(eq(1L), eq(0L), anyLong());
+        verifyNoMoreInteractions(recorder);
+    }
+
+    @Test
+    public void testTransferBatch_ShouldRecordFirstContendedLock() throws Exception {
+        ConcurrentCache<Long, Lock> cache = mock(ConcurrentCache.class);
+        Map<Long, Lock> locks = new HashMap<>();
+        for (long id = 1; id <= 3; id++) {
+            locks.put(id, new ReentrantLock());
+        }
+        when(cache.get(anyLong())).thenAnswer(invocation -> locks.get(invocation.getArgumentAt(0, Long.class)));
+        when(cache.compareKeys(anyLong(), anyLong())).thenAnswer(invocation ->
+                Long.compare(invocation.getArgumentAt(0, Long.class), invocation.getArgumentAt(1, Long.class)));
+        AccountDao dao = mock(AccountDao.class);
+        AtomicLong recordedId = new AtomicLong(-1);
+        AtomicLong recordedWait = new AtomicLong(-1);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner, (id, waitNanos, holdNanos) -> {
+            recordedId.set(id);
+            recordedWait.set(waitNanos);
+        });
+
+        // prepare mock
+        when(dao.findByIds(anyCollectionOf(Long.class))).thenReturn(Arrays.asList(
+                new Account(1L, BigDecimal.TEN), new Account(2L, BigDecimal.TEN), new Account(3L, BigDecimal.TEN)));
+
+        // transfer while another thread holds the lock of the second account
+        CountDownLatch done = new CountDownLatch(1);
+        ReentrantLock lock = (ReentrantLock) locks.get(2L);
+        lock.lock();
+        try {
+            new Thread(() -> {
+                accountService.transferBatch(Arrays.asList(
+                        new TransferRequest(3L, 2L, BigDecimal.ONE),
+                        new TransferRequest(2L, 1L, BigDecimal.ONE)));
+                done.countDown();
+            }).start();
+            while (!lock.hasQueuedThreads()) {
+                Thread.yield();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // check
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        assertThat(recordedId.get()).isEqualTo(2L);
+        assertThat(recordedWait.get()).isPositive();
+    }
+
+    @Test
+    public void testPost_ShouldThrowUnbalancedPostingException_WhenLegsDoNotSumUpToZero() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+        expectedEx.expect(UnbalancedPostingException.class);
+        expectedEx.expectMessage("Debits and credits of the posting are not balanced, their sum is -0.01");
+
+        // post
+        accountService.post(Arrays.asList(new Leg(1L, new BigDecimal("-1")), new Leg(2L, new BigDecimal("0.99"))));
+
+        // check
+        verifyZeroInteractions(cache);
+        verifyZeroInteractions(dao);
+    }
+
+    @Test
+    public void testPost_ShouldThrowIllegalArgumentException_WhenAmountIsZero() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("amount is zero");
+
+        // post
+        accountService.post(Arrays.asList(new Leg(1L, BigDecimal.ZERO), new Leg(2L, BigDecimal.ZERO)));
+    }
+
+    @Test
+    public void testPost_ShouldThrowNoSuchAccountException_WhenAnyAccountDoesNotExist() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+        expectedEx.expect(NoSuchAccountException.class);
+
+        // prepare mock
+        when(dao.findByIds(anyCollectionOf(Long.class))).thenReturn(new ArrayList<>(Arrays.asList(new Account(1L, BigDecimal.TEN))));
+
+        // post
+        accountService.post(Arrays.asList(new Leg(1L, new BigDecimal("-1")), new Leg(2L, BigDecimal.ONE)));
+    }
+
+    @Test
+    public void testPost_ShouldNetLegsOfTheSameAccount() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+
+        // prepare mock
+        Account first = new Account(1L, BigDecimal.ONE);
+        Account second = new Account(2L, BigDecimal.ZERO);
+        Account third = new Account(3L, BigDecimal.ZERO);
+        when(dao.findByIds(anyCollectionOf(Long.class))).thenReturn(Arrays.asList(third, first, second));
+
+        // post - the first account has funds for its net debit only
+        List<Account> result = accountService.post(Arrays.asList(
+                new Leg(1L, new BigDecimal("-5")),
+                new Leg(2L, new BigDecimal("4.5")),
+                new Leg(1L, new BigDecimal("4.5")),
+                new Leg(3L, new BigDecimal("0.5")),
+                new Leg(2L, new BigDecimal("-4.5"))));
+
+        // check
+        verify(dao).findByIds(new TreeSet<>(Arrays.asList(1L, 2L, 3L)));
+        verify(transactionRunner).inTransaction(any(Supplier.class));
+        assertThat(result).containsExactly(
+                new Account(1L, new BigDecimal("0.5")),
+                new Account(2L, BigDecimal.ZERO),
+                new Account(3L, new BigDecimal("0.5")));
+        assertTrue(result.get(0) == first);
+    }
+
+    @Test
+    public void testPost_ShouldThrowInsufficientFundsException_WhenNetDebitExceedsBalance() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner);
+        expectedEx.expect(InsufficientFundsException.class);
+
+        // prepare mock
+        when(dao.findByIds(anyCollectionOf(Long.class))).thenReturn(Arrays.asList(new Account(1L, BigDecimal.ONE), new Account(2L, BigDecimal.ZERO)));
+
+        // post
+        accountService.post(Arrays.asList(new Leg(1L, new BigDecimal("-2")), new Leg(2L, new BigDecimal("2"))));
+    }
+
+    @Test
+    public void testTransfer_ShouldRecordBothAccountsToLedger() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        Ledger ledger = mock(Ledger.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner, ContentionRecorder.NONE, ledger);
+
+        // prepare mock
+        when(dao.findById(3L)).thenReturn(Optional.of(new Account(3L, BigDecimal.TEN)));
+        when(dao.findById(2L)).thenReturn(Optional.of(new Account(2L, BigDecimal.ZERO)));
+
+        // transfer
+        accountService.transfer(3L, 2L, BigDecimal.ONE);
+
+        // check
+        verify(ledger).record(3L, LedgerOperation.TRANSFER, BigDecimal.ONE.negate(), new BigDecimal("9"));
+        verify(ledger).record(2L, LedgerOperation.TRANSFER, BigDecimal.ONE, BigDecimal.ONE);
+        verifyNoMoreInteractions(ledger);
+    }
+
+    @Test
+    public void testWithdraw_ShouldNotRecordToLedger_WhenFundsAreInsufficient() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        Ledger ledger = mock(Ledger.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner, ContentionRecorder.NONE, ledger);
+        expectedEx.expect(InsufficientFundsException.class);
+
+        // prepare mock
+        when(dao.findById(1L)).thenReturn(Optional.of(new Account(1L, BigDecimal.ONE)));
+
+        try {
+            // withdraw
+            accountService.withdraw(1L, BigDecimal.TEN);
+        } finally {
+            // check
+            verifyZeroInteractions(ledger);
+        }
+    }
+
+    @Test
+    public void testDelete_ShouldRecordRemovedBalanceToLedger() throws Exception {
+        ConcurrentCache<Long, Lock> cache = cacheMockBuilder.buildCache();
+        AccountDao dao = mock(AccountDao.class);
+        Ledger ledger = mock(Ledger.class);
+        accountService = new AccountServiceImpl(dao, cache, transactionRunner, ContentionRecorder.NONE, ledger);
+
+        // prepare mock
+        when(dao.findById(1L)).thenReturn(Optional.of(new Account(1L, BigDecimal.TEN)));
+
+        // delete
+        accountService.delete(1L);
+
+        // check
+        verify(ledger).record(1L, LedgerOperation.DELETE, BigDecimal.TEN.negate(), BigDecimal.ZERO);
+    }
+
+    @Test
+    public void testHistory_ShouldThrowIllegalArgumentException_WhenLimitIsNonPositive() throws Exception {
+        Ledger ledger = mock(Ledger.class);
+        accountService = new AccountServiceImpl(mock(AccountDao.class), cacheMockBuilder.buildCache(), transactionRunner,
+                ContentionRecorder.NONE, ledger);
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("limit is non-positive");
+
+        // history
+        accountService.history(1L, null, 0);
+    }
 
-}
\ No newline at end of file
+}
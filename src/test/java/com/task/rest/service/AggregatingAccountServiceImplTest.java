@@ -0,0 +1,213 @@
+package com.task.rest.service;
+
+import com.google.common.collect.ImmutableSet;
+import com.task.rest.contention.ContendedAccount;
+import com.task.rest.contention.ContentionRecorder;
+import com.task.rest.exceptions.NoSuchAccountException;
+import com.task.rest.journal.Journal;
+import com.task.rest.model.api.request.TransferRequest;
+import com.task.rest.model.dbo.Account;
+import com.task.rest.persistence.InMemoryAccountDao;
+import com.task.rest.persistence.InMemoryTransactionRunner;
+import com.task.rest.utils.concurrency.StripedLockCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class AggregatingAccountServiceImplTest {
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    private final InMemoryAccountDao dao = new InMemoryAccountDao(4, Journal.NONE);
+
+    private final Long hotId = dao.create(new Account(BigDecimal.ONE)).getId();
+
+    private final Long coldId = dao.create(new Account(BigDecimal.ONE)).getId();
+
+    private AggregatingAccountServiceImpl accountService = buildService(ContentionRecorder.NONE, ImmutableSet.of(hotId), 0);
+
+    private AggregatingAccountServiceImpl buildService(ContentionRecorder recorder, ImmutableSet<Long> ids, int detectLimit) {
+        return new AggregatingAccountServiceImpl(dao, new StripedLockCache(16), new InMemoryTransactionRunner(dao), recorder,
+                ids, 60_000, detectLimit, 2);
+    }
+
+    @Test
+    public void testConstructor_ShouldThrowIllegalArgumentException_WhenFoldIntervalIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("fold interval is non-positive");
+        new AggregatingAccountServiceImpl(dao, new StripedLockCache(16), new InMemoryTransactionRunner(dao), ContentionRecorder.NONE,
+                Collections.emptySet(), 0, 0, 1);
+    }
+
+    @Test
+    public void testDeposit_ShouldKeepDepositPending_WhenAccountIsHot() throws Exception {
+        Account first = accountService.deposit(hotId, BigDecimal.TEN);
+        Account second = accountService.deposit(hotId, new BigDecimal("0.00000001"));
+
+        assertThat(first.getAmount()).isEqualByComparingTo("11");
+        assertThat(second.getAmount()).isEqualByComparingTo("11.00000001");
+        assertThat(dao.findByIdForRead(hotId).get().getAmount()).isEqualByComparingTo("1");
+        assertThat(accountService.get(hotId).getAmount()).isEqualByComparingTo("11.00000001");
+    }
+
+    @Test
+    public void testGetAll_ShouldAddPendingDepositsOfHotAccounts() throws Exception {
+        accountService.deposit(hotId, BigDecimal.TEN);
+        accountService.deposit(coldId, BigDecimal.TEN);
+
+        List<Account> accounts = accountService.getAll(Arrays.asList(coldId, hotId, -1L));
+
+        assertThat(accounts).extracting(Account::getId).containsExactly(hotId, coldId);
+        assertThat(accounts).extracting(Account::getAmount).usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("11"), new BigDecimal("11"));
+    }
+
+    @Test
+    public void testDeposit_ShouldUpdateStoredAmount_WhenAccountIsNotHot() throws Exception {
+        accountService.deposit(coldId, BigDecimal.TEN);
+
+        assertThat(dao.findByIdForRead(coldId).get().getAmount()).isEqualByComparingTo("11");
+    }
+
+    @Test
+    public void testDeposit_ShouldUpdateStoredAmount_WhenAmountDoesNotFitIntoUnits() throws Exception {
+        // rejected by the in-memory storage on commit rather than kept pending
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("is out of the range of the in-memory storage");
+        accountService.deposit(hotId, new BigDecimal("100000000000"));
+    }
+
+    @Test
+    public void testDeposit_ShouldThrowNoSuchAccountException_WhenHotAccountDoesNotExist() throws Exception {
+        accountService = buildService(ContentionRecorder.NONE, ImmutableSet.of(-1L), 0);
+
+        expectedEx.expect(NoSuchAccountException.class);
+        accountService.deposit(-1L, BigDecimal.TEN);
+    }
+
+    @Test
+    public void testWithdraw_ShouldFoldPendingDepositsFirst() throws Exception {
+        accountService.deposit(hotId, BigDecimal.TEN);
+
+        Account account = accountService.withdraw(hotId, new BigDecimal("10.5"));
+
+        assertThat(account.getAmount()).isEqualByComparingTo("0.5");
+        assertThat(dao.findByIdForRead(hotId).get().getAmount()).isEqualByComparingTo("0.5");
+        assertThat(accountService.get(hotId).getAmount()).isEqualByComparingTo("0.5");
+    }
+
+    @Test
+    public void testTransferAndTransferBatch_ShouldFoldPendingDepositsOfSenderFirst() throws Exception {
+        accountService.deposit(hotId, BigDecimal.TEN);
+        accountService.transfer(hotId, coldId, new BigDecimal("10.5"));
+        accountService.deposit(hotId, BigDecimal.ONE);
+
+        accountService.transferBatch(Collections.singletonList(new TransferRequest(hotId, coldId, new BigDecimal("1.5"))));
+
+        assertThat(dao.findByIdForRead(hotId).get().getAmount()).isEqualByComparingTo("0");
+        assertThat(dao.findByIdForRead(coldId).get().getAmount()).isEqualByComparingTo("13");
+    }
+
+    @Test
+    public void testDelete_ShouldFoldPendingDepositsAndRejectFurtherOnes() throws Exception {
+        accountService.deposit(hotId, BigDecimal.TEN);
+
+        Account deleted = accountService.delete(hotId);
+
+        assertThat(deleted.getAmount()).isEqualByComparingTo("11");
+        try {
+            accountService.deposit(hotId, BigDecimal.ONE);
+            fail("account is deleted");
+        } catch (NoSuchAccountException e) {
+            assertThat(dao.findByIdForRead(hotId)).isEmpty();
+        }
+    }
+
+    @Test
+    public void testStop_ShouldFoldPendingDeposits() throws Exception {
+        accountService.start();
+        accountService.deposit(hotId, BigDecimal.TEN);
+
+        accountService.stop();
+
+        assertThat(dao.findByIdForRead(hotId).get().getAmount()).isEqualByComparingTo("11");
+    }
+
+    @Test
+    public void testFoldAll_ShouldForgetAccountsThatAreNoLongerHot() throws Exception {
+        ContentionRecorder recorder = mock(ContentionRecorder.class);
+        when(recorder.hottest(2)).thenReturn(Arrays.asList(new ContendedAccount(coldId, 100, 0, 5), new ContendedAccount(hotId, 10, 0, 1)));
+        accountService = buildService(recorder, ImmutableSet.of(), 2);
+
+        accountService.detectHotAccounts();
+        assertThat(accountService.isHot(coldId)).isTrue();
+        // contended less than detectMinContended
+        assertThat(accountService.isHot(hotId)).isFalse();
+        accountService.deposit(coldId, BigDecimal.TEN);
+        assertThat(dao.findByIdForRead(coldId).get().getAmount()).isEqualByComparingTo("1");
+
+        when(recorder.hottest(2)).thenReturn(Collections.emptyList());
+        accountService.detectHotAccounts();
+        accountService.foldAll();
+
+        assertThat(accountService.isHot(coldId)).isFalse();
+        assertThat(dao.findByIdForRead(coldId).get().getAmount()).isEqualByComparingTo("11");
+        accountService.deposit(coldId, BigDecimal.ONE);
+        assertThat(dao.findByIdForRead(coldId).get().getAmount()).isEqualByComparingTo("12");
+    }
+
+    @Test
+    public void testConcurrentDepositsWithdrawalsAndFolds_ShouldKeepTotalAmount() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                futures.add(threads.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        accountService.deposit(hotId, new BigDecimal("0.01"));
+                    }
+                }));
+            }
+            futures.add(threads.submit(() -> {
+                for (int j = 0; j < 500; j++) {
+                    accountService.transfer(hotId, coldId, new BigDecimal("0.01"));
+                }
+            }));
+            futures.add(threads.submit(() -> {
+                for (int j = 0; j < 100; j++) {
+                    accountService.foldAll();
+                }
+            }));
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            threads.shutdown();
+        }
+
+        assertThat(accountService.get(hotId).getAmount()).isEqualByComparingTo("56");
+        accountService.foldAll();
+        assertThat(dao.findByIdForRead(hotId).get().getAmount()).isEqualByComparingTo("56");
+        assertThat(dao.findByIdForRead(coldId).get().getAmount()).isEqualByComparingTo("6");
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.task.rest.service;
+
+import com.task.rest.exceptions.InsufficientFundsException;
+import com.task.rest.exceptions.NoSuchAccountException;
+import com.task.rest.exceptions.TransferToTheSameAccountException;
+import com.task.rest.model.dbo.Account;
+import com.task.rest.persistence.AccountDao;
+import com.task.rest.persistence.TransactionRunner;
+import com.task.rest.utils.concurrency.ConcurrentCache;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.InOrder;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class AtomicUpdateAccountServiceImplTest {
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    private final ConcurrentCache<Long, Lock> cache = mock(ConcurrentCache.class);
+
+    private final AccountDao dao = mock(AccountDao.class);
+
+    private final TransactionRunner transactionRunner = mock(TransactionRunner.class);
+
+    private AtomicUpdateAccountServiceImpl accountService;
+
+    @Before
+    public void setUp() {
+        when(transactionRunner.inTransaction(any(Supplier.class))).thenAnswer(invocation -> invocation.getArgumentAt(0, Supplier.class).get());
+        accountService = new AtomicUpdateAccountServiceImpl(dao, cache, transactionRunner);
+    }
+
+    @Test
+    public void testDeposit_ShouldThrowIllegalArgumentException_WhenAmountIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("amount is non-positive");
+        accountService.deposit(1L, BigDecimal.ZERO);
+    }
+
+    @Test
+    public void testDeposit_ShouldThrowNoSuchAccountException_WhenAccountDoesNotExist() throws Exception {
+        expectedEx.expect(NoSuchAccountException.class);
+        expectedEx.expectMessage("There's no account with id: 1");
+        when(dao.addAmount(1L, BigDecimal.TEN)).thenReturn(false);
+        accountService.deposit(1L, BigDecimal.TEN);
+    }
+
+    @Test
+    public void testDeposit() throws Exception {
+        // prepare mock
+        when(dao.addAmount(1L, BigDecimal.TEN)).thenReturn(true);
+        when(dao.findByIdForRead(1L)).thenReturn(Optional.of(new Account(1L, new BigDecimal("11"))));
+
+        // deposit
+        Account account = accountService.deposit(1L, BigDecimal.TEN);
+
+        // check
+        assertThat(account.getAmount()).isEqualByComparingTo("11");
+        verify(transactionRunner).inTransaction(any(Supplier.class));
+        verify(dao, never()).findById(any(Long.class));
+        verifyZeroInteractions(cache);
+    }
+
+    @Test
+    public void testWithdraw_ShouldThrowNoSuchAccountException_WhenAccountDoesNotExist() throws Exception {
+        expectedEx.expect(NoSuchAccountException.class);
+        expectedEx.expectMessage("There's no account with id: 1");
+        when(dao.subtractAmount(1L, BigDecimal.TEN)).thenReturn(false);
+        when(dao.findByIdForRead(1L)).thenReturn(Optional.empty());
+        accountService.withdraw(1L, BigDecimal.TEN);
+    }
+
+    @Test
+    public void testWithdraw_ShouldThrowInsufficientFundsException_WhenItIsNotEnoughFunds() throws Exception {
+        expectedEx.expect(InsufficientFundsException.class);
+        expectedEx.expectMessage("Current amount (1) is less than amount to withdraw (10) for the account with id = 1");
+        when(dao.subtractAmount(1L, BigDecimal.TEN)).thenReturn(false);
+        when(dao.findByIdForRead(1L)).thenReturn(Optional.of(new Account(1L, BigDecimal.ONE)));
+        accountService.withdraw(1L, BigDecimal.TEN);
+    }
+
+    @Test
+    public void testWithdraw() throws Exception {
+        // prepare mock
+        when(dao.subtractAmount(1L, BigDecimal.ONE)).thenReturn(true);
+        when(dao.findByIdForRead(1L)).thenReturn(Optional.of(new Account(1L, new BigDecimal("9"))));
+
+        // withdraw
+        Account account = accountService.withdraw(1L, BigDecimal.ONE);
+
+        // check
+        assertThat(account.getAmount()).isEqualByComparingTo("9");
+        verifyZeroInteractions(cache);
+    }
+
+    @Test
+    public void TestTransfer_ShouldThrowTransferToTheSameAccountException_WhenIdsAreEqual() throws Exception {
+        expectedEx.expect(TransferToTheSameAccountException.class);
+        accountService.transfer(1L, 1L, BigDecimal.ONE);
+    }
+
+    @Test
+    public void TestTransfer_ShouldThrowNoSuchAccountException_WhenRecipientDoesNotExist() throws Exception {
+        expectedEx.expect(NoSuchAccountException.class);
+        expectedEx.expectMessage("There's no account with id: 2");
+        when(dao.subtractAmount(1L, BigDecimal.ONE)).thenReturn(true);
+        when(dao.addAmount(2L, BigDecimal.ONE)).thenReturn(false);
+        accountService.transfer(1L, 2L, BigDecimal.ONE);
+    }
+
+    @Test
+    public void TestTransfer_ShouldUpdateAccountsInIdOrder() throws Exception {
+        // prepare mock
+        when(dao.subtractAmount(2L, BigDecimal.ONE)).thenReturn(true);
+        when(dao.addAmount(1L, BigDecimal.ONE)).thenReturn(true);
+        when(dao.findByIdForRead(2L)).thenReturn(Optional.of(new Account(2L, new BigDecimal("9"))));
+
+        // transfer
+        Account account = accountService.transfer(2L, 1L, BigDecimal.ONE);
+
+        // check
+        assertThat(account.getAmount()).isEqualByComparingTo("9");
+        InOrder order = inOrder(dao);
+        order.verify(dao).addAmount(1L, BigDecimal.ONE);
+        order.verify(dao).subtractAmount(2L, BigDecimal.ONE);
+        verifyZeroInteractions(cache);
+    }
+
+}
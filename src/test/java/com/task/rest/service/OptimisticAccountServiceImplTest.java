@@ -0,0 +1,180 @@
+package com.task.rest.service;
+
+import com.task.rest.exceptions.ConcurrentUpdateException;
+import com.task.rest.exceptions.InsufficientFundsException;
+import com.task.rest.model.api.request.TransferRequest;
+import com.task.rest.model.dbo.Account;
+import com.task.rest.persistence.AccountDao;
+import com.task.rest.persistence.TransactionRunner;
+import com.task.rest.utils.concurrency.ConcurrentCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import javax.persistence.OptimisticLockException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class OptimisticAccountServiceImplTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private OptimisticAccountServiceImpl accountService;
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    /**
+     * @param conflicts number of the first transactions failing with {@link OptimisticLockException} after the work is done
+     */
+    private TransactionRunner buildRunner(int conflicts) {
+        TransactionRunner runner = mock(TransactionRunner.class);
+        int[] runs = {0};
+        when(runner.inTransaction(any(Supplier.class))).thenAnswer(invocation -> {
+            Object result = invocation.getArgumentAt(0, Supplier.class).get();
+            if (runs[0]++ < conflicts) {
+                throw new OptimisticLockException("conflict");
+            }
+            return result;
+        });
+        return runner;
+    }
+
+    @Test
+    public void testConstructor_ShouldThrowIllegalArgumentException_WhenMaxAttemptsIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("max attempts is non-positive");
+        new OptimisticAccountServiceImpl(mock(AccountDao.class), mock(ConcurrentCache.class), buildRunner(0), 0, 0, 0);
+    }
+
+    @Test
+    public void testDeposit_ShouldNotTakeLocks() throws Exception {
+        ConcurrentCache<Long, Lock> cache = mock(ConcurrentCache.class);
+        AccountDao dao = mock(AccountDao.class);
+        TransactionRunner runner = buildRunner(0);
+        accountService = new OptimisticAccountServiceImpl(dao, cache, runner, MAX_ATTEMPTS, 0, 0);
+
+        // prepare mock
+        when(dao.findById(1L)).thenReturn(Optional.of(new Account(1L, BigDecimal.TEN)));
+
+        // deposit
+        Account account = accountService.deposit(1L, BigDecimal.ONE);
+
+        // check
+        assertThat(account.getAmount()).isEqualByComparingTo("11");
+        verify(runner).inTransaction(any(Supplier.class));
+        verifyZeroInteractions(cache);
+    }
+
+    @Test
+    public void testWithdraw_ShouldRetry_WhenAccountWasConcurrentlyUpdated() throws Exception {
+        ConcurrentCache<Long, Lock> cache = mock(ConcurrentCache.class);
+        AccountDao dao = mock(AccountDao.class);
+        TransactionRunner runner = buildRunner(MAX_ATTEMPTS - 1);
+        accountService = new OptimisticAccountServiceImpl(dao, cache, runner, MAX_ATTEMPTS, 1, 2);
+
+        // prepare mock - every attempt loads the account again
+        when(dao.findById(1L)).thenAnswer(invocation -> Optional.of(new Account(1L, BigDecimal.TEN)));
+
+        // withdraw
+        Account account = accountService.withdraw(1L, BigDecimal.ONE);
+
+        // check
+        assertThat(account.getAmount()).isEqualByComparingTo("9");
+        verify(runner, times(MAX_ATTEMPTS)).inTransaction(any(Supplier.class));
+        verify(dao, times(MAX_ATTEMPTS)).findById(1L);
+        verifyZeroInteractions(cache);
+    }
+
+    @Test
+    public void testWithdraw_ShouldThrowConcurrentUpdateException_WhenAllAttemptsFailed() throws Exception {
+        expectedEx.expect(ConcurrentUpdateException.class);
+        expectedEx.expectMessage("Accounts were concurrently updated by another request, try again later");
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new OptimisticAccountServiceImpl(dao, mock(ConcurrentCache.class), buildRunner(MAX_ATTEMPTS), MAX_ATTEMPTS, 0, 0);
+
+        // prepare mock
+        when(dao.findById(1L)).thenAnswer(invocation -> Optional.of(new Account(1L, BigDecimal.TEN)));
+
+        // withdraw
+        accountService.withdraw(1L, BigDecimal.ONE);
+    }
+
+    @Test
+    public void testWithdraw_ShouldNotRetry_WhenItIsNotEnoughFunds() throws Exception {
+        AccountDao dao = mock(AccountDao.class);
+        TransactionRunner runner = buildRunner(0);
+        accountService = new OptimisticAccountServiceImpl(dao, mock(ConcurrentCache.class), runner, MAX_ATTEMPTS, 0, 0);
+
+        // prepare mock
+        when(dao.findById(1L)).thenReturn(Optional.of(new Account(1L, BigDecimal.ONE)));
+
+        // withdraw
+        try {
+            accountService.withdraw(1L, BigDecimal.TEN);
+        } catch (InsufficientFundsException e) {
+            // check
+            verify(runner).inTransaction(any(Supplier.class));
+            return;
+        }
+        throw new AssertionError("InsufficientFundsException is expected");
+    }
+
+    @Test
+    public void TestTransfer_ShouldNotTakeLocks() throws Exception {
+        ConcurrentCache<Long, Lock> cache = mock(ConcurrentCache.class);
+        AccountDao dao = mock(AccountDao.class);
+        TransactionRunner runner = buildRunner(1);
+        accountService = new OptimisticAccountServiceImpl(dao, cache, runner, MAX_ATTEMPTS, 0, 0);
+
+        // prepare mock
+        when(dao.findById(1L)).thenAnswer(invocation -> Optional.of(new Account(1L, BigDecimal.TEN)));
+        when(dao.findById(2L)).thenAnswer(invocation -> Optional.of(new Account(2L, BigDecimal.TEN)));
+
+        // transfer
+        Account account = accountService.transfer(1L, 2L, BigDecimal.ONE);
+
+        // check
+        assertThat(account.getAmount()).isEqualByComparingTo("9");
+        verify(runner, times(2)).inTransaction(any(Supplier.class));
+        verifyZeroInteractions(cache);
+    }
+
+    @Test
+    public void TestTransferBatch_ShouldNotTakeLocks() throws Exception {
+        ConcurrentCache<Long, Lock> cache = mock(ConcurrentCache.class);
+        AccountDao dao = mock(AccountDao.class);
+        accountService = new OptimisticAccountServiceImpl(dao, cache, buildRunner(0), MAX_ATTEMPTS, 0, 0);
+
+        // prepare mock
+        when(dao.findByIds(anyCollectionOf(Long.class))).thenReturn(Arrays.asList(
+                new Account(1L, BigDecimal.TEN), new Account(2L, BigDecimal.TEN), new Account(3L, BigDecimal.TEN)));
+
+        // transfer
+        List<Account> accounts = accountService.transferBatch(Arrays.asList(
+                new TransferRequest(1L, 2L, BigDecimal.ONE),
+                new TransferRequest(3L, 2L, BigDecimal.ONE)));
+
+        // check
+        assertThat(accounts).extracting(Account::getAmount).usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("9"), new BigDecimal("12"), new BigDecimal("9"));
+        verifyZeroInteractions(cache);
+    }
+
+}
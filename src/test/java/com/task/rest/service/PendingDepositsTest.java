@@ -0,0 +1,73 @@
+package com.task.rest.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class PendingDepositsTest {
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    private final PendingDeposits pending = new PendingDeposits(4);
+
+    @Test
+    public void testConstructor_ShouldThrowIllegalArgumentException_WhenStripesIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("number of stripes is not in [1, 2^24]");
+        new PendingDeposits(0);
+    }
+
+    @Test
+    public void testFold_ShouldSubtractFoldedUnitsAndIncrementSequenceTwice() throws Exception {
+        pending.add(5);
+        pending.add(7);
+
+        pending.startFold();
+        assertThat(pending.foldSequence()).isEqualTo(1);
+        pending.add(3);
+        pending.endFold(12);
+
+        assertThat(pending.sum()).isEqualTo(3);
+        assertThat(pending.foldSequence()).isEqualTo(2);
+    }
+
+    @Test
+    public void testEnter_ShouldReturnNegativeStripe_WhenClosed() throws Exception {
+        pending.close();
+
+        assertThat(pending.enter()).isNegative();
+
+        pending.reopen();
+        assertThat(pending.enter()).isNotNegative();
+    }
+
+    @Test
+    public void testClose_ShouldWaitForDepositsInProgress() throws Exception {
+        int stripe = pending.enter();
+        CompletableFuture<Void> closed = CompletableFuture.runAsync(pending::close);
+        try {
+            closed.get(100, TimeUnit.MILLISECONDS);
+            fail("a deposit is in progress");
+        } catch (TimeoutException e) {
+            // expected
+        }
+
+        pending.add(1);
+        pending.exit(stripe);
+
+        closed.get(1, TimeUnit.MINUTES);
+        assertThat(pending.sum()).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,214 @@
+package com.task.rest.service;
+
+import com.task.rest.exceptions.InsufficientFundsException;
+import com.task.rest.exceptions.NoSuchAccountException;
+import com.task.rest.journal.Journal;
+import com.task.rest.model.api.request.TransferRequest;
+import com.task.rest.model.dbo.Account;
+import com.task.rest.persistence.InMemoryAccountDao;
+import com.task.rest.persistence.InMemoryTransactionRunner;
+import com.task.rest.utils.concurrency.ConcurrentCache;
+import com.task.rest.utils.concurrency.ShardedExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class ShardedAccountServiceImplTest {
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    private final ConcurrentCache<Long, Lock> cache = mock(ConcurrentCache.class);
+
+    private final InMemoryAccountDao dao = new InMemoryAccountDao(4, Journal.NONE);
+
+    private final ShardedExecutor executor = new ShardedExecutor(4, 16);
+
+    private ShardedAccountServiceImpl accountService;
+
+    @Before
+    public void setUp() {
+        accountService = new ShardedAccountServiceImpl(dao, cache, new InMemoryTransactionRunner(dao), executor);
+    }
+
+    @After
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    public void testDeposit_ShouldRunByShardThreadWithoutLocks() throws Exception {
+        Long id = dao.create(new Account(BigDecimal.ONE)).getId();
+
+        Account account = accountService.deposit(id, BigDecimal.TEN);
+
+        assertThat(account.getAmount()).isEqualByComparingTo("11");
+        assertThat(dao.findByIdForRead(id).get().getAmount()).isEqualByComparingTo("11");
+        verifyZeroInteractions(cache);
+    }
+
+    @Test
+    public void testWithdraw_ShouldThrowInsufficientFundsException_WhenAmountIsGreaterThanBalance() throws Exception {
+        Long id = dao.create(new Account(BigDecimal.ONE)).getId();
+
+        expectedEx.expect(InsufficientFundsException.class);
+        accountService.withdraw(id, BigDecimal.TEN);
+    }
+
+    @Test
+    public void testTransfer_ShouldMoveAmountBetweenShards() throws Exception {
+        Long[] ids = accountsOfDifferentShards();
+
+        Account from = accountService.transfer(ids[0], ids[1], new BigDecimal("3"));
+
+        assertThat(from.getId()).isEqualTo(ids[0]);
+        assertThat(from.getAmount()).isEqualByComparingTo("7");
+        assertThat(dao.findByIdForRead(ids[0]).get().getAmount()).isEqualByComparingTo("7");
+        assertThat(dao.findByIdForRead(ids[1]).get().getAmount()).isEqualByComparingTo("13");
+        verifyZeroInteractions(cache);
+    }
+
+    @Test
+    public void testTransfer_ShouldNotWithdraw_WhenRecipientDoesNotExist() throws Exception {
+        Long from = dao.create(new Account(BigDecimal.TEN)).getId();
+        Long missing = from + 1;
+        while (executor.shardOf(missing) == executor.shardOf(from)) {
+            missing++;
+        }
+
+        try {
+            accountService.transfer(from, missing, BigDecimal.ONE);
+            fail("transfer to a missing account");
+        } catch (NoSuchAccountException e) {
+            assertThat(e.getMessage()).isEqualTo("There's no account with id: " + missing);
+        }
+        assertThat(dao.findByIdForRead(from).get().getAmount()).isEqualByComparingTo("10");
+    }
+
+    @Test
+    public void testTransfer_ShouldReturnAmountToSender_WhenRecipientIsDeletedAfterWithdrawal() throws Exception {
+        Long[] ids = accountsOfDifferentShards();
+        Long from = ids[0];
+        Long to = ids[1];
+
+        // the shard of the recipient is parked until the amount is withdrawn from the sender, then the recipient is deleted
+        ExecutorService parking = Executors.newSingleThreadExecutor();
+        CountDownLatch parked = new CountDownLatch(1);
+        try {
+            Future<?> deleted = parking.submit(() -> executor.executeExclusively(Collections.singletonList(executor.shardOf(to)), () -> {
+                parked.countDown();
+                while (dao.findByIdForRead(from).get().getAmount().compareTo(BigDecimal.TEN) == 0) {
+                    Thread.yield();
+                }
+                return dao.delete(new Account(to, BigDecimal.ZERO));
+            }));
+            assertThat(parked.await(1, TimeUnit.MINUTES)).isTrue();
+
+            try {
+                accountService.transfer(from, to, new BigDecimal("4"));
+                fail("transfer to a deleted account");
+            } catch (NoSuchAccountException e) {
+                assertThat(e.getMessage()).isEqualTo("There's no account with id: " + to);
+            }
+            deleted.get(1, TimeUnit.MINUTES);
+        } finally {
+            parking.shutdownNow();
+        }
+        assertThat(dao.findByIdForRead(from).get().getAmount()).isEqualByComparingTo("10");
+        assertThat(dao.findByIdForRead(to)).isEmpty();
+    }
+
+    @Test
+    public void testTransferBatch_ShouldApplyTransfersOverShards() throws Exception {
+        Long[] ids = accountsOfDifferentShards();
+        Long third = dao.create(new Account(BigDecimal.TEN)).getId();
+
+        accountService.transferBatch(Arrays.asList(
+                new TransferRequest(ids[0], ids[1], new BigDecimal("5")),
+                new TransferRequest(ids[1], third, new BigDecimal("15"))));
+
+        assertThat(dao.findByIdForRead(ids[0]).get().getAmount()).isEqualByComparingTo("5");
+        assertThat(dao.findByIdForRead(ids[1]).get().getAmount()).isEqualByComparingTo("0");
+        assertThat(dao.findByIdForRead(third).get().getAmount()).isEqualByComparingTo("25");
+    }
+
+    @Test
+    public void testTransfer_ShouldKeepTotalAmount_WhenTransfersAreConcurrent() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            ids.add(dao.create(new Account(new BigDecimal("100"))).getId());
+        }
+
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int client = 0; client < 8; client++) {
+                futures.add(clients.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 500; i++) {
+                        Long from = ids.get(random.nextInt(ids.size()));
+                        Long to = ids.get(random.nextInt(ids.size()));
+                        if (from.equals(to)) {
+                            continue;
+                        }
+                        try {
+                            accountService.transfer(from, to, new BigDecimal(1 + random.nextInt(30)));
+                        } catch (InsufficientFundsException e) {
+                            // the sender has spent its money, the transfer is skipped
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Long id : ids) {
+            BigDecimal amount = dao.findByIdForRead(id).get().getAmount();
+            assertThat(amount).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+            total = total.add(amount);
+        }
+        assertThat(total).isEqualByComparingTo("1600");
+    }
+
+    /**
+     * @return ids of two accounts with 10 each, mapped to different shards
+     */
+    private Long[] accountsOfDifferentShards() {
+        Long first = dao.create(new Account(BigDecimal.TEN)).getId();
+        while (true) {
+            Long second = dao.create(new Account(BigDecimal.TEN)).getId();
+            if (executor.shardOf(second) != executor.shardOf(first)) {
+                return new Long[]{first, second};
+            }
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.task.rest.snapshot;
+
+import com.task.rest.model.dbo.Account;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class AccountSnapshotFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        List<Account> accounts = Arrays.asList(
+                account(1, "0"),
+                account(2, "200"),
+                account(3, "300.004"),
+                account(5, "0.00000001"),
+                account(Long.MAX_VALUE, "99999999999999999999999999999.99999999"));
+        Path file = folder.getRoot().toPath().resolve("accounts.snapshot");
+
+        assertThat(AccountSnapshotFile.write(file, consumer -> accounts.forEach(consumer))).isEqualTo(accounts.size());
+
+        List<Account> read = new ArrayList<>();
+        assertThat(AccountSnapshotFile.read(file, read::add)).isEqualTo(accounts.size());
+        assertThat(read).containsExactlyElementsOf(accounts);
+        assertThat(folder.getRoot().list()).containsExactly("accounts.snapshot");
+    }
+
+    @Test
+    public void testWrite_ShouldKeepPreviousFile_WhenSourceFails() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("accounts.snapshot");
+        AccountSnapshotFile.write(file, consumer -> consumer.accept(account(1, "10")));
+
+        try {
+            AccountSnapshotFile.write(file, consumer -> {
+                consumer.accept(account(2, "20"));
+                throw new IllegalStateException("database is gone");
+            });
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        List<Account> read = new ArrayList<>();
+        AccountSnapshotFile.read(file, read::add);
+        assertThat(read).containsExactly(account(1, "10"));
+        assertThat(folder.getRoot().list()).containsExactly("accounts.snapshot");
+    }
+
+    @Test
+    public void testRead_ShouldThrowIOException_WhenFileIsTruncated() throws Exception {
+        Path file = writeThreeAccounts();
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 1));
+
+        expectedEx.expect(IOException.class);
+        expectedEx.expectMessage("is truncated");
+        AccountSnapshotFile.read(file, account -> {
+        });
+    }
+
+    @Test
+    public void testRead_ShouldThrowIOException_WhenFileIsCorrupted() throws Exception {
+        Path file = writeThreeAccounts();
+        byte[] content = Files.readAllBytes(file);
+        // the last byte of the amount of the first account
+        content[4 + 1 + 4 + 8 + 1 + 4] ^= 1;
+        Files.write(file, content);
+
+        expectedEx.expect(IOException.class);
+        expectedEx.expectMessage("is corrupted");
+        AccountSnapshotFile.read(file, account -> {
+        });
+    }
+
+    @Test
+    public void testRead_ShouldThrowIOException_WhenFileIsNotSnapshot() throws Exception {
+        Path file = folder.newFile("accounts.snapshot").toPath();
+        Files.write(file, "insert into ACCOUNT".getBytes());
+
+        expectedEx.expect(IOException.class);
+        expectedEx.expectMessage("is not an account snapshot");
+        AccountSnapshotFile.read(file, account -> {
+        });
+    }
+
+    private Path writeThreeAccounts() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("accounts.snapshot");
+        AccountSnapshotFile.write(file, consumer -> {
+            consumer.accept(account(1, "100000"));
+            consumer.accept(account(2, "2"));
+            consumer.accept(account(3, "3"));
+        });
+        return file;
+    }
+
+    private static Account account(long id, String amount) {
+        return new Account(new BigDecimal(amount)).setId(id);
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.task.rest.snapshot;
+
+import com.task.rest.model.dbo.Account;
+import com.task.rest.persistence.AccountBulkLoader;
+import com.task.rest.persistence.AccountDaoImpl;
+import io.dropwizard.testing.junit.DAOTestRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class AccountSnapshotterTest {
+
+    private static final long INTERVAL_MILLIS = 60_000;
+
+    @Rule
+    public DAOTestRule database = DAOTestRule.newBuilder().addEntityClass(Account.class).build();
+
+    @Rule
+    public DAOTestRule restoredDatabase = DAOTestRule.newBuilder().addEntityClass(Account.class).build();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    @Test
+    public void testConstructor_ShouldThrowIllegalArgumentException_WhenRetainedIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("number of retained snapshots is non-positive");
+        new AccountSnapshotter(new AccountDaoImpl(database.getSessionFactory()), new AccountBulkLoader(database.getSessionFactory()),
+                folder.getRoot().getPath(), INTERVAL_MILLIS, 0);
+    }
+
+    @Test
+    public void testRestore_ShouldRestoreNothing_WhenThereIsNoSnapshot() throws Exception {
+        assertThat(snapshotter(restoredDatabase, 2).restore()).isZero();
+        assertThat(AccountSnapshotter.latestSnapshot(folder.getRoot().toPath().resolve("missing"))).isEmpty();
+    }
+
+    @Test
+    public void testRestore_ShouldRestoreAccountsOfLatestSnapshot() throws Exception {
+        AccountDaoImpl accountDao = new AccountDaoImpl(database.getSessionFactory());
+        database.inTransaction(() -> accountDao.createAll(Arrays.asList(
+                new Account(new BigDecimal("100.03")), new Account(new BigDecimal("0")), new Account(new BigDecimal("777.0074")))));
+        AccountSnapshotter snapshotter = snapshotter(database, 2);
+        snapshotter.snapshot();
+        database.inTransaction(() -> accountDao.addAmount(2L, BigDecimal.ONE));
+        snapshotter.snapshot();
+
+        assertThat(snapshotter(restoredDatabase, 2).restore()).isEqualTo(3);
+
+        List<Account> restored = new AccountDaoImpl(restoredDatabase.getSessionFactory()).getAll();
+        assertThat(restored).containsExactlyInAnyOrder(
+                new Account(new BigDecimal("100.03")).setId(1L),
+                new Account(new BigDecimal("1")).setId(2L),
+                new Account(new BigDecimal("777.0074")).setId(3L));
+    }
+
+    @Test
+    public void testRestore_ShouldThrowUncheckedIOException_WhenLatestSnapshotIsCorrupted() throws Exception {
+        database.inTransaction(() -> new AccountDaoImpl(database.getSessionFactory()).create(new Account(BigDecimal.TEN)));
+        snapshotter(database, 2).snapshot();
+        Path snapshot = AccountSnapshotter.latestSnapshot(folder.getRoot().toPath()).get();
+        byte[] content = Files.readAllBytes(snapshot);
+        content[content.length - 1] ^= 1;
+        Files.write(snapshot, content);
+
+        expectedEx.expect(UncheckedIOException.class);
+        expectedEx.expectMessage("failed to restore the accounts from " + snapshot);
+        snapshotter(restoredDatabase, 2).restore();
+    }
+
+    @Test
+    public void testRestore_ShouldRestoreOlderSnapshot_WhenLatestSnapshotIsCorrupted() throws Exception {
+        AccountDaoImpl accountDao = new AccountDaoImpl(database.getSessionFactory());
+        database.inTransaction(() -> accountDao.create(new Account(BigDecimal.TEN)));
+        AccountSnapshotter snapshotter = snapshotter(database, 2);
+        snapshotter.snapshot();
+        database.inTransaction(() -> accountDao.create(new Account(BigDecimal.ONE)));
+        snapshotter.snapshot();
+        Path snapshot = AccountSnapshotter.latestSnapshot(folder.getRoot().toPath()).get();
+        byte[] content = Files.readAllBytes(snapshot);
+        content[content.length - 1] ^= 1;
+        Files.write(snapshot, content);
+
+        assertThat(snapshotter(restoredDatabase, 2).restore()).isEqualTo(1);
+
+        assertThat(new AccountDaoImpl(restoredDatabase.getSessionFactory()).getAll()).containsExactly(new Account(BigDecimal.TEN).setId(1L));
+    }
+
+    @Test
+    public void testSnapshot_ShouldDeleteSnapshotsBeyondRetained() throws Exception {
+        AccountSnapshotter snapshotter = snapshotter(database, 2);
+        for (int i = 0; i < 5; i++) {
+            snapshotter.snapshot();
+        }
+        Path latest = AccountSnapshotter.latestSnapshot(folder.getRoot().toPath()).get();
+
+        snapshotter.snapshot();
+
+        String[] files = folder.getRoot().list();
+        assertThat(files).hasSize(2);
+        assertThat(files).contains(latest.getFileName().toString());
+    }
+
+    @Test
+    public void testStop_ShouldWriteFinalSnapshot() throws Exception {
+        AccountSnapshotter snapshotter = snapshotter(database, 2);
+        snapshotter.start();
+        database.inTransaction(() -> new AccountDaoImpl(database.getSessionFactory()).create(new Account(BigDecimal.TEN)));
+        snapshotter.stop();
+
+        assertThat(snapshotter(restoredDatabase, 2).restore()).isEqualTo(1);
+    }
+
+    private AccountSnapshotter snapshotter(DAOTestRule database, int retained) {
+        return new AccountSnapshotter(new AccountDaoImpl(database.getSessionFactory()), new AccountBulkLoader(database.getSessionFactory()),
+                folder.getRoot().getPath(), INTERVAL_MILLIS, retained);
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.task.rest.snapshot;
+
+import com.task.rest.journal.FileJournal;
+import com.task.rest.model.dbo.Account;
+import com.task.rest.persistence.AccountCheckpoint;
+import com.task.rest.persistence.InMemoryAccountDao;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class InMemorySnapshotterTest {
+
+    private static final long INTERVAL_MILLIS = 60_000;
+    private static final long SEGMENT_SIZE = 256;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRestore_ShouldReturnNone_WhenThereIsNoSnapshot() throws Exception {
+        assertThat(InMemorySnapshotter.restore(folder.getRoot().toPath().resolve("missing"))).isSameAs(AccountCheckpoint.NONE);
+    }
+
+    @Test
+    public void testRestore_ShouldRestoreSnapshotAndJournalRecordsAfterIt() throws Exception {
+        try (FileJournal journal = journal()) {
+            InMemoryAccountDao accountDao = new InMemoryAccountDao(4, journal);
+            for (int i = 0; i < 20; i++) {
+                accountDao.create(new Account(new BigDecimal("10.5")));
+            }
+            accountDao.delete(new Account(20L, BigDecimal.ZERO));
+            snapshotter(accountDao, journal).snapshot();
+            accountDao.addAmount(1L, new BigDecimal("0.25"));
+            accountDao.subtractAmount(2L, new BigDecimal("10"));
+            accountDao.delete(new Account(3L, BigDecimal.ZERO));
+        }
+
+        List<Account> restored;
+        try (FileJournal journal = journal()) {
+            InMemoryAccountDao accountDao = new InMemoryAccountDao(4, journal, InMemorySnapshotter.restore(snapshots()));
+            restored = accountDao.getAll();
+            // ids of the accounts deleted before the snapshot are not reused
+            assertThat(accountDao.create(new Account(BigDecimal.ONE)).getId()).isEqualTo(21L);
+        }
+
+        // check
+        assertThat(restored).hasSize(18);
+        assertThat(restored.subList(0, 3)).containsExactly(
+                new Account(1L, new BigDecimal("10.75")), new Account(2L, new BigDecimal("0.5")), new Account(4L, new BigDecimal("10.5")));
+    }
+
+    @Test
+    public void testSnapshot_ShouldDeleteJournalSegmentsBeforeOldestRetainedSnapshot() throws Exception {
+        try (FileJournal journal = journal()) {
+            InMemoryAccountDao accountDao = new InMemoryAccountDao(4, journal);
+            InMemorySnapshotter snapshotter = snapshotter(accountDao, journal);
+            for (int i = 0; i < 20; i++) {
+                accountDao.create(new Account(BigDecimal.ONE));
+            }
+            snapshotter.snapshot();
+            int segments = journalFolder().toFile().listFiles().length;
+            for (int i = 0; i < 20; i++) {
+                accountDao.create(new Account(BigDecimal.ONE));
+            }
+            snapshotter.snapshot();
+            // the first snapshot is still retained
+            assertThat(journalFolder().toFile().listFiles().length).isGreaterThan(segments);
+            snapshotter.snapshot();
+
+            // check
+            assertThat(journalFolder().toFile().listFiles()).hasSize(1);
+        }
+    }
+
+    @Test
+    public void testRestore_ShouldRestoreOlderSnapshot_WhenLatestOneIsCorrupted() throws Exception {
+        try (FileJournal journal = journal()) {
+            InMemoryAccountDao accountDao = new InMemoryAccountDao(4, journal);
+            InMemorySnapshotter snapshotter = snapshotter(accountDao, journal);
+            accountDao.create(new Account(new BigDecimal("1")));
+            snapshotter.snapshot();
+            accountDao.create(new Account(new BigDecimal("2")));
+            snapshotter.snapshot();
+            accountDao.create(new Account(new BigDecimal("3")));
+        }
+        Path latest = PeriodicSnapshotter.latestSnapshot(snapshots()).get();
+        try (FileChannel channel = FileChannel.open(latest, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), channel.size() - 5);
+        }
+
+        try (FileJournal journal = journal()) {
+            AccountCheckpoint checkpoint = InMemorySnapshotter.restore(snapshots());
+            InMemoryAccountDao accountDao = new InMemoryAccountDao(4, journal, checkpoint);
+
+            // check
+            assertThat(checkpoint.size()).isEqualTo(1);
+            assertThat(accountDao.getAll()).containsExactly(new Account(1L, new BigDecimal("1")),
+                    new Account(2L, new BigDecimal("2")), new Account(3L, new BigDecimal("3")));
+        }
+    }
+
+    private InMemorySnapshotter snapshotter(InMemoryAccountDao accountDao, FileJournal journal) {
+        return new InMemorySnapshotter(accountDao, journal, snapshots().toString(), INTERVAL_MILLIS, 2);
+    }
+
+    private FileJournal journal() {
+        return new FileJournal(journalFolder(), SEGMENT_SIZE, false);
+    }
+
+    private Path journalFolder() {
+        return folder.getRoot().toPath().resolve("journal");
+    }
+
+    private Path snapshots() {
+        return folder.getRoot().toPath().resolve("snapshots");
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.task.rest.utils.concurrency;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.task.rest.exceptions.OperationQueueFullException;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class OperationExecutorTest {
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    private final OperationExecutor executor = new OperationExecutor(1, 1, 5);
+
+    @After
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    public void testConstructor_ShouldThrowIllegalArgumentException_WhenQueueSizeIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("queue size is non-positive");
+        new OperationExecutor(1, 0, 1);
+    }
+
+    @Test
+    public void testSubmit_ShouldCompleteFutureByResultOfOperation() throws Exception {
+        CompletableFuture<Thread> future = executor.submit(Thread::currentThread);
+
+        assertThat(future.get(1, TimeUnit.MINUTES).getName()).startsWith("account-operation-");
+    }
+
+    @Test
+    public void testSubmit_ShouldCompleteFutureByExceptionOfOperation() throws Exception {
+        IllegalStateException exception = new IllegalStateException("operation failed");
+
+        CompletableFuture<Object> future = executor.submit(() -> {
+            throw exception;
+        });
+
+        try {
+            future.get(1, TimeUnit.MINUTES);
+            fail("operation failed");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isSameAs(exception);
+        }
+    }
+
+    @Test
+    public void testSubmit_ShouldThrowOperationQueueFullException_WhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.submit(() -> Uninterruptibles.awaitUninterruptibly(release, 1, TimeUnit.MINUTES));
+            executor.submit(() -> Uninterruptibles.awaitUninterruptibly(release, 1, TimeUnit.MINUTES));
+
+            try {
+                executor.submit(() -> true);
+                fail("queue is full");
+            } catch (OperationQueueFullException e) {
+                assertThat(e.getCode()).isEqualTo(503);
+                assertThat(e.getRetryAfterSeconds()).isEqualTo(5);
+            }
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testSubmit_ShouldRunOperationsInVirtualThreads_WhenVirtualThreadsAreEnabled() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+        OperationExecutor virtual = new OperationExecutor(1, 1, 5, true);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // threads + queueSize operations run at once, each in a virtual thread of its own
+            CountDownLatch started = new CountDownLatch(2);
+            List<CompletableFuture<Thread>> blocked = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                blocked.add(virtual.submit(() -> {
+                    started.countDown();
+                    Uninterruptibles.awaitUninterruptibly(release, 1, TimeUnit.MINUTES);
+                    return Thread.currentThread();
+                }));
+            }
+            assertThat(started.await(1, TimeUnit.MINUTES)).isTrue();
+
+            try {
+                virtual.submit(() -> true);
+                fail("too many operations in flight");
+            } catch (OperationQueueFullException e) {
+                assertThat(e.getRetryAfterSeconds()).isEqualTo(5);
+            }
+            release.countDown();
+            for (CompletableFuture<Thread> future : blocked) {
+                assertThat(VirtualThreadsTest.isVirtual(future.get(1, TimeUnit.MINUTES))).isTrue();
+            }
+        } finally {
+            release.countDown();
+            virtual.close();
+        }
+    }
+
+    @Test
+    public void testConstructor_ShouldThrowIllegalStateException_WhenVirtualThreadsAreNotSupported() throws Exception {
+        assumeFalse(VirtualThreads.isSupported());
+
+        expectedEx.expect(IllegalStateException.class);
+        expectedEx.expectMessage("virtual threads require JDK 21 or later");
+        new OperationExecutor(1, 1, 1, true);
+    }
+
+    @Test
+    public void testClose_ShouldCompleteQueuedOperationsAndRejectNewOnes() throws Exception {
+        AtomicInteger completed = new AtomicInteger();
+        executor.submit(completed::incrementAndGet);
+        executor.submit(completed::incrementAndGet);
+
+        executor.close();
+
+        assertThat(completed.get()).isEqualTo(2);
+        expectedEx.expect(OperationQueueFullException.class);
+        executor.submit(completed::incrementAndGet);
+    }
+
+}
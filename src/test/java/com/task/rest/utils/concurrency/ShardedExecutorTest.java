@@ -0,0 +1,208 @@
+package com.task.rest.utils.concurrency;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class ShardedExecutorTest {
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    private final List<ShardedExecutor> executors = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        executors.forEach(ShardedExecutor::close);
+    }
+
+    @Test
+    public void testConstructor_ShouldThrowIllegalArgumentException_WhenShardsIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("number of shards is non-positive");
+        new ShardedExecutor(0, 1);
+    }
+
+    @Test
+    public void testConstructor_ShouldRoundShardsUpToPowerOfTwo() throws Exception {
+        assertThat(executor(1, 1).size()).isEqualTo(1);
+        assertThat(executor(3, 1).size()).isEqualTo(4);
+        assertThat(executor(8, 1).size()).isEqualTo(8);
+    }
+
+    @Test
+    public void testShardOf_ShouldSpreadSequentialKeysOverAllShards() throws Exception {
+        ShardedExecutor executor = executor(8, 1);
+        int[] keys = new int[executor.size()];
+        for (long key = 1; key <= 800; key++) {
+            keys[executor.shardOf(key)]++;
+        }
+        for (int count : keys) {
+            assertThat(count).isBetween(50, 150);
+        }
+        assertThat(executor.shardOf(42L)).isEqualTo(executor.shardOf(42L));
+    }
+
+    @Test
+    public void testExecute_ShouldRunTasksOfShardInSubmissionOrderByOneThread() throws Exception {
+        ShardedExecutor executor = executor(4, 16);
+        List<Integer> order = new ArrayList<>();
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int value = i;
+            futures.add(executor.submit(2, () -> {
+                threads.add(Thread.currentThread());
+                return order.add(value);
+            }));
+        }
+        futures.forEach(CompletableFuture::join);
+
+        for (int i = 0; i < order.size(); i++) {
+            assertThat(order.get(i)).isEqualTo(i);
+        }
+        assertThat(threads.stream().distinct().count()).isEqualTo(1);
+        assertThat(threads.get(0)).isNotSameAs(Thread.currentThread());
+    }
+
+    @Test
+    public void testExecute_ShouldThrowExceptionOfTask() throws Exception {
+        ShardedExecutor executor = executor(2, 1);
+
+        expectedEx.expect(IllegalStateException.class);
+        expectedEx.expectMessage("task failed");
+        executor.execute(1, () -> {
+            throw new IllegalStateException("task failed");
+        });
+    }
+
+    @Test
+    public void testExecute_ShouldThrowIllegalStateException_WhenCalledByThreadOfAnotherShard() throws Exception {
+        ShardedExecutor executor = executor(2, 1);
+
+        expectedEx.expect(IllegalStateException.class);
+        expectedEx.expectMessage("shard thread can't wait for another shard");
+        executor.execute(0, () -> executor.execute(1, () -> 1));
+    }
+
+    @Test
+    public void testExecute_ShouldRunInPlace_WhenCalledByThreadOfTheSameShard() throws Exception {
+        ShardedExecutor executor = executor(2, 1);
+        assertThat(executor.execute(0, () -> executor.execute(0, () -> 1))).isEqualTo(1);
+    }
+
+    @Test
+    public void testSubmit_ShouldNotBlockHandoffs_WhenShardIsFull() throws Exception {
+        ShardedExecutor executor = executor(2, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit(1, () -> awaitQuietly(release));
+
+        // the second shard is busy and its queue admits a single task, but handoffs from the first shard don't wait
+        AtomicInteger handedOff = new AtomicInteger();
+        List<CompletableFuture<Integer>> handoffs = executor.execute(0, () -> {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(executor.submit(1, handedOff::incrementAndGet));
+            }
+            return futures;
+        });
+        assertThat(handedOff.get()).isZero();
+
+        release.countDown();
+        handoffs.forEach(CompletableFuture::join);
+        assertThat(handedOff.get()).isEqualTo(10);
+    }
+
+    @Test
+    public void testExecuteExclusively_ShouldRunAfterQueuedTasksAndBeforeNextOnes() throws Exception {
+        ShardedExecutor executor = executor(4, 16);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Boolean> before = executor.submit(1, () -> {
+            awaitQuietly(release);
+            return events.add("before");
+        });
+
+        CompletableFuture<Boolean> exclusive = CompletableFuture.supplyAsync(
+                () -> executor.executeExclusively(Arrays.asList(3, 1, 3), () -> events.add("exclusive")));
+        awaitParked(executor, 3);
+        // the barriers are queued to the shards together, so the shard 1 has its barrier queued too
+        CompletableFuture<Boolean> after = executor.submit(1, () -> events.add("after"));
+        release.countDown();
+
+        assertTrue(before.get(1, TimeUnit.MINUTES));
+        assertTrue(exclusive.get(1, TimeUnit.MINUTES));
+        assertTrue(after.get(1, TimeUnit.MINUTES));
+        assertThat(events).containsExactly("before", "exclusive", "after");
+    }
+
+    @Test
+    public void testClose_ShouldCompleteQueuedTasksAndTheirHandoffs() throws Exception {
+        ShardedExecutor executor = new ShardedExecutor(2, 16);
+        AtomicInteger completed = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            executor.submit(0, () -> executor.submit(1, completed::incrementAndGet));
+        }
+
+        executor.close();
+
+        assertThat(completed.get()).isEqualTo(100);
+    }
+
+    @Test
+    public void testSubmit_ShouldThrowIllegalStateException_WhenExecutorIsClosed() throws Exception {
+        ShardedExecutor executor = new ShardedExecutor(2, 16);
+        executor.close();
+
+        expectedEx.expect(IllegalStateException.class);
+        expectedEx.expectMessage("executor is closed");
+        executor.submit(0, () -> 1);
+    }
+
+    /**
+     * Waits until the idle shard is parked by an exclusive task - its probes stop completing
+     */
+    private static void awaitParked(ShardedExecutor executor, int shard) throws Exception {
+        while (true) {
+            CompletableFuture<Boolean> probe = executor.submit(shard, () -> true);
+            try {
+                probe.get(50, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return;
+            }
+        }
+    }
+
+    private ShardedExecutor executor(int shards, int queueSize) {
+        ShardedExecutor executor = new ShardedExecutor(shards, queueSize);
+        executors.add(executor);
+        return executor;
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+}
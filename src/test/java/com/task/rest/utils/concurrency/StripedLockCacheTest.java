@@ -0,0 +1,76 @@
+package com.task.rest.utils.concurrency;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class StripedLockCacheTest {
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    @Test
+    public void testConstructor_ShouldThrowIllegalArgumentException_WhenStripesIsNonPositive() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("number of stripes is non-positive");
+        new StripedLockCache(0);
+    }
+
+    @Test
+    public void testConstructor_ShouldRoundStripesUpToPowerOfTwo() throws Exception {
+        assertThat(new StripedLockCache(1).size()).isEqualTo(1);
+        assertThat(new StripedLockCache(2).size()).isEqualTo(2);
+        assertThat(new StripedLockCache(3).size()).isEqualTo(4);
+        assertThat(new StripedLockCache(1000).size()).isEqualTo(1024);
+        assertThat(new StripedLockCache(1024).size()).isEqualTo(1024);
+    }
+
+    @Test
+    public void testGet_ShouldThrowIllegalArgumentException_WhenIdIsNull() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+        expectedEx.expectMessage("try to get lock for null id");
+        new StripedLockCache(16).get(null);
+    }
+
+    @Test
+    public void testGet_ShouldReturnTheSameLock_ForTheSameId() throws Exception {
+        StripedLockCache cache = new StripedLockCache(16);
+        for (long id = 0; id < 100; id++) {
+            assertTrue(cache.get(id) == cache.get(id));
+        }
+    }
+
+    @Test
+    public void testGet_ShouldSpreadSequentialIdsEvenly() throws Exception {
+        StripedLockCache cache = new StripedLockCache(64);
+        Map<Lock, Integer> idsByLock = new IdentityHashMap<>();
+        for (long id = 1; id <= 64 * 16; id++) {
+            idsByLock.merge(cache.get(id), 1, Integer::sum);
+        }
+        assertThat(idsByLock).hasSize(64);
+        assertThat(idsByLock.values()).allMatch(count -> count >= 8 && count <= 32);
+    }
+
+    @Test
+    public void testCompareKeys_ShouldBeZero_OnlyForIdsSharingTheSameLock() throws Exception {
+        StripedLockCache cache = new StripedLockCache(8);
+        for (long first = 0; first < 50; first++) {
+            for (long second = 0; second < 50; second++) {
+                boolean sameLock = cache.get(first) == cache.get(second);
+                assertThat(cache.compareKeys(first, second) == 0).isEqualTo(sameLock);
+                assertThat(Integer.signum(cache.compareKeys(first, second))).isEqualTo(-Integer.signum(cache.compareKeys(second, first)));
+            }
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.task.rest.utils.concurrency;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * The tests run on the JDK of the build, so only one of the JDK specific tests is run
+ *
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class VirtualThreadsTest {
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    @Test
+    public void testIsSupported_ShouldDependOnJdkVersion() throws Exception {
+        String version = System.getProperty("java.specification.version");
+        boolean modern = !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+        assertThat(VirtualThreads.isSupported()).isEqualTo(modern);
+    }
+
+    @Test
+    public void testNewThreadPerTaskExecutor_ShouldThrowIllegalStateException_WhenVirtualThreadsAreNotSupported() throws Exception {
+        assumeFalse(VirtualThreads.isSupported());
+
+        expectedEx.expect(IllegalStateException.class);
+        expectedEx.expectMessage("virtual threads require JDK 21 or later");
+        VirtualThreads.newThreadPerTaskExecutor("test-");
+    }
+
+    @Test
+    public void testNewThreadPerTaskExecutor_ShouldRunTasksInNamedVirtualThreads() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+        try {
+            Thread first = executor.submit(Thread::currentThread).get(1, TimeUnit.MINUTES);
+            Thread second = executor.submit(Thread::currentThread).get(1, TimeUnit.MINUTES);
+
+            assertThat(isVirtual(first)).isTrue();
+            assertThat(first.getName()).isEqualTo("test-0");
+            assertThat(second.getName()).isEqualTo("test-1");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    static boolean isVirtual(Thread thread) throws Exception {
+        return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+
+}
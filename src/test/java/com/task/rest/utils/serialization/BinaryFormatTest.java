@@ -0,0 +1,99 @@
+package com.task.rest.utils.serialization;
+
+import com.task.rest.model.api.request.DepositOrWithdrawRequest;
+import com.task.rest.model.api.request.TransferRequest;
+import com.task.rest.model.api.response.CrudAccountResponse;
+import com.task.rest.model.api.response.ListAllResponse;
+import com.task.rest.model.api.response.OperationStatus;
+import com.task.rest.model.dbo.Account;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexander Kotov (kotov.alex.22@gmail.com)
+ */
+public class BinaryFormatTest {
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream output = new DataOutputStream(bytes);
+
+    @Test
+    public void testTransferRequest_ShouldKeepScaleOfAmount() throws Exception {
+        BinaryFormat.writeTransferRequest(output, new TransferRequest(1L, 2L, new BigDecimal("100.00100000")));
+
+        TransferRequest request = BinaryFormat.readTransferRequest(input());
+
+        assertThat(bytes.size()).isEqualTo(8 + 8 + 1 + 8);
+        assertThat(request.getFromId()).isEqualTo(1L);
+        assertThat(request.getToId()).isEqualTo(2L);
+        assertThat(request.getAmount()).isEqualTo(new BigDecimal("100.00100000"));
+    }
+
+    @Test
+    public void testDepositOrWithdrawRequest_ShouldKeepAmountOutOfRangeOfUnits() throws Exception {
+        for (String amount : new String[]{"0.123456789", "123456789012345678901234567890.5", "1E+3"}) {
+            bytes.reset();
+            BinaryFormat.writeDepositOrWithdrawRequest(output, new DepositOrWithdrawRequest(1L, new BigDecimal(amount)));
+
+            assertThat(BinaryFormat.readDepositOrWithdrawRequest(input()).getAmount()).as(amount).isEqualByComparingTo(amount);
+        }
+    }
+
+    @Test
+    public void testDepositOrWithdrawRequest_ShouldKeepNullAmount() throws Exception {
+        BinaryFormat.writeDepositOrWithdrawRequest(output, new DepositOrWithdrawRequest(1L, (BigDecimal) null));
+
+        assertThat(BinaryFormat.readDepositOrWithdrawRequest(input()).getAmount()).isNull();
+    }
+
+    @Test
+    public void testCrudAccountResponse() throws Exception {
+        CrudAccountResponse response = new CrudAccountResponse(new Account(7L, new BigDecimal("-0.5")), OperationStatus.DELETED);
+        BinaryFormat.writeCrudAccountResponse(output, response);
+
+        assertThat(BinaryFormat.readCrudAccountResponse(input())).isEqualToComparingFieldByField(response);
+    }
+
+    @Test
+    public void testCrudAccountResponse_ShouldThrowIOException_WhenStatusIsUnknown() throws Exception {
+        output.writeByte(OperationStatus.values().length);
+        BinaryFormat.writeListedAccount(output, new Account(1L, BigDecimal.ONE));
+
+        expectedEx.expect(IOException.class);
+        expectedEx.expectMessage("unknown operation status");
+        BinaryFormat.readCrudAccountResponse(input());
+    }
+
+    @Test
+    public void testListAllResponse() throws Exception {
+        ListAllResponse page = new ListAllResponse(Arrays.asList(new Account(3L, new BigDecimal("100.03")), new Account(4L, BigDecimal.ZERO)), 4L);
+        ListAllResponse empty = new ListAllResponse(Collections.emptyList());
+        BinaryFormat.writeListAllResponse(output, page);
+        BinaryFormat.writeListAllResponse(output, empty);
+
+        DataInputStream input = input();
+
+        assertThat(BinaryFormat.readListAllResponse(input)).isEqualToComparingFieldByField(page);
+        assertThat(BinaryFormat.readListAllResponse(input)).isEqualToComparingFieldByField(empty);
+    }
+
+    private DataInputStream input() {
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+}